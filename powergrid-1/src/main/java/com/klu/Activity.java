@@ -9,12 +9,19 @@ import java.time.LocalDate;
                 @Index(name = "idx_event_date", columnList = "eventDate"),
                 @Index(name = "idx_state", columnList = "state"),
                 @Index(name = "idx_event_category", columnList = "eventCategory"),
-                @Index(name = "idx_activity_type", columnList = "activityType")
+                @Index(name = "idx_activity_type", columnList = "activityType"),
+                @Index(name = "idx_state_category_date", columnList = "state, eventCategory, eventDate"),
+                @Index(name = "idx_date_order", columnList = "eventDate, orderIndex")
         })
 public class Activity {
 
+    // Pooled table generator rather than IDENTITY, so inserts can be JDBC-batched (CSV import);
+    // IdGeneratorTable keeps the counter ahead of ids written by other means
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "activity_id")
+    @TableGenerator(name = "activity_id", table = IdGeneratorTable.TABLE, pkColumnName = IdGeneratorTable.KEY_COLUMN,
+            valueColumnName = IdGeneratorTable.VALUE_COLUMN, pkColumnValue = "activity",
+            allocationSize = IdGeneratorTable.ALLOCATION_SIZE)
     private Long id;
 
     private String state;
@@ -36,6 +43,13 @@ public class Activity {
 
     private Integer orderIndex = 0;
 
+    // Row version for inline cell edits: ActivityServiceImpl.updateField bumps it in the same partial
+    // UPDATE and only applies the edit while the client's copy is current. Whole-entity saves are
+    // last-writer-wins but bump it too (bumpVersions), so an inline edit cannot overwrite them; the
+    // entity never writes it, so a stale form cannot roll it back.
+    @Column(nullable = false, insertable = false, updatable = false, columnDefinition = "bigint default 0 not null")
+    private long version;
+
     // Default constructor for JSON serialization
     public Activity() {}
 
@@ -162,4 +176,12 @@ public class Activity {
     public void setOrderIndex(Integer orderIndex) {
         this.orderIndex = orderIndex;
     }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,419 @@
+package com.klu;
+
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process compressed bitmap index over activity ids for the low-cardinality grid filters
+ * (state, event category, activity type, participant category and event date).
+ * Filter combinations resolve to a candidate id set with bitmap AND/OR/ANDNOT, so only the
+ * visible page has to be fetched from the database.
+ *
+ * The index is rebuilt from the database once the application is ready and is kept current by
+ * the write paths in ActivityServiceImpl. Until the first build completes, isReady() returns false
+ * and callers fall back to the regular queries. Changes made inside a transaction are applied after
+ * it commits, and changes made while a rebuild is reading the table are replayed onto its result.
+ *
+ * Values are matched like the MySQL column collation (case-insensitive, trailing spaces ignored),
+ * so "Kerala", "kerala" and "Kerala " select the same rows as they do in SQL.
+ *
+ * Bitmaps hold 32-bit unsigned values, so ids from 0 to MAX_ID only. An id outside that range never
+ * fails the write that produced it (the index is updated from inside write transactions); the index
+ * is marked not ready instead, and stays so until a rebuild finds every id in range again.
+ */
+@Component
+public class ActivityBitmapIndex {
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, RoaringBitmap> byState = new HashMap<>();
+    private final Map<String, RoaringBitmap> byEventCategory = new HashMap<>();
+    private final Map<String, RoaringBitmap> byActivityType = new HashMap<>();
+    private final Map<String, RoaringBitmap> byParticipantCategory = new HashMap<>();
+    private final TreeMap<LocalDate, RoaringBitmap> byEventDate = new TreeMap<>();
+
+    // Rows with a non-null state / category; SQL "!=" never matches NULL, so NOT must skip them too
+    private final RoaringBitmap withState = new RoaringBitmap();
+    private final RoaringBitmap withEventCategory = new RoaringBitmap();
+    private final RoaringBitmap all = new RoaringBitmap();
+
+    // Last indexed values per row, needed to clear the old bitmaps when a row changes
+    private final Map<Integer, IndexedRow> rows = new HashMap<>();
+    // Value shown in facet counts for each collation key, the first one indexed
+    private final Map<String, String> labels = new HashMap<>();
+    // Rows changed since the running rebuild started reading (null value = removed); null if none is running
+    private Map<Integer, IndexedRow> changedDuringRebuild;
+
+    // Largest id a bitmap can hold (unsigned 32-bit; see page())
+    static final long MAX_ID = 0xFFFF_FFFFL;
+
+    private volatile boolean ready = false;
+    // Set when a write or rebuild meets an id above MAX_ID; cleared by the next rebuild that starts
+    private volatile boolean idOutOfRange = false;
+
+    private static final class IndexedRow {
+        final String state;
+        final String eventCategory;
+        final String activityType;
+        final String participantCategory;
+        final LocalDate eventDate;
+
+        IndexedRow(String state, String eventCategory, String activityType, String participantCategory, LocalDate eventDate) {
+            this.state = state;
+            this.eventCategory = eventCategory;
+            this.activityType = activityType;
+            this.participantCategory = participantCategory;
+            this.eventDate = eventDate;
+        }
+    }
+
+    // Reads the table without holding the lock; writes committed meanwhile are replayed afterwards
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changedDuringRebuild = new HashMap<>();
+            idOutOfRange = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        List<Object[]> columns;
+        try {
+            columns = activityRepository.findIndexColumns();
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            changedDuringRebuild = null;
+            lock.writeLock().unlock();
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            byState.clear();
+            byEventCategory.clear();
+            byActivityType.clear();
+            byParticipantCategory.clear();
+            byEventDate.clear();
+            withState.clear();
+            withEventCategory.clear();
+            all.clear();
+            rows.clear();
+            labels.clear();
+            for (Object[] row : columns) {
+                if (!inRange((Long) row[0])) {
+                    markOutOfRange((Long) row[0]);
+                    break;
+                }
+                add(ordinal((Long) row[0]), new IndexedRow((String) row[1], (String) row[2], (String) row[3],
+                        (String) row[4], (LocalDate) row[5]));
+            }
+            Map<Integer, IndexedRow> changes = changedDuringRebuild;
+            changedDuringRebuild = null;
+            changes.forEach(this::apply);
+            for (RoaringBitmap bitmap : byEventDate.values()) {
+                bitmap.runOptimize();
+            }
+            ready = !idOutOfRange;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Called by the write paths after an activity has been saved
+    public void index(Activity activity) {
+        indexAll(activity != null ? List.of(activity) : List.of());
+    }
+
+    public void indexAll(Collection<Activity> activities) {
+        // Values as of now: the entities may still change before the transaction commits
+        Map<Integer, IndexedRow> changes = new LinkedHashMap<>();
+        for (Activity activity : activities) {
+            if (activity.getId() != null) {
+                if (!inRange(activity.getId())) {
+                    markOutOfRange(activity.getId());
+                    return;
+                }
+                changes.put(ordinal(activity.getId()), new IndexedRow(activity.getState(), activity.getEventCategory(),
+                        activity.getActivityType(), activity.getParticipantCategory(), activity.getEventDate()));
+            }
+        }
+        applyAfterCommit(changes);
+    }
+
+    public void remove(Collection<Long> ids) {
+        Map<Integer, IndexedRow> changes = new LinkedHashMap<>();
+        for (Long id : ids) {
+            if (id != null) {
+                if (!inRange(id)) {
+                    // Such a row was never indexed
+                    continue;
+                }
+                changes.put(ordinal(id), null);
+            }
+        }
+        applyAfterCommit(changes);
+    }
+
+    /**
+     * Resolves the grid filters to a candidate id set. Empty or null arguments mean "no filter".
+     * Multiple states or categories are OR'ed together (IN list); the different columns are AND'ed.
+     */
+    public RoaringBitmap resolve(List<String> states, List<String> eventCategories, String activityType,
+                                 LocalDate startDate, LocalDate endDate) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap result = all.clone();
+            if (states != null && !states.isEmpty()) {
+                result.and(union(byState, states));
+            }
+            if (eventCategories != null && !eventCategories.isEmpty()) {
+                result.and(union(byEventCategory, eventCategories));
+            }
+            if (activityType != null && !activityType.isEmpty()) {
+                result.and(byActivityType.getOrDefault(key(activityType), new RoaringBitmap()));
+            }
+            if (startDate != null && endDate != null) {
+                result.and(dateRange(startDate, endDate));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Same semantics as ActivityQueryBuilder.stateAndEventCategoryFrom
+    public RoaringBitmap resolveStateAndEventCategory(String state, String eventCategory, String operator) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap stateBitmap = byState.getOrDefault(key(state), new RoaringBitmap());
+            RoaringBitmap categoryBitmap = byEventCategory.getOrDefault(key(eventCategory), new RoaringBitmap());
+            switch (operator) {
+                case "AND":
+                    return RoaringBitmap.and(stateBitmap, categoryBitmap);
+                case "OR":
+                    return RoaringBitmap.or(stateBitmap, categoryBitmap);
+                case "NOT":
+                    RoaringBitmap result = RoaringBitmap.and(withState, withEventCategory);
+                    result.andNot(stateBitmap);
+                    result.andNot(categoryBitmap);
+                    return result;
+                default:
+                    return new RoaringBitmap();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Ids of one page of the candidate set, in id order, without materializing the whole set
+    public List<Long> page(RoaringBitmap candidates, long offset, int limit, boolean ascending) {
+        List<Long> ids = new ArrayList<>();
+        long cardinality = candidates.getLongCardinality();
+        if (offset >= cardinality || limit <= 0) {
+            return ids;
+        }
+        long count = Math.min(limit, cardinality - offset);
+        // The page is ranks [first, first + count) either way; one select() finds the first, the iterator the rest
+        long first = ascending ? offset : cardinality - offset - count;
+        PeekableIntIterator iterator = candidates.getIntIterator();
+        iterator.advanceIfNeeded(candidates.select((int) first));
+        while (ids.size() < count) {
+            ids.add(Integer.toUnsignedLong(iterator.next()));
+        }
+        if (!ascending) {
+            Collections.reverse(ids);
+        }
+        return ids;
+    }
+
+    // Number of candidates per state, category, activity type and participant category
+    public Map<String, Object> facetCounts(RoaringBitmap candidates) {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> counts = new HashMap<>();
+            counts.put("total", candidates.getLongCardinality());
+            counts.put("states", countPerValue(byState, labels, candidates));
+            counts.put("eventCategories", countPerValue(byEventCategory, labels, candidates));
+            counts.put("activityTypes", countPerValue(byActivityType, labels, candidates));
+            counts.put("participantCategories", countPerValue(byParticipantCategory, labels, candidates));
+            return counts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void applyAfterCommit(Map<Integer, IndexedRow> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyAll(changes);
+                }
+            });
+        } else {
+            applyAll(changes);
+        }
+    }
+
+    private void applyAll(Map<Integer, IndexedRow> changes) {
+        lock.writeLock().lock();
+        try {
+            changes.forEach(this::apply);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Replaces the indexed values of one row; a null row removes it. Caller holds the write lock
+    private void apply(int ordinal, IndexedRow row) {
+        IndexedRow previous = rows.get(ordinal);
+        if (previous != null) {
+            remove(ordinal, previous);
+        }
+        if (row != null) {
+            add(ordinal, row);
+        }
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.put(ordinal, row);
+        }
+    }
+
+    private void add(int ordinal, IndexedRow row) {
+        all.add(ordinal);
+        addTo(byState, row.state, ordinal);
+        addTo(byEventCategory, row.eventCategory, ordinal);
+        addTo(byActivityType, row.activityType, ordinal);
+        addTo(byParticipantCategory, row.participantCategory, ordinal);
+        if (row.eventDate != null) {
+            byEventDate.computeIfAbsent(row.eventDate, k -> new RoaringBitmap()).add(ordinal);
+        }
+        if (row.state != null) {
+            withState.add(ordinal);
+        }
+        if (row.eventCategory != null) {
+            withEventCategory.add(ordinal);
+        }
+        rows.put(ordinal, row);
+    }
+
+    private void remove(int ordinal, IndexedRow row) {
+        all.remove(ordinal);
+        removeFrom(byState, key(row.state), ordinal);
+        removeFrom(byEventCategory, key(row.eventCategory), ordinal);
+        removeFrom(byActivityType, key(row.activityType), ordinal);
+        removeFrom(byParticipantCategory, key(row.participantCategory), ordinal);
+        if (row.eventDate != null) {
+            removeFrom(byEventDate, row.eventDate, ordinal);
+        }
+        withState.remove(ordinal);
+        withEventCategory.remove(ordinal);
+        rows.remove(ordinal);
+    }
+
+    private void addTo(Map<String, RoaringBitmap> bitmaps, String value, int ordinal) {
+        if (value != null) {
+            String key = key(value);
+            bitmaps.computeIfAbsent(key, k -> new RoaringBitmap()).add(ordinal);
+            labels.putIfAbsent(key, value);
+        }
+    }
+
+    private static <K> void removeFrom(Map<K, RoaringBitmap> bitmaps, K value, int ordinal) {
+        RoaringBitmap bitmap = value != null ? bitmaps.get(value) : null;
+        if (bitmap != null) {
+            bitmap.remove(ordinal);
+            if (bitmap.isEmpty()) {
+                bitmaps.remove(value);
+            }
+        }
+    }
+
+    private static RoaringBitmap union(Map<String, RoaringBitmap> bitmaps, List<String> values) {
+        List<RoaringBitmap> matches = new ArrayList<>();
+        for (String value : values) {
+            RoaringBitmap bitmap = bitmaps.get(key(value));
+            if (bitmap != null) {
+                matches.add(bitmap);
+            }
+        }
+        return RoaringBitmap.or(matches.iterator());
+    }
+
+    private RoaringBitmap dateRange(LocalDate startDate, LocalDate endDate) {
+        if (startDate.isAfter(endDate)) {
+            return new RoaringBitmap();
+        }
+        NavigableMap<LocalDate, RoaringBitmap> days = byEventDate.subMap(startDate, true, endDate, true);
+        return RoaringBitmap.or(days.values().iterator());
+    }
+
+    private static Map<String, Long> countPerValue(Map<String, RoaringBitmap> bitmaps, Map<String, String> labels,
+                                                   RoaringBitmap candidates) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        new TreeMap<>(bitmaps).forEach((key, bitmap) -> {
+            long count = RoaringBitmap.andCardinality(bitmap, candidates);
+            if (count > 0) {
+                counts.put(labels.getOrDefault(key, key), count);
+            }
+        });
+        return counts;
+    }
+
+    // Collation key of a column value: case-insensitive, trailing spaces ignored (MySQL PAD SPACE)
+    static String key(String value) {
+        if (value == null) {
+            return null;
+        }
+        int end = value.length();
+        while (end > 0 && value.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return value.substring(0, end).toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean inRange(long id) {
+        return id >= 0 && id <= MAX_ID;
+    }
+
+    // Callers fall back to SQL until the next rebuild, since the index now lacks that row
+    private void markOutOfRange(long id) {
+        if (!idOutOfRange) {
+            System.err.println("Activity id " + id + " does not fit the bitmap index; filters fall back to SQL until it is rebuilt");
+        }
+        idOutOfRange = true;
+        ready = false;
+    }
+
+    // Caller checked inRange; ids above Integer.MAX_VALUE wrap to negative ints, which bitmaps treat as unsigned
+    private static int ordinal(long id) {
+        return (int) id;
+    }
+}
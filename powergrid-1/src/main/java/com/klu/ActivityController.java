@@ -1,38 +1,60 @@
 package com.klu;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.FileSystemResource;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import reactor.core.publisher.Flux;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.net.URI;
 import java.time.LocalDate;
+import java.nio.charset.StandardCharsets;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 import java.util.concurrent.CompletableFuture;
 
@@ -46,14 +68,65 @@ public class ActivityController {
     @Autowired
     private FileMetadataRepository fileMetadataRepository;
 
+    @Autowired
+    private ActivityDataVersion activityDataVersion;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private InlineEditBuffer inlineEditBuffer;
+
+    @Autowired
+    private ActivityCsvImport activityCsvImport;
+
+    @Autowired
+    private ActivityExportJobs activityExportJobs;
+
+    @Autowired
+    private AnalyticalQueryExecutor analyticalQueryExecutor;
+
+    @Autowired
+    private VirtualThreads virtualThreads;
+
+    @Value("${powergrid.stream.timeout-ms:300000}")
+    private long streamTimeoutMs;
+
+    @Autowired
+    private ReadReplicas readReplicas;
+
+    @Value("${powergrid.replicas.max-staleness-ms.export:30000}")
+    private long exportStalenessMs;
+
     private final ConcurrentLinkedQueue<ResponseBodyEmitter> emitters = new ConcurrentLinkedQueue<>();
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(5);
+    // Held while writing to subscribers; a lock rather than synchronized so a blocked write doesn't pin a virtual thread
+    private final ReentrantLock emittersLock = new ReentrantLock();
+    private ScheduledExecutorService scheduler;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    // Broadcasts scheduled but not yet delivered
+    private final AtomicInteger pendingBroadcasts = new AtomicInteger();
+    private Timer broadcastTimer;
+
     @PostConstruct
     public void init() {
         objectMapper.registerModule(new JavaTimeModule());
+        scheduler = Executors.newScheduledThreadPool(5, virtualThreads.threadFactory("sse-"));
+        Gauge.builder("powergrid.sse.subscribers", emitters, ConcurrentLinkedQueue::size)
+                .description("Open /activities/updates streams")
+                .register(meterRegistry);
+        Gauge.builder("powergrid.sse.queue.depth", pendingBroadcasts, AtomicInteger::get)
+                .description("Broadcasts waiting to be delivered")
+                .register(meterRegistry);
+        broadcastTimer = Timer.builder("powergrid.sse.broadcast")
+                .description("Time from scheduling an update to delivering it to every subscriber")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
         scheduler.scheduleAtFixedRate(this::sendHeartbeat, 15, 15, TimeUnit.SECONDS);
+        // One combined broadcast per write-behind flush; attachments are untouched, so no "files"
+        inlineEditBuffer.setFlushListener(activities -> scheduleBroadcast(new ActivityUpdate("BULK_UPDATE", activities, null)));
+        // Edits already acknowledged but never saved: clients put back the stored values
+        inlineEditBuffer.setDropListener(activities -> scheduleBroadcast(new ActivityUpdate("CONFLICT", activities, null)));
     }
 
     @PreDestroy
@@ -66,9 +139,12 @@ public class ActivityController {
         } catch (InterruptedException e) {
             scheduler.shutdownNow();
         }
-        synchronized (emitters) {
+        emittersLock.lock();
+        try {
             emitters.forEach(ResponseBodyEmitter::complete);
             emitters.clear();
+        } finally {
+            emittersLock.unlock();
         }
     }
 
@@ -133,7 +209,8 @@ public class ActivityController {
 
         Sort sort = Sort.by(sortDir.equalsIgnoreCase("asc") ? Sort.Direction.ASC : Sort.Direction.DESC, sortBy);
         Pageable pageable = PageRequest.of(page, size, sort);
-        Page<Activity> activityPage = activityService.getAllActivities(search, state, category, dateRange, sortBy, sortDir, pageable);
+        // Grid projections: the page never loads the full long-text columns or managed entities
+        Page<ActivityGridRow> activityPage = activityService.getActivityGrid(search, state, category, dateRange, sortBy, sortDir, pageable);
         
         // Get dashboard stats
         LocalDate startDate = LocalDate.of(2024, 10, 28);
@@ -156,10 +233,8 @@ public class ActivityController {
         model.addAttribute("sortDir", sortDir);
         model.addAttribute("dashboardStats", dashboardStats);
         model.addAttribute("summary", summary); // new changes: Pass summary to frontend
-        Map<Long, List<FileMetadata>> fileMap = new HashMap<>();
-        activityPage.getContent().forEach(activity ->
-            fileMap.put(activity.getId(), activityService.getFilesByActivityId(activity.getId())));
-        model.addAttribute("fileMap", fileMap);
+        model.addAttribute("fileMap", activityService.getFilesByActivityIds(
+            activityPage.getContent().stream().map(ActivityGridRow::getId).collect(Collectors.toList())));
         return "index";
     }
     @GetMapping("/add")
@@ -207,11 +282,21 @@ public class ActivityController {
             Long id = Long.valueOf(updateRequest.get("id").toString());
             String field = (String) updateRequest.get("field");
             Object value = updateRequest.get("value");
-            activityService.updateField(id, field, value);
-            Activity updatedActivity = activityService.getById(id);
-            List<FileMetadata> fileMetadatas = activityService.getFilesByActivityId(id);
-            scheduleBroadcast(new ActivityUpdate("UPDATE", updatedActivity, fileMetadatas));
-            return ResponseEntity.ok().build();
+            // Optional; without it the edit is applied whatever the row's current version
+            Long version = updateRequest.get("version") != null ? Long.valueOf(updateRequest.get("version").toString()) : null;
+            if (inlineEditBuffer.isEnabled()) {
+                Map<String, Object> accepted = new HashMap<>();
+                accepted.put("id", id);
+                accepted.put("version", inlineEditBuffer.submit(id, field, value, version));
+                accepted.put("pending", true);
+                return ResponseEntity.accepted().body(accepted);
+            }
+            Activity updatedActivity = activityService.updateField(id, field, value, version);
+            // A cell edit leaves attachments alone; without "files" clients keep the ones they show
+            scheduleBroadcast(new ActivityUpdate("UPDATE", updatedActivity, null));
+            return ResponseEntity.ok(updatedActivity);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("errorMessage", e.getMessage()));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("errorMessage", e.getMessage()));
         }
@@ -221,19 +306,19 @@ public class ActivityController {
     @ResponseBody
     public ResponseEntity<?> bulkUpdate(@RequestBody Map<String, Object> updateRequest) {
         try {
-            @SuppressWarnings("unchecked")
-            List<Long> ids = (List<Long>) updateRequest.get("ids");
+            // JSON numbers arrive as Integer; normalize so ids compare equal to entity ids
+            List<Long> ids = ((List<?>) updateRequest.get("ids")).stream()
+                .map(id -> Long.valueOf(id.toString()))
+                .collect(Collectors.toList());
             Map<String, Object> updates = new HashMap<>(updateRequest);
             updates.remove("ids");
             if (updates.containsKey("eventDate") && updates.get("eventDate") != null) {
                 updates.put("eventDate", LocalDate.parse((String) updates.get("eventDate")));
             }
             activityService.bulkUpdate(ids, updates);
-            List<Activity> updatedActivities = activityService.getAllActivities().stream()
-                .filter(a -> ids.contains(a.getId()))
-                .collect(Collectors.toList());
-            List<FileMetadata> allFiles = updatedActivities.stream()
-                .flatMap(a -> activityService.getFilesByActivityId(a.getId()).stream())
+            List<Activity> updatedActivities = activityService.getActivitiesByIds(ids);
+            List<FileMetadata> allFiles = activityService.getFilesByActivityIds(ids).values().stream()
+                .flatMap(List::stream)
                 .collect(Collectors.toList());
             scheduleBroadcast(new ActivityUpdate("BULK_UPDATE", updatedActivities, allFiles));
             return ResponseEntity.ok().build();
@@ -345,6 +430,17 @@ public class ActivityController {
         return "updateActivity";
     }
 
+    // Full text behind a truncated grid preview (ActivityGridRow.isTruncated)
+    @GetMapping(value = "/api/activities/{id}/details", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> activityDetails(@PathVariable("id") Long id) {
+        Map<String, Object> details = activityService.getActivityDetails(id);
+        if (details == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("errorMessage", "Activity not found with the id: " + id));
+        }
+        return ResponseEntity.ok(details);
+    }
+
     @GetMapping("/save/saveSuccess")
     public String showSaveSuccess() {
         return "saveSuccess";
@@ -356,31 +452,112 @@ public class ActivityController {
     }
     @GetMapping(value = "/api/aiSuggestions", produces = MediaType.APPLICATION_JSON_VALUE)
     @ResponseBody
-    public Map<String, Object> getAiSuggestions() {
-        return activityService.getAiSuggestions();
+    public Map<String, Object> getAiSuggestions(@RequestParam(value = "startDate", required = false) String startDate,
+                                                @RequestParam(value = "endDate", required = false) String endDate,
+                                                HttpServletRequest request, HttpServletResponse httpResponse) {
+        String etag = etag("aiSuggestions:" + startDate + ":" + endDate);
+        if (notModified(etag, request, httpResponse)) {
+            return null;
+        }
+        if (startDate == null || endDate == null) {
+            return tagged(etag, activityService.getAiSuggestions(), httpResponse);
+        }
+        try {
+            return tagged(etag, activityService.getAiSuggestions(LocalDate.parse(startDate), LocalDate.parse(endDate)), httpResponse);
+        } catch (DateTimeParseException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("errorMessage", "Invalid date format. Please use YYYY-MM-DD.");
+            return response;
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("errorMessage", e.getMessage());
+            return response;
+        }
     }
   
     @GetMapping("/api/dashboardStats")
     @ResponseBody
-    public Map<String, Object> getDashboardStats() {
+    public Map<String, Object> getDashboardStats(HttpServletRequest request, HttpServletResponse httpResponse) {
+        String etag = etag("dashboardStats");
+        if (notModified(etag, request, httpResponse)) {
+            return null;
+        }
         LocalDate startDate = LocalDate.of(2024, 10, 28);
         LocalDate endDate = LocalDate.of(2024, 11, 3);
-        return activityService.getDashboardStats(startDate, endDate);
+        return tagged(etag, activityService.getDashboardStats(startDate, endDate), httpResponse);
     }
     @GetMapping(value = "/api/dashboardStats", produces = MediaType.APPLICATION_JSON_VALUE)
     @ResponseBody
     public Map<String, Object> getDashboardStats(@RequestParam("startDate") String startDate,
-                                                @RequestParam("endDate") String endDate) {
+                                                @RequestParam("endDate") String endDate,
+                                                HttpServletRequest request, HttpServletResponse httpResponse) {
+        String etag = etag("dashboardStats:" + startDate + ":" + endDate);
+        if (notModified(etag, request, httpResponse)) {
+            return null;
+        }
         try {
             LocalDate start = LocalDate.parse(startDate);
             LocalDate end = LocalDate.parse(endDate);
-            return activityService.getDashboardStats(start, end);
+            return tagged(etag, activityService.getDashboardStats(start, end), httpResponse);
+        } catch (DateTimeParseException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("errorMessage", "Invalid date format. Please use YYYY-MM-DD.");
+            return response;
+        }
+    }
+    @GetMapping(value = "/api/timeSeries", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public Map<String, Object> getTimeSeries(@RequestParam("startDate") String startDate,
+                                             @RequestParam("endDate") String endDate,
+                                             @RequestParam(defaultValue = "day") String granularity,
+                                             @RequestParam(defaultValue = "") String seriesBy,
+                                             @RequestParam(defaultValue = "participants") String metric,
+                                             @RequestParam(defaultValue = "0") int maxPoints) {
+        try {
+            return activityService.getTimeSeries(LocalDate.parse(startDate), LocalDate.parse(endDate),
+                    granularity, seriesBy, metric, maxPoints);
         } catch (DateTimeParseException e) {
             Map<String, Object> response = new HashMap<>();
             response.put("errorMessage", "Invalid date format. Please use YYYY-MM-DD.");
             return response;
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("errorMessage", e.getMessage());
+            return response;
         }
     }
+    @GetMapping(value = "/api/filterCounts", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public Map<String, Object> getFilterCounts(@RequestParam(defaultValue = "") String state,
+                                               @RequestParam(defaultValue = "") String category,
+                                               @RequestParam(defaultValue = "") String activityType,
+                                               @RequestParam(defaultValue = "") String dateRange) {
+        return activityService.getFilterCounts(state, category, activityType, dateRange);
+    }
+    // Distinct values for the filter dropdowns (dateRangeQuery page)
+    @GetMapping(value = "/api/filters", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public Map<String, Object> getFilters(HttpServletRequest request, HttpServletResponse httpResponse) {
+        String etag = etag("filters");
+        if (notModified(etag, request, httpResponse)) {
+            return null;
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("states", activityService.getDistinctStates());
+        response.put("activityTypes", activityService.getDistinctActivityTypes());
+        response.put("eventCategories", activityService.getDistinctEventCategories());
+        return tagged(etag, response, httpResponse);
+    }
+    @GetMapping(value = "/api/cacheStats", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public Map<String, Object> getCacheStats() {
+        return activityService.getCacheStats();
+    }
+    @GetMapping(value = "/api/singleFlightStats", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public Map<String, Object> getSingleFlightStats() {
+        return activityService.getSingleFlightStats();
+    }
     @GetMapping("/ai-suggestions")
     public String showAiSuggestions(Model model) {
         try {
@@ -391,26 +568,10 @@ public class ActivityController {
             // Fetch additional data for analytics chart
             LocalDate startDate = LocalDate.now().minusDays(30);
             LocalDate endDate = LocalDate.now().plusDays(30);
-            List<Activity> activities = activityService.getActivitiesByDateRange(startDate, endDate);
-            
-            // Prepare data for chart
-            Map<LocalDate, Long> dateParticipantCount = new HashMap<>();
-            Map<LocalDate, Integer> dateEventCount = new HashMap<>();
-            for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
-                dateParticipantCount.put(date, 0L);
-                dateEventCount.put(date, 0);
-            }
-            for (Activity activity : activities) {
-                LocalDate date = activity.getEventDate();
-                dateParticipantCount.compute(date, (k, v) -> v + activity.getNumberOfParticipants());
-                dateEventCount.compute(date, (k, v) -> v + 1);
-            }
-            
-            model.addAttribute("dateLabels", dateParticipantCount.keySet().stream()
-                .map(LocalDate::toString)
-                .collect(Collectors.toList()));
-            model.addAttribute("participantData", dateParticipantCount.values());
-            model.addAttribute("eventData", dateEventCount.values());
+            Map<String, Object> series = activityService.getDailyActivitySeries(startDate, endDate);
+            model.addAttribute("dateLabels", series.get("dates"));
+            model.addAttribute("participantData", series.get("participants"));
+            model.addAttribute("eventData", series.get("events"));
         } catch (Exception e) {
             model.addAttribute("errorMessage", "Failed to load AI suggestions: " + e.getMessage());
         }
@@ -437,8 +598,7 @@ public class ActivityController {
     @ResponseBody
     public ResponseEntity<?> uploadFile(@RequestParam("files") MultipartFile[] files, @RequestParam("activityId") Long activityId) {
         try {
-            Activity activity = activityService.getById(activityId);
-            activityService.save(activity, files);
+            Activity activity = activityService.addFiles(activityId, files);
             List<FileMetadata> fileMetadatas = activityService.getFilesByActivityId(activityId);
             scheduleBroadcast(new ActivityUpdate("UPDATE", activity, fileMetadatas));
             return ResponseEntity.ok(Map.of("message", "Files uploaded successfully", "fileNames",
@@ -493,51 +653,135 @@ public class ActivityController {
                             @RequestParam(defaultValue = "id") String sortBy,
                             @RequestParam(defaultValue = "asc") String sortDir) {
         Pageable pageable = PageRequest.of(0, Integer.MAX_VALUE);
-        Page<Activity> activityPage = activityService.getAllActivities(search, state, category, dateRange, sortBy, sortDir, pageable);
-        StringBuilder csv = new StringBuilder();
-        csv.append("ID,State,Station Name,Activity Type,Event Category,Participant Category,Event Description,School/College/Panchayat Name,Event Location,Event Date,Number of Participants,Remarks,Images\n");
-        for (Activity activity : activityPage.getContent()) {
-            csv.append(String.format("\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\"\n",
-                    activity.getId(),
-                    activity.getState() != null ? activity.getState().replace("\"", "\"\"") : "",
-                    activity.getStationName() != null ? activity.getStationName().replace("\"", "\"\"") : "",
-                    activity.getActivityType() != null ? activity.getActivityType().replace("\"", "\"\"") : "",
-                    activity.getEventCategory() != null ? activity.getEventCategory().replace("\"", "\"\"") : "",
-                    activity.getParticipantCategory() != null ? activity.getParticipantCategory().replace("\"", "\"\"") : "",
-                    activity.getEventDescription() != null ? activity.getEventDescription().replace("\"", "\"\"") : "",
-                    activity.getSchoolOrCollegeOrPanchayatName() != null ? activity.getSchoolOrCollegeOrPanchayatName().replace("\"", "\"\"") : "",
-                    activity.getEventLocation() != null ? activity.getEventLocation().replace("\"", "\"\"") : "",
-                    activity.getEventDate() != null ? activity.getEventDate().toString() : "",
-                    activity.getNumberOfParticipants(),
-                    activity.getRemarks() != null ? activity.getRemarks().replace("\"", "\"\""): ""));
-        }
-        return csv.toString();
+        // Rows and their files from one source, a replica if it has this user's own edits
+        return readReplicas.read(exportStalenessMs, () -> {
+            Page<Activity> activityPage = activityService.getAllActivities(search, state, category, dateRange, sortBy, sortDir, pageable);
+            Map<Long, List<FileMetadata>> fileMap = activityService.getFilesByActivityIds(
+                activityPage.getContent().stream().map(Activity::getId).collect(Collectors.toList()));
+            StringBuilder csv = new StringBuilder(CSV_HEADER);
+            for (Activity activity : activityPage.getContent()) {
+                appendCsvRow(csv, activity, fileMap.get(activity.getId()));
+            }
+            return csv.toString();
+        });
+    }
+
+    // Imports a CSV in the export layout streamed as the request body (Content-Type: text/csv)
+    @PostMapping(value = "/api/import", consumes = "text/csv", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<?> importCsv(HttpServletRequest request) {
+        try {
+            return imported(activityCsvImport.importCsv(request.getReader()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("errorMessage", e.getMessage()));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body(Map.of("errorMessage", "Failed to read CSV: " + e.getMessage()));
+        }
+    }
+
+    // Same import for a CSV uploaded as a form file
+    @PostMapping(value = "/api/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<?> importCsvFile(@RequestParam("file") MultipartFile file) {
+        try (Reader reader = new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8)) {
+            return imported(activityCsvImport.importCsv(reader));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("errorMessage", e.getMessage()));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body(Map.of("errorMessage", "Failed to read CSV: " + e.getMessage()));
+        }
+    }
+
+    private ResponseEntity<?> imported(Map<String, Object> result) {
+        if ((Long) result.get("imported") > 0) {
+            // Too many rows to send individually; clients reload on ADD
+            scheduleBroadcast(new ActivityUpdate("ADD"));
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    // Starts a background export of the /export filters; body: {format, search, state, category, dateRange, sortBy, sortDir}
+    @PostMapping(value = "/api/exports", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<?> submitExport(@RequestBody Map<String, String> request) {
+        try {
+            ActivityExportJobs.ExportJob job = activityExportJobs.submit(request.get("format"), request);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/exports/" + job.getId()))
+                    .body(job.toMap());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("errorMessage", e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .body(Map.of("errorMessage", "Too many exports in progress; try again later"));
+        }
+    }
+
+    @GetMapping(value = "/api/exports/{jobId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<?> exportStatus(@PathVariable String jobId) {
+        ActivityExportJobs.ExportJob job = activityExportJobs.get(jobId);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("errorMessage", "Export not found or expired: " + jobId));
+        }
+        return ResponseEntity.ok(job.toMap());
+    }
+
+    @DeleteMapping("/api/exports/{jobId}")
+    @ResponseBody
+    public ResponseEntity<?> cancelExport(@PathVariable String jobId) {
+        if (!activityExportJobs.cancel(jobId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("errorMessage", "Export not found or expired: " + jobId));
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    // Finished export file. Resource bodies get Range support from Spring MVC, so an interrupted
+    // download can be resumed; the file never changes, so the job id doubles as its ETag.
+    @GetMapping("/api/download/export/{jobId}")
+    @ResponseBody
+    public ResponseEntity<?> downloadExport(@PathVariable String jobId) {
+        ActivityExportJobs.ExportJob job = activityExportJobs.get(jobId);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("errorMessage", "Export not found or expired: " + jobId));
+        }
+        if (!ActivityExportJobs.DONE.equals(job.getStatus())) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(job.toMap());
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + job.getFileName() + "\"")
+                .contentType("csv".equals(job.getFormat()) ? MediaType.parseMediaType("text/csv") : MediaType.APPLICATION_JSON)
+                .eTag(jobId)
+                .lastModified(job.getFinishedAt())
+                .body(new FileSystemResource(job.getFile()));
+    }
+    static final String CSV_HEADER = "ID,State,Station Name,Activity Type,Event Category,Participant Category,Event Description,School/College/Panchayat Name,Event Location,Event Date,Number of Participants,Remarks,Images\n";
+
+    // One quoted CSV line per activity; files are the activity's attachments
+    static void appendCsvRow(StringBuilder csv, Activity activity, List<FileMetadata> files) {
+        csv.append(String.format("\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\"\n",
+                activity.getId(),
+                activity.getState() != null ? activity.getState().replace("\"", "\"\"") : "",
+                activity.getStationName() != null ? activity.getStationName().replace("\"", "\"\"") : "",
+                activity.getActivityType() != null ? activity.getActivityType().replace("\"", "\"\"") : "",
+                activity.getEventCategory() != null ? activity.getEventCategory().replace("\"", "\"\"") : "",
+                activity.getParticipantCategory() != null ? activity.getParticipantCategory().replace("\"", "\"\"") : "",
+                activity.getEventDescription() != null ? activity.getEventDescription().replace("\"", "\"\"") : "",
+                activity.getSchoolOrCollegeOrPanchayatName() != null ? activity.getSchoolOrCollegeOrPanchayatName().replace("\"", "\"\"") : "",
+                activity.getEventLocation() != null ? activity.getEventLocation().replace("\"", "\"\"") : "",
+                activity.getEventDate() != null ? activity.getEventDate().toString() : "",
+                activity.getNumberOfParticipants(),
+                activity.getRemarks() != null ? activity.getRemarks().replace("\"", "\"\""): "",
+                files.stream()
+                    .map(file -> file.getFileName().replace("\"", "\"\""))
+                    .collect(Collectors.joining(";"))));
     }
     @GetMapping(value = "/activities/updates", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     @ResponseBody
     public ResponseBodyEmitter streamUpdates(HttpSession session) {
         ResponseBodyEmitter emitter = new ResponseBodyEmitter(60000L);
-        synchronized (emitters) {
-            emitters.add(emitter);
-        }
-        emitter.onCompletion(() -> {
-            synchronized (emitters) {
-                emitters.remove(emitter);
-            }
-        });
-        emitter.onError((throwable) -> {
-            System.err.println("SSE Error: " + throwable.getMessage());
-            throwable.printStackTrace();
-            synchronized (emitters) {
-                emitters.remove(emitter);
-            }
-        });
-        emitter.onTimeout(() -> {
-            System.err.println("SSE Timeout for emitter");
-            synchronized (emitters) {
-                emitters.remove(emitter);
-            }
-        });
+        subscribe(emitter);
         try {
             emitter.send("data: " + objectMapper.writeValueAsString(new ActivityUpdate("HEARTBEAT")) + "\n\n", MediaType.TEXT_EVENT_STREAM);
         } catch (Exception e) {
@@ -549,12 +793,19 @@ public class ActivityController {
     }
     @PostMapping(value = "/api/dynamicCalculation", produces = MediaType.APPLICATION_JSON_VALUE)
     @ResponseBody
-    public Map<String, Object> dynamicCalculation(@RequestBody Map<String, Object> calcRequest) {
+    public Map<String, Object> dynamicCalculation(@RequestBody Map<String, Object> calcRequest,
+                                                  HttpServletRequest request, HttpServletResponse httpResponse) {
+        // POST bodies aren't cached by browsers, so polling dashboards send If-None-Match themselves
+        String payloadHash = DigestUtils.md5DigestAsHex(SingleFlight.normalize(calcRequest).getBytes(StandardCharsets.UTF_8));
+        String etag = etag("dynamicCalculation:" + payloadHash);
+        if (notModified(etag, request, httpResponse)) {
+            return null;
+        }
         try {
             List<Map<String, String>> aggregates = (List<Map<String, String>>) calcRequest.get("aggregates");
             List<String> groupBy = (List<String>) calcRequest.get("groupBy");
             List<Map<String, String>> conditions = (List<Map<String, String>>) calcRequest.get("conditions");
-            return activityService.performDynamicCalculation(aggregates, groupBy, conditions);
+            return tagged(etag, activityService.performDynamicCalculation(aggregates, groupBy, conditions), httpResponse);
         } catch (Exception e) {
             Map<String, Object> response = new HashMap<>();
             response.put("errorMessage", "Error performing calculation: " + e.getMessage());
@@ -562,6 +813,49 @@ public class ActivityController {
         }
     }
 
+    /**
+     * ETag built from the data version and the request's own key. Taken before the handler reads
+     * anything, so a write during the read can only make the tag older than the data, never newer.
+     * Every write bumps the version, so a tag stays valid exactly as long as nothing has changed.
+     */
+    private String etag(String key) {
+        return "\"" + activityDataVersion.current() + "-"
+                + DigestUtils.md5DigestAsHex(key.getBytes(StandardCharsets.UTF_8)).substring(0, 16) + "\"";
+    }
+
+    /**
+     * Answers a matching If-None-Match with 304 before any query runs. Handled by hand rather than via
+     * WebRequest.checkNotModified, which treats If-None-Match on POST as a precondition (412).
+     */
+    private boolean notModified(String etag, HttpServletRequest request, HttpServletResponse response) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag) || tag.equals("*")) {
+                response.setHeader(HttpHeaders.ETAG, etag);
+                response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Only successful bodies are tagged; an error body must not be revalidated as if it were the data
+    private Map<String, Object> tagged(String etag, Map<String, Object> body, HttpServletResponse response) {
+        if (body != null && !body.containsKey("errorMessage")) {
+            response.setHeader(HttpHeaders.ETAG, etag);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        }
+        return body;
+    }
+
     @PostMapping("/extend-session")
     @ResponseBody
     public ResponseEntity<?> extendSession(HttpSession session) {
@@ -574,7 +868,7 @@ public class ActivityController {
         model.addAttribute("state", "");
         model.addAttribute("eventCategory", "");
         model.addAttribute("operator", "AND");
-        model.addAttribute("activities", new ArrayList<Activity>());
+        model.addAttribute("activities", new ArrayList<ActivityGridRow>());
         return "stateCategoryQuery";
     }
 
@@ -583,7 +877,7 @@ public class ActivityController {
                                     @RequestParam("eventCategory") String eventCategory,
                                     @RequestParam(value = "operator", defaultValue = "AND") String operator,
                                     Model model) {
-        List<Activity> activities = new ArrayList<>();
+        List<ActivityGridRow> activities = new ArrayList<>();
         if (state.isEmpty() || eventCategory.isEmpty()) {
             model.addAttribute("errorMessage", "Please select both a state and an event category.");
         } else {
@@ -593,10 +887,8 @@ public class ActivityController {
         model.addAttribute("eventCategory", eventCategory);
         model.addAttribute("operator", operator);
         model.addAttribute("activities", activities);
-        Map<Long, List<FileMetadata>> fileMap = new HashMap<>();
-        activities.forEach(activity ->
-            fileMap.put(activity.getId(), activityService.getFilesByActivityId(activity.getId())));
-        model.addAttribute("fileMap", fileMap);
+        model.addAttribute("fileMap", activityService.getFilesByActivityIds(
+            activities.stream().map(ActivityGridRow::getId).collect(Collectors.toList())));
         return "stateCategoryQuery";
     }
 
@@ -629,29 +921,7 @@ public class ActivityController {
 
         Sort sort = Sort.by(sortDir.equalsIgnoreCase("asc") ? Sort.Direction.ASC : Sort.Direction.DESC, sortBy);
         Pageable pageable = PageRequest.of(page, size, sort);
-        Page<Activity> activityPage = activityService.getAllActivities(search, state, eventCategory, "", sortBy, sortDir, pageable);
-        List<Activity> activities = activityService.getActivitiesByStateAndEventCategory(state, eventCategory, operator);
-
-        // Filter activities based on pagination
-        int start = page * size;
-        int end = Math.min(start + size, activities.size());
-        List<Activity> paginatedActivities = activities.subList(Math.min(start, activities.size()), end);
-
-        // Calculate summary statistics
-        long totalElements = activities.size();
-        Set<String> uniqueStates = activities.stream()
-                .map(Activity::getState)
-                .filter(stateVal -> stateVal != null)
-                .collect(Collectors.toSet());
-        long totalParticipants = activities.stream()
-                .mapToLong(Activity::getNumberOfParticipants)
-                .sum();
-
-        response.put("activities", paginatedActivities);
-        response.put("totalElements", totalElements);
-        response.put("uniqueStates", uniqueStates.size());
-        response.put("totalParticipants", totalParticipants);
-        return response;
+        return activityService.getActivitiesByStateAndEventCategory(state, eventCategory, operator, pageable);
     }
 
     @GetMapping("/dateRangeQuery")
@@ -662,56 +932,70 @@ public class ActivityController {
         model.addAttribute("activityType", "");
         model.addAttribute("eventCategory", "");
         model.addAttribute("filterOperator", "AND");
-        model.addAttribute("activities", new ArrayList<Activity>());
+        model.addAttribute("activities", new ArrayList<ActivityGridRow>());
         return "dateRangeQuery";
     }
 
+    // Async: the Tomcat thread is released while the query runs on AnalyticalQueryExecutor
     @PostMapping("/dateRangeQuery")
-    public String dateRangeQuery(@RequestParam("startDate") String startDate,
+    public DeferredResult<ModelAndView> dateRangeQuery(@RequestParam("startDate") String startDate,
                                 @RequestParam("endDate") String endDate,
                                 @RequestParam(value = "state", defaultValue = "") String state,
                                 @RequestParam(value = "activityType", defaultValue = "") String activityType,
                                 @RequestParam(value = "eventCategory", defaultValue = "") String eventCategory,
-                                @RequestParam(value = "filterOperator", defaultValue = "AND") String filterOperator,
-                                Model model) {
-        List<Activity> activities = new ArrayList<>();
+                                @RequestParam(value = "filterOperator", defaultValue = "AND") String filterOperator) {
+        Map<String, Object> form = new LinkedHashMap<>();
+        form.put("startDate", startDate);
+        form.put("endDate", endDate);
+        form.put("state", state);
+        form.put("activityType", activityType);
+        form.put("eventCategory", eventCategory);
+        form.put("filterOperator", filterOperator);
+        DeferredResult<ModelAndView> deferred = new DeferredResult<>(analyticalQueryExecutor.getTimeoutMs());
+        deferred.onTimeout(() -> deferred.setResult(dateRangeView(form, new ArrayList<>(),
+                "The query took too long. Please narrow the date range or filters.")));
         try {
             if (startDate.isEmpty() || endDate.isEmpty()) {
-                model.addAttribute("errorMessage", "Please provide both start and end dates.");
-            } else {
-                LocalDate start = LocalDate.parse(startDate);
-                LocalDate end = LocalDate.parse(endDate);
-                if (start.isAfter(end)) {
-                    model.addAttribute("errorMessage", "Start date must be before or equal to end date.");
-                } else {
-                    // Handle CompletableFuture synchronously
-                    CompletableFuture<Map<String, Object>> futureResult = activityService.getActivitiesByDateRangeWithFilters(
-                        start, end, state, activityType, eventCategory, filterOperator, new ArrayList<>());
-                    Map<String, Object> result = futureResult.join(); // Block to get the result
-                    activities = (List<Activity>) result.getOrDefault("activities", new ArrayList<>());
-                    String errorMessage = (String) result.get("errorMessage");
-                    if (errorMessage != null) {
-                        model.addAttribute("errorMessage", errorMessage);
-                    }
-                }
+                deferred.setResult(dateRangeView(form, new ArrayList<>(), "Please provide both start and end dates."));
+                return deferred;
             }
+            LocalDate start = LocalDate.parse(startDate);
+            LocalDate end = LocalDate.parse(endDate);
+            if (start.isAfter(end)) {
+                deferred.setResult(dateRangeView(form, new ArrayList<>(), "Start date must be before or equal to end date."));
+                return deferred;
+            }
+            // Once the timeout page has been sent nobody reads the result, so its files are not looked up
+            activityService.getActivitiesByDateRangeWithFilters(start, end, state, activityType, eventCategory, filterOperator, new ArrayList<>())
+                .thenApply(QueryBudget.propagate(result -> deferred.isSetOrExpired() ? null : dateRangeView(form,
+                    (List<ActivityGridRow>) result.getOrDefault("activities", new ArrayList<>()), (String) result.get("errorMessage"))))
+                .exceptionally(throwable -> deferred.isSetOrExpired() ? null
+                    : dateRangeView(form, new ArrayList<>(), "Error processing query: " + throwable.getMessage()))
+                .thenAccept(view -> {
+                    if (view != null) {
+                        deferred.setResult(view);
+                    }
+                });
         } catch (DateTimeParseException e) {
-            model.addAttribute("errorMessage", "Invalid date format. Please use YYYY-MM-DD.");
+            deferred.setResult(dateRangeView(form, new ArrayList<>(), "Invalid date format. Please use YYYY-MM-DD."));
+        } catch (RejectedExecutionException e) {
+            deferred.setResult(dateRangeView(form, new ArrayList<>(), "The server is busy with other queries. Please try again shortly."));
         } catch (Exception e) {
-            model.addAttribute("errorMessage", "Error processing query: " + e.getMessage());
+            deferred.setResult(dateRangeView(form, new ArrayList<>(), "Error processing query: " + e.getMessage()));
         }
-        model.addAttribute("startDate", startDate);
-        model.addAttribute("endDate", endDate);
-        model.addAttribute("state", state);
-        model.addAttribute("activityType", activityType);
-        model.addAttribute("eventCategory", eventCategory);
-        model.addAttribute("filterOperator", filterOperator);
-        model.addAttribute("activities", activities);
-        Map<Long, List<FileMetadata>> fileMap = new HashMap<>();
-        activities.forEach(activity ->
-            fileMap.put(activity.getId(), activityService.getFilesByActivityId(activity.getId())));
-        model.addAttribute("fileMap", fileMap);
-        return "dateRangeQuery";
+        return deferred;
+    }
+
+    // A new view per outcome: the timeout and a late completion can both get here, on different threads
+    private ModelAndView dateRangeView(Map<String, Object> form, List<ActivityGridRow> activities, String errorMessage) {
+        ModelAndView view = new ModelAndView("dateRangeQuery", form);
+        if (errorMessage != null) {
+            view.addObject("errorMessage", errorMessage);
+        }
+        view.addObject("activities", activities);
+        view.addObject("fileMap", activityService.getFilesByActivityIds(
+            activities.stream().map(ActivityGridRow::getId).collect(Collectors.toList())));
+        return view;
     }
 
     @PostMapping(value = "/api/dateRangeQuery", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -800,6 +1084,167 @@ public class ActivityController {
             return emitter;
         }
     }
+
+    /**
+     * Streaming variant of /api/dateRangeQuery as NDJSON: a header frame with the filters, then
+     * "activities" frames of chunkSize rows read from a DB cursor, then a trailer frame with rowCount
+     * and executionTimeMs. Rows go out as they are read, so time to first row and memory do not
+     * depend on the result size. Problems are reported as an "error" frame.
+     */
+    @PostMapping(value = "/api/dateRangeQuery/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<ResponseBodyEmitter> dateRangeQueryStream(@RequestParam("startDate") String startDate,
+                                                   @RequestParam("endDate") String endDate,
+                                                   @RequestParam(value = "state", defaultValue = "") String state,
+                                                   @RequestParam(value = "activityType", defaultValue = "") String activityType,
+                                                   @RequestParam(value = "eventCategory", defaultValue = "") String eventCategory,
+                                                   @RequestParam(value = "filterOperator", defaultValue = "AND") String filterOperator,
+                                                   @RequestParam(value = "conditions", defaultValue = "[]") String conditionsJson,
+                                                   @RequestParam(value = "chunkSize", defaultValue = "500") int chunkSize) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(streamTimeoutMs);
+        NdjsonFrameWriter writer = new NdjsonFrameWriter(emitter, objectMapper, Math.max(1, Math.min(chunkSize, 5000)));
+        // Cleared when the client goes away or the stream times out, which stops reading the cursor
+        AtomicBoolean open = new AtomicBoolean(true);
+        emitter.onTimeout(() -> open.set(false));
+        emitter.onError(e -> open.set(false));
+        try {
+            LocalDate start = LocalDate.parse(startDate);
+            LocalDate end = LocalDate.parse(endDate);
+            if (start.isAfter(end)) {
+                return ndjson(streamError(emitter, writer, "Start date must be before or equal to end date."));
+            }
+            List<Map<String, String>> conditions = objectMapper.readValue(conditionsJson, List.class);
+            Map<String, Object> header = new LinkedHashMap<>();
+            header.put("type", "header");
+            header.put("startDate", start);
+            header.put("endDate", end);
+            header.put("state", state);
+            header.put("activityType", activityType);
+            header.put("eventCategory", eventCategory);
+            header.put("filterOperator", filterOperator);
+            header.put("conditions", conditions);
+            header.put("chunkSize", Math.max(1, Math.min(chunkSize, 5000)));
+            analyticalQueryExecutor.supplyStream(() -> {
+                long startTime = System.currentTimeMillis();
+                try {
+                    writer.frame(header);
+                    long rowCount = activityService.streamActivitiesByDateRangeWithFilters(start, end, state, activityType,
+                        eventCategory, filterOperator, conditions, row -> {
+                            if (!open.get()) {
+                                throw new IllegalStateException("Stream closed by the client");
+                            }
+                            try {
+                                writer.row(row);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+                    Map<String, Object> trailer = new LinkedHashMap<>();
+                    trailer.put("type", "trailer");
+                    trailer.put("rowCount", rowCount);
+                    trailer.put("executionTimeMs", System.currentTimeMillis() - startTime);
+                    writer.frame(trailer);
+                    emitter.complete();
+                } catch (Exception e) {
+                    if (open.get()) {
+                        streamError(emitter, writer, "Error processing query: " + e.getMessage());
+                    }
+                }
+                return null;
+            });
+        } catch (DateTimeParseException e) {
+            return ndjson(streamError(emitter, writer, "Invalid date format. Please use YYYY-MM-DD."));
+        } catch (RejectedExecutionException e) {
+            return ndjson(streamError(emitter, writer, "Too many result streams are open. Please try again shortly."));
+        } catch (Exception e) {
+            return ndjson(streamError(emitter, writer, "Error processing query: " + e.getMessage()));
+        }
+        return ndjson(emitter);
+    }
+
+    private static ResponseEntity<ResponseBodyEmitter> ndjson(ResponseBodyEmitter emitter) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(emitter);
+    }
+
+    private ResponseBodyEmitter streamError(ResponseBodyEmitter emitter, NdjsonFrameWriter writer, String errorMessage) {
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("type", "error");
+        frame.put("errorMessage", errorMessage);
+        try {
+            writer.frame(frame);
+            emitter.complete();
+        } catch (Exception e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    /**
+     * Reactive counterparts of /api/dateRangeQuery, /api/stateCategoryQuery and /api/dynamicCalculation,
+     * streamed as NDJSON with one row (or calculation group) per line. Spring MVC requests the next
+     * element only after writing the previous one, and rows are fetched in keyset pages on the
+     * AnalyticalQueryExecutor pool as that demand arrives, so a slow reader holds neither a servlet
+     * thread nor a query worker between pages. A failure ends the stream with an errorMessage line.
+     */
+    @PostMapping(value = "/api/reactive/dateRangeQuery", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseBody
+    public Flux<Object> reactiveDateRangeQuery(@RequestParam("startDate") String startDate,
+                                               @RequestParam("endDate") String endDate,
+                                               @RequestParam(value = "state", defaultValue = "") String state,
+                                               @RequestParam(value = "activityType", defaultValue = "") String activityType,
+                                               @RequestParam(value = "eventCategory", defaultValue = "") String eventCategory,
+                                               @RequestParam(value = "filterOperator", defaultValue = "AND") String filterOperator,
+                                               @RequestParam(value = "conditions", defaultValue = "[]") String conditionsJson) {
+        try {
+            LocalDate start = LocalDate.parse(startDate);
+            LocalDate end = LocalDate.parse(endDate);
+            if (start.isAfter(end)) {
+                return reactiveError("Start date must be before or equal to end date.");
+            }
+            List<Map<String, String>> conditions = objectMapper.readValue(conditionsJson, List.class);
+            return reactiveRows(activityService.reactiveActivitiesByDateRangeWithFilters(start, end, state, activityType,
+                    eventCategory, filterOperator, conditions));
+        } catch (DateTimeParseException e) {
+            return reactiveError("Invalid date format. Please use YYYY-MM-DD.");
+        } catch (Exception e) {
+            return reactiveError("Error processing query: " + e.getMessage());
+        }
+    }
+
+    @PostMapping(value = "/api/reactive/stateCategoryQuery", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseBody
+    public Flux<Object> reactiveStateCategoryQuery(@RequestParam("state") String state,
+                                                   @RequestParam("eventCategory") String eventCategory,
+                                                   @RequestParam(value = "operator", defaultValue = "AND") String operator) {
+        if (operator.equals("NOT") && state.isEmpty() && eventCategory.isEmpty()) {
+            return reactiveError("Please select at least one of state or event category for NOT operator.");
+        } else if (!operator.equals("NOT") && (state.isEmpty() || eventCategory.isEmpty())) {
+            return reactiveError("Please select both a state and an event category for AND/OR operators.");
+        }
+        return reactiveRows(activityService.reactiveActivitiesByStateAndEventCategory(state, eventCategory, operator));
+    }
+
+    @PostMapping(value = "/api/reactive/dynamicCalculation", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseBody
+    public Flux<Object> reactiveDynamicCalculation(@RequestBody Map<String, Object> calcRequest) {
+        List<Map<String, String>> aggregates = (List<Map<String, String>>) calcRequest.get("aggregates");
+        List<String> groupBy = (List<String>) calcRequest.get("groupBy");
+        List<Map<String, String>> conditions = (List<Map<String, String>>) calcRequest.get("conditions");
+        return reactiveRows(activityService.reactiveDynamicCalculation(aggregates, groupBy,
+                conditions == null ? new ArrayList<>() : conditions));
+    }
+
+    private Flux<Object> reactiveRows(Flux<?> rows) {
+        return rows.cast(Object.class).onErrorResume(e -> reactiveError(e instanceof RejectedExecutionException
+                ? "The server is busy with other queries. Please try again shortly."
+                : "Error processing query: " + e.getMessage()));
+    }
+
+    private static Flux<Object> reactiveError(String errorMessage) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("errorMessage", errorMessage);
+        return Flux.just(error);
+    }
   
     // new methods imp: Endpoint for Drag-and-Drop Row Reordering
     @PostMapping(value = "/reorder", consumes = MediaType.APPLICATION_JSON_VALUE)
@@ -818,46 +1263,59 @@ public class ActivityController {
         String column = calcRequest.get("column");
         return activityService.performCustomCalculation(column, formula); // Assume new method
     }
+    // Async like /dateRangeQuery; the queries of a batch run side by side on AnalyticalQueryExecutor
     @PostMapping(value = "/api/batchQuery", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     @ResponseBody
-    public ResponseEntity<?> batchQuery(@RequestBody Map<String, List<Map<String, String>>> batchRequest) {
+    public DeferredResult<ResponseEntity<?>> batchQuery(@RequestBody Map<String, List<Map<String, String>>> batchRequest) {
+        DeferredResult<ResponseEntity<?>> deferred = new DeferredResult<>(analyticalQueryExecutor.getTimeoutMs());
+        deferred.onTimeout(() -> deferred.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(Map.of("errorMessage", "The batch query took too long. Please run fewer queries at once."))));
         try {
             List<Map<String, String>> queries = batchRequest.get("queries");
             if (queries == null || queries.isEmpty()) {
-                return ResponseEntity.badRequest().body(Map.of("errorMessage", "No queries provided."));
+                deferred.setResult(ResponseEntity.badRequest().body(Map.of("errorMessage", "No queries provided.")));
+                return deferred;
             }
 
             LocalDate startDate = LocalDate.of(2024, 10, 28);
             LocalDate endDate = LocalDate.of(2024, 11, 3);
-            List<Map<String, Object>> results = new ArrayList<>();
+            List<CompletableFuture<Map<String, Object>>> futures = new ArrayList<>();
 
             for (Map<String, String> query : queries) {
                 String state = query.getOrDefault("state", "");
                 String eventCategory = query.getOrDefault("eventCategory", "");
                 String operator = query.getOrDefault("operator", "AND");
 
-                long startTime = System.currentTimeMillis();
-                Map<String, Object> result = activityService.getActivitiesByDateRangeWithFilters(
+                futures.add(activityService.getActivitiesByDateRangeWithFilters(
                     startDate, endDate, state, "", eventCategory, operator, new ArrayList<>()
-                ).join(); // Block to get synchronous results
-                long executionTime = System.currentTimeMillis() - startTime;
-
-                List<Activity> activities = (List<Activity>) result.getOrDefault("activities", new ArrayList<>());
-                Map<String, Object> queryResult = new HashMap<>();
-                queryResult.put("activities", activities);
-                queryResult.put("totalActivities", activities.size());
-                queryResult.put("totalParticipants", activities.stream().mapToLong(Activity::getNumberOfParticipants).sum());
-                queryResult.put("executionTimeMs", executionTime);
-                queryResult.put("query", Map.of("state", state, "eventCategory", eventCategory, "operator", operator));
-                results.add(queryResult);
+                ).thenApply(result -> {
+                    List<ActivityGridRow> activities = (List<ActivityGridRow>) result.getOrDefault("activities", new ArrayList<>());
+                    Map<String, Object> queryResult = new HashMap<>();
+                    queryResult.put("activities", activities);
+                    queryResult.put("totalActivities", activities.size());
+                    queryResult.put("totalParticipants", activities.stream().mapToLong(ActivityGridRow::getNumberOfParticipants).sum());
+                    queryResult.put("executionTimeMs", result.get("executionTimeMs"));
+                    queryResult.put("query", Map.of("state", state, "eventCategory", eventCategory, "operator", operator));
+                    return queryResult;
+                }));
             }
 
-            return ResponseEntity.ok(Map.of("results", results));
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApply(done -> futures.stream().map(CompletableFuture::join).collect(Collectors.toList()))
+                .<ResponseEntity<?>>thenApply(results -> ResponseEntity.ok(Map.of("results", results)))
+                .exceptionally(throwable -> ResponseEntity.badRequest()
+                    .body(Map.of("errorMessage", "Error processing batch query: " + throwable.getMessage())))
+                .thenAccept(deferred::setResult);
+        } catch (RejectedExecutionException e) {
+            deferred.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .body(Map.of("errorMessage", "The server is busy with other queries; try again shortly")));
         } catch (Exception e) {
-            return ResponseEntity.badRequest().body(Map.of("errorMessage", "Error processing batch query: " + e.getMessage()));
+            deferred.setResult(ResponseEntity.badRequest().body(Map.of("errorMessage", "Error processing batch query: " + e.getMessage())));
         }
+        return deferred;
     }
-    
+
     @GetMapping("/confirmExit")
     public String confirmExit() {
         return "confirmExit";
@@ -875,7 +1333,8 @@ public class ActivityController {
     private void sendHeartbeat() {
         try {
             String heartbeatData = objectMapper.writeValueAsString(new ActivityUpdate("HEARTBEAT"));
-            synchronized (emitters) {
+            emittersLock.lock();
+            try {
                 emitters.removeIf(emitter -> {
                     try {
                         emitter.send("data: " + heartbeatData + "\n\n", MediaType.TEXT_EVENT_STREAM);
@@ -887,6 +1346,8 @@ public class ActivityController {
                         return true;
                     }
                 });
+            } finally {
+                emittersLock.unlock();
             }
         } catch (Exception e) {
             System.err.println("Failed to serialize heartbeat: " + e.getMessage());
@@ -894,18 +1355,76 @@ public class ActivityController {
         }
     }
 
+    // Adds emitter to the broadcast list until it completes, fails or times out
+    void subscribe(ResponseBodyEmitter emitter) {
+        emittersLock.lock();
+        try {
+            emitters.add(emitter);
+        } finally {
+            emittersLock.unlock();
+        }
+        emitter.onCompletion(() -> {
+            emittersLock.lock();
+            try {
+                emitters.remove(emitter);
+            } finally {
+                emittersLock.unlock();
+            }
+        });
+        emitter.onError((throwable) -> {
+            System.err.println("SSE Error: " + throwable.getMessage());
+            throwable.printStackTrace();
+            emittersLock.lock();
+            try {
+                emitters.remove(emitter);
+            } finally {
+                emittersLock.unlock();
+            }
+        });
+        emitter.onTimeout(() -> {
+            System.err.println("SSE Timeout for emitter");
+            emittersLock.lock();
+            try {
+                emitters.remove(emitter);
+            } finally {
+                emittersLock.unlock();
+            }
+        });
+    }
+
     private void scheduleBroadcast(ActivityUpdate update) {
+        // After shutdown() the streams are closed, e.g. for the write-behind buffer's final flush
+        if (scheduler.isShutdown()) {
+            return;
+        }
+        String data;
         try {
-            String data = objectMapper.writeValueAsString(update);
-            scheduler.schedule(() -> broadcastUpdate(data), 100, TimeUnit.MILLISECONDS);
+            data = objectMapper.writeValueAsString(update);
         } catch (Exception e) {
             System.err.println("Failed to serialize update: " + e.getMessage());
             e.printStackTrace();
+            return;
+        }
+        long scheduledAt = System.nanoTime();
+        pendingBroadcasts.incrementAndGet();
+        try {
+            scheduler.schedule(() -> {
+                try {
+                    broadcastUpdate(data);
+                } finally {
+                    pendingBroadcasts.decrementAndGet();
+                    broadcastTimer.record(System.nanoTime() - scheduledAt, TimeUnit.NANOSECONDS);
+                }
+            }, 100, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shut down since the check above
+            pendingBroadcasts.decrementAndGet();
         }
     }
 
-    private void broadcastUpdate(String data) {
-        synchronized (emitters) {
+    void broadcastUpdate(String data) {
+        emittersLock.lock();
+        try {
             emitters.removeIf(emitter -> {
                 try {
                     emitter.send("data: " + data + "\n\n", MediaType.TEXT_EVENT_STREAM);
@@ -917,6 +1436,8 @@ public class ActivityController {
                     return true;
                 }
             });
+        } finally {
+            emittersLock.unlock();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,198 @@
+package com.klu;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming CSV import in the column layout of /export (ActivityController.CSV_HEADER); the ID
+ * and Images columns are ignored, so an export can be imported as new activities.
+ *
+ * The input is parsed one record at a time and cut into chunks of powergrid.import.chunk-size rows.
+ * Chunks are validated and sanitized on a small bounded pool while the request thread inserts the
+ * previous ones in order, one transaction and a few JDBC batches per chunk. At most parallelism
+ * chunks are in flight, so memory stays bounded however large the upload is. Invalid rows are
+ * skipped and reported by line; valid rows of the same chunk are still imported.
+ */
+@Component
+public class ActivityCsvImport {
+
+    // CSV column -> Activity field, in CSV_HEADER order; null for ignored columns
+    private static final String[] FIELDS = {null, "state", "stationName", "activityType", "eventCategory",
+            "participantCategory", "eventDescription", "schoolOrCollegeOrPanchayatName", "eventLocation",
+            "eventDate", "numberOfParticipants", "remarks", null};
+    private static final List<String> HEADER = List.of(ActivityController.CSV_HEADER.trim().split(","));
+
+    // Row errors listed in the response; the rest are only counted
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private static final class Row {
+        final long line;
+        final List<String> values;
+
+        Row(long line, List<String> values) {
+            this.line = line;
+            this.values = values;
+        }
+    }
+
+    private static final class ValidatedChunk {
+        final List<Activity> activities = new ArrayList<>();
+        final List<Map<String, Object>> errors = new ArrayList<>();
+    }
+
+    private final int chunkSize;
+    private final int parallelism;
+    private final ExecutorService validationPool;
+
+    @Autowired
+    private ActivityService activityService;
+
+    public ActivityCsvImport(@Value("${powergrid.import.chunk-size:1000}") int chunkSize,
+                             @Value("${powergrid.import.parallelism:4}") int parallelism) {
+        this.chunkSize = chunkSize;
+        this.parallelism = Math.max(1, parallelism);
+        // Callers never queue more than parallelism chunks per import; the queue bound only matters
+        // for concurrent imports, which then validate on the submitting thread
+        this.validationPool = new ThreadPoolExecutor(this.parallelism, this.parallelism, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(this.parallelism * 4), new ThreadPoolExecutor.CallerRunsPolicy());
+        ((ThreadPoolExecutor) validationPool).allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        validationPool.shutdown();
+    }
+
+    /**
+     * Imports every valid row of input and returns imported and failed row counts, the first row
+     * errors as {line, errorMessage}, and elapsedMs. Throws IllegalArgumentException if the header
+     * does not match the export layout or the CSV is malformed; chunks before the malformed one
+     * stay imported.
+     */
+    public Map<String, Object> importCsv(Reader input) throws IOException {
+        long start = System.nanoTime();
+        CsvRecordReader reader = new CsvRecordReader(input);
+        List<String> header = reader.next();
+        if (header == null || !HEADER.equals(header.stream().map(String::trim).toList())) {
+            throw new IllegalArgumentException("Expected CSV header: " + String.join(",", HEADER));
+        }
+
+        long imported = 0;
+        long failed = 0;
+        List<Map<String, Object>> errors = new ArrayList<>();
+        Deque<Future<ValidatedChunk>> inFlight = new ArrayDeque<>();
+        try {
+            List<Row> chunk = new ArrayList<>(chunkSize);
+            List<String> record;
+            while ((record = reader.next()) != null) {
+                chunk.add(new Row(reader.getRecordLine(), record));
+                if (chunk.size() == chunkSize) {
+                    List<Row> rows = chunk;
+                    inFlight.add(validationPool.submit(() -> validate(rows)));
+                    chunk = new ArrayList<>(chunkSize);
+                }
+                if (inFlight.size() == parallelism) {
+                    ValidatedChunk validated = await(inFlight.poll());
+                    imported += write(validated);
+                    failed += collectErrors(validated, errors);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                List<Row> rows = chunk;
+                inFlight.add(validationPool.submit(() -> validate(rows)));
+            }
+            while (!inFlight.isEmpty()) {
+                ValidatedChunk validated = await(inFlight.poll());
+                imported += write(validated);
+                failed += collectErrors(validated, errors);
+            }
+        } finally {
+            inFlight.forEach(future -> future.cancel(true));
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("imported", imported);
+        result.put("failed", failed);
+        result.put("errors", errors);
+        result.put("elapsedMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return result;
+    }
+
+    private ValidatedChunk validate(List<Row> rows) {
+        ValidatedChunk validated = new ValidatedChunk();
+        for (Row row : rows) {
+            try {
+                validated.activities.add(activityService.newActivity(toValues(row.values)));
+            } catch (IllegalArgumentException | ClassCastException e) {
+                Map<String, Object> error = new HashMap<>();
+                error.put("line", row.line);
+                error.put("errorMessage", e.getMessage());
+                validated.errors.add(error);
+            }
+        }
+        return validated;
+    }
+
+    private static Map<String, Object> toValues(List<String> record) {
+        if (record.size() != FIELDS.length) {
+            throw new IllegalArgumentException("Expected " + FIELDS.length + " columns but found " + record.size());
+        }
+        Map<String, Object> values = new HashMap<>();
+        for (int i = 0; i < FIELDS.length; i++) {
+            String value = record.get(i);
+            // Empty cells are missing values, as in the add form
+            if (FIELDS[i] != null && !value.isBlank()) {
+                values.put(FIELDS[i], value.trim());
+            }
+        }
+        return values;
+    }
+
+    private long write(ValidatedChunk validated) {
+        if (validated.activities.isEmpty()) {
+            return 0;
+        }
+        return activityService.insertAll(validated.activities).size();
+    }
+
+    private static long collectErrors(ValidatedChunk validated, List<Map<String, Object>> errors) {
+        for (Map<String, Object> error : validated.errors) {
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(error);
+            }
+        }
+        return validated.errors.size();
+    }
+
+    private static ValidatedChunk await(Future<ValidatedChunk> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Import failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.klu;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonic data version bumped by every write path in ActivityServiceImpl. Cached reads put the
+ * current version into their cache key, so a write makes all earlier entries unreachable at once;
+ * they are then evicted by the cache's size/TTL bounds. ETags and export job keys are built from it too.
+ *
+ * The version is a row in powergrid_data_version on the primary, shared by all instances, which
+ * re-read it every powergrid.data-version.refresh-ms. A write bumps it after its own transaction has
+ * committed, in a separate short transaction: holding the row lock until the write commits would queue
+ * every write on every instance behind that one row. So the new data is briefly readable under the
+ * old version, and stays cached under it for at most the refresh interval on other instances; never
+ * the reverse, which would keep old data under the new version. Every version this instance moves to
+ * goes to ReadReplicas, which keeps reads cached under it off replicas that have not applied it yet;
+ * since the version is bumped after the data commits, a replica that has it also has the data.
+ */
+@Component
+public class ActivityDataVersion {
+
+    static final String TABLE = "powergrid_data_version";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ReadReplicas readReplicas;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${powergrid.data-version.refresh-ms:1000}")
+    private long refreshMs;
+
+    // Latest version this instance knows of; read on every cached request, so never from the database
+    private final AtomicLong version = new AtomicLong();
+    private TransactionTemplate ownTransaction;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        // Also from afterCommit, where the finished transaction's connection is still bound
+        ownTransaction = new TransactionTemplate(transactionManager);
+        ownTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " (id INT NOT NULL PRIMARY KEY, version BIGINT NOT NULL)");
+        Integer rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + TABLE + " WHERE id = 1", Integer.class);
+        if (rows == null || rows == 0) {
+            try {
+                // Seeded with the time so versions (and ETags built from them) do not repeat if the table is recreated
+                jdbcTemplate.update("INSERT INTO " + TABLE + " (id, version) VALUES (1, ?)", System.currentTimeMillis());
+            } catch (DuplicateKeyException e) {
+                // Another instance started at the same time and created it
+            }
+        }
+        advance(read());
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("data-version-"));
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, refreshMs, refreshMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public long current() {
+        return version.get();
+    }
+
+    // Inside a transaction, takes effect once it commits and not at all if it rolls back
+    public void bump() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    try {
+                        advance(increment());
+                        readReplicas.recordWrite();
+                    } catch (RuntimeException e) {
+                        // The write itself has committed; failing it now would only mislead the caller
+                        System.err.println("Data version bump failed: " + e.getMessage());
+                    }
+                }
+            });
+        } else {
+            advance(increment());
+            readReplicas.recordWrite();
+        }
+    }
+
+    // Picks up versions written by other instances
+    void refresh() {
+        long latest = read();
+        if (latest > version.get()) {
+            advance(latest);
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            System.err.println("Data version refresh failed: " + e.getMessage());
+        }
+    }
+
+    // The row is locked only for this statement pair, never for the length of a write
+    private long increment() {
+        return ownTransaction.execute(status -> {
+            jdbcTemplate.update("UPDATE " + TABLE + " SET version = version + 1 WHERE id = 1");
+            return read();
+        });
+    }
+
+    private long read() {
+        return jdbcTemplate.queryForObject("SELECT version FROM " + TABLE + " WHERE id = 1", Long.class);
+    }
+
+    private void advance(long seen) {
+        readReplicas.recordVersion(version.accumulateAndGet(seen, Math::max));
+    }
+}
@@ -0,0 +1,371 @@
+package com.klu;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Background exports: a client submits filters and a format, polls the job, and downloads the
+ * finished file from local disk (with Range support, so a dropped download resumes instead of
+ * restarting the export).
+ *
+ * Jobs run on a small fixed pool with a bounded queue; submissions beyond it are rejected rather
+ * than piling up. A job for the same filters and format as a queued, running or finished job is
+ * answered with that job, as long as the data has not changed since (ActivityDataVersion).
+ * Finished files are deleted powergrid.export.ttl-minutes after they were written. Jobs live in
+ * memory only, so files left over from a previous run are deleted at startup.
+ */
+@Component
+public class ActivityExportJobs {
+
+    public static final String QUEUED = "QUEUED";
+    public static final String RUNNING = "RUNNING";
+    public static final String DONE = "DONE";
+    public static final String FAILED = "FAILED";
+
+    static final List<String> FORMATS = List.of("csv", "json");
+    private static final List<String> FILTERS = List.of("search", "state", "category", "dateRange", "sortBy", "sortDir");
+
+    public static final class ExportJob {
+        private final String id;
+        private final String key;
+        private final String format;
+        private final Map<String, String> filters;
+        private final Path file;
+        private final Instant createdAt = Instant.now();
+        private volatile String status = QUEUED;
+        private volatile long totalRows = -1;
+        private volatile long rowsWritten;
+        private volatile Instant finishedAt;
+        private volatile String errorMessage;
+        private volatile Future<?> future;
+
+        ExportJob(String id, String key, String format, Map<String, String> filters, Path file) {
+            this.id = id;
+            this.key = key;
+            this.format = format;
+            this.filters = filters;
+            this.file = file;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getFormat() {
+            return format;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public Instant getFinishedAt() {
+            return finishedAt;
+        }
+
+        public String getFileName() {
+            return "activities-" + id + "." + format;
+        }
+
+        // Status as returned by the job endpoints
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("id", id);
+            map.put("status", status);
+            map.put("format", format);
+            map.put("filters", filters);
+            map.put("rowsWritten", rowsWritten);
+            map.put("totalRows", totalRows < 0 ? null : totalRows);
+            map.put("progress", DONE.equals(status) ? 1.0
+                    : totalRows > 0 ? Math.min(1.0, (double) rowsWritten / totalRows) : 0.0);
+            map.put("createdAt", createdAt.toString());
+            map.put("finishedAt", finishedAt != null ? finishedAt.toString() : null);
+            if (DONE.equals(status)) {
+                map.put("downloadUrl", "/api/download/export/" + id);
+            }
+            if (errorMessage != null) {
+                map.put("errorMessage", errorMessage);
+            }
+            return map;
+        }
+    }
+
+    private final Path directory;
+    private final int pageSize;
+    private final Duration ttl;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService cleaner = Executors.newSingleThreadScheduledExecutor();
+
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+    // Dedup key -> job; guarded by this
+    private final Map<String, ExportJob> jobsByKey = new LinkedHashMap<>();
+
+    private Timer exportTimer;
+
+    @Autowired
+    private ActivityService activityService;
+
+    @Autowired
+    private ActivityDataVersion activityDataVersion;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ReadReplicas readReplicas;
+
+    @Value("${powergrid.replicas.max-staleness-ms.export:30000}")
+    private long exportStalenessMs;
+
+    public ActivityExportJobs(@Value("${powergrid.export.dir:${java.io.tmpdir}/powergrid-exports}") String directory,
+                              @Value("${powergrid.export.threads:2}") int threads,
+                              @Value("${powergrid.export.max-queued:8}") int maxQueued,
+                              @Value("${powergrid.export.page-size:1000}") int pageSize,
+                              @Value("${powergrid.export.ttl-minutes:30}") long ttlMinutes) {
+        this.directory = Paths.get(directory);
+        this.pageSize = pageSize;
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(maxQueued), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(directory, "activities-*")) {
+            for (Path leftover : leftovers) {
+                Files.deleteIfExists(leftover);
+            }
+        }
+        exportTimer = Timer.builder("powergrid.export.duration")
+                .description("Time to write an export job's file")
+                .register(meterRegistry);
+        Gauge.builder("powergrid.export.queue.depth", executor, pool -> pool.getQueue().size())
+                .description("Export jobs waiting for a worker")
+                .register(meterRegistry);
+        cleaner.scheduleWithFixedDelay(() -> removeExpired(Instant.now()), 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cleaner.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Starts an export of the activities matching filters (the /export parameters), or returns the
+     * job already exporting the same data. Throws IllegalArgumentException for an unknown format and
+     * RejectedExecutionException when the queue is full.
+     */
+    public synchronized ExportJob submit(String format, Map<String, String> filters) {
+        String normalizedFormat = format == null || format.isBlank() ? "csv" : format.trim().toLowerCase();
+        if (!FORMATS.contains(normalizedFormat)) {
+            throw new IllegalArgumentException("Unsupported export format: " + format + " (expected one of " + FORMATS + ")");
+        }
+        Map<String, String> normalizedFilters = new LinkedHashMap<>();
+        for (String name : FILTERS) {
+            String value = filters.get(name);
+            normalizedFilters.put(name, value != null ? value : "sortBy".equals(name) ? "id" : "sortDir".equals(name) ? "asc" : "");
+        }
+        String key = normalizedFormat + "|" + activityDataVersion.current() + "|" + normalizedFilters;
+        ExportJob existing = jobsByKey.get(key);
+        if (existing != null && !FAILED.equals(existing.status) && jobs.containsKey(existing.id)) {
+            return existing;
+        }
+
+        String id = UUID.randomUUID().toString();
+        ExportJob job = new ExportJob(id, key, normalizedFormat, normalizedFilters,
+                directory.resolve("activities-" + id + "." + normalizedFormat));
+        jobs.put(id, job);
+        jobsByKey.put(key, job);
+        try {
+            job.future = executor.submit(() -> run(job));
+        } catch (RuntimeException e) {
+            jobs.remove(id);
+            jobsByKey.remove(key);
+            throw e;
+        }
+        return job;
+    }
+
+    public ExportJob get(String id) {
+        return jobs.get(id);
+    }
+
+    // Cancels a queued or running job and deletes its file; returns false for an unknown id
+    public boolean cancel(String id) {
+        ExportJob job = jobs.get(id);
+        if (job == null) {
+            return false;
+        }
+        remove(job);
+        return true;
+    }
+
+    // Removes finished jobs older than the TTL, with their files; returns how many were removed
+    int removeExpired(Instant now) {
+        int removed = 0;
+        for (ExportJob job : jobs.values()) {
+            if (job.finishedAt != null && job.finishedAt.plus(ttl).isBefore(now)) {
+                remove(job);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    private void remove(ExportJob job) {
+        synchronized (this) {
+            jobs.remove(job.id);
+            jobsByKey.remove(job.key, job);
+        }
+        if (job.future != null) {
+            job.future.cancel(true);
+        }
+        deleteQuietly(job.file);
+        deleteQuietly(partFile(job));
+    }
+
+    private void run(ExportJob job) {
+        if (!jobs.containsKey(job.id)) {
+            return;
+        }
+        job.status = RUNNING;
+        long start = System.nanoTime();
+        Path part = partFile(job);
+        try {
+            try (OutputStream out = Files.newOutputStream(part)) {
+                if ("csv".equals(job.format)) {
+                    writeCsv(job, out);
+                } else {
+                    writeJson(job, out);
+                }
+            }
+            Files.move(part, job.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            job.status = DONE;
+        } catch (Exception e) {
+            if (e instanceof InterruptedException || !jobs.containsKey(job.id)) {
+                // Cancelled; the canceller deletes the files
+                job.errorMessage = "Export cancelled";
+                job.status = FAILED;
+                return;
+            }
+            System.err.println("Export job " + job.id + " failed: " + e.getMessage());
+            e.printStackTrace();
+            job.errorMessage = "Export failed: " + e.getMessage();
+            job.status = FAILED;
+            deleteQuietly(part);
+        } finally {
+            job.finishedAt = Instant.now();
+            exportTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!jobs.containsKey(job.id)) {
+            // Cancelled while the last page was written
+            deleteQuietly(job.file);
+        }
+    }
+
+    private void writeCsv(ExportJob job, OutputStream out) throws IOException, InterruptedException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        writer.write(ActivityController.CSV_HEADER);
+        StringBuilder csv = new StringBuilder();
+        for (List<Activity> activities = nextPage(job, null); !activities.isEmpty();
+             activities = nextPage(job, activities.get(activities.size() - 1))) {
+            Map<Long, List<FileMetadata>> fileMap = activityService.getFilesByActivityIds(
+                    activities.stream().map(Activity::getId).collect(Collectors.toList()));
+            csv.setLength(0);
+            for (Activity activity : activities) {
+                ActivityController.appendCsvRow(csv, activity, fileMap.getOrDefault(activity.getId(), List.of()));
+            }
+            writer.write(csv.toString());
+            job.rowsWritten += activities.size();
+        }
+        writer.flush();
+    }
+
+    private void writeJson(ExportJob job, OutputStream out) throws IOException, InterruptedException {
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.writeStartArray();
+            for (List<Activity> activities = nextPage(job, null); !activities.isEmpty();
+                 activities = nextPage(job, activities.get(activities.size() - 1))) {
+                for (Activity activity : activities) {
+                    objectMapper.writeValue(json, activity);
+                }
+                job.rowsWritten += activities.size();
+            }
+            json.writeEndArray();
+        }
+    }
+
+    // The page after last (null for the first) of the rows /export returns, by keyset on (sortBy, id),
+    // so writes between pages cannot skip or repeat rows; the first page also sets the total for progress
+    private List<Activity> nextPage(ExportJob job, Activity last) throws InterruptedException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException();
+        }
+        Map<String, String> filters = job.filters;
+        // The job key holds the data version, so a replica must have every write up to it
+        return readReplicas.readCurrent(exportStalenessMs, () -> {
+            if (last == null) {
+                job.totalRows = activityService.getAllActivities(filters.get("search"), filters.get("state"),
+                        filters.get("category"), filters.get("dateRange"), filters.get("sortBy"), filters.get("sortDir"),
+                        PageRequest.of(0, 1)).getTotalElements();
+            }
+            return activityService.getActivitiesAfter(filters.get("search"), filters.get("state"), filters.get("category"),
+                    filters.get("dateRange"), filters.get("sortBy"), filters.get("sortDir"), last, pageSize);
+        });
+    }
+
+    private static Path partFile(ExportJob job) {
+        return job.file.resolveSibling(job.file.getFileName() + ".part");
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Could not delete export file " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.klu;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CompoundSelection;
+import jakarta.persistence.criteria.Root;
+
+import java.time.LocalDate;
+
+/**
+ * Read-only row of the activity grids (/activity, /stateCategoryQuery, /dateRangeQuery), selected
+ * with a constructor expression so list queries load only the grid columns and never enter the
+ * persistence context. eventDescription and remarks hold at most PREVIEW_LENGTH characters; when
+ * either was cut, truncated is set and the full text comes from GET /api/activities/{id}/details.
+ */
+public class ActivityGridRow {
+
+    public static final int PREVIEW_LENGTH = 100;
+
+    // Select list for JPQL queries over "Activity a", in constructor order
+    public static final String JPQL_SELECT = "new com.klu.ActivityGridRow(a.id, a.version, a.state, a.stationName, "
+            + "a.activityType, a.eventCategory, a.participantCategory, SUBSTRING(a.eventDescription, 1, " + PREVIEW_LENGTH + "), "
+            + "LENGTH(a.eventDescription), a.schoolOrCollegeOrPanchayatName, a.eventLocation, a.eventDate, "
+            + "a.numberOfParticipants, SUBSTRING(a.remarks, 1, " + PREVIEW_LENGTH + "), LENGTH(a.remarks), a.orderIndex)";
+
+    private final Long id;
+    private final long version;
+    private final String state;
+    private final String stationName;
+    private final String activityType;
+    private final String eventCategory;
+    private final String participantCategory;
+    private final String eventDescription;
+    private final String schoolOrCollegeOrPanchayatName;
+    private final String eventLocation;
+    private final LocalDate eventDate;
+    private final int numberOfParticipants;
+    private final String remarks;
+    private final int orderIndex;
+    private final boolean truncated;
+
+    public ActivityGridRow(Long id, Long version, String state, String stationName, String activityType,
+                           String eventCategory, String participantCategory, String eventDescription,
+                           Integer eventDescriptionLength, String schoolOrCollegeOrPanchayatName, String eventLocation,
+                           LocalDate eventDate, Integer numberOfParticipants, String remarks, Integer remarksLength,
+                           Integer orderIndex) {
+        this.id = id;
+        this.version = version == null ? 0 : version;
+        this.state = state;
+        this.stationName = stationName;
+        this.activityType = activityType;
+        this.eventCategory = eventCategory;
+        this.participantCategory = participantCategory;
+        this.schoolOrCollegeOrPanchayatName = schoolOrCollegeOrPanchayatName;
+        this.eventLocation = eventLocation;
+        this.eventDate = eventDate;
+        this.numberOfParticipants = numberOfParticipants == null ? 0 : numberOfParticipants;
+        boolean descriptionCut = eventDescriptionLength != null && eventDescriptionLength > PREVIEW_LENGTH;
+        boolean remarksCut = remarksLength != null && remarksLength > PREVIEW_LENGTH;
+        this.eventDescription = descriptionCut ? preview(eventDescription) : eventDescription;
+        this.remarks = remarksCut ? preview(remarks) : remarks;
+        this.truncated = descriptionCut || remarksCut;
+        this.orderIndex = orderIndex == null ? 0 : orderIndex;
+    }
+
+    // Constructor expression for Criteria queries, matching JPQL_SELECT
+    public static CompoundSelection<ActivityGridRow> select(CriteriaBuilder cb, Root<Activity> root) {
+        return cb.construct(ActivityGridRow.class, root.get("id"), root.get("version"), root.get("state"),
+                root.get("stationName"), root.get("activityType"), root.get("eventCategory"),
+                root.get("participantCategory"), cb.substring(root.get("eventDescription"), 1, PREVIEW_LENGTH),
+                cb.length(root.get("eventDescription")), root.get("schoolOrCollegeOrPanchayatName"),
+                root.get("eventLocation"), root.get("eventDate"), root.get("numberOfParticipants"),
+                cb.substring(root.get("remarks"), 1, PREVIEW_LENGTH), cb.length(root.get("remarks")),
+                root.get("orderIndex"));
+    }
+
+    // The stored text is sanitized HTML; drop a tag or entity the cut went through before marking the cut
+    static String preview(String text) {
+        return text.replaceFirst("<[^>]*$", "").replaceFirst("&#?\\w*$", "") + "\u2026";
+    }
+
+    public Long getId() { return id; }
+    public long getVersion() { return version; }
+    public String getState() { return state; }
+    public String getStationName() { return stationName; }
+    public String getActivityType() { return activityType; }
+    public String getEventCategory() { return eventCategory; }
+    public String getParticipantCategory() { return participantCategory; }
+    public String getEventDescription() { return eventDescription; }
+    public String getSchoolOrCollegeOrPanchayatName() { return schoolOrCollegeOrPanchayatName; }
+    public String getEventLocation() { return eventLocation; }
+    public LocalDate getEventDate() { return eventDate; }
+    public int getNumberOfParticipants() { return numberOfParticipants; }
+    public String getRemarks() { return remarks; }
+    public int getOrderIndex() { return orderIndex; }
+    public boolean isTruncated() { return truncated; }
+}
@@ -0,0 +1,321 @@
+package com.klu;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Builds one specialized statement per filter shape instead of a catch-all query such as
+ * "(:operator = 'AND' AND ...) OR (:operator = 'OR' AND ...)" or "(:x IS NULL OR a.x = :x)",
+ * which the optimizer has to plan for every parameter value and therefore can't serve from an index.
+ *
+ * State/category shapes:
+ *   AND - equality on both columns, served by idx_state_category_date
+ *   OR  - join against a UNION of the idx_state and idx_event_category lookups (index union)
+ *   NOT - anti-join against that same union (rows with NULL state/category never match, as with "!=")
+ * Date range shapes only contain the predicates that were actually supplied and are ordered by
+ * orderIndex, served by idx_date_order.
+ *
+ * List queries select ActivityGridRow projections rather than entities: only the grid columns and
+ * a prefix of the long text columns are read, and nothing is tracked by the persistence context.
+ */
+@Component
+public class ActivityQueryBuilder {
+
+    // Index union: each branch is a key lookup on its own single-column index
+    private static final String STATE_OR_CATEGORY_IDS =
+            "(SELECT s.id AS id FROM Activity s WHERE s.state = :state " +
+            "UNION SELECT c.id FROM Activity c WHERE c.eventCategory = :eventCategory)";
+
+    @Autowired
+    private EntityManager entityManager;
+
+    // Date-range queries are given up by the database once their handler has stopped waiting
+    @Value("${powergrid.query.timeout-ms:20000}")
+    private int queryTimeoutMs;
+
+    // MySQL only honours it with useCursorFetch=true on the JDBC URL; otherwise the driver buffers the whole result
+    @Value("${powergrid.stream.fetch-size:500}")
+    private int streamFetchSize;
+
+    // Pageable may be unpaged; its sort is applied either way
+    public List<ActivityGridRow> findByStateAndEventCategory(String state, String eventCategory, String operator, Pageable pageable) {
+        String from = stateAndEventCategoryFrom(operator);
+        if (from == null) {
+            // Unknown operators matched nothing in the old catch-all query either
+            return new ArrayList<>();
+        }
+        TypedQuery<ActivityGridRow> query = entityManager.createQuery(
+                        "SELECT " + ActivityGridRow.JPQL_SELECT + " " + from + orderBy(pageable.getSort()), ActivityGridRow.class)
+                .setParameter("state", state)
+                .setParameter("eventCategory", eventCategory);
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+        }
+        return query.getResultList();
+    }
+
+    // [match count, distinct states, participant sum] in one statement
+    public Object[] summarizeByStateAndEventCategory(String state, String eventCategory, String operator) {
+        String from = stateAndEventCategoryFrom(operator);
+        if (from == null) {
+            return new Object[] {0L, 0L, 0L};
+        }
+        return entityManager.createQuery("SELECT COUNT(a), COUNT(DISTINCT a.state), COALESCE(SUM(a.numberOfParticipants), 0L) " + from, Object[].class)
+                .setParameter("state", state)
+                .setParameter("eventCategory", eventCategory)
+                .getSingleResult();
+    }
+
+    public List<ActivityGridRow> findByDateRangeWithFilters(LocalDate startDate, LocalDate endDate, String state,
+                                                            String activityType, String eventCategory, String filterOperator,
+                                                            List<Map<String, String>> conditions) {
+        return dateRangeQuery(startDate, endDate, state, activityType, eventCategory, filterOperator, conditions)
+                .setHint("jakarta.persistence.query.timeout", queryTimeoutMs)
+                .getResultList();
+    }
+
+    /**
+     * Same rows as findByDateRangeWithFilters, read through a forward-only cursor fetching
+     * powergrid.stream.fetch-size rows per round trip, so memory does not grow with the result.
+     * Must be consumed and closed inside a transaction; there is no query timeout, the caller
+     * stops by closing the stream.
+     */
+    public Stream<ActivityGridRow> streamByDateRangeWithFilters(LocalDate startDate, LocalDate endDate, String state,
+                                                                String activityType, String eventCategory, String filterOperator,
+                                                                List<Map<String, String>> conditions) {
+        return dateRangeQuery(startDate, endDate, state, activityType, eventCategory, filterOperator, conditions)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, streamFetchSize)
+                .getResultStream();
+    }
+
+    private TypedQuery<ActivityGridRow> dateRangeQuery(LocalDate startDate, LocalDate endDate, String state,
+                                                       String activityType, String eventCategory, String filterOperator,
+                                                       List<Map<String, String>> conditions) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ActivityGridRow> query = cb.createQuery(ActivityGridRow.class);
+        Root<Activity> root = query.from(Activity.class);
+        List<Predicate> predicates = dateRangePredicates(cb, root, startDate, endDate, state, activityType,
+                eventCategory, filterOperator, conditions);
+        query.select(ActivityGridRow.select(cb, root))
+                .where(cb.and(predicates.toArray(new Predicate[0])))
+                .orderBy(cb.asc(root.get("orderIndex")));
+        return entityManager.createQuery(query);
+    }
+
+    /**
+     * Keyset page of the date-range rows: the first limit rows after (after.orderIndex, after.id) in
+     * (orderIndex, id) order, or from the start when after is null. Every page is a short statement of
+     * its own, so nothing is held open between pages however slowly they are consumed.
+     */
+    public List<ActivityGridRow> findDateRangePageAfter(LocalDate startDate, LocalDate endDate, String state,
+                                                        String activityType, String eventCategory, String filterOperator,
+                                                        List<Map<String, String>> conditions, ActivityGridRow after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ActivityGridRow> query = cb.createQuery(ActivityGridRow.class);
+        Root<Activity> root = query.from(Activity.class);
+        List<Predicate> predicates = dateRangePredicates(cb, root, startDate, endDate, state, activityType,
+                eventCategory, filterOperator, conditions);
+        if (after != null) {
+            predicates.add(cb.or(cb.gt(root.get("orderIndex"), after.getOrderIndex()),
+                    cb.and(cb.equal(root.get("orderIndex"), after.getOrderIndex()), cb.gt(root.get("id"), after.getId()))));
+        }
+        query.select(ActivityGridRow.select(cb, root))
+                .where(cb.and(predicates.toArray(new Predicate[0])))
+                .orderBy(cb.asc(root.get("orderIndex")), cb.asc(root.get("id")));
+        return entityManager.createQuery(query)
+                .setHint("jakarta.persistence.query.timeout", queryTimeoutMs)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    private List<Predicate> dateRangePredicates(CriteriaBuilder cb, Root<Activity> root, LocalDate startDate, LocalDate endDate,
+                                                String state, String activityType, String eventCategory, String filterOperator,
+                                                List<Map<String, String>> conditions) {
+        List<Predicate> mainPredicates = new ArrayList<>();
+        mainPredicates.add(cb.between(root.get("eventDate"), startDate, endDate));
+
+        // Only filters that were supplied become predicates
+        List<Predicate> advancedPredicates = new ArrayList<>();
+        if (!state.isEmpty()) {
+            advancedPredicates.add(cb.equal(root.get("state"), state));
+        }
+        if (!activityType.isEmpty()) {
+            advancedPredicates.add(cb.equal(root.get("activityType"), activityType));
+        }
+        if (!eventCategory.isEmpty()) {
+            advancedPredicates.add(cb.equal(root.get("eventCategory"), eventCategory));
+        }
+        if (!advancedPredicates.isEmpty()) {
+            if ("AND".equalsIgnoreCase(filterOperator)) {
+                mainPredicates.addAll(advancedPredicates);
+            } else if ("OR".equalsIgnoreCase(filterOperator)) {
+                mainPredicates.add(cb.or(advancedPredicates.toArray(new Predicate[0])));
+            } else {
+                throw new IllegalArgumentException("Unsupported filter operator: " + filterOperator);
+            }
+        }
+
+        Predicate dynamicPredicate = buildConditions(cb, root, conditions);
+        if (dynamicPredicate != null) {
+            mainPredicates.add(dynamicPredicate);
+        }
+        return mainPredicates;
+    }
+
+    // Keyset page of the state/category rows in id order: the first limit rows with an id above afterId
+    public List<ActivityGridRow> findByStateAndEventCategoryAfter(String state, String eventCategory, String operator,
+                                                                 long afterId, int limit) {
+        String from = stateAndEventCategoryFrom(operator);
+        if (from == null) {
+            return new ArrayList<>();
+        }
+        // The OR shape is a bare join; the others already have a WHERE clause
+        String keyset = ("OR".equals(operator) ? " WHERE" : " AND") + " a.id > :afterId ORDER BY a.id";
+        return entityManager.createQuery("SELECT " + ActivityGridRow.JPQL_SELECT + " " + from + keyset, ActivityGridRow.class)
+                .setParameter("state", state)
+                .setParameter("eventCategory", eventCategory)
+                .setParameter("afterId", afterId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    // Grid rows for the given ids in ascending id order; ids that no longer exist are skipped
+    public List<ActivityGridRow> findGridRowsByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return entityManager.createQuery("SELECT " + ActivityGridRow.JPQL_SELECT + " FROM Activity a WHERE a.id IN :ids ORDER BY a.id",
+                        ActivityGridRow.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
+    // One page of grid rows matching spec; the count query is skipped when the page itself gives the total, as in findAll(spec, pageable)
+    public Page<ActivityGridRow> findGridPage(Specification<Activity> spec, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ActivityGridRow> query = cb.createQuery(ActivityGridRow.class);
+        Root<Activity> root = query.from(Activity.class);
+        query.select(ActivityGridRow.select(cb, root))
+                .where(spec.toPredicate(root, query, cb))
+                .orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+        List<ActivityGridRow> content = entityManager.createQuery(query)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+
+        CriteriaQuery<Long> countQuery = cb.createQuery(Long.class);
+        Root<Activity> countRoot = countQuery.from(Activity.class);
+        countQuery.select(cb.count(countRoot)).where(spec.toPredicate(countRoot, countQuery, cb));
+        return PageableExecutionUtils.getPage(content, pageable, () -> entityManager.createQuery(countQuery).getSingleResult());
+    }
+
+    // FROM/WHERE for one operator shape, binding :state and :eventCategory; null for unknown operators
+    String stateAndEventCategoryFrom(String operator) {
+        switch (operator) {
+            case "AND":
+                return "FROM Activity a WHERE a.state = :state AND a.eventCategory = :eventCategory";
+            case "OR":
+                return "FROM Activity a JOIN " + STATE_OR_CATEGORY_IDS + " m ON m.id = a.id";
+            case "NOT":
+                return "FROM Activity a LEFT JOIN " + STATE_OR_CATEGORY_IDS + " m ON m.id = a.id " +
+                       "WHERE m.id IS NULL AND a.state IS NOT NULL AND a.eventCategory IS NOT NULL";
+            default:
+                return null;
+        }
+    }
+
+    // ORDER BY for a Spring Data sort; property names are checked against the entity so they can't inject JPQL
+    private String orderBy(Sort sort) {
+        if (sort.isUnsorted()) {
+            return "";
+        }
+        List<String> orders = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            String property = entityManager.getMetamodel().entity(Activity.class).getAttribute(order.getProperty()).getName();
+            orders.add("a." + property + (order.isAscending() ? " ASC" : " DESC"));
+        }
+        return " ORDER BY " + String.join(", ", orders);
+    }
+
+    // Chains the query-builder conditions with the logical operator of the preceding condition
+    public Predicate buildConditions(CriteriaBuilder cb, Root<Activity> root, List<Map<String, String>> conditions) {
+        Predicate dynamicPredicate = null;
+        for (int i = 0; i < conditions.size(); i++) {
+            Map<String, String> condition = conditions.get(i);
+            Predicate predicate = buildPredicate(cb, root, condition.get("field"), condition.get("operator"), condition.get("value"));
+            if (i == 0) {
+                dynamicPredicate = predicate;
+            } else {
+                String prevLogical = conditions.get(i - 1).getOrDefault("logical", "AND");
+                if ("OR".equalsIgnoreCase(prevLogical)) {
+                    dynamicPredicate = cb.or(dynamicPredicate, predicate);
+                } else if ("NOT".equalsIgnoreCase(prevLogical)) {
+                    dynamicPredicate = cb.and(dynamicPredicate, cb.not(predicate));
+                } else {
+                    dynamicPredicate = cb.and(dynamicPredicate, predicate);
+                }
+            }
+        }
+        return dynamicPredicate;
+    }
+
+    // Predicate for a single condition
+    public Predicate buildPredicate(CriteriaBuilder cb, Root<Activity> root, String field, String operator, String value) {
+        try {
+            switch (field) {
+                case "numberOfParticipants":
+                    int intValue = Integer.parseInt(value);
+                    switch (operator) {
+                        case "=": return cb.equal(root.get(field), intValue);
+                        case "!=": return cb.notEqual(root.get(field), intValue);
+                        case "<": return cb.lt(root.get(field), intValue);
+                        case ">": return cb.gt(root.get(field), intValue);
+                        case "<=": return cb.le(root.get(field), intValue);
+                        case ">=": return cb.ge(root.get(field), intValue);
+                        default: throw new IllegalArgumentException("Unsupported operator: " + operator);
+                    }
+                case "eventDate":
+                    LocalDate dateValue = LocalDate.parse(value);
+                    switch (operator) {
+                        case "=": return cb.equal(root.get(field), dateValue);
+                        case "!=": return cb.notEqual(root.get(field), dateValue);
+                        case "<": return cb.lessThan(root.get(field), dateValue);
+                        case ">": return cb.greaterThan(root.get(field), dateValue);
+                        case "<=": return cb.lessThanOrEqualTo(root.get(field), dateValue);
+                        case ">=": return cb.greaterThanOrEqualTo(root.get(field), dateValue);
+                        default: throw new IllegalArgumentException("Unsupported operator: " + operator);
+                    }
+                default: // String fields like state, activityType, eventCategory
+                    switch (operator) {
+                        case "=": return cb.equal(root.get(field), value);
+                        case "!=": return cb.notEqual(root.get(field), value);
+                        default: throw new IllegalArgumentException("Unsupported operator for field " + field + ": " + operator);
+                    }
+            }
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid value for field " + field + ": " + value, e);
+        }
+    }
+}
@@ -12,16 +12,12 @@ import java.util.List;
 
 @Repository
 public interface ActivityRepository extends JpaRepository<Activity, Long>, JpaSpecificationExecutor<Activity> {
-    @Query("SELECT a FROM Activity a WHERE " +
-           "(:operator = 'AND' AND a.state = :state AND a.eventCategory = :eventCategory) OR " +
-           "(:operator = 'OR' AND (a.state = :state OR a.eventCategory = :eventCategory)) OR " +
-           "(:operator = 'NOT' AND a.state != :state AND a.eventCategory != :eventCategory)")
-    List<Activity> findByStateAndEventCategoryWithOperator(@Param("state") String state, 
-                                                          @Param("eventCategory") String eventCategory, 
-                                                          @Param("operator") String operator);
+    @Query("SELECT " + ActivityGridRow.JPQL_SELECT + " FROM Activity a WHERE a.eventDate BETWEEN :startDate AND :endDate")
+    List<ActivityGridRow> findByDateRange(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
 
-    @Query("SELECT a FROM Activity a WHERE a.eventDate BETWEEN :startDate AND :endDate")
-    List<Activity> findByDateRange(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+    // The long text columns left out of ActivityGridRow; at most one row
+    @Query("SELECT a.eventDescription, a.remarks FROM Activity a WHERE a.id = :id")
+    List<Object[]> findDetails(@Param("id") Long id);
 
     @Query("SELECT COUNT(DISTINCT TRIM(a.state)) FROM Activity a WHERE a.eventDate BETWEEN :startDate AND :endDate AND a.state IS NOT NULL AND a.state != ''")
     Long countUniqueStates(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
@@ -38,6 +34,19 @@ public interface ActivityRepository extends JpaRepository<Activity, Long>, JpaSp
     @Query("SELECT a.eventDate, COUNT(a) as count FROM Activity a WHERE a.eventDate BETWEEN :startDate AND :endDate GROUP BY a.eventDate")
     List<Object[]> countByDate(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
 
+    @Query("SELECT a.eventDate, COUNT(a), SUM(a.numberOfParticipants) FROM Activity a " +
+           "WHERE a.eventDate BETWEEN :startDate AND :endDate GROUP BY a.eventDate")
+    List<Object[]> statsByDate(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+    @Query("SELECT a.eventDate, a.state, COUNT(a), SUM(a.numberOfParticipants) FROM Activity a " +
+           "WHERE a.eventDate BETWEEN :startDate AND :endDate GROUP BY a.eventDate, a.state")
+    List<Object[]> statsByDateAndState(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+    // One row per (day, category): event count and participant sum, consumed by ActivitySuggestionEngine
+    @Query("SELECT a.eventDate, a.eventCategory, COUNT(a), SUM(a.numberOfParticipants) FROM Activity a " +
+           "WHERE a.eventDate BETWEEN :startDate AND :endDate GROUP BY a.eventDate, a.eventCategory")
+    List<Object[]> statsByDateAndCategory(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
     @Query("SELECT DISTINCT TRIM(a.state) FROM Activity a WHERE a.eventDate BETWEEN :startDate AND :endDate AND a.state IS NOT NULL AND a.state != ''")
     List<String> findDistinctStates(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
 
@@ -50,16 +59,9 @@ public interface ActivityRepository extends JpaRepository<Activity, Long>, JpaSp
     @Query("SELECT DISTINCT TRIM(a.eventCategory) FROM Activity a WHERE a.eventCategory IS NOT NULL AND a.eventCategory != ''")
     List<String> findDistinctEventCategories();
 
-    @Query("SELECT new com.klu.Activity(a.id, a.state, a.stationName, a.activityType, a.eventCategory, a.participantCategory, a.eventDescription, a.schoolOrCollegeOrPanchayatName, a.eventLocation, a.eventDate, a.numberOfParticipants, a.remarks, a.orderIndex) " +
-           "FROM Activity a WHERE a.eventDate BETWEEN :startDate AND :endDate " +
-           "AND (:state IS NULL OR a.state = :state) " +
-           "AND (:activityType IS NULL OR a.activityType = :activityType) " +
-           "AND (:eventCategory IS NULL OR a.eventCategory = :eventCategory) " +
-           "ORDER BY a.orderIndex ASC")
-    List<Activity> findByDateRangeWithFilters(@Param("startDate") LocalDate startDate,
-                                             @Param("endDate") LocalDate endDate,
-                                             @Param("state") String state,
-                                             @Param("activityType") String activityType,
-                                             @Param("eventCategory") String eventCategory);
+    // Columns needed to (re)build ActivityBitmapIndex without hydrating entities
+    @Query("SELECT a.id, a.state, a.eventCategory, a.activityType, a.participantCategory, a.eventDate FROM Activity a")
+    List<Object[]> findIndexColumns();
+
     
 }
\ No newline at end of file
@@ -3,36 +3,59 @@ package com.klu;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
 
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface ActivityService {
     List<Activity> getAllActivities();
     Page<Activity> getAllActivities(String search, String state, String category, String dateRange, String sortBy, String sortDir, Pageable pageable);
+    List<Activity> getActivitiesAfter(String search, String state, String category, String dateRange, String sortBy, String sortDir, Activity last, int limit);
+    Page<ActivityGridRow> getActivityGrid(String search, String state, String category, String dateRange, String sortBy, String sortDir, Pageable pageable);
+    Map<String, Object> getActivityDetails(Long id);
+    Map<String, Object> getFilterCounts(String state, String category, String activityType, String dateRange);
     void save(Activity activity, MultipartFile[] files);
+    Activity addFiles(Long activityId, MultipartFile[] files);
     Activity getById(Long id);
     void deleteById(Long id);
     void deleteActivities(List<Long> ids);
     List<FileMetadata> getFilesByActivityId(Long activityId);
+    Map<Long, List<FileMetadata>> getFilesByActivityIds(List<Long> activityIds);
+    List<Activity> getActivitiesByIds(List<Long> ids);
     void deleteFile(Long fileId);
-    List<Activity> getActivitiesByStateAndEventCategory(String state, String eventCategory, String operator);
-    List<Activity> getActivitiesByDateRange(LocalDate startDate, LocalDate endDate);
-    void updateField(Long id, String field, Object value);
+    List<ActivityGridRow> getActivitiesByStateAndEventCategory(String state, String eventCategory, String operator);
+    Map<String, Object> getActivitiesByStateAndEventCategory(String state, String eventCategory, String operator, Pageable pageable);
+    List<ActivityGridRow> getActivitiesByDateRange(LocalDate startDate, LocalDate endDate);
+    Activity updateField(Long id, String field, Object value, Long expectedVersion);
+    Object validateField(String field, Object value);
+    Map<Long, Integer> updateFields(Map<Long, Map<String, Object>> valuesById, Map<Long, Long> expectedVersions);
     void bulkUpdate(List<Long> ids, Map<String, Object> updates);
+    Activity newActivity(Map<String, Object> values);
+    List<Activity> insertAll(List<Activity> activities);
     Map<String, Object> getDashboardStats(LocalDate startDate, LocalDate endDate);
     void reorderActivities(List<Map<String, Long>> orderList);
     Map<String, Object> performCustomCalculation(String column, String formula);
     Map<String, Object> getSummary();
+    Map<String, Object> getCacheStats();
+    Map<String, Object> getSingleFlightStats();
     long getTotalParticipants(String search, String state, String category, String dateRange);
     List<String> getDistinctStates();
     List<String> getDistinctActivityTypes();
     List<String> getDistinctEventCategories();
     Map<String, Object> performDynamicCalculation(List<Map<String, String>> aggregates, List<String> groupBy, List<Map<String, String>> conditions);
     Map<String, Object> getAiSuggestions();
+    Map<String, Object> getAiSuggestions(LocalDate startDate, LocalDate endDate);
+    Map<String, Object> getDailyActivitySeries(LocalDate startDate, LocalDate endDate);
+    Map<String, Object> getTimeSeries(LocalDate startDate, LocalDate endDate, String granularity, String seriesBy, String metric, int maxPoints);
     CompletableFuture<Map<String, Object>> getActivitiesByDateRangeWithFilters(LocalDate startDate, LocalDate endDate, String state, String activityType, String eventCategory, String filterOperator, List<Map<String, String>> conditions);
+    long streamActivitiesByDateRangeWithFilters(LocalDate startDate, LocalDate endDate, String state, String activityType, String eventCategory, String filterOperator, List<Map<String, String>> conditions, Consumer<ActivityGridRow> consumer);
+    Flux<ActivityGridRow> reactiveActivitiesByDateRangeWithFilters(LocalDate startDate, LocalDate endDate, String state, String activityType, String eventCategory, String filterOperator, List<Map<String, String>> conditions);
+    Flux<ActivityGridRow> reactiveActivitiesByStateAndEventCategory(String state, String eventCategory, String operator);
+    Flux<Map<String, Object>> reactiveDynamicCalculation(List<Map<String, String>> aggregates, List<String> groupBy, List<Map<String, String>> conditions);
     // new imp: Method for batch query execution
     CompletableFuture<List<Map<String, Object>>> executeBatchQueries(List<Map<String, String>> queries);
     
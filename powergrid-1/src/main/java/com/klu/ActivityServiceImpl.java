@@ -1,17 +1,31 @@
 package com.klu;
 
-import org.owasp.html.PolicyFactory;
-import org.owasp.html.Sanitizers;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.annotation.Timed;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.BeanWrapperImpl;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.caffeine.CaffeineCache;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import jakarta.persistence.Query;
 import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Path;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
 import jakarta.persistence.criteria.Selection;
@@ -23,18 +37,28 @@ import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import jakarta.persistence.EntityManager; // new updates
 import jakarta.persistence.criteria.CriteriaQuery; // new updates
 import jakarta.persistence.criteria.Expression;
 import java.util.concurrent.CompletableFuture;
 import org.springframework.scheduling.annotation.Async;
 @Service
+@Timed(value = "powergrid.service", description = "ActivityService method latency", histogram = true)
 public class ActivityServiceImpl implements ActivityService {
 
     @Autowired
@@ -46,7 +70,63 @@ public class ActivityServiceImpl implements ActivityService {
     @Autowired
     private FileStorageService fileStorageService;
 
-    private final PolicyFactory sanitizer = Sanitizers.FORMATTING.and(Sanitizers.BLOCKS);
+    @Autowired
+    private ActivityBitmapIndex activityBitmapIndex;
+
+    @Autowired
+    private ActivitySuggestionEngine activitySuggestionEngine;
+
+    @Autowired
+    private ActivityTimeSeries activityTimeSeries;
+
+    @Autowired
+    private ActivityQueryBuilder activityQueryBuilder;
+
+    @Autowired
+    private ActivityDataVersion activityDataVersion;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private SingleFlight singleFlight;
+
+    @Autowired
+    private SanitizationService sanitizationService;
+
+    @Autowired
+    private ActivityLocks activityLocks;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private AnalyticalQueryExecutor analyticalQueryExecutor;
+
+    // Rows per keyset page of the reactive endpoints
+    @Value("${powergrid.reactive.page-size:200}")
+    private int reactivePageSize;
+
+    // Most ids the bitmap path sends as one IN list; larger result sets are left to plain SQL
+    @Value("${powergrid.bitmap.max-id-list:1000}")
+    private int maxBitmapIdList;
+
+    @Autowired
+    private ReadReplicas readReplicas;
+
+    // How stale a replica may be for each read routed to one (see ReadReplicas)
+    @Value("${powergrid.replicas.max-staleness-ms.dashboard-stats:10000}")
+    private long dashboardStatsStalenessMs;
+
+    @Value("${powergrid.replicas.max-staleness-ms.dynamic-calculation:10000}")
+    private long dynamicCalculationStalenessMs;
+
+    @Value("${powergrid.replicas.max-staleness-ms.ai-suggestions:60000}")
+    private long aiSuggestionsStalenessMs;
+
+    private String sanitize(String value) {
+        return sanitizationService.sanitize(value);
+    }
     
     // new updates
     @Autowired
@@ -60,7 +140,103 @@ public class ActivityServiceImpl implements ActivityService {
     public Page<Activity> getAllActivities(String search, String state, String category, String dateRange, String sortBy, String sortDir, Pageable pageable) {
         Sort sort = Sort.by(sortDir.equalsIgnoreCase("asc") ? Sort.Direction.ASC : Sort.Direction.DESC, sortBy);
         Pageable sortedPageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort);
-        return activityRepository.findAll((root, query, cb) -> {
+        // Filter-only requests ordered by id are answered from the bitmap index; only the page is loaded
+        if (search.isEmpty() && "id".equals(sortBy) && activityBitmapIndex.isReady()) {
+            RoaringBitmap candidates = resolveFilters(state, category, "", dateRange);
+            List<Long> pageIds = activityBitmapIndex.page(candidates, sortedPageable.getOffset(),
+                    sortedPageable.getPageSize(), sortDir.equalsIgnoreCase("asc"));
+            List<Activity> content = new ArrayList<>(activityRepository.findAllById(pageIds));
+            content.sort(sortDir.equalsIgnoreCase("asc")
+                    ? Comparator.comparing(Activity::getId)
+                    : Comparator.comparing(Activity::getId).reversed());
+            return new PageImpl<>(content, sortedPageable, candidates.getLongCardinality());
+        }
+        return activityRepository.findAll(gridFilter(search, state, category, dateRange), sortedPageable);
+    }
+
+    // Next limit rows after last (null for the first) in (sortBy, id) order: keyset paging, so rows
+    // written or deleted between calls never shift a later page. Same filters and bitmap shortcut
+    // as getAllActivities.
+    @Override
+    public List<Activity> getActivitiesAfter(String search, String state, String category, String dateRange, String sortBy, String sortDir, Activity last, int limit) {
+        boolean ascending = sortDir.equalsIgnoreCase("asc");
+        if (search.isEmpty() && "id".equals(sortBy) && activityBitmapIndex.isReady()) {
+            RoaringBitmap candidates = resolveFilters(state, category, "", dateRange);
+            if (last != null) {
+                if (ascending) {
+                    candidates.remove(0L, last.getId() + 1);
+                } else {
+                    candidates.remove(last.getId(), 0x100000000L);
+                }
+            }
+            List<Activity> content = new ArrayList<>(activityRepository.findAllById(activityBitmapIndex.page(candidates, 0, limit, ascending)));
+            content.sort(ascending ? Comparator.comparing(Activity::getId) : Comparator.comparing(Activity::getId).reversed());
+            return content;
+        }
+        Sort.Direction direction = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+        Sort sort = "id".equals(sortBy) ? Sort.by(direction, "id") : Sort.by(direction, sortBy).and(Sort.by(direction, "id"));
+        Specification<Activity> filter = Specification.where(gridFilter(search, state, category, dateRange));
+        if (last != null) {
+            filter = filter.and(after(sortBy, ascending, last));
+        }
+        return activityRepository.findBy(filter, query -> query.sortBy(sort).limit(limit).all());
+    }
+
+    // Rows after last in (sortBy, id) order. NULL sorts lowest, as in MySQL: first ascending, last descending.
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Specification<Activity> after(String sortBy, boolean ascending, Activity last) {
+        Long lastId = last.getId();
+        Comparable lastKey = (Comparable) new BeanWrapperImpl(last).getPropertyValue(sortBy);
+        return (root, query, cb) -> {
+            Path<Long> id = root.get("id");
+            Predicate laterId = ascending ? cb.greaterThan(id, lastId) : cb.lessThan(id, lastId);
+            if ("id".equals(sortBy)) {
+                return laterId;
+            }
+            Path<Comparable> key = root.get(sortBy);
+            if (lastKey == null) {
+                Predicate nullKeyLaterId = cb.and(cb.isNull(key), laterId);
+                return ascending ? cb.or(cb.isNotNull(key), nullKeyLaterId) : nullKeyLaterId;
+            }
+            Predicate laterKey = ascending ? cb.greaterThan(key, lastKey) : cb.or(cb.lessThan(key, lastKey), cb.isNull(key));
+            return cb.or(laterKey, cb.and(cb.equal(key, lastKey), laterId));
+        };
+    }
+
+    // Same filters and bitmap shortcut as getAllActivities, selecting grid projections instead of entities
+    @Override
+    public Page<ActivityGridRow> getActivityGrid(String search, String state, String category, String dateRange, String sortBy, String sortDir, Pageable pageable) {
+        Sort sort = Sort.by(sortDir.equalsIgnoreCase("asc") ? Sort.Direction.ASC : Sort.Direction.DESC, sortBy);
+        Pageable sortedPageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort);
+        if (search.isEmpty() && "id".equals(sortBy) && activityBitmapIndex.isReady()) {
+            RoaringBitmap candidates = resolveFilters(state, category, "", dateRange);
+            List<ActivityGridRow> content = activityQueryBuilder.findGridRowsByIds(activityBitmapIndex.page(candidates,
+                    sortedPageable.getOffset(), sortedPageable.getPageSize(), sortDir.equalsIgnoreCase("asc")));
+            if (!sortDir.equalsIgnoreCase("asc")) {
+                Collections.reverse(content);
+            }
+            return new PageImpl<>(content, sortedPageable, candidates.getLongCardinality());
+        }
+        return activityQueryBuilder.findGridPage(gridFilter(search, state, category, dateRange), sortedPageable);
+    }
+
+    // Full eventDescription and remarks of one activity, or null if it does not exist
+    @Override
+    public Map<String, Object> getActivityDetails(Long id) {
+        List<Object[]> rows = activityRepository.findDetails(id);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> details = new HashMap<>();
+        details.put("id", id);
+        details.put("eventDescription", rows.get(0)[0]);
+        details.put("remarks", rows.get(0)[1]);
+        return details;
+    }
+
+    // Search and filter parameters of the activity grid
+    private Specification<Activity> gridFilter(String search, String state, String category, String dateRange) {
+        return (root, query, cb) -> {
             List<Predicate> predicates = new ArrayList<>();
             if (!search.isEmpty()) {
                 String searchLower = "%" + search.toLowerCase() + "%";
@@ -89,17 +265,61 @@ public class ActivityServiceImpl implements ActivityService {
                 }
             }
             return cb.and(predicates.toArray(new Predicate[0]));
-        }, sortedPageable);
+        };
+    }
+
+    @Override
+    public Map<String, Object> getFilterCounts(String state, String category, String activityType, String dateRange) {
+        if (!activityBitmapIndex.isReady()) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("errorMessage", "Filter index is still loading, please retry shortly.");
+            return response;
+        }
+        return activityBitmapIndex.facetCounts(resolveFilters(state, category, activityType, dateRange));
+    }
+
+    // Resolves the comma-separated grid filters against the bitmap index (same parsing as the Criteria path)
+    private RoaringBitmap resolveFilters(String state, String category, String activityType, String dateRange) {
+        LocalDate start = null;
+        LocalDate end = null;
+        if (!dateRange.isEmpty()) {
+            String[] dates = dateRange.split(" to ");
+            if (dates.length == 2) {
+                try {
+                    start = LocalDate.parse(dates[0]);
+                    end = LocalDate.parse(dates[1]);
+                } catch (Exception e) {
+                    System.err.println("Invalid date range format: " + dateRange);
+                    start = null;
+                    end = null;
+                }
+            }
+        }
+        return activityBitmapIndex.resolve(
+                state.isEmpty() ? null : Arrays.asList(state.split(",")),
+                category.isEmpty() ? null : Arrays.asList(category.split(",")),
+                activityType, start, end);
     }
 
     @Override
     public void save(Activity activity, MultipartFile[] files) {
+        if (activity != null && activity.getId() != null) {
+            activityLocks.withLock(activity.getId(), () -> {
+                saveUnlocked(activity, files);
+                return null;
+            });
+        } else {
+            saveUnlocked(activity, files);
+        }
+    }
+
+    private void saveUnlocked(Activity activity, MultipartFile[] files) {
         if (Objects.nonNull(activity)) {
             if (activity.getEventDescription() != null) {
-                activity.setEventDescription(sanitizer.sanitize(activity.getEventDescription()));
+                activity.setEventDescription(sanitize(activity.getEventDescription()));
             }
             if (activity.getRemarks() != null) {
-                activity.setRemarks(sanitizer.sanitize(activity.getRemarks()));
+                activity.setRemarks(sanitize(activity.getRemarks()));
             }
             if (activity.getNumberOfParticipants() < 1 || activity.getNumberOfParticipants() > 1000) {
                 throw new IllegalArgumentException("Number of participants must be between 1 and 1000");
@@ -110,38 +330,158 @@ public class ActivityServiceImpl implements ActivityService {
                 (activity.getEventDate().isBefore(startDate) || activity.getEventDate().isAfter(endDate))) {
                 throw new IllegalArgumentException("Event date must be between 2024-10-28 and 2024-11-03");
             }
-            Activity savedActivity = activityRepository.save(activity);
+            Activity savedActivity = transactionTemplate.execute(status -> {
+                // Loaded before the merge (which would load it anyway) for the version the row has now;
+                // merge copies whatever version the form posted onto it
+                Activity current = activity.getId() != null ? entityManager.find(Activity.class, activity.getId()) : null;
+                long version = current != null ? current.getVersion() : 0;
+                Activity saved = activityRepository.save(activity);
+                if (current != null) {
+                    saved.setVersion(version);
+                    bumpVersions(List.of(saved));
+                    activity.setVersion(saved.getVersion());
+                }
+                activityBitmapIndex.index(saved);
+                return saved;
+            });
+            try {
+                storeFiles(savedActivity, files);
+            } finally {
+                // After the files, so no reader caches the new version with the old file list
+                activityDataVersion.bump();
+            }
+        }
+    }
 
-            if (files != null && files.length > 0) {
-                try {
-                    String[] filePaths = fileStorageService.storeFiles(files, savedActivity.getId());
-                    for (int i = 0; i < files.length; i++) {
-                        MultipartFile file = files[i];
-                        if (file != null && !file.isEmpty()) {
-                            FileMetadata fileMetadata = new FileMetadata(
-                                file.getOriginalFilename(),
-                                filePaths[i],
-                                file.getContentType(),
-                                file.getSize(),
-                                savedActivity
-                            );
-                            fileMetadataRepository.save(fileMetadata);
-                        }
+    // Attaches files without rewriting the activity row, which the caller may hold a stale copy of
+    @Override
+    public Activity addFiles(Long activityId, MultipartFile[] files) {
+        return activityLocks.withLock(activityId, () -> {
+            Activity activity = getById(activityId);
+            storeFiles(activity, files);
+            activityDataVersion.bump();
+            return activity;
+        });
+    }
+
+    private void storeFiles(Activity activity, MultipartFile[] files) {
+        if (files != null && files.length > 0) {
+            try {
+                String[] filePaths = fileStorageService.storeFiles(files, activity.getId());
+                for (int i = 0; i < files.length; i++) {
+                    MultipartFile file = files[i];
+                    if (file != null && !file.isEmpty()) {
+                        FileMetadata fileMetadata = new FileMetadata(
+                            file.getOriginalFilename(),
+                            filePaths[i],
+                            file.getContentType(),
+                            file.getSize(),
+                            activity
+                        );
+                        fileMetadataRepository.save(fileMetadata);
                     }
-                } catch (IOException e) {
-                    throw new RuntimeException("Failed to store files: " + e.getMessage());
                 }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to store files: " + e.getMessage());
             }
         }
     }
 
     @Override
-    public void updateField(Long id, String field, Object value) {
-        Optional<Activity> optionalActivity = activityRepository.findById(id);
-        if (!optionalActivity.isPresent()) {
+    public Activity updateField(Long id, String field, Object value, Long expectedVersion) {
+        Object validated = validateField(field, value);
+        return activityLocks.withLock(id, () -> transactionTemplate.execute(status ->
+                updateFieldUnlocked(id, field, validated, expectedVersion)));
+    }
+
+    private Activity updateFieldUnlocked(Long id, String field, Object validated, Long expectedVersion) {
+        if (updateColumns(id, Map.of(field, validated), expectedVersion) == 0) {
+            if (expectedVersion != null && activityRepository.existsById(id)) {
+                throw new OptimisticLockingFailureException("Activity " + id + " was changed by someone else; reload and try again");
+            }
             throw new IllegalArgumentException("Activity not found with id: " + id);
         }
-        Activity activity = optionalActivity.get();
+        evict(List.of(id));
+        Activity activity = activityRepository.findById(id).orElseThrow();
+        activityBitmapIndex.index(activity);
+        activityDataVersion.bump();
+        return activity;
+    }
+
+    @Override
+    public Map<Long, Integer> updateFields(Map<Long, Map<String, Object>> valuesById, Map<Long, Long> expectedVersions) {
+        return activityLocks.withLocks(valuesById.keySet(), () -> transactionTemplate.execute(status ->
+                updateFieldsUnlocked(valuesById, expectedVersions)));
+    }
+
+    private Map<Long, Integer> updateFieldsUnlocked(Map<Long, Map<String, Object>> valuesById, Map<Long, Long> expectedVersions) {
+        // Rows changed per id: 0 means the row was stale or deleted and nothing was written
+        Map<Long, Integer> rowCounts = new LinkedHashMap<>();
+        List<Long> updated = new ArrayList<>();
+        for (Map.Entry<Long, Map<String, Object>> entry : valuesById.entrySet()) {
+            int rows = updateColumns(entry.getKey(), entry.getValue(), expectedVersions.get(entry.getKey()));
+            rowCounts.put(entry.getKey(), rows);
+            if (rows > 0) {
+                updated.add(entry.getKey());
+            }
+        }
+        if (!updated.isEmpty()) {
+            evict(updated);
+            activityBitmapIndex.indexAll(activityRepository.findAllById(updated));
+            activityDataVersion.bump();
+        }
+        return rowCounts;
+    }
+
+    // One partial UPDATE of the given (already validated) columns that also bumps the row version;
+    // returns the number of rows changed. Attribute names are interpolated, so they must have come
+    // through validateField.
+    private int updateColumns(Long id, Map<String, Object> values, Long expectedVersion) {
+        StringBuilder jpql = new StringBuilder("update Activity a set ");
+        int i = 0;
+        for (String field : values.keySet()) {
+            jpql.append("a.").append(field).append(" = :v").append(i++).append(", ");
+        }
+        jpql.append("a.version = a.version + 1 where a.id = :id");
+        if (expectedVersion != null) {
+            jpql.append(" and a.version = :version");
+        }
+        Query update = entityManager.createQuery(jpql.toString()).setParameter("id", id);
+        i = 0;
+        for (Object value : values.values()) {
+            update.setParameter("v" + i++, value);
+        }
+        if (expectedVersion != null) {
+            update.setParameter("version", expectedVersion);
+        }
+        return update.executeUpdate();
+    }
+
+    // The JPQL UPDATE bypasses the persistence context, which may be the request's (open-in-view) one
+    // and already hold these rows with their old values. Detaching them (getReference issues no SELECT)
+    // makes the next read load the rows as updated.
+    private void evict(Collection<Long> ids) {
+        for (Long id : ids) {
+            entityManager.detach(entityManager.getReference(Activity.class, id));
+        }
+    }
+
+    // Whole-row saves cannot write the version column through the entity, so they bump it here in
+    // their transaction; an inline edit built on a copy from before the save then fails its check.
+    // The managed instances are bumped as well, so rows read back in this request carry the new version.
+    private void bumpVersions(List<Activity> activities) {
+        entityManager.flush();
+        entityManager.createQuery("update Activity a set a.version = a.version + 1 where a.id in :ids")
+                .setParameter("ids", activities.stream().map(Activity::getId).collect(Collectors.toList()))
+                .executeUpdate();
+        for (Activity activity : activities) {
+            activity.setVersion(activity.getVersion() + 1);
+        }
+    }
+
+    // Validated, sanitized value for an inline edit of field; throws IllegalArgumentException on bad input
+    @Override
+    public Object validateField(String field, Object value) {
         LocalDate startDate = LocalDate.of(2024, 10, 28);
         LocalDate endDate = LocalDate.of(2024, 11, 3);
 
@@ -151,57 +491,49 @@ public class ActivityServiceImpl implements ActivityService {
                 if (state == null || state.trim().isEmpty()) {
                     throw new IllegalArgumentException("State cannot be empty");
                 }
-                activity.setState(sanitizer.sanitize(state));
-                break;
+                return sanitize(state);
             case "stationName":
                 String stationName = (String) value;
                 if (stationName == null || stationName.trim().isEmpty()) {
                     throw new IllegalArgumentException("Station Name cannot be empty");
                 }
-                activity.setStationName(sanitizer.sanitize(stationName));
-                break;
+                return sanitize(stationName);
             case "activityType":
                 String activityType = (String) value;
                 if (activityType == null || activityType.trim().isEmpty()) {
                     throw new IllegalArgumentException("Activity Type cannot be empty");
                 }
-                activity.setActivityType(sanitizer.sanitize(activityType));
-                break;
+                return sanitize(activityType);
             case "eventCategory":
                 String eventCategory = (String) value;
                 if (eventCategory == null || eventCategory.trim().isEmpty()) {
                     throw new IllegalArgumentException("Event Category cannot be empty");
                 }
-                activity.setEventCategory(sanitizer.sanitize(eventCategory));
-                break;
+                return sanitize(eventCategory);
             case "participantCategory":
                 String participantCategory = (String) value;
                 if (participantCategory == null || participantCategory.trim().isEmpty()) {
                     throw new IllegalArgumentException("Participant Category cannot be empty");
                 }
-                activity.setParticipantCategory(sanitizer.sanitize(participantCategory));
-                break;
+                return sanitize(participantCategory);
             case "eventDescription":
                 String eventDescription = (String) value;
                 if (eventDescription == null || eventDescription.trim().isEmpty()) {
                     throw new IllegalArgumentException("Event Description cannot be empty");
                 }
-                activity.setEventDescription(sanitizer.sanitize(eventDescription));
-                break;
+                return sanitize(eventDescription);
             case "schoolOrCollegeOrPanchayatName":
                 String schoolOrCollegeOrPanchayatName = (String) value;
                 if (schoolOrCollegeOrPanchayatName == null || schoolOrCollegeOrPanchayatName.trim().isEmpty()) {
                     throw new IllegalArgumentException("School/College/Panchayat Name cannot be empty");
                 }
-                activity.setSchoolOrCollegeOrPanchayatName(sanitizer.sanitize(schoolOrCollegeOrPanchayatName));
-                break;
+                return sanitize(schoolOrCollegeOrPanchayatName);
             case "eventLocation":
                 String eventLocation = (String) value;
                 if (eventLocation == null || eventLocation.trim().isEmpty()) {
                     throw new IllegalArgumentException("Event Location cannot be empty");
                 }
-                activity.setEventLocation(sanitizer.sanitize(eventLocation));
-                break;
+                return sanitize(eventLocation);
             case "eventDate":
                 String eventDateStr = value instanceof String ? (String) value : value.toString();
                 try {
@@ -209,11 +541,10 @@ public class ActivityServiceImpl implements ActivityService {
                     if (eventDate.isBefore(startDate) || eventDate.isAfter(endDate)) {
                         throw new IllegalArgumentException("Event date must be between 2024-10-28 and 2024-11-03");
                     }
-                    activity.setEventDate(eventDate);
+                    return eventDate;
                 } catch (DateTimeParseException e) {
                     throw new IllegalArgumentException("Invalid date format for eventDate: " + eventDateStr);
                 }
-                break;
             case "numberOfParticipants":
                 int numberOfParticipants;
                 try {
@@ -224,19 +555,16 @@ public class ActivityServiceImpl implements ActivityService {
                 if (numberOfParticipants < 1 || numberOfParticipants > 1000) {
                     throw new IllegalArgumentException("Number of participants must be between 1 and 1000");
                 }
-                activity.setNumberOfParticipants(numberOfParticipants);
-                break;
+                return numberOfParticipants;
             case "remarks":
                 String remarks = (String) value;
                 if (remarks == null || remarks.trim().isEmpty()) {
                     throw new IllegalArgumentException("Remarks cannot be empty");
                 }
-                activity.setRemarks(sanitizer.sanitize(remarks));
-                break;
+                return sanitize(remarks);
             default:
                 throw new IllegalArgumentException("Invalid field: " + field);
         }
-        activityRepository.save(activity);
     }
 
     @Override
@@ -244,132 +572,232 @@ public class ActivityServiceImpl implements ActivityService {
         if (ids == null || ids.isEmpty()) {
             throw new IllegalArgumentException("No activities selected for update");
         }
-        List<Activity> activities = activityRepository.findAllById(ids);
-        if (activities.size() != ids.size()) {
-            throw new IllegalArgumentException("Some activities could not be found");
+        activityLocks.withLocks(ids, () -> transactionTemplate.execute(status -> {
+            List<Activity> activities = new ArrayList<>(activityRepository.findAllById(ids));
+            if (activities.size() != ids.size()) {
+                throw new IllegalArgumentException("Some activities could not be found");
+            }
+
+            for (Activity activity : activities) {
+                applyUpdates(activity, updates);
+            }
+            // Rows are written in id order, so concurrent bulk updates (here or on another instance)
+            // take MySQL row locks in the same order and cannot deadlock
+            activities.sort(Comparator.comparing(Activity::getId));
+            activityBitmapIndex.indexAll(activityRepository.saveAll(activities));
+            bumpVersions(activities);
+            activityDataVersion.bump();
+            return null;
+        }));
+    }
+
+    // Fields an activity cannot be created without, with their labels for error messages
+    private static final Map<String, String> REQUIRED_FIELDS = Map.of(
+            "state", "State",
+            "eventCategory", "Event Category",
+            "eventDate", "Event Date",
+            "numberOfParticipants", "Number of Participants");
+
+    // Activity column sizes: the @Column lengths, else the JPA default
+    private static final int DEFAULT_COLUMN_LENGTH = 255;
+    private static final Map<String, Integer> COLUMN_LENGTHS = Map.of("eventDescription", 1000, "remarks", 1000);
+
+    // Unsaved activity built from field values, validated and sanitized as in a bulk update;
+    // throws IllegalArgumentException if a required field is missing or a value is invalid
+    @Override
+    public Activity newActivity(Map<String, Object> values) {
+        REQUIRED_FIELDS.forEach((field, label) -> {
+            if (values.get(field) == null) {
+                throw new IllegalArgumentException(label + " is required");
+            }
+        });
+        Activity activity = new Activity();
+        applyUpdates(activity, values);
+        // Checked after sanitizing, which can lengthen a value; an over-long value would otherwise
+        // fail the whole insert batch instead of just this row
+        checkLength("state", activity.getState());
+        checkLength("stationName", activity.getStationName());
+        checkLength("activityType", activity.getActivityType());
+        checkLength("eventCategory", activity.getEventCategory());
+        checkLength("participantCategory", activity.getParticipantCategory());
+        checkLength("eventDescription", activity.getEventDescription());
+        checkLength("schoolOrCollegeOrPanchayatName", activity.getSchoolOrCollegeOrPanchayatName());
+        checkLength("eventLocation", activity.getEventLocation());
+        checkLength("remarks", activity.getRemarks());
+        return activity;
+    }
+
+    private static void checkLength(String field, String value) {
+        int maxLength = COLUMN_LENGTHS.getOrDefault(field, DEFAULT_COLUMN_LENGTH);
+        if (value != null && value.length() > maxLength) {
+            throw new IllegalArgumentException(field + " must be at most " + maxLength + " characters");
         }
+    }
+
+    // Inserts new activities in one transaction. The ids come from the pooled table generator, so
+    // Hibernate can send the INSERTs in JDBC batches of hibernate.jdbc.batch_size; nobody else can
+    // hold the new ids yet, so no activity locks are taken. Only the inserted entities are detached
+    // afterwards: the persistence context may be the request's (open-in-view) and hold other entities.
+    @Override
+    public List<Activity> insertAll(List<Activity> activities) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Activity activity : activities) {
+                entityManager.persist(activity);
+            }
+            entityManager.flush();
+            activities.forEach(entityManager::detach);
+        });
+        activityBitmapIndex.indexAll(activities);
+        activityDataVersion.bump();
+        return activities;
+    }
 
+    // Validates and sanitizes one bulk-update payload onto activity; throws IllegalArgumentException on bad input
+    void applyUpdates(Activity activity, Map<String, Object> updates) {
         LocalDate startDate = LocalDate.of(2024, 10, 28);
         LocalDate endDate = LocalDate.of(2024, 11, 3);
-        for (Activity activity : activities) {
-            if (updates.containsKey("state") && updates.get("state") != null) {
-                String state = (String) updates.get("state");
-                if (state.trim().isEmpty()) {
-                    throw new IllegalArgumentException("State cannot be empty if provided");
-                }
-                activity.setState(sanitizer.sanitize(state));
+        if (updates.containsKey("state") && updates.get("state") != null) {
+            String state = (String) updates.get("state");
+            if (state.trim().isEmpty()) {
+                throw new IllegalArgumentException("State cannot be empty if provided");
             }
-            if (updates.containsKey("stationName") && updates.get("stationName") != null) {
-                String stationName = (String) updates.get("stationName");
-                if (stationName.trim().isEmpty()) {
-                    throw new IllegalArgumentException("Station Name cannot be empty if provided");
-                }
-                activity.setStationName(sanitizer.sanitize(stationName));
+            activity.setState(sanitize(state));
+        }
+        if (updates.containsKey("stationName") && updates.get("stationName") != null) {
+            String stationName = (String) updates.get("stationName");
+            if (stationName.trim().isEmpty()) {
+                throw new IllegalArgumentException("Station Name cannot be empty if provided");
             }
-            if (updates.containsKey("activityType") && updates.get("activityType") != null) {
-                String activityType = (String) updates.get("activityType");
-                if (activityType.trim().isEmpty()) {
-                    throw new IllegalArgumentException("Activity Type cannot be empty if provided");
-                }
-                activity.setActivityType(sanitizer.sanitize(activityType));
+            activity.setStationName(sanitize(stationName));
+        }
+        if (updates.containsKey("activityType") && updates.get("activityType") != null) {
+            String activityType = (String) updates.get("activityType");
+            if (activityType.trim().isEmpty()) {
+                throw new IllegalArgumentException("Activity Type cannot be empty if provided");
             }
-            if (updates.containsKey("eventCategory") && updates.get("eventCategory") != null) {
-                String eventCategory = (String) updates.get("eventCategory");
-                if (eventCategory.trim().isEmpty()) {
-                    throw new IllegalArgumentException("Event Category cannot be empty if provided");
-                }
-                activity.setEventCategory(sanitizer.sanitize(eventCategory));
+            activity.setActivityType(sanitize(activityType));
+        }
+        if (updates.containsKey("eventCategory") && updates.get("eventCategory") != null) {
+            String eventCategory = (String) updates.get("eventCategory");
+            if (eventCategory.trim().isEmpty()) {
+                throw new IllegalArgumentException("Event Category cannot be empty if provided");
             }
-            if (updates.containsKey("participantCategory") && updates.get("participantCategory") != null) {
-                String participantCategory = (String) updates.get("participantCategory");
-                if (participantCategory.trim().isEmpty()) {
-                    throw new IllegalArgumentException("Participant Category cannot be empty if provided");
-                }
-                activity.setParticipantCategory(sanitizer.sanitize(participantCategory));
+            activity.setEventCategory(sanitize(eventCategory));
+        }
+        if (updates.containsKey("participantCategory") && updates.get("participantCategory") != null) {
+            String participantCategory = (String) updates.get("participantCategory");
+            if (participantCategory.trim().isEmpty()) {
+                throw new IllegalArgumentException("Participant Category cannot be empty if provided");
             }
-            if (updates.containsKey("eventDescription") && updates.get("eventDescription") != null) {
-                String eventDescription = (String) updates.get("eventDescription");
-                if (eventDescription.trim().isEmpty()) {
-                    throw new IllegalArgumentException("Event Description cannot be empty if provided");
-                }
-                activity.setEventDescription(sanitizer.sanitize(eventDescription));
+            activity.setParticipantCategory(sanitize(participantCategory));
+        }
+        if (updates.containsKey("eventDescription") && updates.get("eventDescription") != null) {
+            String eventDescription = (String) updates.get("eventDescription");
+            if (eventDescription.trim().isEmpty()) {
+                throw new IllegalArgumentException("Event Description cannot be empty if provided");
             }
-            if (updates.containsKey("schoolOrCollegeOrPanchayatName") && updates.get("schoolOrCollegeOrPanchayatName") != null) {
-                String schoolOrCollegeOrPanchayatName = (String) updates.get("schoolOrCollegeOrPanchayatName");
-                if (schoolOrCollegeOrPanchayatName.trim().isEmpty()) {
-                    throw new IllegalArgumentException("School/College/Panchayat Name cannot be empty if provided");
-                }
-                activity.setSchoolOrCollegeOrPanchayatName(sanitizer.sanitize(schoolOrCollegeOrPanchayatName));
+            activity.setEventDescription(sanitize(eventDescription));
+        }
+        if (updates.containsKey("schoolOrCollegeOrPanchayatName") && updates.get("schoolOrCollegeOrPanchayatName") != null) {
+            String schoolOrCollegeOrPanchayatName = (String) updates.get("schoolOrCollegeOrPanchayatName");
+            if (schoolOrCollegeOrPanchayatName.trim().isEmpty()) {
+                throw new IllegalArgumentException("School/College/Panchayat Name cannot be empty if provided");
             }
-            if (updates.containsKey("eventLocation") && updates.get("eventLocation") != null) {
-                String eventLocation = (String) updates.get("eventLocation");
-                if (eventLocation.trim().isEmpty()) {
-                    throw new IllegalArgumentException("Event Location cannot be empty if provided");
-                }
-                activity.setEventLocation(sanitizer.sanitize(eventLocation));
+            activity.setSchoolOrCollegeOrPanchayatName(sanitize(schoolOrCollegeOrPanchayatName));
+        }
+        if (updates.containsKey("eventLocation") && updates.get("eventLocation") != null) {
+            String eventLocation = (String) updates.get("eventLocation");
+            if (eventLocation.trim().isEmpty()) {
+                throw new IllegalArgumentException("Event Location cannot be empty if provided");
             }
-            if (updates.containsKey("eventDate") && updates.get("eventDate") != null) {
-                String eventDateStr = updates.get("eventDate") instanceof String ? (String) updates.get("eventDate") : updates.get("eventDate").toString();
-                try {
-                    LocalDate eventDate = LocalDate.parse(eventDateStr);
-                    if (eventDate.isBefore(startDate) || eventDate.isAfter(endDate)) {
-                        throw new IllegalArgumentException("Event date must be between 2024-10-28 and 2024-11-03");
-                    }
-                    activity.setEventDate(eventDate);
-                } catch (DateTimeParseException e) {
-                    throw new IllegalArgumentException("Invalid date format for eventDate: " + eventDateStr);
+            activity.setEventLocation(sanitize(eventLocation));
+        }
+        if (updates.containsKey("eventDate") && updates.get("eventDate") != null) {
+            String eventDateStr = updates.get("eventDate") instanceof String ? (String) updates.get("eventDate") : updates.get("eventDate").toString();
+            try {
+                LocalDate eventDate = LocalDate.parse(eventDateStr);
+                if (eventDate.isBefore(startDate) || eventDate.isAfter(endDate)) {
+                    throw new IllegalArgumentException("Event date must be between 2024-10-28 and 2024-11-03");
                 }
+                activity.setEventDate(eventDate);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid date format for eventDate: " + eventDateStr);
             }
-            if (updates.containsKey("numberOfParticipants") && updates.get("numberOfParticipants") != null) {
-                int numberOfParticipants = updates.get("numberOfParticipants") instanceof Integer
+        }
+        if (updates.containsKey("numberOfParticipants") && updates.get("numberOfParticipants") != null) {
+            int numberOfParticipants;
+            try {
+                numberOfParticipants = updates.get("numberOfParticipants") instanceof Integer
                     ? (Integer) updates.get("numberOfParticipants")
                     : Integer.parseInt(updates.get("numberOfParticipants").toString());
-                if (numberOfParticipants < 1 || numberOfParticipants > 1000) {
-                    throw new IllegalArgumentException("Number of participants must be between 1 and 1000");
-                }
-                activity.setNumberOfParticipants(numberOfParticipants);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Number of participants must be a valid number");
             }
-            if (updates.containsKey("remarks") && updates.get("remarks") != null) {
-                String remarks = (String) updates.get("remarks");
-                if (remarks.trim().isEmpty()) {
-                    throw new IllegalArgumentException("Remarks cannot be empty if provided");
-                }
-                activity.setRemarks(sanitizer.sanitize(remarks));
+            if (numberOfParticipants < 1 || numberOfParticipants > 1000) {
+                throw new IllegalArgumentException("Number of participants must be between 1 and 1000");
             }
+            activity.setNumberOfParticipants(numberOfParticipants);
+        }
+        if (updates.containsKey("remarks") && updates.get("remarks") != null) {
+            String remarks = (String) updates.get("remarks");
+            if (remarks.trim().isEmpty()) {
+                throw new IllegalArgumentException("Remarks cannot be empty if provided");
+            }
+            activity.setRemarks(sanitize(remarks));
         }
-        activityRepository.saveAll(activities);
     }
     @Override
+    @Cacheable(cacheNames = "dashboardStats", key = "@activityDataVersion.current() + ':' + #startDate + ':' + #endDate")
     public Map<String, Object> getDashboardStats(LocalDate startDate, LocalDate endDate) {
+        // Concurrent cache misses (e.g. everyone opening /activity at shift start) share one computation
+        return singleFlight.execute("dashboardStats", Arrays.asList(activityDataVersion.current(), startDate, endDate),
+                () -> unmodifiable(readReplicas.readCurrent(dashboardStatsStalenessMs, () -> computeDashboardStats(startDate, endDate))));
+    }
+
+    // Cached and single-flight results are one instance shared by every caller, so they are handed out read-only
+    @SuppressWarnings("unchecked")
+    private static <T> T unmodifiable(T value) {
+        if (value instanceof Map<?, ?> map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            map.forEach((key, item) -> copy.put(key, unmodifiable(item)));
+            return (T) Collections.unmodifiableMap(copy);
+        }
+        if (value instanceof List<?> list) {
+            List<Object> copy = new ArrayList<>(list.size());
+            list.forEach(item -> copy.add(unmodifiable(item)));
+            return (T) Collections.unmodifiableList(copy);
+        }
+        return value;
+    }
+
+    private Map<String, Object> computeDashboardStats(LocalDate startDate, LocalDate endDate) {
         Map<String, Object> stats = new HashMap<>();
         
         // Initialize counts
-        Map<String, Long> dateCounts = new HashMap<>();
-        Map<String, Long> participantCounts = new HashMap<>();
+        Map<String, Long> dateCounts = new TreeMap<>();
+        Map<String, Long> participantCounts = new TreeMap<>();
         for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
             dateCounts.put(date.toString(), 0L);
             participantCounts.put(date.toString(), 0L);
         }
 
-        // Fetch event counts per date
-        List<Object[]> eventCounts = activityRepository.countByDate(startDate, endDate);
-        for (Object[] result : eventCounts) {
+        // Event counts and participant sums per date in one aggregate; the totals are rolled up from it
+        long totalActivities = 0;
+        Long totalParticipants = null;
+        for (Object[] result : activityRepository.statsByDate(startDate, endDate)) {
             LocalDate date = (LocalDate) result[0];
             Long count = (Long) result[1];
+            Long participants = (Long) result[2];
             dateCounts.put(date.toString(), count);
-        }
-
-        // Fetch activities to compute participant counts
-        List<Activity> activities = activityRepository.findByDateRange(startDate, endDate);
-        for (Activity activity : activities) {
-            String dateStr = activity.getEventDate().toString();
-            participantCounts.compute(dateStr, (k, v) -> v + activity.getNumberOfParticipants());
+            participantCounts.put(date.toString(), participants != null ? participants : 0L);
+            totalActivities += count;
+            if (participants != null) {
+                totalParticipants = (totalParticipants != null ? totalParticipants : 0L) + participants;
+            }
         }
 
         // Calculate statistics
-        Long totalParticipants = activityRepository.sumParticipants(startDate, endDate);
-        Long totalActivities = activityRepository.countActivities(startDate, endDate);
-        Double avgParticipants = (totalActivities != null && totalActivities > 0) 
+        Double avgParticipants = (totalActivities > 0 && totalParticipants != null) 
             ? totalParticipants.doubleValue() / totalActivities 
             : 0.0;
 
@@ -389,6 +817,7 @@ public class ActivityServiceImpl implements ActivityService {
         return stats;
     }
     @Override
+    @Cacheable(cacheNames = "distinctStates", key = "@activityDataVersion.current()")
     public List<String> getDistinctStates() {
         CriteriaBuilder cb = entityManager.getCriteriaBuilder();
         CriteriaQuery<String> query = cb.createQuery(String.class);
@@ -399,10 +828,11 @@ public class ActivityServiceImpl implements ActivityService {
                 cb.notEqual(root.get("state"), "")
             )
         );
-        return entityManager.createQuery(query).getResultList();
+        return unmodifiable(entityManager.createQuery(query).getResultList());
     }
 
     @Override
+    @Cacheable(cacheNames = "distinctActivityTypes", key = "@activityDataVersion.current()")
     public List<String> getDistinctActivityTypes() {
         CriteriaBuilder cb = entityManager.getCriteriaBuilder();
         CriteriaQuery<String> query = cb.createQuery(String.class);
@@ -413,10 +843,11 @@ public class ActivityServiceImpl implements ActivityService {
                 cb.notEqual(root.get("activityType"), "")
             )
         );
-        return entityManager.createQuery(query).getResultList();
+        return unmodifiable(entityManager.createQuery(query).getResultList());
     }
 
     @Override
+    @Cacheable(cacheNames = "distinctEventCategories", key = "@activityDataVersion.current()")
     public List<String> getDistinctEventCategories() {
         CriteriaBuilder cb = entityManager.getCriteriaBuilder();
         CriteriaQuery<String> query = cb.createQuery(String.class);
@@ -427,7 +858,7 @@ public class ActivityServiceImpl implements ActivityService {
                 cb.notEqual(root.get("eventCategory"), "")
             )
         );
-        return entityManager.createQuery(query).getResultList();
+        return unmodifiable(entityManager.createQuery(query).getResultList());
     }
 
     // new method imp: Implement date range query with filters
@@ -438,80 +869,14 @@ public class ActivityServiceImpl implements ActivityService {
         LocalDate startDate, LocalDate endDate, String state, String activityType, 
         String eventCategory, String filterOperator, List<Map<String, String>> conditions) {
         
-        return CompletableFuture.supplyAsync(() -> {
+        // Runs on the bounded query pool; throws RejectedExecutionException when it is saturated
+        return analyticalQueryExecutor.supply(() -> {
             Map<String, Object> response = new HashMap<>();
             try {
                 long startTime = System.currentTimeMillis();
 
-                CriteriaBuilder cb = entityManager.getCriteriaBuilder();
-                CriteriaQuery<Activity> query = cb.createQuery(Activity.class);
-                Root<Activity> root = query.from(Activity.class);
-
-                List<Predicate> mainPredicates = new ArrayList<>();
-
-                // Always add date range
-                mainPredicates.add(cb.between(root.get("eventDate"), startDate, endDate));
-
-                // Add advanced filters (state, activityType, eventCategory)
-                List<Predicate> advancedPredicates = new ArrayList<>();
-                if (!state.isEmpty()) {
-                    // Assuming single value; if multi, split by comma and use in()
-                    advancedPredicates.add(cb.equal(root.get("state"), state));
-                }
-                if (!activityType.isEmpty()) {
-                    advancedPredicates.add(cb.equal(root.get("activityType"), activityType));
-                }
-                if (!eventCategory.isEmpty()) {
-                    advancedPredicates.add(cb.equal(root.get("eventCategory"), eventCategory));
-                }
-
-                if (!advancedPredicates.isEmpty()) {
-                    Predicate advancedCombined;
-                    if ("AND".equalsIgnoreCase(filterOperator)) {
-                        advancedCombined = cb.and(advancedPredicates.toArray(new Predicate[0]));
-                    } else if ("OR".equalsIgnoreCase(filterOperator)) {
-                        advancedCombined = cb.or(advancedPredicates.toArray(new Predicate[0]));
-                    } else {
-                        throw new IllegalArgumentException("Unsupported filter operator: " + filterOperator);
-                    }
-                    mainPredicates.add(advancedCombined);
-                }
-
-                // Add dynamic conditions (chained with their logical operators)
-                Predicate dynamicPredicate = null;
-                for (int i = 0; i < conditions.size(); i++) {
-                    Map<String, String> condition = conditions.get(i);
-                    String field = condition.get("field");
-                    String operator = condition.get("operator");
-                    String value = condition.get("value");
-
-                    Predicate predicate = buildPredicate(cb, root, field, operator, value);
-
-                    if (i == 0) {
-                        dynamicPredicate = predicate;
-                    } else {
-                        String prevLogical = conditions.get(i - 1).getOrDefault("logical", "AND");
-                        if ("OR".equalsIgnoreCase(prevLogical)) {
-                            dynamicPredicate = cb.or(dynamicPredicate, predicate);
-                        } else if ("NOT".equalsIgnoreCase(prevLogical)) {
-                            dynamicPredicate = cb.and(dynamicPredicate, cb.not(predicate));
-                        } else {
-                            dynamicPredicate = cb.and(dynamicPredicate, predicate);
-                        }
-                    }
-                }
-
-                if (dynamicPredicate != null) {
-                    mainPredicates.add(dynamicPredicate);
-                }
-
-                // Apply all main predicates with AND
-                if (!mainPredicates.isEmpty()) {
-                    query.where(cb.and(mainPredicates.toArray(new Predicate[0])));
-                }
-
-                // Execute query
-                List<Activity> activities = entityManager.createQuery(query).getResultList();
+                List<ActivityGridRow> activities = activityQueryBuilder.findByDateRangeWithFilters(
+                    startDate, endDate, state, activityType, eventCategory, filterOperator, conditions);
 
                 long executionTimeMs = System.currentTimeMillis() - startTime;
 
@@ -530,43 +895,60 @@ public class ActivityServiceImpl implements ActivityService {
         });
     }
 
-    // Helper method to build predicate for a single condition (copied/adapted from performDynamicCalculation)
-    private Predicate buildPredicate(CriteriaBuilder cb, Root<Activity> root, String field, String operator, String value) {
-        try {
-            switch (field) {
-                case "numberOfParticipants":
-                    int intValue = Integer.parseInt(value);
-                    switch (operator) {
-                        case "=": return cb.equal(root.get(field), intValue);
-                        case "!=": return cb.notEqual(root.get(field), intValue);
-                        case "<": return cb.lt(root.get(field), intValue);
-                        case ">": return cb.gt(root.get(field), intValue);
-                        case "<=": return cb.le(root.get(field), intValue);
-                        case ">=": return cb.ge(root.get(field), intValue);
-                        default: throw new IllegalArgumentException("Unsupported operator: " + operator);
-                    }
-                case "eventDate":
-                    LocalDate dateValue = LocalDate.parse(value);
-                    switch (operator) {
-                        case "=": return cb.equal(root.get(field), dateValue);
-                        case "!=": return cb.notEqual(root.get(field), dateValue);
-                        case "<": return cb.lessThan(root.get(field), dateValue);
-                        case ">": return cb.greaterThan(root.get(field), dateValue);
-                        case "<=": return cb.lessThanOrEqualTo(root.get(field), dateValue);
-                        case ">=": return cb.greaterThanOrEqualTo(root.get(field), dateValue);
-                        default: throw new IllegalArgumentException("Unsupported operator: " + operator);
-                    }
-                default: // String fields like state, activityType, eventCategory
-                    switch (operator) {
-                        case "=": return cb.equal(root.get(field), value);
-                        case "!=": return cb.notEqual(root.get(field), value);
-                        default: throw new IllegalArgumentException("Unsupported operator for field " + field + ": " + operator);
-                    }
+    // Hands the rows to consumer one at a time from a DB cursor, inside a read-only transaction; returns the row count
+    @Override
+    public long streamActivitiesByDateRangeWithFilters(LocalDate startDate, LocalDate endDate, String state, String activityType,
+                                                       String eventCategory, String filterOperator, List<Map<String, String>> conditions,
+                                                       Consumer<ActivityGridRow> consumer) {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnly.setReadOnly(true);
+        return readOnly.execute(status -> {
+            long rows = 0;
+            try (Stream<ActivityGridRow> stream = activityQueryBuilder.streamByDateRangeWithFilters(
+                    startDate, endDate, state, activityType, eventCategory, filterOperator, conditions)) {
+                Iterator<ActivityGridRow> iterator = stream.iterator();
+                while (iterator.hasNext()) {
+                    consumer.accept(iterator.next());
+                    rows++;
+                }
             }
-        } catch (Exception e) {
-            throw new IllegalArgumentException("Invalid value for field " + field + ": " + value, e);
-        }
+            return rows;
+        });
     }
+
+    @Override
+    public Flux<ActivityGridRow> reactiveActivitiesByDateRangeWithFilters(LocalDate startDate, LocalDate endDate, String state,
+                                                                          String activityType, String eventCategory, String filterOperator,
+                                                                          List<Map<String, String>> conditions) {
+        return analyticalQueryExecutor.keysetPages(reactivePageSize, after -> activityQueryBuilder.findDateRangePageAfter(
+                startDate, endDate, state, activityType, eventCategory, filterOperator, conditions, after, reactivePageSize));
+    }
+
+    // Id order, so the bitmap index can serve the pages when it is ready
+    @Override
+    public Flux<ActivityGridRow> reactiveActivitiesByStateAndEventCategory(String state, String eventCategory, String operator) {
+        return analyticalQueryExecutor.keysetPages(reactivePageSize, after -> {
+            long afterId = after == null ? 0 : after.getId();
+            if (activityBitmapIndex.isReady()) {
+                RoaringBitmap ids = activityBitmapIndex.resolveStateAndEventCategory(state, eventCategory, operator);
+                return activityQueryBuilder.findGridRowsByIds(
+                        activityBitmapIndex.page(ids, ids.rankLong((int) afterId), reactivePageSize, true));
+            }
+            return activityQueryBuilder.findByStateAndEventCategoryAfter(state, eventCategory, operator, afterId, reactivePageSize);
+        });
+    }
+
+    // One element per result group ({"groups", "values"}), or a single {"values"} without groupBy
+    @Override
+    public Flux<Map<String, Object>> reactiveDynamicCalculation(List<Map<String, String>> aggregates, List<String> groupBy,
+                                                                List<Map<String, String>> conditions) {
+        return Mono.fromSupplier(QueryBudget.propagate(() -> performDynamicCalculation(aggregates, groupBy, conditions)))
+                .subscribeOn(analyticalQueryExecutor.getScheduler())
+                .flatMapIterable(result -> result.containsKey("results")
+                        ? (List<Map<String, Object>>) result.get("results")
+                        : List.of(Map.of("values", result.get("values"))));
+    }
+
     @Override
     public Activity getById(Long id) {
         if (Objects.nonNull(id)) {
@@ -583,25 +965,30 @@ public class ActivityServiceImpl implements ActivityService {
     @Override
     public void deleteById(Long id) {
         if (Objects.nonNull(id)) {
-            List<FileMetadata> fileMetadatas = fileMetadataRepository.findByActivityId(id);
-            for (FileMetadata fileMetadata : fileMetadatas) {
-                try {
-                    Files.deleteIfExists(Paths.get(fileMetadata.getFilePath()));
-                    fileMetadataRepository.delete(fileMetadata);
-                } catch (IOException e) {
-                    System.err.println("Failed to delete file: " + e.getMessage());
+            // Locked so a concurrent bulk update cannot merge the row back in after it is gone
+            activityLocks.withLock(id, () -> {
+                List<FileMetadata> fileMetadatas = fileMetadataRepository.findByActivityId(id);
+                for (FileMetadata fileMetadata : fileMetadatas) {
+                    try {
+                        Files.deleteIfExists(Paths.get(fileMetadata.getFilePath()));
+                        fileMetadataRepository.delete(fileMetadata);
+                    } catch (IOException e) {
+                        System.err.println("Failed to delete file: " + e.getMessage());
+                    }
                 }
-            }
-            activityRepository.deleteById(id);
+                activityRepository.deleteById(id);
+                activityBitmapIndex.remove(List.of(id));
+                activityDataVersion.bump();
+                return null;
+            });
         }
     }
 
     @Override
     public void deleteActivities(List<Long> ids) {
         if (Objects.nonNull(ids)) {
-            for (Long id : ids) {
-                List<FileMetadata> fileMetadatas = fileMetadataRepository.findByActivityId(id);
-                for (FileMetadata fileMetadata : fileMetadatas) {
+            activityLocks.withLocks(ids, () -> {
+                for (FileMetadata fileMetadata : ids.isEmpty() ? List.<FileMetadata>of() : fileMetadataRepository.findByActivityIdIn(ids)) {
                     try {
                         Files.deleteIfExists(Paths.get(fileMetadata.getFilePath()));
                         fileMetadataRepository.delete(fileMetadata);
@@ -609,8 +996,11 @@ public class ActivityServiceImpl implements ActivityService {
                         System.err.println("Failed to delete file: " + e.getMessage());
                     }
                 }
-            }
-            activityRepository.deleteAllById(ids);
+                activityRepository.deleteAllById(ids);
+                activityBitmapIndex.remove(ids);
+                activityDataVersion.bump();
+                return null;
+            });
         }
     }
 
@@ -619,6 +1009,26 @@ public class ActivityServiceImpl implements ActivityService {
         return fileMetadataRepository.findByActivityId(activityId);
     }
 
+    // Every requested id gets an entry, empty when the activity has no files
+    @Override
+    public Map<Long, List<FileMetadata>> getFilesByActivityIds(List<Long> activityIds) {
+        Map<Long, List<FileMetadata>> fileMap = new HashMap<>();
+        for (Long activityId : activityIds) {
+            fileMap.put(activityId, new ArrayList<>());
+        }
+        if (!activityIds.isEmpty()) {
+            for (FileMetadata fileMetadata : fileMetadataRepository.findByActivityIdIn(activityIds)) {
+                fileMap.computeIfAbsent(fileMetadata.getActivity().getId(), k -> new ArrayList<>()).add(fileMetadata);
+            }
+        }
+        return fileMap;
+    }
+
+    @Override
+    public List<Activity> getActivitiesByIds(List<Long> ids) {
+        return activityRepository.findAllById(ids);
+    }
+
     @Override
     public void deleteFile(Long fileId) {
         FileMetadata fileMetadata = fileMetadataRepository.findById(fileId)
@@ -632,94 +1042,119 @@ public class ActivityServiceImpl implements ActivityService {
     }
 
     @Override
-    public List<Activity> getActivitiesByStateAndEventCategory(String state, String eventCategory, String operator) {
-        return activityRepository.findByStateAndEventCategoryWithOperator(state, eventCategory, operator);
+    public List<ActivityGridRow> getActivitiesByStateAndEventCategory(String state, String eventCategory, String operator) {
+        if (activityBitmapIndex.isReady()) {
+            RoaringBitmap ids = activityBitmapIndex.resolveStateAndEventCategory(state, eventCategory, operator);
+            // NOT can select nearly the whole table, far too many ids for one statement
+            if (ids.getLongCardinality() <= maxBitmapIdList) {
+                return activityQueryBuilder.findGridRowsByIds(activityBitmapIndex.page(ids, 0, maxBitmapIdList, true));
+            }
+        }
+        return activityQueryBuilder.findByStateAndEventCategory(state, eventCategory, operator, Pageable.unpaged());
+    }
+
+    @Override
+    public Map<String, Object> getActivitiesByStateAndEventCategory(String state, String eventCategory, String operator, Pageable pageable) {
+        List<ActivityGridRow> activities = activityQueryBuilder.findByStateAndEventCategory(state, eventCategory, operator, pageable);
+        Object[] summary = activityQueryBuilder.summarizeByStateAndEventCategory(state, eventCategory, operator);
+        Map<String, Object> response = new HashMap<>();
+        response.put("activities", activities);
+        response.put("totalElements", ((Number) summary[0]).longValue());
+        response.put("uniqueStates", ((Number) summary[1]).longValue());
+        response.put("totalParticipants", ((Number) summary[2]).longValue());
+        return response;
     }
 
     @Override
-    public List<Activity> getActivitiesByDateRange(LocalDate startDate, LocalDate endDate) {
+    public List<ActivityGridRow> getActivitiesByDateRange(LocalDate startDate, LocalDate endDate) {
         return activityRepository.findByDateRange(startDate, endDate);
     }
 
     @Override
+    @Cacheable(cacheNames = "aiSuggestions", key = "@activityDataVersion.current() + ':default'")
     public Map<String, Object> getAiSuggestions() {
-        Map<String, Object> response = new HashMap<>();
-        LocalDate startDate = LocalDate.of(2024, 10, 28);
-        LocalDate endDate = LocalDate.of(2024, 11, 3);
-        List<Activity> activities = activityRepository.findByDateRange(startDate, endDate);
+        return getAiSuggestions(LocalDate.of(2024, 10, 28), LocalDate.of(2024, 11, 3));
+    }
 
-        if (activities.isEmpty()) {
-            response.put("errorMessage", "No historical data available for AI suggestions.");
-            return response;
-        }
+    @Override
+    @Cacheable(cacheNames = "aiSuggestions", key = "@activityDataVersion.current() + ':' + #startDate + ':' + #endDate")
+    public Map<String, Object> getAiSuggestions(LocalDate startDate, LocalDate endDate) {
+        return readReplicas.readCurrent(aiSuggestionsStalenessMs,
+                () -> unmodifiable(activitySuggestionEngine.suggest(collectWindowStats(startDate, endDate))));
+    }
 
-        Map<LocalDate, Long> dateParticipantCount = new HashMap<>();
-        Map<LocalDate, Integer> dateEventCount = new HashMap<>();
-        Map<String, Integer> categoryCount = new HashMap<>();
-        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
-            dateParticipantCount.put(date, 0L);
-            dateEventCount.put(date, 0);
-        }
+    @Override
+    public Map<String, Object> getDailyActivitySeries(LocalDate startDate, LocalDate endDate) {
+        return activitySuggestionEngine.series(collectWindowStats(startDate, endDate));
+    }
 
-        for (Activity activity : activities) {
-            LocalDate date = activity.getEventDate();
-            String category = activity.getEventCategory();
-            dateParticipantCount.compute(date, (k, v) -> v + activity.getNumberOfParticipants());
-            dateEventCount.compute(date, (k, v) -> v + 1);
-            categoryCount.compute(category, (k, v) -> (v == null ? 0 : v) + 1);
+    @Override
+    public Map<String, Object> getTimeSeries(LocalDate startDate, LocalDate endDate, String granularity,
+                                             String seriesBy, String metric, int maxPoints) {
+        if (startDate.isAfter(endDate)) {
+            throw new IllegalArgumentException("Start date must be before or equal to end date.");
+        }
+        activityTimeSeries.bucketCount(startDate, endDate, granularity);
+        List<Object[]> rows;
+        int keyIndex;
+        switch (seriesBy) {
+            case "":
+                rows = activityRepository.statsByDate(startDate, endDate);
+                keyIndex = -1;
+                break;
+            case "state":
+                rows = activityRepository.statsByDateAndState(startDate, endDate);
+                keyIndex = 1;
+                break;
+            case "eventCategory":
+                rows = activityRepository.statsByDateAndCategory(startDate, endDate);
+                keyIndex = 1;
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported seriesBy: " + seriesBy + ". Use state or eventCategory.");
+        }
+        if (!"participants".equals(metric) && !"events".equals(metric)) {
+            throw new IllegalArgumentException("Unsupported metric: " + metric + ". Use participants or events.");
         }
 
-        String popularCategory = categoryCount.entrySet().stream()
-            .max(Map.Entry.comparingByValue())
-            .map(Map.Entry::getKey)
-            .orElse("Unknown");
-
-        Map<LocalDate, Double> dateScores = new HashMap<>();
-        long maxParticipants = dateParticipantCount.values().stream().mapToLong(Long::longValue).max().orElse(1);
-        int maxEvents = dateEventCount.values().stream().mapToInt(Integer::intValue).max().orElse(1);
-        int maxCategoryCount = categoryCount.values().stream().mapToInt(Integer::intValue).max().orElse(1);
-
-        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
-            final LocalDate finalDate = date;
-            double participantScore = (double) dateParticipantCount.get(date) / maxParticipants * 0.5;
-            double eventScore = (double) dateEventCount.get(date) / maxEvents * 0.3;
-            double categoryScore = activities.stream()
-                .filter(a -> a.getEventDate().equals(finalDate) && a.getEventCategory().equals(popularCategory))
-                .count() / (double) maxCategoryCount * 0.2;
-            dateScores.put(date, participantScore + eventScore + categoryScore);
-        }
-
-        LocalDate suggestedDate = dateScores.entrySet().stream()
-            .max(Map.Entry.comparingByValue())
-            .map(Map.Entry::getKey)
-            .orElse(startDate);
-
-        List<Activity> sameDateActivities = activities.stream()
-            .filter(a -> a.getEventDate().equals(suggestedDate))
-            .collect(Collectors.toList());
-        double avgParticipants = sameDateActivities.isEmpty() ? 0 :
-            sameDateActivities.stream().mapToLong(Activity::getNumberOfParticipants).average().orElse(0);
-
-        String reason = String.format(
-            "Recommended date %s based on high participation (%d participants) and event frequency (%d events). " +
-            "The category '%s' is popular, enhancing suitability.",
-            suggestedDate, dateParticipantCount.get(suggestedDate), dateEventCount.get(suggestedDate), popularCategory
-        );
+        Map<String, List<ActivityTimeSeries.Point>> series = new LinkedHashMap<>();
+        int rawPoints = 0;
+        for (Map.Entry<String, List<ActivityTimeSeries.Point>> entry
+                : activityTimeSeries.bucket(startDate, endDate, granularity, rows, keyIndex).entrySet()) {
+            rawPoints = Math.max(rawPoints, entry.getValue().size());
+            series.put(entry.getKey(), activityTimeSeries.downsample(entry.getValue(), maxPoints, "participants".equals(metric)));
+        }
 
-        response.put("suggestedDate", suggestedDate.toString());
-        response.put("predictedParticipants", Math.round(avgParticipants));
-        response.put("reason", reason);
+        Map<String, Object> response = new HashMap<>();
+        response.put("granularity", granularity);
+        response.put("seriesBy", seriesBy);
+        response.put("metric", metric);
+        response.put("bucketCount", rawPoints);
+        response.put("series", series);
         return response;
     }
+
+    private ActivitySuggestionEngine.WindowStats collectWindowStats(LocalDate startDate, LocalDate endDate) {
+        activitySuggestionEngine.checkWindow(startDate, endDate);
+        return activitySuggestionEngine.collect(startDate, endDate,
+                activityRepository.statsByDateAndCategory(startDate, endDate));
+    }
     @Override
     public void reorderActivities(List<Map<String, Long>> orderList) {
-        for (Map<String, Long> orderMap : orderList) {
-            Long id = orderMap.get("id");
-            Integer newOrder = orderMap.get("orderIndex").intValue();
-            Activity activity = getById(id);
-            activity.setOrderIndex(newOrder);
-            activityRepository.save(activity);
-        }
+        List<Long> ids = orderList.stream().map(orderMap -> orderMap.get("id")).collect(Collectors.toList());
+        activityLocks.withLocks(ids, () -> transactionTemplate.execute(status -> {
+            List<Activity> activities = new ArrayList<>();
+            for (Map<String, Long> orderMap : orderList) {
+                Long id = orderMap.get("id");
+                Integer newOrder = orderMap.get("orderIndex").intValue();
+                Activity activity = getById(id);
+                activity.setOrderIndex(newOrder);
+                activities.add(activityRepository.save(activity));
+            }
+            bumpVersions(activities);
+            activityDataVersion.bump();
+            return null;
+        }));
     }
 
     // new methods imp: Perform custom calculation (example: sum or avg on column)
@@ -739,7 +1174,12 @@ public class ActivityServiceImpl implements ActivityService {
     }
     // new methods imp: get Summary
     @Override
+    @Cacheable(cacheNames = "summary", key = "@activityDataVersion.current()")
     public Map<String, Object> getSummary() {
+        return singleFlight.execute("summary", activityDataVersion.current(), () -> unmodifiable(computeSummary()));
+    }
+
+    private Map<String, Object> computeSummary() {
         List<Activity> activities = getAllActivities();
         Map<String, Object> summary = new HashMap<>();
         summary.put("totalActivities", activities.size());
@@ -747,6 +1187,32 @@ public class ActivityServiceImpl implements ActivityService {
         summary.put("totalParticipants", activities.stream().mapToLong(Activity::getNumberOfParticipants).sum());
         return summary;
     }
+
+    @Override
+    public Map<String, Object> getSingleFlightStats() {
+        return singleFlight.getStats();
+    }
+
+    @Override
+    public Map<String, Object> getCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("dataVersion", activityDataVersion.current());
+        for (String name : new TreeSet<>(cacheManager.getCacheNames())) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache instanceof CaffeineCache) {
+                CaffeineCache caffeineCache = (CaffeineCache) cache;
+                CacheStats cacheStats = caffeineCache.getNativeCache().stats();
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("size", caffeineCache.getNativeCache().estimatedSize());
+                entry.put("hits", cacheStats.hitCount());
+                entry.put("misses", cacheStats.missCount());
+                entry.put("hitRate", cacheStats.hitRate());
+                entry.put("evictions", cacheStats.evictionCount());
+                stats.put(name, entry);
+            }
+        }
+        return stats;
+    }
     // new updates
     @Override
     public long getTotalParticipants(String search, String state, String category, String dateRange) {
@@ -789,6 +1255,12 @@ public class ActivityServiceImpl implements ActivityService {
     }
     @Override
     public Map<String, Object> performDynamicCalculation(List<Map<String, String>> aggregates, List<String> groupBy, List<Map<String, String>> conditions) {
+        return singleFlight.execute("dynamicCalculation", Arrays.asList(activityDataVersion.current(), aggregates, groupBy, conditions),
+                () -> unmodifiable(readReplicas.readCurrent(dynamicCalculationStalenessMs,
+                        () -> computeDynamicCalculation(aggregates, groupBy, conditions))));
+    }
+
+    private Map<String, Object> computeDynamicCalculation(List<Map<String, String>> aggregates, List<String> groupBy, List<Map<String, String>> conditions) {
         CriteriaBuilder cb = entityManager.getCriteriaBuilder();
         CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
         Root<Activity> root = query.from(Activity.class);
@@ -856,98 +1328,7 @@ public class ActivityServiceImpl implements ActivityService {
         query.multiselect(selections.toArray(new Selection[0]));
 
         // Build WHERE conditions
-        List<Predicate> predicates = new ArrayList<>();
-        Predicate currentPredicate = null;
-        for (int i = 0; i < conditions.size(); i++) {
-            Map<String, String> condition = conditions.get(i);
-            String field = condition.get("field");
-            String operator = condition.get("operator");
-            String value = condition.get("value");
-            String logical = condition.getOrDefault("logical", "");
-
-            Predicate predicate;
-            try {
-                switch (field) {
-                    case "numberOfParticipants":
-                        int intValue = Integer.parseInt(value);
-                        switch (operator) {
-                            case "=":
-                                predicate = cb.equal(root.get(field), intValue);
-                                break;
-                            case "!=":
-                                predicate = cb.notEqual(root.get(field), intValue);
-                                break;
-                            case "<":
-                                predicate = cb.lt(root.get(field), intValue);
-                                break;
-                            case ">":
-                                predicate = cb.gt(root.get(field), intValue);
-                                break;
-                            case "<=":
-                                predicate = cb.le(root.get(field), intValue);
-                                break;
-                            case ">=":
-                                predicate = cb.ge(root.get(field), intValue);
-                                break;
-                            default:
-                                throw new IllegalArgumentException("Unsupported operator: " + operator);
-                        }
-                        break;
-                    case "eventDate":
-                        LocalDate dateValue = LocalDate.parse(value);
-                        switch (operator) {
-                            case "=":
-                                predicate = cb.equal(root.get(field), dateValue);
-                                break;
-                            case "!=":
-                                predicate = cb.notEqual(root.get(field), dateValue);
-                                break;
-                            case "<":
-                                predicate = cb.lessThan(root.get(field), dateValue);
-                                break;
-                            case ">":
-                                predicate = cb.greaterThan(root.get(field), dateValue);
-                                break;
-                            case "<=":
-                                predicate = cb.lessThanOrEqualTo(root.get(field), dateValue);
-                                break;
-                            case ">=":
-                                predicate = cb.greaterThanOrEqualTo(root.get(field), dateValue);
-                                break;
-                            default:
-                                throw new IllegalArgumentException("Unsupported operator: " + operator);
-                        }
-                        break;
-                    default: // String fields: state, stationName, eventCategory, participantCategory
-                        switch (operator) {
-                            case "=":
-                                predicate = cb.equal(root.get(field), value);
-                                break;
-                            case "!=":
-                                predicate = cb.notEqual(root.get(field), value);
-                                break;
-                            default:
-                                throw new IllegalArgumentException("Unsupported operator for field " + field + ": " + operator);
-                        }
-                }
-            } catch (Exception e) {
-                throw new IllegalArgumentException("Invalid value for field " + field + ": " + value);
-            }
-
-            if (i == 0) {
-                currentPredicate = predicate;
-            } else {
-                String prevLogical = conditions.get(i - 1).get("logical");
-                if ("OR".equalsIgnoreCase(prevLogical)) {
-                    currentPredicate = cb.or(currentPredicate, predicate);
-                } else if ("NOT".equalsIgnoreCase(prevLogical)) {
-                    currentPredicate = cb.and(currentPredicate, cb.not(predicate));
-                } else {
-                    currentPredicate = cb.and(currentPredicate, predicate);
-                }
-            }
-        }
-
+        Predicate currentPredicate = activityQueryBuilder.buildConditions(cb, root, conditions);
         if (currentPredicate != null) {
             query.where(currentPredicate);
         }
@@ -1002,13 +1383,13 @@ public class ActivityServiceImpl implements ActivityService {
             String operator = query.getOrDefault("operator", "AND");
 
             long startTime = System.currentTimeMillis();
-            List<Activity> activities = activityRepository.findByStateAndEventCategoryWithOperator(state, eventCategory, operator);
+            List<ActivityGridRow> activities = activityQueryBuilder.findByStateAndEventCategory(state, eventCategory, operator, Pageable.unpaged());
             long executionTime = System.currentTimeMillis() - startTime;
 
             Map<String, Object> result = new HashMap<>();
             result.put("activities", activities);
             result.put("totalActivities", activities.size());
-            result.put("totalParticipants", activities.stream().mapToLong(Activity::getNumberOfParticipants).sum());
+            result.put("totalParticipants", activities.stream().mapToLong(ActivityGridRow::getNumberOfParticipants).sum());
             result.put("executionTimeMs", executionTime);
             result.put("query", Map.of("state", state, "eventCategory", eventCategory, "operator", operator));
             results.add(result);
@@ -0,0 +1,170 @@
+package com.klu;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Computes AI date suggestions and daily chart series from per-day, per-category aggregates
+ * (see ActivityRepository.statsByDateAndCategory). The aggregates are folded in a single pass,
+ * so the cost depends on the number of days and categories in the window, not on the number of activities.
+ * Every day of the window is materialized, so windows longer than powergrid.suggestions.max-days are rejected.
+ */
+@Component
+public class ActivitySuggestionEngine {
+
+    private final long maxDays;
+
+    public ActivitySuggestionEngine(@Value("${powergrid.suggestions.max-days:3660}") long maxDays) {
+        this.maxDays = maxDays;
+    }
+
+    public static class DayStats {
+        private long events;
+        private long participants;
+        private final Map<String, Long> categoryEvents = new HashMap<>();
+
+        public long getEvents() { return events; }
+        public long getParticipants() { return participants; }
+        public long getCategoryEvents(String category) { return categoryEvents.getOrDefault(category, 0L); }
+    }
+
+    public static class WindowStats {
+        private final LocalDate startDate;
+        private final LocalDate endDate;
+        // Every day of the window, in date order, including days without activities
+        private final TreeMap<LocalDate, DayStats> days = new TreeMap<>();
+        private final Map<String, Long> categoryEvents = new HashMap<>();
+        private long totalEvents;
+
+        WindowStats(LocalDate startDate, LocalDate endDate) {
+            this.startDate = startDate;
+            this.endDate = endDate;
+        }
+
+        public LocalDate getStartDate() { return startDate; }
+        public LocalDate getEndDate() { return endDate; }
+        public TreeMap<LocalDate, DayStats> getDays() { return days; }
+        public long getTotalEvents() { return totalEvents; }
+    }
+
+    // Rejects windows that are reversed or longer than maxDays, before anything is queried or allocated
+    public void checkWindow(LocalDate startDate, LocalDate endDate) {
+        if (startDate.isAfter(endDate)) {
+            throw new IllegalArgumentException("Start date must be before or equal to end date.");
+        }
+        if (ChronoUnit.DAYS.between(startDate, endDate) + 1 > maxDays) {
+            throw new IllegalArgumentException("Date range must not exceed " + maxDays + " days.");
+        }
+    }
+
+    // rows: [eventDate, eventCategory, eventCount, participantSum]
+    public WindowStats collect(LocalDate startDate, LocalDate endDate, List<Object[]> rows) {
+        checkWindow(startDate, endDate);
+        WindowStats stats = new WindowStats(startDate, endDate);
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            stats.days.put(date, new DayStats());
+        }
+        for (Object[] row : rows) {
+            DayStats day = stats.days.get((LocalDate) row[0]);
+            if (day == null) {
+                continue;
+            }
+            String category = (String) row[1];
+            long events = ((Number) row[2]).longValue();
+            long participants = row[3] != null ? ((Number) row[3]).longValue() : 0L;
+            day.events += events;
+            day.participants += participants;
+            day.categoryEvents.merge(category, events, Long::sum);
+            stats.categoryEvents.merge(category, events, Long::sum);
+            stats.totalEvents += events;
+        }
+        return stats;
+    }
+
+    public Map<String, Object> suggest(WindowStats stats) {
+        Map<String, Object> response = new HashMap<>();
+        if (stats.totalEvents == 0) {
+            response.put("errorMessage", "No historical data available for AI suggestions.");
+            return response;
+        }
+
+        String popularCategory = null;
+        long maxCategoryCount = 0;
+        for (Map.Entry<String, Long> entry : new TreeMap<>(withoutNullKey(stats.categoryEvents)).entrySet()) {
+            if (entry.getValue() > maxCategoryCount) {
+                popularCategory = entry.getKey();
+                maxCategoryCount = entry.getValue();
+            }
+        }
+        long maxParticipants = 0;
+        long maxEvents = 0;
+        for (DayStats day : stats.days.values()) {
+            maxParticipants = Math.max(maxParticipants, day.participants);
+            maxEvents = Math.max(maxEvents, day.events);
+        }
+
+        // Same weighting as before: 50% participation, 30% event frequency, 20% popular-category events
+        LocalDate suggestedDate = stats.startDate;
+        double bestScore = -1;
+        for (Map.Entry<LocalDate, DayStats> entry : stats.days.entrySet()) {
+            DayStats day = entry.getValue();
+            double participantScore = ratio(day.participants, maxParticipants) * 0.5;
+            double eventScore = ratio(day.events, maxEvents) * 0.3;
+            double categoryScore = ratio(day.getCategoryEvents(popularCategory), maxCategoryCount) * 0.2;
+            double score = participantScore + eventScore + categoryScore;
+            if (score > bestScore) {
+                bestScore = score;
+                suggestedDate = entry.getKey();
+            }
+        }
+
+        DayStats suggestedDay = stats.days.get(suggestedDate);
+        double avgParticipants = suggestedDay.events == 0 ? 0 : (double) suggestedDay.participants / suggestedDay.events;
+        String reason = String.format(
+            "Recommended date %s based on high participation (%d participants) and event frequency (%d events). " +
+            "The category '%s' is popular, enhancing suitability.",
+            suggestedDate, suggestedDay.participants, suggestedDay.events,
+            popularCategory != null ? popularCategory : "Unknown"
+        );
+
+        response.put("suggestedDate", suggestedDate.toString());
+        response.put("predictedParticipants", Math.round(avgParticipants));
+        response.put("reason", reason);
+        return response;
+    }
+
+    // Ordered daily series for charts: parallel lists of dates, participant sums and event counts
+    public Map<String, Object> series(WindowStats stats) {
+        List<String> dates = new ArrayList<>(stats.days.size());
+        List<Long> participants = new ArrayList<>(stats.days.size());
+        List<Long> events = new ArrayList<>(stats.days.size());
+        stats.days.forEach((date, day) -> {
+            dates.add(date.toString());
+            participants.add(day.participants);
+            events.add(day.events);
+        });
+        Map<String, Object> series = new HashMap<>();
+        series.put("dates", dates);
+        series.put("participants", participants);
+        series.put("events", events);
+        return series;
+    }
+
+    private static double ratio(long value, long max) {
+        return max > 0 ? (double) value / max : 0.0;
+    }
+
+    private static Map<String, Long> withoutNullKey(Map<String, Long> counts) {
+        Map<String, Long> copy = new HashMap<>(counts);
+        copy.remove(null);
+        return copy;
+    }
+}
@@ -0,0 +1,203 @@
+package com.klu;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Rolls daily aggregates (computed in the database) up into day/week/month/quarter buckets and
+ * downsamples the result with largest-triangle-three-buckets (LTTB), so chart payloads stay
+ * bounded for any date range. Buckets are zero-filled for every series before downsampling, so a
+ * request needing more than powergrid.time-series.max-points of them in total is rejected.
+ */
+@Component
+public class ActivityTimeSeries {
+
+    public static final List<String> GRANULARITIES = List.of("day", "week", "month", "quarter");
+
+    private final long maxPoints;
+
+    public ActivityTimeSeries(@Value("${powergrid.time-series.max-points:50000}") long maxPoints) {
+        this.maxPoints = maxPoints;
+    }
+
+    public static class Point {
+        private final LocalDate bucket;
+        private long events;
+        private long participants;
+
+        Point(LocalDate bucket) {
+            this.bucket = bucket;
+        }
+
+        public LocalDate getBucket() { return bucket; }
+        public long getEvents() { return events; }
+        public long getParticipants() { return participants; }
+    }
+
+    // First day of the bucket containing date; weeks start on Monday (ISO)
+    public LocalDate bucketStart(LocalDate date, String granularity) {
+        switch (granularity) {
+            case "day":
+                return date;
+            case "week":
+                return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case "month":
+                return date.withDayOfMonth(1);
+            case "quarter":
+                int firstMonth = (date.getMonthValue() - 1) / 3 * 3 + 1;
+                return LocalDate.of(date.getYear(), firstMonth, 1);
+            default:
+                throw new IllegalArgumentException("Unsupported granularity: " + granularity + ". Use one of " + GRANULARITIES);
+        }
+    }
+
+    // Number of buckets per series, computed without building them; fails if one series alone is too large
+    public long bucketCount(LocalDate startDate, LocalDate endDate, String granularity) {
+        LocalDate first = bucketStart(startDate, granularity);
+        LocalDate last = bucketStart(endDate, granularity);
+        long count;
+        switch (granularity) {
+            case "day":
+                count = ChronoUnit.DAYS.between(first, last) + 1;
+                break;
+            case "week":
+                count = ChronoUnit.WEEKS.between(first, last) + 1;
+                break;
+            case "month":
+                count = ChronoUnit.MONTHS.between(first, last) + 1;
+                break;
+            default:
+                count = ChronoUnit.MONTHS.between(first, last) / 3 + 1;
+        }
+        count = Math.max(count, 0);
+        checkPoints(count, 1, granularity);
+        return count;
+    }
+
+    /**
+     * Groups rows of [eventDate, seriesKey, eventCount, participantSum] into one zero-filled,
+     * date-ordered series per key. Pass keyIndex -1 when the rows carry no series key.
+     */
+    public Map<String, List<Point>> bucket(LocalDate startDate, LocalDate endDate, String granularity,
+                                           List<Object[]> rows, int keyIndex) {
+        long bucketCount = bucketCount(startDate, endDate, granularity);
+        if (keyIndex >= 0) {
+            Set<Object> keys = new HashSet<>();
+            for (Object[] row : rows) {
+                keys.add(row[keyIndex]);
+            }
+            checkPoints(bucketCount, keys.size(), granularity);
+        }
+        List<LocalDate> buckets = new ArrayList<>();
+        for (LocalDate bucket = bucketStart(startDate, granularity); !bucket.isAfter(endDate); bucket = next(bucket, granularity)) {
+            buckets.add(bucket);
+        }
+        Map<String, TreeMap<LocalDate, Point>> series = new TreeMap<>();
+        int countIndex = keyIndex < 0 ? 1 : 2;
+        for (Object[] row : rows) {
+            String key = keyIndex < 0 ? "all" : (row[keyIndex] != null ? row[keyIndex].toString() : "N/A");
+            TreeMap<LocalDate, Point> points = series.computeIfAbsent(key, k -> zeroFilled(buckets));
+            Point point = points.get(bucketStart((LocalDate) row[0], granularity));
+            if (point != null) {
+                point.events += ((Number) row[countIndex]).longValue();
+                point.participants += row[countIndex + 1] != null ? ((Number) row[countIndex + 1]).longValue() : 0L;
+            }
+        }
+        if (keyIndex < 0 && series.isEmpty()) {
+            series.put("all", zeroFilled(buckets));
+        }
+        Map<String, List<Point>> result = new LinkedHashMap<>();
+        series.forEach((key, points) -> result.put(key, new ArrayList<>(points.values())));
+        return result;
+    }
+
+    /**
+     * Largest-triangle-three-buckets: keeps the first and last point and, for every bucket in between,
+     * the point forming the largest triangle with the previously kept point and the next bucket's average.
+     */
+    public List<Point> downsample(List<Point> points, int threshold, boolean byParticipants) {
+        if (threshold <= 2 || points.size() <= threshold) {
+            return points;
+        }
+        List<Point> sampled = new ArrayList<>(threshold);
+        double bucketSize = (double) (points.size() - 2) / (threshold - 2);
+        int selected = 0;
+        sampled.add(points.get(0));
+        for (int i = 0; i < threshold - 2; i++) {
+            int nextStart = (int) Math.floor((i + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) Math.floor((i + 2) * bucketSize) + 1, points.size());
+            double avgX = 0;
+            double avgY = 0;
+            for (int j = nextStart; j < nextEnd; j++) {
+                avgX += j;
+                avgY += value(points.get(j), byParticipants);
+            }
+            int nextCount = Math.max(nextEnd - nextStart, 1);
+            avgX /= nextCount;
+            avgY /= nextCount;
+
+            int start = (int) Math.floor(i * bucketSize) + 1;
+            int end = (int) Math.floor((i + 1) * bucketSize) + 1;
+            double selectedX = selected;
+            double selectedY = value(points.get(selected), byParticipants);
+            double maxArea = -1;
+            int maxIndex = start;
+            for (int j = start; j < end; j++) {
+                double area = Math.abs((selectedX - avgX) * (value(points.get(j), byParticipants) - selectedY)
+                        - (selectedX - j) * (avgY - selectedY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    maxIndex = j;
+                }
+            }
+            sampled.add(points.get(maxIndex));
+            selected = maxIndex;
+        }
+        sampled.add(points.get(points.size() - 1));
+        return sampled;
+    }
+
+    private void checkPoints(long bucketCount, long seriesCount, String granularity) {
+        if (bucketCount * seriesCount > maxPoints) {
+            throw new IllegalArgumentException("Range too long for " + granularity + " buckets: " + bucketCount + " buckets x "
+                    + seriesCount + " series exceeds " + maxPoints + " points. Use a coarser granularity or a shorter range.");
+        }
+    }
+
+    private static double value(Point point, boolean byParticipants) {
+        return byParticipants ? point.participants : point.events;
+    }
+
+    private static TreeMap<LocalDate, Point> zeroFilled(List<LocalDate> buckets) {
+        TreeMap<LocalDate, Point> points = new TreeMap<>();
+        for (LocalDate bucket : buckets) {
+            points.put(bucket, new Point(bucket));
+        }
+        return points;
+    }
+
+    private static LocalDate next(LocalDate bucket, String granularity) {
+        switch (granularity) {
+            case "day":
+                return bucket.plusDays(1);
+            case "week":
+                return bucket.plusWeeks(1);
+            case "month":
+                return bucket.plusMonths(1);
+            default:
+                return bucket.plusMonths(3);
+        }
+    }
+}
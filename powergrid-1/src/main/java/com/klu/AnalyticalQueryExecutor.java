@@ -0,0 +1,117 @@
+package com.klu;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool for the date-range queries that handlers return as DeferredResult, so a slow
+ * analytical query holds one of powergrid.query.threads workers instead of a Tomcat thread.
+ * At most powergrid.query.max-queued queries wait; beyond that submissions are rejected with
+ * RejectedExecutionException (answered with 503) instead of queueing without limit, as the
+ * common ForkJoinPool behind a bare supplyAsync would. The reactive endpoints run their pages on
+ * the same workers through getScheduler().
+ *
+ * Chunked NDJSON streams (supplyStream) get a separate pool of powergrid.stream.threads workers
+ * with powergrid.stream.max-queued waiting slots. A stream holds its worker, cursor and connection
+ * for as long as the client takes to read it, so slow readers must not be able to use up the
+ * query workers and get date-range queries refused.
+ */
+@Component
+public class AnalyticalQueryExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor streamExecutor;
+    private final Scheduler scheduler;
+    private final long timeoutMs;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    public AnalyticalQueryExecutor(@Value("${powergrid.query.threads:4}") int threads,
+                                   @Value("${powergrid.query.max-queued:32}") int maxQueued,
+                                   @Value("${powergrid.query.timeout-ms:20000}") long timeoutMs,
+                                   @Value("${powergrid.stream.threads:2}") int streamThreads,
+                                   @Value("${powergrid.stream.max-queued:4}") int streamMaxQueued,
+                                   VirtualThreads virtualThreads) {
+        this.timeoutMs = timeoutMs;
+        // In virtual mode the workers are virtual threads; threads still bounds concurrent queries, i.e. connections
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(maxQueued),
+                virtualThreads.threadFactory("powergrid-query-"), new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        this.streamExecutor = new ThreadPoolExecutor(streamThreads, streamThreads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(streamMaxQueued), virtualThreads.threadFactory("powergrid-stream-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        streamExecutor.allowCoreThreadTimeOut(true);
+        this.scheduler = Schedulers.fromExecutorService(executor, "powergrid-query");
+    }
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("powergrid.query.queue.depth", executor, pool -> pool.getQueue().size())
+                .description("Date-range queries waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("powergrid.query.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Date-range queries running")
+                .register(meterRegistry);
+        Gauge.builder("powergrid.stream.active", streamExecutor, ThreadPoolExecutor::getActiveCount)
+                .description("NDJSON streams being written")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        streamExecutor.shutdownNow();
+    }
+
+    // How long a handler waits for a query before answering with a timeout
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    // Runs supplier on the pool, counting its statements in the caller's QueryBudget recording
+    public <T> CompletableFuture<T> supply(Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(QueryBudget.propagate(supplier), executor);
+    }
+
+    // Runs a chunked stream on the stream pool; throws RejectedExecutionException when that pool is saturated
+    public <T> CompletableFuture<T> supplyStream(Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(QueryBudget.propagate(supplier), streamExecutor);
+    }
+
+    // The pool as a Reactor scheduler; a saturated pool fails the subscriber with RejectedExecutionException
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Rows of a keyset-paginated query as a Flux. nextPage gets the last row of the previous page
+     * (null for the first page) and runs on the pool only once the subscriber has consumed what was
+     * fetched before, so a slow reader holds neither a worker nor a connection between pages and at
+     * most about two pages are in memory. A page shorter than pageSize ends the stream.
+     */
+    public <T> Flux<T> keysetPages(int pageSize, Function<T, List<T>> nextPage) {
+        Function<T, List<T>> fetch = QueryBudget.propagate(nextPage);
+        return Mono.fromCallable(() -> fetch.apply(null)).subscribeOn(scheduler)
+                .expand(page -> page.size() < pageSize ? Mono.empty()
+                        : Mono.fromCallable(() -> fetch.apply(page.get(page.size() - 1))).subscribeOn(scheduler))
+                .concatMapIterable(page -> page, 1);
+    }
+}
@@ -0,0 +1,102 @@
+package com.klu;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission limit in front of the connection pool. With open-in-view a request keeps its JDBC
+ * connection from the first query to the end of the request, so the number of requests in the
+ * handler is the number of connections wanted. Platform threads cap that at server.tomcat.threads.max;
+ * virtual threads do not, and thousands of requests would queue inside HikariCP until its
+ * connection timeout. This lets powergrid.admission.max-concurrent requests in at a time, makes the
+ * next ones wait up to powergrid.admission.max-wait-ms in arrival order, and answers the rest with
+ * 503 and Retry-After. On by default only when virtual threads are actually running, not merely
+ * requested on a runtime without them (powergrid.admission.enabled overrides); streams and static
+ * files are listed in powergrid.admission.excluded-paths.
+ */
+@Component
+public class ConnectionAdmissionFilter extends OncePerRequestFilter {
+
+    private boolean enabled;
+
+    @Value("${powergrid.admission.excluded-paths:/activities/updates,/api/dateRangeQuery/stream,/api/reactive/,/actuator,/css/,/js/,/images/}")
+    private String[] excludedPaths;
+
+    @Value("${powergrid.admission.max-wait-ms:1000}")
+    private long maxWaitMs;
+
+    private final Semaphore permits;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    public ConnectionAdmissionFilter(@Value("${powergrid.admission.max-concurrent:20}") int maxConcurrent,
+                                     @Value("${powergrid.admission.enabled:#{null}}") Boolean enabled,
+                                     VirtualThreads virtualThreads) {
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.enabled = enabled != null ? enabled : virtualThreads.isEnabled();
+    }
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("powergrid.admission.waiting", permits, Semaphore::getQueueLength)
+                .description("Requests waiting for admission to the connection pool")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!enabled) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (String excluded : excludedPaths) {
+            if (path.startsWith(excluded.trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        boolean admitted;
+        try {
+            admitted = permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+        if (!admitted) {
+            meterRegistry.counter("powergrid.admission.rejected").increment();
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            response.getWriter().write("{\"errorMessage\":\"The server is busy; please try again shortly.\"}");
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.klu;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming RFC 4180 reader: one record at a time from a Reader, so memory stays constant however
+ * long the input is. Handles quoted fields, "" escapes, line breaks inside quotes, CRLF or LF line
+ * ends and a leading byte order mark. Blank lines are skipped.
+ */
+public class CsvRecordReader {
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private boolean started;
+
+    // Physical line the reader is on, and the one the last record started on
+    private long line = 1;
+    private long recordLine;
+
+    public CsvRecordReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    // 1-based line the last record returned by next() started on
+    public long getRecordLine() {
+        return recordLine;
+    }
+
+    /**
+     * Reads the next record, or returns null at the end of the input. Throws
+     * IllegalArgumentException if the input ends inside a quoted field.
+     */
+    public List<String> next() throws IOException {
+        if (!started) {
+            started = true;
+            if (peek() == '\uFEFF') {
+                position++;
+            }
+        }
+        int c;
+        // Skip blank lines between records
+        while ((c = peek()) == '\r' || c == '\n') {
+            consumeLineEnd();
+        }
+        if (c < 0) {
+            return null;
+        }
+        recordLine = line;
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            c = read();
+            if (quoted) {
+                if (c < 0) {
+                    throw new IllegalArgumentException("Unterminated quoted field starting on line " + recordLine);
+                } else if (c == '"') {
+                    if (peek() == '"') {
+                        position++;
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    if (c == '\n' || (c == '\r' && peek() != '\n')) {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c < 0 || c == '\r' || c == '\n') {
+                if (c >= 0) {
+                    position--;
+                    consumeLineEnd();
+                }
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+        }
+    }
+
+    private void consumeLineEnd() throws IOException {
+        if (read() == '\r' && peek() == '\n') {
+            position++;
+        }
+        line++;
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        if (c >= 0) {
+            position++;
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position];
+    }
+}
@@ -0,0 +1,38 @@
+package com.klu;
+
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the application DataSource in a datasource-proxy so SlowQueryLog sees every statement with
+ * its binds, timing and result. ResultSets are proxied too, by SlowQueryLog's row-counting proxy, which
+ * is how slow SELECTs get a row count.
+ * Pool metadata (HikariCP metrics, health) still reaches the pool through DataSource.unwrap().
+ */
+@Configuration
+public class DataSourceProxyConfiguration {
+
+    @Bean
+    public static BeanPostProcessor dataSourceProxyPostProcessor(ObjectProvider<SlowQueryLog> slowQueryLog) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof ProxyDataSource) {
+                    return bean;
+                }
+                SlowQueryLog listener = slowQueryLog.getObject();
+                return ProxyDataSourceBuilder.create(beanName, dataSource)
+                        .listener(listener)
+                        .methodListener(listener)
+                        .proxyResultSet(listener.resultSetProxyLogicFactory())
+                        .build();
+            }
+        };
+    }
+}
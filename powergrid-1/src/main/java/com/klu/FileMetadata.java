@@ -6,12 +6,17 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.TableGenerator;
 
 @Entity
 public class FileMetadata {
 
+    // Batched inserts need ids before the INSERT; see Activity.id
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "file_metadata_id")
+    @TableGenerator(name = "file_metadata_id", table = IdGeneratorTable.TABLE, pkColumnName = IdGeneratorTable.KEY_COLUMN,
+            valueColumnName = IdGeneratorTable.VALUE_COLUMN, pkColumnValue = "file_metadata",
+            allocationSize = IdGeneratorTable.ALLOCATION_SIZE)
     private Long id;
 
     private String fileName;
@@ -1,11 +1,19 @@
 package com.klu;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface FileMetadataRepository extends JpaRepository<FileMetadata, Long> {
     List<FileMetadata> findByActivityId(Long activityId);
+
+    // One IN query for a whole page instead of one query per activity; the fetch join keeps the
+    // eager activity association from issuing a select per row
+    @Query("SELECT f FROM FileMetadata f JOIN FETCH f.activity WHERE f.activity.id IN :activityIds")
+    List<FileMetadata> findByActivityIdIn(@Param("activityIds") Collection<Long> activityIds);
 }
\ No newline at end of file
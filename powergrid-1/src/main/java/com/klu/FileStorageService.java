@@ -1,5 +1,10 @@
 package com.klu;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
@@ -19,11 +24,39 @@ public class FileStorageService {
     @Value("${file.upload-dir:/uploads}")
     private String uploadDir;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private DistributionSummary uploadBytes;
+
     private static final List<String> ALLOWED_IMAGE_TYPES = Arrays.asList(
         "image/jpeg", "image/png", "image/gif"
     );
 
+    @PostConstruct
+    public void initMetrics() {
+        uploadBytes = DistributionSummary.builder("powergrid.upload.bytes")
+                .description("Size of each stored upload")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
     public String[] storeFiles(MultipartFile[] files, Long activityId) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            String[] filePaths = store(files);
+            outcome = "success";
+            return filePaths;
+        } finally {
+            sample.stop(Timer.builder("powergrid.upload")
+                    .description("Time to validate and store one request's uploads")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    private String[] store(MultipartFile[] files) throws IOException {
         Path uploadPath = Paths.get(uploadDir);
         if (!Files.exists(uploadPath)) {
             Files.createDirectories(uploadPath);
@@ -41,6 +74,7 @@ public class FileStorageService {
                 String uniqueFileName = UUID.randomUUID().toString() + fileExtension;
                 Path filePath = uploadPath.resolve(uniqueFileName);
                 Files.copy(file.getInputStream(), filePath);
+                uploadBytes.record(file.getSize());
                 filePaths[i] = filePath.toString();
             }
         }
@@ -0,0 +1,62 @@
+package com.klu;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * The table behind the pooled id generators of Activity and FileMetadata: one row per entity
+ * holding the next unallocated id. Hibernate reserves ALLOCATION_SIZE ids per round trip, which
+ * is what lets CSV imports batch their INSERTs (IDENTITY ids are only known after each INSERT).
+ *
+ * Ids can also come from elsewhere: rows created while the columns were still AUTO_INCREMENT,
+ * or DatasetGenerator's explicit ids. At startup each counter is therefore moved past the
+ * highest id in its table, before any request can allocate one.
+ */
+@Component
+public class IdGeneratorTable {
+
+    public static final String TABLE = "id_generator";
+    public static final String KEY_COLUMN = "entity";
+    public static final String VALUE_COLUMN = "next_val";
+    public static final int ALLOCATION_SIZE = 100;
+
+    // Generator key -> table whose ids it hands out
+    private static final Map<String, String> TABLES = Map.of("activity", "activity", "file_metadata", "file_metadata");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Hibernate creates or updates the schema while the EntityManagerFactory starts
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void alignWithExistingIds() {
+        TABLES.forEach((key, table) -> {
+            Long maxId = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from " + table, Long.class);
+            advance(key, maxId);
+        });
+    }
+
+    /**
+     * Makes sure no id up to maxId is handed out again. The pooled optimizer may use the stored
+     * value as the top of the next block, so one block size of headroom is added.
+     */
+    private void advance(String key, long maxId) {
+        long next = maxId + 1 + ALLOCATION_SIZE;
+        int updated = jdbcTemplate.update("update " + TABLE + " set " + VALUE_COLUMN + " = ? where " + KEY_COLUMN
+                + " = ? and " + VALUE_COLUMN + " < ?", next, key, next);
+        if (updated == 0) {
+            Integer rows = jdbcTemplate.queryForObject("select count(*) from " + TABLE + " where " + KEY_COLUMN + " = ?",
+                    Integer.class, key);
+            if (rows == null || rows == 0) {
+                jdbcTemplate.update("insert into " + TABLE + " (" + KEY_COLUMN + ", " + VALUE_COLUMN + ") values (?, ?)", key, next);
+            }
+        }
+    }
+}
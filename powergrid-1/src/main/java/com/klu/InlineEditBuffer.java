@@ -0,0 +1,340 @@
+package com.klu;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Optional write-behind mode for /inlineUpdate (powergrid.inline-edit.write-behind.enabled).
+ *
+ * Edits are validated and sanitized up front, then parked per activity; later edits of the same
+ * cell overwrite earlier ones. The request is acknowledged straight away with the version the row
+ * will have once written. Every flush-interval-ms, or as soon as max-pending activities are waiting,
+ * the buffer is written in one transaction (one partial UPDATE per activity, version-checked like the
+ * synchronous path) and the committed rows go out as one combined broadcast. The client has already
+ * been told these edits succeeded, so the current rows of activities whose edits were dropped go out
+ * too, for the clients to replace what they show.
+ *
+ * Pending edits are put back if a flush fails transiently. On shutdown the final flush is retried
+ * with backoff for up to shutdown-timeout-ms; edits still unwritten then are logged one by one and
+ * counted as failures. An acknowledged edit is otherwise only lost if the JVM dies before its flush,
+ * if its row changed or was deleted in the meantime (powergrid.inline.buffer.conflicts), or if the
+ * database rejects it (powergrid.inline.buffer.failures); all of these but the first are logged.
+ * Reads do not see an edit until its flush.
+ */
+@Component
+public class InlineEditBuffer {
+
+    private static final class PendingEdit {
+        final Map<String, Object> values = new LinkedHashMap<>();
+        // Version the client saw before its first buffered edit, null if it sent none
+        final Long expectedVersion;
+
+        PendingEdit(Long expectedVersion) {
+            this.expectedVersion = expectedVersion;
+        }
+    }
+
+    private final boolean enabled;
+    private final long flushIntervalMillis;
+    private final int maxPending;
+    private final long shutdownTimeoutMillis;
+
+    // Guarded by this
+    private Map<Long, PendingEdit> pending = new LinkedHashMap<>();
+    // Only one flush writes at a time, so a later flush cannot overtake an earlier one
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private ScheduledExecutorService scheduler;
+    private volatile Consumer<List<Activity>> flushListener = activities -> { };
+    private volatile Consumer<List<Activity>> dropListener = activities -> { };
+    private Counter conflicts;
+    private Counter failures;
+
+    @Autowired
+    private ActivityService activityService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    public InlineEditBuffer(@Value("${powergrid.inline-edit.write-behind.enabled:false}") boolean enabled,
+                            @Value("${powergrid.inline-edit.write-behind.flush-interval-ms:250}") long flushIntervalMillis,
+                            @Value("${powergrid.inline-edit.write-behind.max-pending:200}") int maxPending,
+                            @Value("${powergrid.inline-edit.write-behind.shutdown-timeout-ms:10000}") long shutdownTimeoutMillis) {
+        this.enabled = enabled;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxPending = maxPending;
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        Gauge.builder("powergrid.inline.buffer.pending", this, InlineEditBuffer::pendingActivities)
+                .description("Activities with inline edits waiting to be written")
+                .register(meterRegistry);
+        conflicts = Counter.builder("powergrid.inline.buffer.conflicts")
+                .description("Buffered edits dropped because the row changed version or was deleted before the flush")
+                .register(meterRegistry);
+        failures = Counter.builder("powergrid.inline.buffer.failures")
+                .description("Buffered edits dropped because the database rejected them")
+                .register(meterRegistry);
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+        }
+        // Runs before ActivityService and the EntityManager are destroyed, since we depend on them
+        flushBeforeShutdown();
+    }
+
+    // Nothing flushes after this, so transient failures are retried until the deadline instead of
+    // being left in the buffer; whatever is still pending then is logged and dropped
+    private void flushBeforeShutdown() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMillis);
+        long backoffMillis = 50;
+        while (true) {
+            flushQuietly();
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (pendingActivities() == 0 || remainingMillis <= 0) {
+                break;
+            }
+            try {
+                Thread.sleep(Math.min(backoffMillis, remainingMillis));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            backoffMillis = Math.min(backoffMillis * 2, 2000);
+        }
+        Map<Long, PendingEdit> lost;
+        synchronized (this) {
+            lost = pending;
+            pending = new LinkedHashMap<>();
+        }
+        lost.forEach((id, edit) -> edit.values.keySet().forEach(field -> {
+            System.err.println("Lost buffered edit on shutdown: activity " + id + " field " + field
+                    + " (version " + edit.expectedVersion + ")");
+            failures.increment();
+        }));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Receives the committed rows of every flush, e.g. to broadcast them
+    public void setFlushListener(Consumer<List<Activity>> listener) {
+        this.flushListener = listener;
+    }
+
+    // Receives the rows, as stored, of activities whose edits a flush dropped; deleted rows are left out
+    public void setDropListener(Consumer<List<Activity>> listener) {
+        this.dropListener = listener;
+    }
+
+    /**
+     * Validates and buffers one cell edit; returns the version the row will have after the flush,
+     * or null if neither this nor an earlier buffered edit of the row carried a version.
+     *
+     * A version is accepted if it is the one the buffered edits started from (another cell edited
+     * from the same page before the first acknowledgement came back) or the pending version handed
+     * out for them. Anything else means the client missed a change, as on the synchronous path.
+     */
+    public Long submit(Long id, String field, Object value, Long expectedVersion) {
+        Object validated = activityService.validateField(field, value);
+        Long pendingVersion;
+        boolean full;
+        synchronized (this) {
+            PendingEdit edit = pending.get(id);
+            if (edit == null) {
+                edit = new PendingEdit(expectedVersion);
+                pending.put(id, edit);
+            } else if (expectedVersion != null && edit.expectedVersion != null
+                    && expectedVersion != edit.expectedVersion.longValue()
+                    && expectedVersion != edit.expectedVersion + 1) {
+                throw new OptimisticLockingFailureException("Activity " + id + " was changed by someone else; reload and try again");
+            }
+            edit.values.put(field, validated);
+            pendingVersion = edit.expectedVersion != null ? Long.valueOf(edit.expectedVersion + 1) : null;
+            full = pending.size() >= maxPending;
+        }
+        if (full || scheduler.isShutdown()) {
+            try {
+                scheduler.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                // Shut down, so no later flush will come; write it now
+                flushQuietly();
+            }
+        }
+        return pendingVersion;
+    }
+
+    synchronized int pendingActivities() {
+        return pending.size();
+    }
+
+    /**
+     * Writes everything buffered so far in one transaction and hands the written rows to the flush
+     * listener. Edits whose row was changed or deleted since they were made match no row; they are
+     * dropped and counted as conflicts. If the batch fails, each activity is retried on its own so
+     * one bad edit cannot hold up the others: edits that still fail are dropped and counted as
+     * failures, unless the failure is transient (no connection, deadlock), in which case they are
+     * put back (behind any newer ones) and the exception is rethrown. Activities with dropped edits
+     * go to the drop listener.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            Map<Long, PendingEdit> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new LinkedHashMap<>();
+            }
+            List<Long> dropped = new ArrayList<>();
+            Map<Long, Integer> rowCounts;
+            try {
+                rowCounts = write(batch);
+            } catch (RuntimeException e) {
+                if (isTransient(e)) {
+                    requeue(batch);
+                    throw e;
+                }
+                rowCounts = writeSeparately(batch, dropped);
+            }
+            List<Long> written = new ArrayList<>();
+            rowCounts.forEach((id, rows) -> {
+                if (rows > 0) {
+                    written.add(id);
+                } else {
+                    System.err.println("Dropped buffered edits for activity " + id + " " + batch.get(id).values.keySet()
+                            + ": the row was changed or deleted after version " + batch.get(id).expectedVersion);
+                    conflicts.increment();
+                    dropped.add(id);
+                }
+            });
+            if (!written.isEmpty()) {
+                flushListener.accept(activityService.getActivitiesByIds(written));
+            }
+            List<Activity> stored = dropped.isEmpty() ? List.of() : activityService.getActivitiesByIds(dropped);
+            if (!stored.isEmpty()) {
+                dropListener.accept(stored);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private Map<Long, Integer> write(Map<Long, PendingEdit> batch) {
+        Map<Long, Map<String, Object>> valuesById = new LinkedHashMap<>();
+        Map<Long, Long> expectedVersions = new HashMap<>();
+        batch.forEach((id, edit) -> {
+            valuesById.put(id, edit.values);
+            expectedVersions.put(id, edit.expectedVersion);
+        });
+        return activityService.updateFields(valuesById, expectedVersions);
+    }
+
+    // Fallback after a failed batch: one transaction per activity; ids that cannot be written are added to dropped
+    private Map<Long, Integer> writeSeparately(Map<Long, PendingEdit> batch, List<Long> dropped) {
+        Map<Long, Integer> rowCounts = new LinkedHashMap<>();
+        Map<Long, PendingEdit> retry = new LinkedHashMap<>();
+        RuntimeException transientFailure = null;
+        for (Map.Entry<Long, PendingEdit> entry : batch.entrySet()) {
+            try {
+                rowCounts.putAll(write(Map.of(entry.getKey(), entry.getValue())));
+            } catch (RuntimeException e) {
+                if (isTransient(e)) {
+                    retry.put(entry.getKey(), entry.getValue());
+                    transientFailure = e;
+                } else {
+                    System.err.println("Dropped buffered edits for activity " + entry.getKey() + " "
+                            + entry.getValue().values.keySet() + ": they cannot be written: " + e.getMessage());
+                    failures.increment();
+                    dropped.add(entry.getKey());
+                }
+            }
+        }
+        if (transientFailure != null) {
+            requeue(retry);
+            System.err.println("Inline edit flush failed for " + retry.size() + " activities, will retry: "
+                    + transientFailure.getMessage());
+        }
+        return rowCounts;
+    }
+
+    // Failures worth retrying as they are: connection trouble, lock timeouts and deadlocks
+    static boolean isTransient(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientDataAccessException || cause instanceof DataAccessResourceFailureException
+                    || cause instanceof CannotCreateTransactionException || cause instanceof SQLTransientException
+                    || cause instanceof SQLRecoverableException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            System.err.println("Inline edit flush failed, will retry: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    // Puts a failed batch back; edits buffered since then win over the ones being put back
+    private synchronized void requeue(Map<Long, PendingEdit> batch) {
+        Map<Long, PendingEdit> merged = new LinkedHashMap<>(batch);
+        pending.forEach((id, newer) -> {
+            PendingEdit older = merged.get(id);
+            if (older == null) {
+                merged.put(id, newer);
+            } else {
+                older.values.putAll(newer.values);
+            }
+        });
+        pending = merged;
+    }
+}
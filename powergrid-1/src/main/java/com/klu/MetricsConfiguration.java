@@ -0,0 +1,20 @@
+package com.klu;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Enables @Timed on arbitrary beans (ActivityServiceImpl). Controller endpoints are already timed
+ * by Spring MVC as http.server.requests; Hibernate, HikariCP and JVM meters come from Actuator.
+ * Everything is scraped from /actuator/prometheus.
+ */
+@Configuration
+public class MetricsConfiguration {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+}
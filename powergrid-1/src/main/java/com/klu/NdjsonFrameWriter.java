@@ -0,0 +1,72 @@
+package com.klu;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Sends newline-delimited JSON frames through a ResponseBodyEmitter. Rows are serialized with a
+ * Jackson generator as they arrive and sent as one {"type":"activities","activities":[...]} frame
+ * per chunkSize rows, so only the frame being built is held in memory.
+ */
+public class NdjsonFrameWriter {
+
+    private final ResponseBodyEmitter emitter;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+    // Open while a rows frame is being built
+    private JsonGenerator rows;
+    private int rowsInFrame;
+
+    public NdjsonFrameWriter(ResponseBodyEmitter emitter, ObjectMapper objectMapper, int chunkSize) {
+        this.emitter = emitter;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+    }
+
+    // A single-object frame such as the header, trailer or an error; sends any rows frame first
+    public void frame(Map<String, Object> frame) throws IOException {
+        flushRows();
+        objectMapper.writeValue(buffer, frame);
+        send();
+    }
+
+    public void row(Object row) throws IOException {
+        if (rows == null) {
+            rows = objectMapper.getFactory().createGenerator(buffer);
+            rows.writeStartObject();
+            rows.writeStringField("type", "activities");
+            rows.writeArrayFieldStart("activities");
+        }
+        objectMapper.writeValue(rows, row);
+        if (++rowsInFrame == chunkSize) {
+            flushRows();
+        }
+    }
+
+    // Sends the rows frame in progress, if any
+    public void flushRows() throws IOException {
+        if (rows == null) {
+            return;
+        }
+        rows.writeEndArray();
+        rows.writeEndObject();
+        rows.close();
+        rows = null;
+        rowsInFrame = 0;
+        send();
+    }
+
+    private void send() throws IOException {
+        buffer.write('\n');
+        emitter.send(buffer.toByteArray(), MediaType.APPLICATION_NDJSON);
+        buffer.reset();
+    }
+}
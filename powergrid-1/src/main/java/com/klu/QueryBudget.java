@@ -0,0 +1,118 @@
+package com.klu;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread. Registered as Hibernate's
+ * statement inspector; QueryBudgetFilter opens a recording per HTTP request, and tests open their
+ * own with QueryBudget.record() to assert "this endpoint runs at most K queries".
+ *
+ * Hibernate hands the inspector SQL with "?" placeholders, so the same text seen several times in
+ * one recording is the same statement with different binds - the signature of an N+1 loop.
+ */
+@Component
+public class QueryBudget implements StatementInspector, HibernatePropertiesCustomizer {
+
+    private static final ThreadLocal<Recording> CURRENT = new ThreadLocal<>();
+
+    public static final class Recording implements AutoCloseable {
+        private final Recording parent;
+        private final List<String> statements = Collections.synchronizedList(new ArrayList<>());
+
+        private Recording(Recording parent) {
+            this.parent = parent;
+        }
+
+        public int count() {
+            return statements.size();
+        }
+
+        public List<String> getStatements() {
+            synchronized (statements) {
+                return new ArrayList<>(statements);
+            }
+        }
+
+        // Statements executed at least minCount times, with their counts, in first-seen order
+        public Map<String, Integer> repeated(int minCount) {
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            for (String sql : getStatements()) {
+                counts.merge(sql, 1, Integer::sum);
+            }
+            counts.values().removeIf(count -> count < minCount);
+            return counts;
+        }
+
+        @Override
+        public void close() {
+            if (CURRENT.get() == this) {
+                CURRENT.set(parent);
+            }
+        }
+    }
+
+    // Starts a recording on this thread; enclosing recordings keep counting too
+    public static Recording record() {
+        Recording recording = new Recording(CURRENT.get());
+        CURRENT.set(recording);
+        return recording;
+    }
+
+    // Carries the caller's recording onto the thread that runs the supplier (e.g. supplyAsync)
+    public static <T> Supplier<T> propagate(Supplier<T> supplier) {
+        Recording recording = CURRENT.get();
+        if (recording == null) {
+            return supplier;
+        }
+        return () -> {
+            Recording previous = CURRENT.get();
+            CURRENT.set(recording);
+            try {
+                return supplier.get();
+            } finally {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    // Same for a continuation such as thenApply, which runs on whichever thread completed the future
+    public static <T, R> Function<T, R> propagate(Function<T, R> function) {
+        Recording recording = CURRENT.get();
+        if (recording == null) {
+            return function;
+        }
+        return value -> {
+            Recording previous = CURRENT.get();
+            CURRENT.set(recording);
+            try {
+                return function.apply(value);
+            } finally {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    @Override
+    public String inspect(String sql) {
+        for (Recording recording = CURRENT.get(); recording != null; recording = recording.parent) {
+            recording.statements.add(sql);
+        }
+        return sql;
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+    }
+}
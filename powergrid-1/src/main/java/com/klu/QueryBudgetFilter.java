@@ -0,0 +1,77 @@
+package com.klu;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Records the statements of every request and flags requests that run more than
+ * powergrid.query-budget.max-statements statements, or repeat one statement at least
+ * powergrid.query-budget.max-repeats times with different binds (N+1).
+ * Violations are logged and counted as powergrid.query.budget.violations. Bulk endpoints whose
+ * statement count grows with the input (CSV import) are listed in powergrid.query-budget.excluded-paths.
+ */
+@Component
+public class QueryBudgetFilter extends OncePerRequestFilter {
+
+    @Value("${powergrid.query-budget.enabled:true}")
+    private boolean enabled;
+
+    @Value("${powergrid.query-budget.max-statements:25}")
+    private int maxStatements;
+
+    @Value("${powergrid.query-budget.max-repeats:5}")
+    private int maxRepeats;
+
+    @Value("${powergrid.query-budget.excluded-paths:/api/import}")
+    private String[] excludedPaths;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!enabled) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (String excluded : excludedPaths) {
+            if (path.startsWith(excluded.trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        try (QueryBudget.Recording recording = QueryBudget.record()) {
+            filterChain.doFilter(request, response);
+            check(request.getMethod() + " " + request.getRequestURI(), recording);
+        }
+    }
+
+    private void check(String requestLine, QueryBudget.Recording recording) {
+        if (recording.count() > maxStatements) {
+            System.err.println("Query budget exceeded: " + requestLine + " ran " + recording.count()
+                    + " statements (budget " + maxStatements + ")");
+            meterRegistry.counter("powergrid.query.budget.violations", "type", "count").increment();
+        }
+        Map<String, Integer> repeated = recording.repeated(maxRepeats);
+        if (!repeated.isEmpty()) {
+            repeated.forEach((sql, count) ->
+                    System.err.println("Repeated statement (" + count + "x) in " + requestLine + ": " + sql));
+            meterRegistry.counter("powergrid.query.budget.violations", "type", "repeat").increment();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.klu;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Sends read-only work to a read replica when one is fresh enough (see ReplicaRoutingConfiguration).
+ * Each call states how stale its data may be:
+ *
+ *  - read(maxStalenessMs, work): the replica must be at most maxStalenessMs behind the primary and
+ *    must already have the current user's own last write (read-your-writes per HTTP session). Only
+ *    clients that already have a session get this; a write never creates one, so cookie-less API
+ *    clients just get the staleness bound.
+ *  - readCurrent(maxStalenessMs, work): additionally the replica must have applied the latest
+ *    ActivityDataVersion this instance knows of, whoever wrote it. For results cached or coalesced
+ *    under ActivityDataVersion.current(), which must not be computed from data older than that version.
+ *
+ * The work runs in a read-only transaction whose connection comes from the chosen replica. If no
+ * replica qualifies, or none is configured, it runs unchanged against the primary. Replica freshness
+ * comes from the heartbeat every powergrid.replicas.heartbeat-ms, so a staleness bound below that
+ * interval always means the primary.
+ */
+@Component
+public class ReadReplicas {
+
+    static final String LAST_WRITE = ReadReplicas.class.getName() + ".lastWrite";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${powergrid.replicas.heartbeat-ms:1000}")
+    private long heartbeatMs;
+
+    // Null when no replicas are configured
+    private ReplicaRoutingDataSource routing;
+    private TransactionTemplate readOnly;
+    private ScheduledExecutorService scheduler;
+    // Latest ActivityDataVersion this instance has moved to
+    private final AtomicLong seenVersion = new AtomicLong();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        try {
+            routing = dataSource.unwrap(ReplicaRoutingDataSource.class);
+        } catch (SQLException e) {
+            return;
+        }
+        readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnly.setReadOnly(true);
+        for (int i = 0; i < routing.replicaCount(); i++) {
+            int replica = i;
+            Gauge.builder("powergrid.replicas.lag", routing, r -> r.appliedUpTo(replica) == 0
+                            ? Double.NaN : System.currentTimeMillis() - r.appliedUpTo(replica))
+                    .description("How far the replica is behind the primary, as of the last heartbeat")
+                    .baseUnit("milliseconds")
+                    .tag("replica", String.valueOf(replica))
+                    .register(meterRegistry);
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("replica-heartbeat-"));
+        scheduler.scheduleWithFixedDelay(this::heartbeatQuietly, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return routing != null;
+    }
+
+    public <T> T read(long maxStalenessMs, Supplier<T> work) {
+        return route(Math.max(System.currentTimeMillis() - maxStalenessMs, userLastWrite()), 0, work);
+    }
+
+    public <T> T readCurrent(long maxStalenessMs, Supplier<T> work) {
+        return route(Math.max(System.currentTimeMillis() - maxStalenessMs, userLastWrite()), seenVersion.get(), work);
+    }
+
+    // Called after every committed write; remembered for the current user's session, if it has one
+    public void recordWrite() {
+        if (routing == null) {
+            return;
+        }
+        // Not RequestAttributes.setAttribute(SCOPE_SESSION), which would create a session on every write
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes request) {
+            HttpSession session = request.getRequest().getSession(false);
+            if (session != null) {
+                session.setAttribute(LAST_WRITE, System.currentTimeMillis());
+            }
+        }
+    }
+
+    // Called whenever ActivityDataVersion moves, by a write here or one seen from another instance
+    public void recordVersion(long version) {
+        seenVersion.accumulateAndGet(version, Math::max);
+    }
+
+    void heartbeat() {
+        routing.heartbeat();
+    }
+
+    private void heartbeatQuietly() {
+        try {
+            heartbeat();
+        } catch (RuntimeException e) {
+            System.err.println("Replica heartbeat failed: " + e.getMessage());
+        }
+    }
+
+    private <T> T route(long notBefore, long minVersion, Supplier<T> work) {
+        if (routing == null) {
+            return work.get();
+        }
+        int replica = pick(notBefore, minVersion);
+        if (replica < 0) {
+            meterRegistry.counter("powergrid.replicas.reads", "target", "primary").increment();
+            return work.get();
+        }
+        try {
+            T result = ReplicaRoutingDataSource.withReplica(replica, () -> readOnly.execute(status -> work.get()));
+            meterRegistry.counter("powergrid.replicas.reads", "target", "replica").increment();
+            return result;
+        } catch (CannotCreateTransactionException e) {
+            // No connection to the replica, so nothing has run yet; use the primary
+            System.err.println("Replica " + replica + " unavailable, reading from the primary: " + e.getMessage());
+            meterRegistry.counter("powergrid.replicas.reads", "target", "primary").increment();
+            return work.get();
+        }
+    }
+
+    // A replica that has applied everything committed before notBefore and minVersion, round robin; -1 if none
+    private int pick(long notBefore, long minVersion) {
+        int count = routing.replicaCount();
+        int start = Math.floorMod(nextReplica.getAndIncrement(), count);
+        for (int i = 0; i < count; i++) {
+            int replica = (start + i) % count;
+            if (routing.appliedUpTo(replica) > notBefore && routing.appliedVersion(replica) >= minVersion) {
+                return replica;
+            }
+        }
+        return -1;
+    }
+
+    private static long userLastWrite() {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        return request != null && request.getAttribute(LAST_WRITE, RequestAttributes.SCOPE_SESSION) instanceof Long time
+                ? time : 0;
+    }
+}
@@ -0,0 +1,71 @@
+package com.klu;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces Boot's DataSource with a ReplicaRoutingDataSource when powergrid.replicas.urls lists one
+ * or more read replicas (comma separated). The primary pool is built from spring.datasource.* as
+ * before; the replica pools use the same driver and spring.datasource.hikari.* settings, are
+ * read-only, and take powergrid.replicas.username/password (default: the primary's).
+ *
+ * Hibernate normally holds a connection from the first statement until the EntityManager closes,
+ * which with open-in-view is the end of the request. Here connections are released after each
+ * transaction instead, so a request can read from a replica and write to the primary.
+ */
+@Configuration
+@ConditionalOnExpression("!'${powergrid.replicas.urls:}'.isBlank()")
+public class ReplicaRoutingConfiguration {
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties, Environment environment,
+                                ObjectProvider<MeterRegistry> meterRegistry,
+                                @Value("${powergrid.replicas.urls}") String[] urls,
+                                @Value("${powergrid.replicas.username:${spring.datasource.username:}}") String username,
+                                @Value("${powergrid.replicas.password:${spring.datasource.password:}}") String password) {
+        Binder binder = Binder.get(environment);
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        if (primary.getPoolName() == null) {
+            primary.setPoolName("powergrid-primary");
+        }
+
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : urls) {
+            HikariDataSource replica = new HikariDataSource();
+            binder.bind("spring.datasource.hikari", Bindable.ofInstance(replica));
+            replica.setJdbcUrl(url.trim());
+            replica.setDriverClassName(properties.determineDriverClassName());
+            replica.setUsername(username);
+            replica.setPassword(password);
+            replica.setReadOnly(true);
+            replica.setPoolName("powergrid-replica-" + replicas.size());
+            // Boot only instruments the DataSource bean, i.e. the primary
+            meterRegistry.ifAvailable(replica::setMetricRegistry);
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primary, replicas);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer releaseConnectionsAfterTransaction() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+}
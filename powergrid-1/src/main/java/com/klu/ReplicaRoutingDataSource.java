@@ -0,0 +1,145 @@
+package com.klu;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Routes connections to the primary or to one of the read replicas. The choice is made when a
+ * connection is acquired, from the replica selected by the innermost withReplica() on this thread;
+ * everywhere else it is the primary. ReadReplicas decides which replica (if any) a read may use.
+ *
+ * Replication progress is tracked with a heartbeat: every beat writes the current time to this
+ * instance's row of powergrid_replica_heartbeat on the primary and reads the row back from each
+ * replica. A replica showing beat t has applied every transaction committed on the primary before t.
+ * The row is per instance, so each instance only compares times from its own clock; it is deleted
+ * again when the instance shuts down. Each beat also reads the replica's ActivityDataVersion, for
+ * reads that must not see data older than a given version.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    static final String HEARTBEAT_TABLE = "powergrid_replica_heartbeat";
+
+    private static final ThreadLocal<Integer> TARGET = new ThreadLocal<>();
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private final List<DataSource> pools = new ArrayList<>();
+    private final JdbcTemplate primary;
+    private final List<JdbcTemplate> replicas;
+    // Primary time up to which each replica has applied the primary's commits, 0 if unknown
+    private final AtomicLongArray appliedUpTo;
+    // ActivityDataVersion each replica has applied, 0 if unknown
+    private final AtomicLongArray appliedVersion;
+    // Set by heartbeat(), which runs on the heartbeat thread; read by close()
+    private volatile boolean heartbeatRowCreated;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas) {
+        this.primary = new JdbcTemplate(primary);
+        this.replicas = replicas.stream().map(JdbcTemplate::new).toList();
+        this.appliedUpTo = new AtomicLongArray(replicas.size());
+        this.appliedVersion = new AtomicLongArray(replicas.size());
+        pools.add(primary);
+        pools.addAll(replicas);
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TARGET.get();
+    }
+
+    // Runs work with connections acquired on this thread going to the given replica
+    static <T> T withReplica(int replica, Supplier<T> work) {
+        Integer previous = TARGET.get();
+        TARGET.set(replica);
+        try {
+            return work.get();
+        } finally {
+            if (previous != null) {
+                TARGET.set(previous);
+            } else {
+                TARGET.remove();
+            }
+        }
+    }
+
+    public int replicaCount() {
+        return replicas.size();
+    }
+
+    public long appliedUpTo(int replica) {
+        return appliedUpTo.get(replica);
+    }
+
+    public long appliedVersion(int replica) {
+        return appliedVersion.get(replica);
+    }
+
+    /**
+     * Writes a new beat to the primary, then reads this instance's last replicated beat and the data
+     * version from every replica. A replica that cannot be read counts as not caught up at all.
+     */
+    public void heartbeat() {
+        if (!heartbeatRowCreated) {
+            primary.execute("CREATE TABLE IF NOT EXISTS " + HEARTBEAT_TABLE
+                    + " (instance_id VARCHAR(36) NOT NULL PRIMARY KEY, beat BIGINT NOT NULL)");
+            primary.update("INSERT INTO " + HEARTBEAT_TABLE + " (instance_id, beat) VALUES (?, 0)", instanceId);
+            heartbeatRowCreated = true;
+        }
+        primary.update("UPDATE " + HEARTBEAT_TABLE + " SET beat = ? WHERE instance_id = ?", System.currentTimeMillis(), instanceId);
+        for (int i = 0; i < replicas.size(); i++) {
+            long beat;
+            long version;
+            try {
+                List<Long> beats = replicas.get(i).queryForList(
+                        "SELECT beat FROM " + HEARTBEAT_TABLE + " WHERE instance_id = ?", Long.class, instanceId);
+                beat = beats.isEmpty() ? 0 : beats.get(0);
+                List<Long> versions = replicas.get(i).queryForList(
+                        "SELECT version FROM " + ActivityDataVersion.TABLE + " WHERE id = 1", Long.class);
+                version = versions.isEmpty() ? 0 : versions.get(0);
+            } catch (RuntimeException e) {
+                // No heartbeat or version table yet, or the replica is down
+                beat = 0;
+                version = 0;
+            }
+            appliedUpTo.set(i, beat);
+            appliedVersion.set(i, version);
+        }
+    }
+
+    // Deletes this instance's heartbeat row and closes the pools behind this DataSource on context shutdown
+    @Override
+    public void close() {
+        if (heartbeatRowCreated) {
+            try {
+                primary.update("DELETE FROM " + HEARTBEAT_TABLE + " WHERE instance_id = ?", instanceId);
+            } catch (RuntimeException e) {
+                System.err.println("Failed to delete replica heartbeat row: " + e.getMessage());
+            }
+        }
+        for (DataSource pool : pools) {
+            if (pool instanceof Closeable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    System.err.println("Failed to close connection pool: " + e.getMessage());
+                }
+            }
+        }
+    }
+}
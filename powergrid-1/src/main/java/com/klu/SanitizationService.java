@@ -0,0 +1,100 @@
+package com.klu;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.owasp.html.PolicyFactory;
+import org.owasp.html.Sanitizers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * HTML sanitizing for user-supplied text fields, with the same output as the OWASP policy
+ * (FORMATTING + BLOCKS) but without running it on plain text.
+ *
+ * A value made only of characters the policy passes through unchanged is returned as is, after a
+ * single scan that allocates nothing. Anything else goes through the policy; short values are
+ * memoized in a bounded cache, since the same categories, states and station names come back on
+ * every row of a bulk update. SanitizationServiceTest checks the result against the policy.
+ */
+@Service
+public class SanitizationService {
+
+    static final PolicyFactory POLICY = Sanitizers.FORMATTING.and(Sanitizers.BLOCKS);
+
+    // Longer values (descriptions, remarks) are rarely repeated and would only crowd the memo
+    static final int MEMO_MAX_LENGTH = 256;
+
+    // ASCII characters the policy leaves alone. Everything below 0x20 except tab/LF/CR is dropped,
+    // " & ' + < = > @ ` are entity-encoded, and '{' gets a comment inserted in some positions.
+    private static final boolean[] ASCII_SAFE = new boolean[128];
+
+    static {
+        for (char c = 0x20; c < 128; c++) {
+            ASCII_SAFE[c] = true;
+        }
+        ASCII_SAFE['\t'] = true;
+        ASCII_SAFE['\n'] = true;
+        ASCII_SAFE['\r'] = true;
+        for (char c : "\"&'+<=>@`{".toCharArray()) {
+            ASCII_SAFE[c] = false;
+        }
+    }
+
+    private final Cache<String, String> memo;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    public SanitizationService(@Value("${powergrid.sanitizer.memo-size:10000}") long memoSize) {
+        this.memo = Caffeine.newBuilder().maximumSize(memoSize).recordStats().build();
+    }
+
+    @PostConstruct
+    void registerMetrics() {
+        if (meterRegistry != null) {
+            CaffeineCacheMetrics.monitor(meterRegistry, memo, "sanitizer");
+        }
+    }
+
+    // Never returns null; null sanitizes to "" like the policy does
+    public String sanitize(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (isPlainText(value)) {
+            return value;
+        }
+        if (value.length() > MEMO_MAX_LENGTH) {
+            return sanitizeFully(value);
+        }
+        return memo.get(value, SanitizationService::sanitizeFully);
+    }
+
+    // True if the policy would return value unchanged
+    static boolean isPlainText(String value) {
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 128) {
+                if (!ASCII_SAFE[c]) {
+                    return false;
+                }
+            } else if (c == 0x1FEF || (c >= 0xD800 && c < 0xE000) || c >= 0xFE60) {
+                // Greek varia (U+1FEF, equivalent to '`') is encoded, supplementary characters become numeric entities,
+                // and U+FE60 up (specials, BOM, half/full-width forms) are encoded or dropped
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Charged to the request's Server-Timing "sanitize" metric; the plain-text path is not
+    private static String sanitizeFully(String value) {
+        try (ServerTiming.Span span = ServerTiming.span(ServerTiming.SANITIZE)) {
+            return POLICY.sanitize(value);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.klu;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Per-request time breakdown, sent back as a Server-Timing header by ServerTimingFilter so the
+ * browser's network panel shows where a slow response spent its time.
+ *
+ * Spans are exclusive: time spent in a nested span or in JDBC is charged to that metric only, so
+ * "service" is service code minus its queries and sanitizing, and the metrics add up to roughly
+ * "total". JDBC time is reported by SlowQueryLog through addDb().
+ */
+public final class ServerTiming {
+
+    public static final String DB = "db";
+    public static final String SERVICE = "service";
+    public static final String SANITIZE = "sanitize";
+    public static final String RENDER = "render";
+    public static final String SERIALIZE = "serialize";
+
+    private static final ThreadLocal<ServerTiming> CURRENT = new ThreadLocal<>();
+
+    private static final Span NO_SPAN = new Span(null, null);
+
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> nanos = new LinkedHashMap<>();
+    private final Map<String, Integer> counts = new LinkedHashMap<>();
+    private final Deque<Span> open = new ArrayDeque<>();
+
+    private ServerTiming() {
+        for (String metric : new String[] {DB, SERVICE, SANITIZE, RENDER, SERIALIZE}) {
+            nanos.put(metric, 0L);
+            counts.put(metric, 0);
+        }
+    }
+
+    public static final class Span implements AutoCloseable {
+        private final ServerTiming timing;
+        private final String metric;
+        private final long start = System.nanoTime();
+        private long childNanos;
+
+        private Span(ServerTiming timing, String metric) {
+            this.timing = timing;
+            this.metric = metric;
+        }
+
+        @Override
+        public void close() {
+            if (timing == null) {
+                return;
+            }
+            long elapsed = System.nanoTime() - start;
+            timing.open.remove(this);
+            timing.charge(metric, elapsed - childNanos, elapsed);
+        }
+    }
+
+    // Starts timing the current request; the filter calls end() when the response is ready
+    static ServerTiming begin() {
+        ServerTiming timing = new ServerTiming();
+        CURRENT.set(timing);
+        return timing;
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    // Opens a span for metric; re-entering a metric that is already open (service calling service) is a no-op
+    public static Span span(String metric) {
+        ServerTiming timing = CURRENT.get();
+        if (timing == null) {
+            return NO_SPAN;
+        }
+        for (Span span : timing.open) {
+            if (metric.equals(span.metric)) {
+                return NO_SPAN;
+            }
+        }
+        Span span = new Span(timing, metric);
+        timing.open.push(span);
+        return span;
+    }
+
+    public static void addDb(long elapsedNanos) {
+        ServerTiming timing = CURRENT.get();
+        if (timing != null) {
+            timing.charge(DB, elapsedNanos, elapsedNanos);
+        }
+    }
+
+    private void charge(String metric, long exclusiveNanos, long elapsedNanos) {
+        nanos.merge(metric, Math.max(exclusiveNanos, 0L), Long::sum);
+        counts.merge(metric, 1, Integer::sum);
+        Span parent = open.peek();
+        if (parent != null) {
+            parent.childNanos += elapsedNanos;
+        }
+    }
+
+    public long nanos(String metric) {
+        return nanos.getOrDefault(metric, 0L);
+    }
+
+    // e.g. db;dur=12.41;desc="3 queries", service;dur=4.02, render;dur=0, serialize;dur=1.30, total;dur=19.87
+    public String header() {
+        StringBuilder header = new StringBuilder();
+        nanos.forEach((metric, value) -> {
+            header.append(metric).append(";dur=").append(millis(value));
+            if (DB.equals(metric)) {
+                header.append(";desc=\"").append(counts.get(DB)).append(" queries\"");
+            }
+            header.append(", ");
+        });
+        return header.append("total;dur=").append(millis(System.nanoTime() - startNanos)).toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1_000_000.0);
+    }
+}
@@ -0,0 +1,81 @@
+package com.klu;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Feeds the Server-Timing spans: "service" around ActivityService and FileStorageService calls,
+ * "render" from the end of a handler to the end of its view (Thymeleaf), and "serialize" around
+ * Jackson writing a response body. The converter bean replaces Boot's default one and keeps its
+ * ObjectMapper.
+ */
+@Configuration
+public class ServerTimingConfiguration implements WebMvcConfigurer {
+
+    private static final String RENDER_SPAN = ServerTimingConfiguration.class.getName() + ".renderSpan";
+
+    @Aspect
+    static class ServiceTimingAspect {
+
+        @Around("execution(public * com.klu.ActivityService+.*(..)) || execution(public * com.klu.FileStorageService.*(..))")
+        public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+            try (ServerTiming.Span span = ServerTiming.span(ServerTiming.SERVICE)) {
+                return joinPoint.proceed();
+            }
+        }
+    }
+
+    @Bean
+    public ServiceTimingAspect serviceTimingAspect() {
+        return new ServiceTimingAspect();
+    }
+
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper) {
+        return new MappingJackson2HttpMessageConverter(objectMapper) {
+            @Override
+            protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+                try (ServerTiming.Span span = ServerTiming.span(ServerTiming.SERIALIZE)) {
+                    super.writeInternal(object, type, outputMessage);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                   ModelAndView modelAndView) {
+                if (modelAndView != null && modelAndView.hasView()) {
+                    request.setAttribute(RENDER_SPAN, ServerTiming.span(ServerTiming.RENDER));
+                }
+            }
+
+            @Override
+            public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                        Exception ex) {
+                if (request.getAttribute(RENDER_SPAN) instanceof ServerTiming.Span span) {
+                    request.removeAttribute(RENDER_SPAN);
+                    span.close();
+                }
+            }
+        });
+    }
+}
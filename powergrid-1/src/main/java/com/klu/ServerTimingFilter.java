@@ -0,0 +1,84 @@
+package com.klu;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import java.io.IOException;
+
+/**
+ * Adds a Server-Timing header (db, service, sanitize, render, serialize, total) to every response.
+ * The body is buffered so the header can still be set after Thymeleaf has rendered the page or
+ * Jackson has written the JSON; streaming endpoints (SSE, emitters, file downloads, the CSV export)
+ * are listed in powergrid.server-timing.excluded-paths and are passed through untouched.
+ */
+@Component
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    static final String HEADER = "Server-Timing";
+
+    @Value("${powergrid.server-timing.enabled:true}")
+    private boolean enabled;
+
+    @Value("${powergrid.server-timing.excluded-paths:/activities/updates,/api/dateRangeQuery,/api/download/,/api/reactive/,/export}")
+    private String[] excludedPaths;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!enabled) {
+            return true;
+        }
+        String accept = request.getHeader("Accept");
+        if (accept != null && accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE)) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (String excluded : excludedPaths) {
+            if (path.startsWith(excluded.trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // A DeferredResult/Callable is rendered on the async dispatch, which reuses the wrapper from the first pass
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        HttpServletResponse responseToUse = response;
+        if (!isAsyncDispatch(request) && WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class) == null) {
+            responseToUse = new ContentCachingResponseWrapper(response);
+        }
+
+        ServerTiming timing = ServerTiming.begin();
+        try {
+            filterChain.doFilter(request, responseToUse);
+        } finally {
+            ServerTiming.end();
+        }
+
+        if (isAsyncStarted(request)) {
+            return;
+        }
+        ContentCachingResponseWrapper wrapper =
+                WebUtils.getNativeResponse(responseToUse, ContentCachingResponseWrapper.class);
+        if (wrapper != null) {
+            if (!wrapper.isCommitted()) {
+                wrapper.setHeader(HEADER, timing.header());
+            }
+            wrapper.copyBodyToResponse();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.klu;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical computations: the first caller for a key runs it, callers arriving
+ * while it is in flight wait for and share that result instead of running their own. Nothing is
+ * kept once the computation finishes (that is the cache's job), so results are never stale.
+ *
+ * Keys are normalized (maps compared by content, not key order) so JSON payloads that differ only
+ * in field order coalesce too. Callers include the data version in the key, so a request that
+ * arrives after a write never joins a computation that started before it.
+ */
+@Component
+public class SingleFlight {
+
+    private static final class Counters {
+        final LongAdder executions = new LongAdder();
+        final LongAdder coalesced = new LongAdder();
+    }
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String group, Object key, Supplier<T> computation) {
+        String flightKey = group + ":" + normalize(key);
+        Counters groupCounters = counters.computeIfAbsent(group, g -> new Counters());
+        CompletableFuture<Object> own = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(flightKey, own);
+        if (existing != null) {
+            groupCounters.coalesced.increment();
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                // Waiters see the leader's failure as if they had run the computation themselves
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+        groupCounters.executions.increment();
+        try {
+            T result = computation.get();
+            own.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, own);
+        }
+    }
+
+    // Per group: computations actually run vs. callers that shared an in-flight result
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        new TreeMap<>(counters).forEach((group, groupCounters) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            long executions = groupCounters.executions.sum();
+            long coalesced = groupCounters.coalesced.sum();
+            entry.put("executions", executions);
+            entry.put("coalesced", coalesced);
+            entry.put("coalescedRatio", executions + coalesced > 0 ? (double) coalesced / (executions + coalesced) : 0.0);
+            stats.put(group, entry);
+        });
+        stats.put("inFlight", inFlight.size());
+        return stats;
+    }
+
+    // Stable string form of a key: maps sorted by key, lists kept in order
+    static String normalize(Object key) {
+        return canonical(key).toString();
+    }
+
+    private static Object canonical(Object value) {
+        if (value instanceof Map) {
+            Map<String, Object> sorted = new TreeMap<>();
+            ((Map<?, ?>) value).forEach((k, v) -> sorted.put(String.valueOf(k), canonical(v)));
+            return sorted;
+        }
+        if (value instanceof Collection) {
+            List<Object> items = new ArrayList<>();
+            for (Object item : (Collection<?>) value) {
+                items.add(canonical(item));
+            }
+            return items;
+        }
+        return value;
+    }
+}
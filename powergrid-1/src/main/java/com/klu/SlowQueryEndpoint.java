@@ -0,0 +1,29 @@
+package com.klu;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * /actuator/slowqueries: GET shows the current threshold and the most recent slow statements.
+ * The endpoint is read-only over HTTP; the threshold is changed over JMX (SlowQueryEndpointJmxExtension).
+ */
+@Component
+@Endpoint(id = "slowqueries")
+public class SlowQueryEndpoint {
+
+    @Autowired
+    private SlowQueryLog slowQueryLog;
+
+    @ReadOperation
+    public Map<String, Object> slowQueries() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("thresholdMs", slowQueryLog.getThresholdMillis());
+        response.put("recent", slowQueryLog.getRecent());
+        return response;
+    }
+}
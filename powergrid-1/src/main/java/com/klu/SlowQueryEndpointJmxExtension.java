@@ -0,0 +1,30 @@
+package com.klu;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.jmx.annotation.EndpointJmxExtension;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Changes the slow-query threshold without a restart. Only exposed over JMX (spring.jmx.enabled,
+ * management.endpoints.jmx.exposure.include), which needs local or authenticated JMX access,
+ * so the unauthenticated web endpoint cannot be used to turn on logging of every statement.
+ */
+@Component
+@EndpointJmxExtension(endpoint = SlowQueryEndpoint.class)
+public class SlowQueryEndpointJmxExtension {
+
+    @Autowired
+    private SlowQueryLog slowQueryLog;
+
+    @Autowired
+    private SlowQueryEndpoint slowQueryEndpoint;
+
+    @WriteOperation
+    public Map<String, Object> setThreshold(long thresholdMs) {
+        slowQueryLog.setThresholdMillis(thresholdMs);
+        return slowQueryEndpoint.slowQueries();
+    }
+}
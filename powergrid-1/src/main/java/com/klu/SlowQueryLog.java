@@ -0,0 +1,333 @@
+package com.klu;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.MethodExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import net.ttddyy.dsproxy.proxy.ProxyJdbcObject;
+import net.ttddyy.dsproxy.proxy.ResultSetProxyLogic;
+import net.ttddyy.dsproxy.proxy.ResultSetProxyLogicFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Listens to every JDBC statement through the datasource-proxy wrapper (DataSourceProxyConfiguration).
+ * Each statement's time goes to the request's Server-Timing "db" metric; statements slower than the
+ * threshold are written as one JSON line to the "powergrid.slowquery" logger with SQL shape, binds,
+ * row count and duration, and kept in a small ring buffer served by the slowqueries actuator endpoint.
+ *
+ * Binds for free-text columns (powergrid.slow-query.redacted-columns) are replaced by their length.
+ * The row count of a SELECT is only known once the caller has read the ResultSet, so slow SELECTs
+ * are logged when their ResultSet or Statement is closed. ResultSets are wrapped by a minimal proxy
+ * (resultSetProxyLogicFactory) that only counts next() calls; no listener runs per ResultSet call.
+ *
+ * The threshold starts at powergrid.slow-query.threshold-ms and can be changed at runtime through
+ * the slowqueries endpoint's setThreshold operation over JMX (see SlowQueryEndpoint).
+ */
+@Component
+public class SlowQueryLog implements QueryExecutionListener, MethodExecutionListener {
+
+    private static final Logger log = LoggerFactory.getLogger("powergrid.slowquery");
+
+    private static final String START_NANOS = "powergrid.startNanos";
+    private static final int RECENT_LIMIT = 50;
+    private static final int MAX_BIND_LENGTH = 100;
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern INSERT = Pattern.compile(
+            "^\\s*insert\\s+into\\s+\\S+\\s*\\(([^)]*)\\)\\s*values\\s*\\(([^)]*)\\)");
+    // The column a placeholder is compared with: "a1_0.state=?", "event_date between ? and ?", "id in (?,?"
+    private static final Pattern COMPARED_COLUMN = Pattern.compile(
+            "([\\w.]+)\\s*(?:=|<>|!=|<=|>=|<|>|\\blike|\\bbetween|\\bbetween\\s+\\?\\s+and|\\bin\\s*\\((?:\\s*\\?\\s*,)*)\\s*$");
+
+    private final AtomicLong thresholdMillis;
+    private final Set<String> redactedColumns;
+    private final ConcurrentLinkedDeque<Map<String, Object>> recent = new ConcurrentLinkedDeque<>();
+    // Slow SELECTs whose rows are still being read, by the statement that produced them
+    private final ThreadLocal<Map<Statement, RowCountingResultSet>> pendingSelects =
+            ThreadLocal.withInitial(IdentityHashMap::new);
+    // ResultSet created by the statement whose afterQuery() runs next on this thread
+    private final ThreadLocal<RowCountingResultSet> lastResultSet = new ThreadLocal<>();
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    public SlowQueryLog(@Value("${powergrid.slow-query.threshold-ms:200}") long thresholdMillis,
+                        @Value("${powergrid.slow-query.redacted-columns:}") String[] redactedColumns) {
+        this.thresholdMillis = new AtomicLong(thresholdMillis);
+        this.redactedColumns = Arrays.stream(redactedColumns)
+                .map(column -> column.trim().toLowerCase(Locale.ROOT))
+                .filter(column -> !column.isEmpty())
+                .collect(Collectors.toSet());
+    }
+
+    public long getThresholdMillis() {
+        return thresholdMillis.get();
+    }
+
+    public void setThresholdMillis(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Threshold must be >= 0 ms");
+        }
+        thresholdMillis.set(millis);
+    }
+
+    // Newest first
+    public List<Map<String, Object>> getRecent() {
+        return new ArrayList<>(recent);
+    }
+
+    // Wraps every ResultSet; datasource-proxy creates it just before afterQuery() of its statement
+    public ResultSetProxyLogicFactory resultSetProxyLogicFactory() {
+        return (resultSet, connectionInfo, proxyConfig) -> {
+            RowCountingResultSet logic = new RowCountingResultSet(resultSet);
+            lastResultSet.set(logic);
+            return logic;
+        };
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        execInfo.addCustomValue(START_NANOS, System.nanoTime());
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        Long start = execInfo.getCustomValue(START_NANOS, Long.class);
+        long elapsedNanos = start != null ? System.nanoTime() - start
+                : TimeUnit.MILLISECONDS.toNanos(execInfo.getElapsedTime());
+        ServerTiming.addDb(elapsedNanos);
+        RowCountingResultSet resultSet = lastResultSet.get();
+        lastResultSet.remove();
+        if (elapsedNanos < TimeUnit.MILLISECONDS.toNanos(thresholdMillis.get())) {
+            return;
+        }
+
+        Map<String, Object> entry = entry(execInfo, queryInfoList, elapsedNanos);
+        if (execInfo.getResult() instanceof ResultSet && resultSet != null && execInfo.getStatement() != null) {
+            resultSet.entry = entry;
+            resultSet.statement = execInfo.getStatement();
+            pendingSelects.get().put(resultSet.statement, resultSet);
+        } else {
+            entry.put("rows", rowCount(execInfo.getResult()));
+            publish(entry);
+        }
+    }
+
+    @Override
+    public void beforeMethod(MethodExecutionContext executionContext) {
+    }
+
+    @Override
+    public void afterMethod(MethodExecutionContext executionContext) {
+        // Closing a Statement or Connection closes its ResultSets without going through their proxies
+        Map<Statement, RowCountingResultSet> pending = pendingSelects.get();
+        if (pending.isEmpty() || !"close".equals(executionContext.getMethod().getName())) {
+            return;
+        }
+        Object target = executionContext.getTarget();
+        if (target instanceof Statement statement) {
+            publish(pending.remove(statement));
+        } else if (target instanceof Connection) {
+            new ArrayList<>(pending.values()).forEach(this::publish);
+            pending.clear();
+        }
+    }
+
+    private void publish(RowCountingResultSet resultSet) {
+        if (resultSet == null || resultSet.entry == null) {
+            return;
+        }
+        Map<String, Object> entry = resultSet.entry;
+        resultSet.entry = null;
+        entry.put("rows", resultSet.rows);
+        publish(entry);
+    }
+
+    // Counts rows as they are read; a slow SELECT's entry is published when the ResultSet is closed
+    private final class RowCountingResultSet implements ResultSetProxyLogic {
+        private final ResultSet resultSet;
+        private int rows;
+        // Set by afterQuery() when the statement was slow
+        private Map<String, Object> entry;
+        private Statement statement;
+
+        RowCountingResultSet(ResultSet resultSet) {
+            this.resultSet = resultSet;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == ProxyJdbcObject.class) {
+                return resultSet;
+            }
+            Object result;
+            try {
+                result = method.invoke(resultSet, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+            String name = method.getName();
+            if ("next".equals(name)) {
+                if (Boolean.TRUE.equals(result)) {
+                    rows++;
+                }
+            } else if ("close".equals(name) && entry != null) {
+                pendingSelects.get().remove(statement);
+                publish(this);
+            }
+            return result;
+        }
+    }
+
+    private Map<String, Object> entry(ExecutionInfo execInfo, List<QueryInfo> queryInfoList, long elapsedNanos) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("timestamp", Instant.now().toString());
+        entry.put("durationMs", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        String sql = queryInfoList.isEmpty() ? "" : queryInfoList.get(0).getQuery();
+        entry.put("sql", WHITESPACE.matcher(sql).replaceAll(" ").trim());
+        if (queryInfoList.size() > 1) {
+            entry.put("statements", queryInfoList.size());
+        }
+        if (execInfo.isBatch()) {
+            entry.put("batchSize", execInfo.getBatchSize());
+        }
+        if (!queryInfoList.isEmpty() && !queryInfoList.get(0).getParametersList().isEmpty()) {
+            // First parameter set only; a batch repeats the same shape
+            entry.put("binds", binds(sql, queryInfoList.get(0).getParametersList().get(0)));
+        }
+        entry.put("success", execInfo.isSuccess());
+        entry.put("request", currentRequest());
+        return entry;
+    }
+
+    private List<Object> binds(String sql, List<ParameterSetOperation> parameters) {
+        List<String> columns = bindColumns(sql);
+        List<ParameterSetOperation> ordered = new ArrayList<>(parameters);
+        ordered.sort(Comparator.comparingInt(operation -> operation.getArgs()[0] instanceof Integer index ? index : 0));
+        List<Object> binds = new ArrayList<>();
+        for (ParameterSetOperation operation : ordered) {
+            Object[] args = operation.getArgs();
+            if (args.length == 0 || !(args[0] instanceof Integer index)) {
+                continue;
+            }
+            String column = index - 1 < columns.size() ? columns.get(index - 1) : null;
+            Object value = ParameterSetOperation.isSetNullParameterOperation(operation) || args.length < 2 ? null : args[1];
+            binds.add(bindValue(column, value));
+        }
+        return binds;
+    }
+
+    private Object bindValue(String column, Object value) {
+        if (value == null || value instanceof Number || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof byte[] bytes) {
+            return "<" + bytes.length + " bytes>";
+        }
+        String text = value.toString();
+        if (column != null && redactedColumns.contains(column)) {
+            return "<redacted, " + text.length() + " chars>";
+        }
+        return text.length() > MAX_BIND_LENGTH ? text.substring(0, MAX_BIND_LENGTH) + "..." : text;
+    }
+
+    // The column each "?" in sql is bound to, by position; null where it can't be told from the SQL text
+    static List<String> bindColumns(String sql) {
+        String lower = sql.toLowerCase(Locale.ROOT);
+        List<String> columns = new ArrayList<>();
+        Matcher insert = INSERT.matcher(lower);
+        if (insert.find()) {
+            String[] names = insert.group(1).split(",");
+            String[] values = insert.group(2).split(",");
+            for (int i = 0; i < values.length; i++) {
+                if ("?".equals(values[i].trim())) {
+                    columns.add(i < names.length ? unqualified(names[i]) : null);
+                }
+            }
+            return columns;
+        }
+        for (int i = lower.indexOf('?'); i >= 0; i = lower.indexOf('?', i + 1)) {
+            Matcher compared = COMPARED_COLUMN.matcher(lower.substring(Math.max(0, i - 120), i));
+            columns.add(compared.find() ? unqualified(compared.group(1)) : null);
+        }
+        return columns;
+    }
+
+    private static String unqualified(String column) {
+        String trimmed = column.trim();
+        return trimmed.substring(trimmed.lastIndexOf('.') + 1);
+    }
+
+    private static Object rowCount(Object result) {
+        if (result instanceof Integer || result instanceof Long) {
+            return result;
+        }
+        if (result instanceof int[] counts) {
+            return Arrays.stream(counts).filter(count -> count > 0).sum();
+        }
+        return null;
+    }
+
+    private static String currentRequest() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes servletAttributes) {
+            HttpServletRequest request = servletAttributes.getRequest();
+            return request.getMethod() + " " + request.getRequestURI();
+        }
+        return null;
+    }
+
+    private void publish(Map<String, Object> entry) {
+        if (entry == null) {
+            return;
+        }
+        recent.addFirst(entry);
+        while (recent.size() > RECENT_LIMIT) {
+            recent.pollLast();
+        }
+        meterRegistry.counter("powergrid.slow.queries").increment();
+        try {
+            log.warn(objectMapper.writeValueAsString(entry));
+        } catch (JsonProcessingException e) {
+            log.warn(entry.toString());
+        }
+    }
+}
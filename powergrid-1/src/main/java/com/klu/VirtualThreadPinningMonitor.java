@@ -0,0 +1,85 @@
+package com.klu;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Pinning diagnostics for the virtual-thread mode. A virtual thread that blocks inside a monitor
+ * (a synchronized block, or a lock the JDBC driver takes internally) pins its carrier thread, and a
+ * few of those at once stall every other virtual thread. In virtual mode this streams the JVM's own
+ * jdk.VirtualThreadPinned JFR events longer than powergrid.virtual-threads.pinned-threshold-ms,
+ * counts them per site as powergrid.virtual.pinned and logs the stack the first time a site shows up.
+ * The site is the first frame outside the JDK, i.e. the application or driver code holding the monitor.
+ */
+@Component
+public class VirtualThreadPinningMonitor {
+
+    static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    @Autowired
+    private VirtualThreads virtualThreads;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${powergrid.virtual-threads.pinned-threshold-ms:20}")
+    private long thresholdMs;
+
+    private final Set<String> reportedSites = ConcurrentHashMap.newKeySet();
+    private RecordingStream stream;
+
+    @PostConstruct
+    public void start() {
+        if (!virtualThreads.isEnabled()) {
+            return;
+        }
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(Duration.ofMillis(thresholdMs)).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::onPinned);
+        stream.startAsync();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    private void onPinned(RecordedEvent event) {
+        List<RecordedFrame> frames = event.getStackTrace() != null ? event.getStackTrace().getFrames() : List.of();
+        String site = site(frames);
+        meterRegistry.counter("powergrid.virtual.pinned", "site", site).increment();
+        if (reportedSites.add(site)) {
+            System.err.println("Virtual thread pinned for " + event.getDuration().toMillis() + " ms at " + site + "\n"
+                    + frames.stream().map(VirtualThreadPinningMonitor::frame).collect(Collectors.joining("\n\tat ", "\tat ", "")));
+        }
+    }
+
+    static String site(List<RecordedFrame> frames) {
+        for (RecordedFrame frame : frames) {
+            String type = frame.getMethod().getType().getName();
+            if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.")) {
+                return frame(frame);
+            }
+        }
+        return frames.isEmpty() ? "unknown" : frame(frames.get(0));
+    }
+
+    private static String frame(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+}
@@ -0,0 +1,41 @@
+package com.klu;
+
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The virtual-thread execution mode, switched with Spring Boot's spring.threads.virtual.enabled.
+ * Boot itself moves Tomcat request handling and the application task executor (MVC async, @Async)
+ * onto virtual threads; the pools this application creates (SSE scheduler, analytical query pool)
+ * take their ThreadFactory from here. Virtual threads need a Java 21 runtime: on an older one the
+ * property is ignored, with a warning, and everything keeps running on platform threads. The build
+ * and deployment target Java 17 (java.version in pom.xml), so until that moves to 21 this mode, the
+ * pinning monitor and the admission default are inert.
+ */
+@Component
+public class VirtualThreads {
+
+    private final boolean enabled;
+
+    public VirtualThreads(Environment environment) {
+        this.enabled = Threading.VIRTUAL.isActive(environment);
+        if (!enabled && environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false)) {
+            System.err.println("spring.threads.virtual.enabled is set, but Java " + Runtime.version().feature()
+                    + " has no virtual threads (Java 21+ needed); using platform threads");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Virtual threads in virtual mode, otherwise platform threads; both named prefix + counter
+    public ThreadFactory threadFactory(String prefix) {
+        return enabled ? new VirtualThreadTaskExecutor(prefix).getVirtualThreadFactory() : new CustomizableThreadFactory(prefix);
+    }
+}
@@ -0,0 +1,226 @@
+package com.klu;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static com.klu.TestActivities.activity;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The bitmap shortcut in getAllActivities/getActivityGrid must select the same rows, in the same
+ * order and with the same total, as the SQL queries it replaces.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ActivityBitmapIndexTest {
+
+    private static final String DATES = "2031-01-01 to 2031-01-31";
+
+    @Autowired
+    private ActivityBitmapIndex activityBitmapIndex;
+
+    @Autowired
+    private ActivityService activityService;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seed() {
+        for (int i = 0; i < 12; i++) {
+            activityRepository.save(activity(i % 3 == 0 ? "Nagaland" : "Manipur", i % 2 == 0 ? "Workshop" : "Seminar",
+                    LocalDate.of(2031, 1, 1 + 2 * i)));
+        }
+        // Rows saved through the repository bypass the index
+        activityBitmapIndex.rebuild();
+    }
+
+    @AfterEach
+    void restore() {
+        ReflectionTestUtils.setField(activityBitmapIndex, "activityRepository", activityRepository);
+    }
+
+    @Test
+    void filtersSelectTheSameRowsAsSql() {
+        for (String state : List.of("", "Nagaland", "Manipur", "Nagaland,Manipur", "Assam")) {
+            for (String category : List.of("", "Workshop", "Seminar,Workshop")) {
+                for (String dateRange : List.of("", DATES, "2031-01-10 to 2031-01-05")) {
+                    for (String sortDir : List.of("asc", "desc")) {
+                        assertSameAsSql(state, category, dateRange, sortDir);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void rolledBackWritesNeverReachTheIndex() {
+        transactionTemplate.executeWithoutResult(status -> {
+            activityService.save(activity("Nagaland", "Workshop", LocalDate.of(2024, 10, 30)), null);
+            status.setRollbackOnly();
+        });
+        Activity committed = activity("Nagaland", "Workshop", LocalDate.of(2024, 10, 30));
+        transactionTemplate.executeWithoutResult(status -> activityService.save(committed, null));
+
+        assertSameAsSql("Nagaland", "Workshop", "2024-10-30 to 2024-10-30", "asc");
+        assertThat(bitmapIds("Nagaland", "Workshop", "2024-10-30 to 2024-10-30", "asc")).contains(committed.getId());
+    }
+
+    @Test
+    void writesCommittedDuringARebuildAreKept() {
+        Activity late = activity("Nagaland", "Seminar", LocalDate.of(2031, 1, 2));
+        // The write lands after the rebuild has read the table but before it publishes the result
+        ReflectionTestUtils.setField(activityBitmapIndex, "activityRepository", Proxy.newProxyInstance(
+                ActivityRepository.class.getClassLoader(), new Class<?>[]{ActivityRepository.class},
+                (proxy, method, args) -> {
+                    Object result = method.invoke(activityRepository, args);
+                    if (method.getName().equals("findIndexColumns")) {
+                        activityBitmapIndex.index(activityRepository.save(late));
+                    }
+                    return result;
+                }));
+
+        activityBitmapIndex.rebuild();
+
+        assertThat(bitmapIds("Nagaland", "Seminar", DATES, "asc")).contains(late.getId());
+        assertSameAsSql("Nagaland", "Seminar", DATES, "asc");
+    }
+
+    @Test
+    void valuesMatchLikeTheMySqlCollation() {
+        Activity upper = activityRepository.save(activity("LAKSHADWEEP", "Workshop", LocalDate.of(2032, 5, 1)));
+        Activity padded = activityRepository.save(activity("Lakshadweep  ", "workshop", LocalDate.of(2032, 5, 1)));
+        activityBitmapIndex.indexAll(List.of(upper, padded));
+
+        assertThat(activityBitmapIndex.resolve(List.of("lakshadweep"), List.of("WORKSHOP "), null, null, null).toArray())
+                .containsExactlyInAnyOrder(Math.toIntExact(upper.getId()), Math.toIntExact(padded.getId()));
+        assertThat(activityBitmapIndex.resolveStateAndEventCategory("Lakshadweep", "WorkShop", "AND").getCardinality()).isEqualTo(2);
+        @SuppressWarnings("unchecked")
+        Map<String, Long> states = (Map<String, Long>) activityBitmapIndex.facetCounts(
+                activityBitmapIndex.resolve(List.of("Lakshadweep"), null, null, null, null)).get("states");
+        assertThat(states).containsExactly(Map.entry("LAKSHADWEEP", 2L));
+    }
+
+    @Test
+    void pagesWalkTheCandidatesInEitherDirection() {
+        List<Long> ascending = List.of(1L, 5L, 9L, 70_000L, 1L << 20, 1L << 31, ActivityBitmapIndex.MAX_ID);
+        List<Long> descending = new ArrayList<>(ascending);
+        Collections.reverse(descending);
+        RoaringBitmap candidates = new RoaringBitmap();
+        ascending.forEach(id -> candidates.add((int) (long) id));
+
+        for (int offset = 0; offset <= ascending.size(); offset++) {
+            for (int limit = 0; limit <= 3; limit++) {
+                int end = Math.min(ascending.size(), offset + limit);
+                assertThat(activityBitmapIndex.page(candidates, offset, limit, true)).isEqualTo(ascending.subList(offset, end));
+                assertThat(activityBitmapIndex.page(candidates, offset, limit, false)).isEqualTo(descending.subList(offset, end));
+            }
+        }
+    }
+
+    @Test
+    void stateCategoryResultsTooLargeForOneIdListComeFromSql() {
+        Object service = AopTestUtils.getTargetObject(activityService);
+        Object maxIdList = ReflectionTestUtils.getField(service, "maxBitmapIdList");
+        ReflectionTestUtils.setField(service, "maxBitmapIdList", 3);
+        try {
+            activityBitmapIndex.indexAll(List.of(
+                    activityRepository.save(activity("Meghalaya", "Workshop", LocalDate.of(2032, 6, 1))),
+                    activityRepository.save(activity("Meghalaya", "Workshop", LocalDate.of(2032, 6, 2)))));
+
+            assertThat(stateCategoryStatements("Meghalaya", "Workshop", "AND")).anyMatch(sql -> sql.contains(".id in ("));
+            // Every seeded row matches NOT, more than the limit
+            assertThat(stateCategoryStatements("Meghalaya", "Workshop", "NOT")).noneMatch(sql -> sql.contains(".id in ("));
+        } finally {
+            ReflectionTestUtils.setField(service, "maxBitmapIdList", maxIdList);
+        }
+    }
+
+    @Test
+    void idTooLargeForTheIndexFallsBackToSqlInsteadOfFailingTheWrite() {
+        long id = ActivityBitmapIndex.MAX_ID + 1;
+        // Written by other means, e.g. an import with explicit ids
+        jdbcTemplate.update("INSERT INTO activity (id, state, event_category, activity_type, number_of_participants, event_date, order_index)"
+                + " VALUES (?, 'Nagaland', 'Workshop', 'Awareness', 10, ?, 0)", id, LocalDate.of(2031, 1, 3));
+        try {
+            activityService.updateField(id, "state", "Manipur", null);
+
+            assertThat(activityRepository.findById(id).orElseThrow().getState()).isEqualTo("Manipur");
+            assertThat(activityBitmapIndex.isReady()).isFalse();
+            assertThat(bitmapIds("Manipur", "Workshop", DATES, "asc")).contains(id);
+
+            activityBitmapIndex.rebuild();
+            assertThat(activityBitmapIndex.isReady()).isFalse();
+        } finally {
+            activityRepository.deleteById(id);
+        }
+        activityBitmapIndex.rebuild();
+        assertThat(activityBitmapIndex.isReady()).isTrue();
+    }
+
+    private void assertSameAsSql(String state, String category, String dateRange, String sortDir) {
+        Page<Activity> bitmap = activityService.getAllActivities("", state, category, dateRange, "id", sortDir, PageRequest.of(0, 500));
+        List<Long> bitmapGrid = activityService.getActivityGrid("", state, category, dateRange, "id", sortDir, PageRequest.of(0, 500))
+                .map(ActivityGridRow::getId).getContent();
+        ReflectionTestUtils.setField(activityBitmapIndex, "ready", false);
+        try {
+            Page<Activity> sql = activityService.getAllActivities("", state, category, dateRange, "id", sortDir, PageRequest.of(0, 500));
+            List<Long> sqlGrid = activityService.getActivityGrid("", state, category, dateRange, "id", sortDir, PageRequest.of(0, 500))
+                    .map(ActivityGridRow::getId).getContent();
+            String filters = state + " | " + category + " | " + dateRange + " | " + sortDir;
+            assertThat(bitmap.map(Activity::getId).getContent()).as(filters).isEqualTo(sql.map(Activity::getId).getContent());
+            assertThat(bitmap.getTotalElements()).as(filters).isEqualTo(sql.getTotalElements());
+            assertThat(bitmapGrid).as(filters).isEqualTo(sqlGrid);
+        } finally {
+            ReflectionTestUtils.setField(activityBitmapIndex, "ready", true);
+        }
+    }
+
+    // Statements run by the unpaged state/category lookup, after checking it returns what SQL does
+    private List<String> stateCategoryStatements(String state, String category, String operator) {
+        List<String> statements;
+        List<Long> ids;
+        try (QueryBudget.Recording recording = QueryBudget.record()) {
+            ids = activityService.getActivitiesByStateAndEventCategory(state, category, operator).stream()
+                    .map(ActivityGridRow::getId).toList();
+            statements = recording.getStatements();
+        }
+        ReflectionTestUtils.setField(activityBitmapIndex, "ready", false);
+        try {
+            assertThat(ids).as(operator).containsExactlyInAnyOrderElementsOf(activityService.getActivitiesByStateAndEventCategory(state, category, operator)
+                    .stream().map(ActivityGridRow::getId).toList());
+        } finally {
+            ReflectionTestUtils.setField(activityBitmapIndex, "ready", true);
+        }
+        return statements;
+    }
+
+    private List<Long> bitmapIds(String state, String category, String dateRange, String sortDir) {
+        return activityService.getAllActivities("", state, category, dateRange, "id", sortDir, PageRequest.of(0, 500))
+                .map(Activity::getId).getContent();
+    }
+}
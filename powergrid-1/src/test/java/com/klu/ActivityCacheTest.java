@@ -0,0 +1,172 @@
+package com.klu;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.klu.TestActivities.activity;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Cached reads are shared, read-only instances and are never served stale after a write through
+ * the service: every write bumps ActivityDataVersion, which is part of every cache key. Writes made
+ * by another instance are picked up at the next version refresh.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ActivityCacheTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 10, 31);
+
+    @Autowired
+    private ActivityService activityService;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private ActivityDataVersion activityDataVersion;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void readsAfterASaveSeeTheSave() {
+        Map<String, Object> stats = activityService.getDashboardStats(DAY, DAY);
+        Map<String, Object> summary = activityService.getSummary();
+        Map<String, Object> calculation = activityService.performDynamicCalculation(
+                List.of(Map.of("function", "SUM", "column", "numberOfParticipants")), List.of(),
+                List.of(Map.of("field", "state", "operator", "=", "value", "Chandigarh")));
+        List<String> states = activityService.getDistinctStates();
+        // Served from the cache until something is written
+        assertThat(activityService.getDashboardStats(DAY, DAY)).isSameAs(stats);
+        assertThat(activityService.getSummary()).isSameAs(summary);
+        assertThat(activityService.getDistinctStates()).isSameAs(states);
+
+        activityService.save(onDay("Chandigarh", 25), null);
+
+        assertThat(activityService.getDashboardStats(DAY, DAY).get("totalActivities"))
+                .isEqualTo((Long) stats.get("totalActivities") + 1);
+        assertThat(((Number) activityService.getSummary().get("totalParticipants")).longValue())
+                .isEqualTo(((Number) summary.get("totalParticipants")).longValue() + 25);
+        assertThat(activityService.performDynamicCalculation(
+                List.of(Map.of("function", "SUM", "column", "numberOfParticipants")), List.of(),
+                List.of(Map.of("field", "state", "operator", "=", "value", "Chandigarh"))))
+                .isNotEqualTo(calculation).asString().contains("25");
+        assertThat(states).doesNotContain("Chandigarh");
+        assertThat(activityService.getDistinctStates()).contains("Chandigarh");
+    }
+
+    @Test
+    void suggestionsFollowTheLatestSave() {
+        activityService.save(onDay("Ladakh", 900), null);
+        Map<String, Object> before = activityService.getAiSuggestions(DAY, DAY.plusDays(1));
+        assertThat(before.get("suggestedDate")).isEqualTo(DAY.toString());
+
+        for (int i = 0; i < 2; i++) {
+            Activity busier = onDay("Ladakh", 1000);
+            busier.setEventDate(DAY.plusDays(1));
+            activityService.save(busier, null);
+        }
+
+        assertThat(activityService.getAiSuggestions(DAY, DAY.plusDays(1)).get("suggestedDate"))
+                .isEqualTo(DAY.plusDays(1).toString());
+    }
+
+    @Test
+    void writeOnAnotherInstanceIsSeenAfterTheNextRefresh() {
+        Map<String, Object> stats = activityService.getDashboardStats(DAY, DAY);
+        long version = activityDataVersion.current();
+
+        // Another instance commits a row and its version bump; this instance's caches know nothing of it
+        activityRepository.save(onDay("Sikkim", 40));
+        jdbcTemplate.update("UPDATE " + ActivityDataVersion.TABLE + " SET version = version + 1 WHERE id = 1");
+        activityDataVersion.refresh();
+
+        assertThat(activityDataVersion.current()).isGreaterThan(version);
+        assertThat(activityService.getDashboardStats(DAY, DAY).get("totalActivities"))
+                .isEqualTo((Long) stats.get("totalActivities") + 1);
+    }
+
+    @Test
+    void writeThroughTheServiceMovesTheSharedVersion() {
+        Long before = jdbcTemplate.queryForObject("SELECT version FROM " + ActivityDataVersion.TABLE, Long.class);
+
+        activityService.save(onDay("Goa", 15), null);
+
+        Long after = jdbcTemplate.queryForObject("SELECT version FROM " + ActivityDataVersion.TABLE, Long.class);
+        assertThat(after).isGreaterThan(before);
+        assertThat(activityDataVersion.current()).isEqualTo(after);
+    }
+
+    @Test
+    void openWriteDoesNotHoldUpOtherWrites() {
+        long before = sharedVersion();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            activityService.save(onDay("Assam", 12), null);
+            // Would wait for this transaction if it held the version row
+            CompletableFuture.runAsync(() -> activityService.save(onDay("Assam", 13), null))
+                    .orTimeout(5, TimeUnit.SECONDS).join();
+            assertThat(sharedVersion()).isEqualTo(before + 1);
+        });
+
+        assertThat(sharedVersion()).isEqualTo(before + 2);
+        assertThat(activityDataVersion.current()).isEqualTo(before + 2);
+    }
+
+    @Test
+    void rolledBackWriteLeavesTheVersionAlone() {
+        long before = sharedVersion();
+        long local = activityDataVersion.current();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            activityService.save(onDay("Assam", 14), null);
+            status.setRollbackOnly();
+        });
+
+        assertThat(sharedVersion()).isEqualTo(before);
+        assertThat(activityDataVersion.current()).isEqualTo(local);
+    }
+
+    @Test
+    void cachedResultsCannotBeModifiedByACaller() {
+        activityService.save(onDay("Puducherry", 10), null);
+        Map<String, Object> stats = activityService.getDashboardStats(DAY, DAY);
+
+        assertThatThrownBy(() -> stats.put("totalActivities", 0L)).isInstanceOf(UnsupportedOperationException.class);
+        @SuppressWarnings("unchecked")
+        Map<String, Long> dateCounts = (Map<String, Long>) stats.get("dateCounts");
+        assertThatThrownBy(dateCounts::clear).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> activityService.getDistinctStates().add("x")).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> activityService.getAiSuggestions(DAY, DAY).put("reason", ""))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> activityService.performDynamicCalculation(
+                List.of(Map.of("function", "COUNT", "column", "id")), List.of("state"), List.of()).clear())
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThat(activityService.getDashboardStats(DAY, DAY)).isSameAs(stats);
+    }
+
+    private long sharedVersion() {
+        return jdbcTemplate.queryForObject("SELECT version FROM " + ActivityDataVersion.TABLE, Long.class);
+    }
+
+    private static Activity onDay(String state, int participants) {
+        Activity activity = activity(state, "Workshop", DAY);
+        activity.setNumberOfParticipants(participants);
+        return activity;
+    }
+}
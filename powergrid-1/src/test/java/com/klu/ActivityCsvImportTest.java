@@ -0,0 +1,193 @@
+package com.klu;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * CSV import: quoted fields and per-row errors, export round trips, and batched inserts for large
+ * files (the throughput is printed; wall-clock floors are too machine-dependent to assert).
+ */
+@SpringBootTest(properties = "powergrid.import.chunk-size=" + ActivityCsvImportTest.CHUNK_SIZE)
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ActivityCsvImportTest {
+
+    static final int CHUNK_SIZE = 500;
+    private static final int THROUGHPUT_ROWS = 20_000;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private ActivityCsvImport activityCsvImport;
+
+    @Autowired
+    private ActivityService activityService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void quotedFieldsAreParsedAndBadRowsReportedByLine() throws Exception {
+        String csv = "\uFEFF" + ActivityController.CSV_HEADER.replace("\n", "\r\n")
+                + "\"\",\"Kerala\",\"Station \"\"A\"\"\",Awareness,Workshop,Students,\"Line one\r\nline two, with comma\",School,Hall,2024-10-29,12,\"ok\",\r\n"
+                + ",Punjab,Station,Training,Seminar,Students,Talk,College,Hall,2024-12-01,20,,\r\n"
+                + ",,Station,Training,Seminar,Students,Talk,College,Hall,2024-10-30,20,,\r\n"
+                + ",Assam,Station,Training,Seminar,Students,Talk,College,Hall,2024-10-30,lots,,\r\n"
+                + ",Assam,Station,Training,Seminar\r\n"
+                + "\r\n"
+                + ",Goa,Station,Training,Seminar,Students,<b>Talk</b><script>x()</script>,College,Hall,2024-10-31,40,markup,\r\n";
+
+        mockMvc.perform(post("/api/import").contentType("text/csv").content(csv.getBytes(StandardCharsets.UTF_8)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.failed").value(4))
+                .andExpect(jsonPath("$.errors[0].line").value(4))
+                .andExpect(jsonPath("$.errors[0].errorMessage").value("Event date must be between 2024-10-28 and 2024-11-03"))
+                .andExpect(jsonPath("$.errors[1].line").value(5))
+                .andExpect(jsonPath("$.errors[1].errorMessage").value("State is required"))
+                .andExpect(jsonPath("$.errors[2].line").value(6))
+                .andExpect(jsonPath("$.errors[2].errorMessage").value("Number of participants must be a valid number"))
+                .andExpect(jsonPath("$.errors[3].line").value(7));
+
+        Activity quoted = activityRepository.findAll().stream()
+                .filter(activity -> "ok".equals(activity.getRemarks())).findFirst().orElseThrow();
+        assertThat(quoted.getStationName()).isEqualTo("Station &#34;A&#34;");
+        assertThat(quoted.getEventDescription()).isEqualTo("Line one\r\nline two, with comma");
+        Activity sanitized = activityRepository.findAll().stream()
+                .filter(activity -> "markup".equals(activity.getRemarks())).findFirst().orElseThrow();
+        assertThat(sanitized.getEventDescription()).isEqualTo("<b>Talk</b>");
+    }
+
+    @Test
+    void exportedCsvImportsAsNewRows() throws Exception {
+        String export = mockMvc.perform(get("/export")).andReturn().getResponse().getContentAsString();
+        long before = activityRepository.count();
+
+        mockMvc.perform(multipart("/api/import")
+                        .file(new MockMultipartFile("file", "export.csv", "text/csv", export.getBytes(StandardCharsets.UTF_8))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value((int) before))
+                .andExpect(jsonPath("$.failed").value(0));
+        assertThat(activityRepository.count()).isEqualTo(2 * before);
+    }
+
+    @Test
+    void overLongValuesAreRowErrors() throws Exception {
+        String csv = ActivityController.CSV_HEADER
+                + ",Kerala,Station,Training,Seminar,Students," + "x".repeat(1001) + ",College,Hall,2024-10-30,20,,\n"
+                + ",Kerala,Station,Training,Seminar,Students,Talk,College,Hall,2024-10-30,20," + "&".repeat(300) + ",\n"
+                + ",Kerala,Station,Training,Seminar,Students,Talk,College,Hall,2024-10-30,20,fits,\n";
+
+        mockMvc.perform(post("/api/import").contentType("text/csv").content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.failed").value(2))
+                .andExpect(jsonPath("$.errors[0].errorMessage").value("eventDescription must be at most 1000 characters"))
+                // 300 characters, but longer than the column once escaped
+                .andExpect(jsonPath("$.errors[1].errorMessage").value("remarks must be at most 1000 characters"));
+    }
+
+    @Test
+    void insertingKeepsOtherEntitiesOfThePersistenceContextManaged() throws Exception {
+        mockMvc.perform(post("/api/import").contentType("text/csv").content(ActivityController.CSV_HEADER
+                + ",Kerala,Station,Training,Seminar,Students,Talk,College,Hall,2024-10-30,20,loaded,\n"));
+        transactionTemplate.executeWithoutResult(status -> {
+            Activity loaded = entityManager.createQuery("select a from Activity a where a.remarks = 'loaded'", Activity.class)
+                    .getResultList().get(0);
+            Activity inserted = activityService.newActivity(Map.of("state", "Goa", "eventCategory", "Seminar",
+                    "eventDate", "2024-10-30", "numberOfParticipants", 5));
+
+            activityService.insertAll(List.of(inserted));
+
+            assertThat(entityManager.contains(loaded)).isTrue();
+            assertThat(entityManager.contains(inserted)).isFalse();
+        });
+    }
+
+    @Test
+    void wrongHeaderIsRejected() throws Exception {
+        mockMvc.perform(post("/api/import").contentType("text/csv").content("State,Station\nKerala,A\n"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorMessage").exists());
+    }
+
+    @Test
+    void largeImportsInsertInJdbcBatches() throws IOException {
+        long before = activityRepository.count();
+
+        Map<String, Object> result;
+        List<String> statements;
+        try (QueryBudget.Recording recording = QueryBudget.record()) {
+            result = activityCsvImport.importCsv(generated(THROUGHPUT_ROWS));
+            statements = recording.getStatements();
+        }
+
+        assertThat(result.get("imported")).isEqualTo((long) THROUGHPUT_ROWS);
+        assertThat(activityRepository.count()).isEqualTo(before + THROUGHPUT_ROWS);
+        // One prepared INSERT per chunk, executed as JDBC batches; row-at-a-time inserts would prepare one per row
+        assertThat(statements).filteredOn(sql -> sql.startsWith("insert into activity"))
+                .hasSizeLessThanOrEqualTo(THROUGHPUT_ROWS / CHUNK_SIZE);
+        long elapsedMs = Math.max(1, (Long) result.get("elapsedMs"));
+        System.err.println("Imported " + THROUGHPUT_ROWS + " rows in " + elapsedMs + " ms ("
+                + THROUGHPUT_ROWS * 1000L / elapsedMs + " rows/s)");
+    }
+
+    // Generates the CSV lazily, so the import is measured without a huge input string
+    private static Reader generated(int rows) {
+        List<String> states = List.of("Kerala", "Punjab", "Goa", "Assam");
+        return new Reader() {
+            private int row = -1;
+            private String current = "";
+            private int offset;
+
+            @Override
+            public int read(char[] buffer, int off, int len) {
+                if (offset == current.length()) {
+                    if (++row > rows) {
+                        return -1;
+                    }
+                    current = row == 0 ? ActivityController.CSV_HEADER
+                            : "," + states.get(row % 4) + ",Station " + row + ",Training,Workshop,Students,"
+                            + "\"Session " + row + ", part one\",School,Hall " + row % 50 + ",2024-10-" + (28 + row % 4)
+                            + "," + (1 + row % 1000) + ",Imported,\n";
+                    offset = 0;
+                }
+                int count = Math.min(len, current.length() - offset);
+                current.getChars(offset, offset + count, buffer, off);
+                offset += count;
+                return count;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
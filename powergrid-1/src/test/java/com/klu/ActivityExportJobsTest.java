@@ -0,0 +1,244 @@
+package com.klu;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Export jobs: the finished file matches /export, downloads honour Range, identical jobs are
+ * shared until the data changes, the queue is bounded, and expired files are deleted.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ActivityExportJobsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private ActivityService activityService;
+
+    @Autowired
+    private ActivityExportJobs activityExportJobs;
+
+    @Autowired
+    private ActivityBitmapIndex activityBitmapIndex;
+
+    @Autowired
+    private ActivityDataVersion activityDataVersion;
+
+    @Autowired
+    private ReadReplicas readReplicas;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void seed() {
+        for (int i = 0; i < 30; i++) {
+            Activity activity = new Activity();
+            activity.setState(i % 2 == 0 ? "Kerala" : "Punjab");
+            activity.setEventCategory("Workshop");
+            activity.setEventDescription("Session " + i + ", \"quoted\"");
+            activity.setNumberOfParticipants(10 + i);
+            activity.setEventDate(LocalDate.of(2024, 10, 28).plusDays(i % 7));
+            activityBitmapIndex.index(activityRepository.save(activity));
+        }
+        // Saved behind the service's back, so move the version on as a service write would
+        activityDataVersion.bump();
+    }
+
+    @Test
+    void finishedCsvMatchesExportAndSupportsRanges() throws Exception {
+        String id = submit("{\"format\":\"csv\",\"state\":\"Kerala\"}");
+        awaitDone(id);
+
+        byte[] expected = mockMvc.perform(get("/export").param("state", "Kerala"))
+                .andReturn().getResponse().getContentAsByteArray();
+        MvcResult full = mockMvc.perform(get("/api/download/export/" + id))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + id + "\""))
+                .andReturn();
+        assertThat(full.getResponse().getContentAsByteArray()).isEqualTo(expected);
+
+        mockMvc.perform(get("/api/download/export/" + id).header(HttpHeaders.RANGE, "bytes=100-149"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 100-149/" + expected.length))
+                .andExpect(result -> assertThat(result.getResponse().getContentAsByteArray())
+                        .isEqualTo(Arrays.copyOfRange(expected, 100, 150)));
+        mockMvc.perform(get("/api/exports/" + id))
+                .andExpect(jsonPath("$.rowsWritten").value(matching("Kerala")))
+                .andExpect(jsonPath("$.progress").value(1.0));
+    }
+
+    @Test
+    void jsonExportIsAnArrayOfActivities() throws Exception {
+        String id = submit("{\"format\":\"json\"}");
+        awaitDone(id);
+
+        String body = mockMvc.perform(get("/api/download/export/" + id))
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        List<Map<String, Object>> activities = objectMapper.readValue(body, List.class);
+        assertThat(activities).hasSize((int) matching(""));
+        assertThat(activities.get(0)).containsKeys("id", "state", "eventDate");
+    }
+
+    @Test
+    void identicalJobsAreSharedUntilTheDataChanges() throws Exception {
+        String first = submit("{\"format\":\"csv\",\"state\":\"Punjab\",\"sortDir\":\"desc\"}");
+        String second = submit("{\"state\":\"Punjab\",\"sortDir\":\"desc\"}");
+        assertThat(second).isEqualTo(first);
+        assertThat(submit("{\"format\":\"csv\",\"state\":\"Punjab\"}")).isNotEqualTo(first);
+
+        awaitDone(first);
+        activityDataVersion.bump();
+        assertThat(submit("{\"format\":\"csv\",\"state\":\"Punjab\",\"sortDir\":\"desc\"}")).isNotEqualTo(first);
+    }
+
+    @Test
+    void expiredAndCancelledJobsAreRemovedWithTheirFiles() throws Exception {
+        String id = submit("{\"format\":\"csv\",\"category\":\"Workshop\"}");
+        awaitDone(id);
+        Path file = activityExportJobs.get(id).getFile();
+        assertThat(file).exists();
+
+        assertThat(activityExportJobs.removeExpired(Instant.now())).isZero();
+        activityExportJobs.removeExpired(Instant.now().plus(Duration.ofMinutes(31)));
+        assertThat(file).doesNotExist();
+        mockMvc.perform(get("/api/exports/" + id)).andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/download/export/" + id)).andExpect(status().isNotFound());
+
+        String cancelled = submit("{\"format\":\"json\",\"category\":\"Workshop\"}");
+        mockMvc.perform(delete("/api/exports/" + cancelled)).andExpect(status().isNoContent());
+        mockMvc.perform(get("/api/exports/" + cancelled)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void keysetPagesCoverEveryRowOnceWhateverTheSortOrder() {
+        for (String sortBy : List.of("id", "state", "stationName", "eventDate")) {
+            for (String sortDir : List.of("asc", "desc")) {
+                List<Long> expected = activityService.getAllActivities("", "", "Workshop", "", sortBy, sortDir,
+                        PageRequest.of(0, Integer.MAX_VALUE)).getContent().stream().map(Activity::getId).toList();
+                List<Long> paged = new ArrayList<>();
+                Activity last = null;
+                for (List<Activity> page; !(page = activityService.getActivitiesAfter("", "", "Workshop", "", sortBy, sortDir, last, 7)).isEmpty(); ) {
+                    page.forEach(activity -> paged.add(activity.getId()));
+                    last = page.get(page.size() - 1);
+                }
+                assertThat(paged).as(sortBy + " " + sortDir).doesNotHaveDuplicates()
+                        .containsExactlyInAnyOrderElementsOf(expected);
+            }
+        }
+    }
+
+    @Test
+    void rowsDeletedBetweenPagesDoNotShiftTheNextPage() {
+        for (String sortBy : List.of("id", "state")) {
+            List<Activity> all = activityService.getActivitiesAfter("", "Kerala", "", "", sortBy, "asc", null, Integer.MAX_VALUE);
+            List<Activity> first = activityService.getActivitiesAfter("", "Kerala", "", "", sortBy, "asc", null, 5);
+
+            activityService.deleteActivities(List.of(first.get(0).getId(), first.get(1).getId()));
+
+            assertThat(activityService.getActivitiesAfter("", "Kerala", "", "", sortBy, "asc", first.get(4), 5))
+                    .extracting(Activity::getId)
+                    .containsExactlyElementsOf(all.subList(5, 10).stream().map(Activity::getId).toList());
+        }
+    }
+
+    @Test
+    void unknownFormatIsRejected() throws Exception {
+        mockMvc.perform(post("/api/exports").contentType(MediaType.APPLICATION_JSON).content("{\"format\":\"xlsx\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorMessage").exists());
+    }
+
+    @Test
+    void fullQueueRejectsNewJobs() throws Exception {
+        Path directory = Files.createTempDirectory("exports");
+        ActivityExportJobs jobs = new ActivityExportJobs(directory.toString(), 1, 1, 100, 30);
+        CountDownLatch release = new CountDownLatch(1);
+        // Every page request blocks, so the single worker stays busy with the first job
+        ActivityService blocked = (ActivityService) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {ActivityService.class}, (proxy, method, args) -> {
+                    release.await();
+                    return method.getReturnType() == List.class ? List.of() : Page.empty();
+                });
+        ReflectionTestUtils.setField(jobs, "activityService", blocked);
+        ReflectionTestUtils.setField(jobs, "activityDataVersion", activityDataVersion);
+        ReflectionTestUtils.setField(jobs, "readReplicas", readReplicas);
+        ReflectionTestUtils.setField(jobs, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(jobs, "meterRegistry", new SimpleMeterRegistry());
+        jobs.init();
+        try {
+            jobs.submit("csv", Map.of("state", "A"));
+            jobs.submit("csv", Map.of("state", "B"));
+            assertThatThrownBy(() -> jobs.submit("csv", Map.of("state", "C"))).isInstanceOf(RejectedExecutionException.class);
+        } finally {
+            release.countDown();
+            jobs.shutdown();
+        }
+    }
+
+    // Rows the export query (the one /export runs) matches for a state filter
+    private long matching(String state) {
+        return activityService.getAllActivities("", state, "", "", "id", "asc", PageRequest.of(0, 1)).getTotalElements();
+    }
+
+    private String submit(String json) throws Exception {
+        String body = mockMvc.perform(post("/api/exports").contentType(MediaType.APPLICATION_JSON).content(json))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists(HttpHeaders.LOCATION))
+                .andReturn().getResponse().getContentAsString();
+        return (String) objectMapper.readValue(body, Map.class).get("id");
+    }
+
+    private void awaitDone(String id) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!ActivityExportJobs.DONE.equals(activityExportJobs.get(id).getStatus())) {
+            assertThat(activityExportJobs.get(id).getStatus()).isNotEqualTo(ActivityExportJobs.FAILED);
+            assertThat(System.currentTimeMillis()).as("export " + id + " finished in time").isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.klu;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Grid list paths select ActivityGridRow projections: long text is cut to a preview in SQL and the
+ * full text is served by /api/activities/{id}/details.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ActivityGridRowTest {
+
+    private static final String LONG_DESCRIPTION = "<p>" + "Tree planting drive. ".repeat(20) + "</p>";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private ActivityBitmapIndex activityBitmapIndex;
+
+    @Test
+    void listsCarryPreviewsAndDetailsCarryTheFullText() throws Exception {
+        Activity activity = new Activity();
+        activity.setState("Sikkim");
+        activity.setEventCategory("Plantation");
+        activity.setEventDescription(LONG_DESCRIPTION);
+        activity.setRemarks("short");
+        activity.setNumberOfParticipants(25);
+        activity.setEventDate(LocalDate.of(2024, 10, 30));
+        activity = activityRepository.save(activity);
+        activityBitmapIndex.index(activity);
+
+        try (QueryBudget.Recording recording = QueryBudget.record()) {
+            mockMvc.perform(post("/api/stateCategoryQuery").param("state", "Sikkim").param("eventCategory", "Plantation"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.activities[0].truncated").value(true))
+                    .andExpect(jsonPath("$.activities[0].remarks").value("short"))
+                    .andExpect(jsonPath("$.activities[0].eventDescription")
+                            .value(LONG_DESCRIPTION.substring(0, ActivityGridRow.PREVIEW_LENGTH) + "…"));
+            List<String> statements = recording.getStatements();
+            assertThat(statements.get(0)).containsIgnoringCase("substring").containsIgnoringCase("length");
+        }
+
+        mockMvc.perform(get("/api/activities/" + activity.getId() + "/details"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.eventDescription").value(LONG_DESCRIPTION))
+                .andExpect(jsonPath("$.remarks").value("short"));
+        mockMvc.perform(get("/api/activities/" + Long.MAX_VALUE + "/details"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.errorMessage").exists());
+    }
+
+    @Test
+    void previewsDropACutTagOrEntity() {
+        assertThat(ActivityGridRow.preview("<p>Talk <b")).isEqualTo("<p>Talk …");
+        assertThat(ActivityGridRow.preview("Station &#3")).isEqualTo("Station …");
+        assertThat(ActivityGridRow.preview("Plain text")).isEqualTo("Plain text…");
+    }
+}
@@ -0,0 +1,165 @@
+package com.klu;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.klu.TestActivities.activity;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ActivityLocks under heavy parallel load: overlapping bulk and inline edits lose nothing and do
+ * not deadlock, and edits of rows on different stripes never wait for each other.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ActivityLocksStressTest {
+
+    private static final int ROWS = 40;
+    private static final int THREADS = 16;
+    private static final int OPERATIONS_PER_THREAD = 60;
+
+    @Autowired
+    private ActivityService activityService;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private ActivityLocks activityLocks;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void overlappingEditsLoseNoUpdates() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            ids.add(activityRepository.save(activity()).getId());
+        }
+        // Each row's remarks are edited by exactly one inline thread, so the last value that thread
+        // wrote must survive every concurrent bulk update, which rewrites whole rows from its own read
+        Map<Long, String> lastRemarks = new ConcurrentHashMap<>();
+        double contendedBefore = meterRegistry.counter("powergrid.activity.lock.contended").count();
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                Random random = new Random(thread);
+                for (int op = 0; op < OPERATIONS_PER_THREAD; op++) {
+                    if (thread % 2 == 0) {
+                        List<Long> subset = new ArrayList<>(ids);
+                        Collections.shuffle(subset, random);
+                        activityService.bulkUpdate(subset.subList(0, 10),
+                                Map.of("stationName", "Station " + thread + "-" + op));
+                    } else {
+                        List<Long> owned = ids.stream().filter(id -> id % (THREADS / 2) == thread / 2)
+                                .collect(Collectors.toList());
+                        Long id = owned.get(random.nextInt(owned.size()));
+                        String remarks = "edit " + thread + "-" + op;
+                        activityService.updateField(id, "remarks", remarks, null);
+                        lastRemarks.put(id, remarks);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(60, TimeUnit.SECONDS)).as("no deadlock").isTrue();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        for (Activity activity : activityRepository.findAllById(lastRemarks.keySet())) {
+            assertThat(activity.getRemarks()).as("remarks of " + activity.getId())
+                    .isEqualTo(lastRemarks.get(activity.getId()));
+        }
+        assertThat(meterRegistry.counter("powergrid.activity.lock.contended").count()).isGreaterThan(contendedBefore);
+    }
+
+    @Test
+    void readModifyWriteCountersStayExact() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(activityRepository.save(activity()).getId());
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                Random random = new Random(thread);
+                for (int op = 0; op < 25; op++) {
+                    List<Long> subset = new ArrayList<>(ids);
+                    Collections.shuffle(subset, random);
+                    List<Long> locked = subset.subList(0, 3);
+                    activityLocks.withLocks(locked, () -> {
+                        List<Activity> rows = activityRepository.findAllById(locked);
+                        rows.forEach(row -> row.setNumberOfParticipants(row.getNumberOfParticipants() + 1));
+                        return activityRepository.saveAll(rows);
+                    });
+                }
+                return null;
+            }));
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        int total = activityRepository.findAllById(ids).stream().mapToInt(Activity::getNumberOfParticipants).sum();
+        assertThat(total).isEqualTo(ids.size() * 10 + THREADS * 25 * 3);
+    }
+
+    @Test
+    void disjointStripesDoNotBlockEachOther() throws Exception {
+        long first = 1;
+        long second = 2;
+        while (activityLocks.stripeOf(second) == activityLocks.stripeOf(first)) {
+            second++;
+        }
+        long other = second;
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<?> holder = pool.submit(() -> activityLocks.withLocks(List.of(first), () -> {
+            held.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }));
+        held.await();
+
+        long startNanos = System.nanoTime();
+        activityLocks.withLock(other, () -> null);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)).isLessThan(1000);
+
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        pool.shutdown();
+    }
+}
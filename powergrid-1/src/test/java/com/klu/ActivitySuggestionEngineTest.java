@@ -0,0 +1,77 @@
+package com.klu;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Suggestions are scored in one pass over the zero-filled window built from the daily aggregates.
+ */
+class ActivitySuggestionEngineTest {
+
+    private static final LocalDate START = LocalDate.of(2024, 10, 28);
+    private static final LocalDate END = LocalDate.of(2024, 11, 3);
+
+    private final ActivitySuggestionEngine engine = new ActivitySuggestionEngine(31);
+
+    @Test
+    void everyDayOfTheWindowIsFilledAndRowsOutsideItAreIgnored() {
+        ActivitySuggestionEngine.WindowStats stats = engine.collect(START, END, List.of(
+                row(LocalDate.of(2024, 10, 29), "Workshop", 2, 40),
+                row(LocalDate.of(2024, 10, 29), "Seminar", 1, 5),
+                row(LocalDate.of(2024, 12, 1), "Workshop", 9, 900)));
+
+        assertThat(stats.getDays()).hasSize(7);
+        assertThat(stats.getDays().firstKey()).isEqualTo(START);
+        assertThat(stats.getDays().lastKey()).isEqualTo(END);
+        assertThat(stats.getTotalEvents()).isEqualTo(3);
+        ActivitySuggestionEngine.DayStats day = stats.getDays().get(LocalDate.of(2024, 10, 29));
+        assertThat(day.getEvents()).isEqualTo(3);
+        assertThat(day.getParticipants()).isEqualTo(45);
+        assertThat(day.getCategoryEvents("Workshop")).isEqualTo(2);
+        assertThat(stats.getDays().get(START).getEvents()).isZero();
+
+        Map<String, Object> series = engine.series(stats);
+        assertThat((List<?>) series.get("dates")).first().isEqualTo("2024-10-28");
+        assertThat(series.get("participants")).isEqualTo(List.of(0L, 45L, 0L, 0L, 0L, 0L, 0L));
+    }
+
+    @Test
+    void suggestsTheDayWithTheBestWeightedScore() {
+        // 31st: most participants; 30th: more events, mostly of the popular category
+        Map<String, Object> suggestion = engine.suggest(engine.collect(START, END, List.of(
+                row(LocalDate.of(2024, 10, 30), "Workshop", 4, 40),
+                row(LocalDate.of(2024, 10, 31), "Seminar", 1, 60),
+                row(LocalDate.of(2024, 11, 1), null, 3, 10))));
+
+        assertThat(suggestion.get("suggestedDate")).isEqualTo("2024-10-30");
+        assertThat(suggestion.get("predictedParticipants")).isEqualTo(10L);
+        assertThat((String) suggestion.get("reason")).contains("'Workshop'");
+    }
+
+    @Test
+    void emptyWindowHasNoSuggestion() {
+        assertThat(engine.suggest(engine.collect(START, END, List.of()))).containsKey("errorMessage");
+    }
+
+    @Test
+    void longOrReversedWindowsAreRejectedBeforeAnythingIsBuilt() {
+        engine.checkWindow(START, START.plusDays(30));
+        assertThatThrownBy(() -> engine.collect(START, START.plusDays(31), List.of()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("31 days");
+        assertThatThrownBy(() -> engine.checkWindow(LocalDate.of(1, 1, 1), LocalDate.of(9999, 12, 31)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> engine.checkWindow(END, START))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static Object[] row(LocalDate date, String category, long events, long participants) {
+        return new Object[]{date, category, events, participants};
+    }
+}
@@ -0,0 +1,104 @@
+package com.klu;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Bucketing rolls daily rows into zero-filled series; LTTB only ever picks existing points.
+ */
+class ActivityTimeSeriesTest {
+
+    private final ActivityTimeSeries timeSeries = new ActivityTimeSeries(1000);
+
+    @Test
+    void rowsAreRolledIntoZeroFilledBucketsPerSeries() {
+        Map<String, List<ActivityTimeSeries.Point>> series = timeSeries.bucket(LocalDate.of(2024, 1, 17), LocalDate.of(2024, 6, 2),
+                "month", List.of(
+                        row(LocalDate.of(2024, 1, 20), "Kerala", 1, 10),
+                        row(LocalDate.of(2024, 1, 31), "Kerala", 2, 20),
+                        row(LocalDate.of(2024, 3, 1), null, 4, 40),
+                        row(LocalDate.of(2024, 6, 2), "Kerala", 3, 30)), 1);
+
+        assertThat(series.keySet()).containsExactly("Kerala", "N/A");
+        List<ActivityTimeSeries.Point> kerala = series.get("Kerala");
+        assertThat(kerala).extracting(ActivityTimeSeries.Point::getBucket).containsExactly(LocalDate.of(2024, 1, 1),
+                LocalDate.of(2024, 2, 1), LocalDate.of(2024, 3, 1), LocalDate.of(2024, 4, 1), LocalDate.of(2024, 5, 1),
+                LocalDate.of(2024, 6, 1));
+        assertThat(kerala).extracting(ActivityTimeSeries.Point::getParticipants).containsExactly(30L, 0L, 0L, 0L, 0L, 30L);
+        assertThat(kerala).extracting(ActivityTimeSeries.Point::getEvents).containsExactly(3L, 0L, 0L, 0L, 0L, 3L);
+        assertThat(series.get("N/A")).extracting(ActivityTimeSeries.Point::getEvents).containsExactly(0L, 0L, 4L, 0L, 0L, 0L);
+    }
+
+    @Test
+    void weeksStartOnMondayAndQuartersOnTheirFirstMonth() {
+        assertThat(timeSeries.bucketStart(LocalDate.of(2024, 11, 3), "week")).isEqualTo(LocalDate.of(2024, 10, 28));
+        assertThat(timeSeries.bucketStart(LocalDate.of(2024, 11, 3), "quarter")).isEqualTo(LocalDate.of(2024, 10, 1));
+        assertThat(timeSeries.bucketCount(LocalDate.of(2024, 10, 31), LocalDate.of(2024, 11, 4), "week")).isEqualTo(2);
+        assertThat(timeSeries.bucketCount(LocalDate.of(2024, 3, 31), LocalDate.of(2024, 4, 1), "quarter")).isEqualTo(2);
+        assertThat(timeSeries.bucket(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 7), "day", List.of(), -1).get("all"))
+                .hasSize(7);
+    }
+
+    @Test
+    void rangesNeedingTooManyPointsAreRejected() {
+        assertThatThrownBy(() -> timeSeries.bucketCount(LocalDate.of(1, 1, 1), LocalDate.of(9999, 12, 31), "day"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("coarser granularity");
+        // 400 days fit alone but not as three series
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        List<Object[]> rows = List.of(row(start, "A", 1, 1), row(start, "B", 1, 1), row(start, "C", 1, 1));
+        assertThat(timeSeries.bucket(start, start.plusDays(399), "day", rows.subList(0, 2), 1)).hasSize(2);
+        assertThatThrownBy(() -> timeSeries.bucket(start, start.plusDays(399), "day", rows, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void downsamplingKeepsTheEndpointsAndOnlyExistingPoints() {
+        List<ActivityTimeSeries.Point> points = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            points.add(point(LocalDate.of(2024, 1, 1).plusDays(i), i == 250 ? 5000 : (i * 37) % 101));
+        }
+
+        List<ActivityTimeSeries.Point> sampled = timeSeries.downsample(points, 50, true);
+
+        assertThat(sampled).hasSize(50);
+        assertThat(sampled.get(0)).isSameAs(points.get(0));
+        assertThat(sampled.get(49)).isSameAs(points.get(499));
+        assertThat(points).containsAll(sampled);
+        assertThat(sampled).extracting(ActivityTimeSeries.Point::getBucket).isSorted().doesNotHaveDuplicates();
+        // The spike is the most significant point and must survive
+        assertThat(sampled).contains(points.get(250));
+    }
+
+    @Test
+    void shortSeriesOrNoLimitAreReturnedUnchanged() {
+        List<ActivityTimeSeries.Point> points = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            points.add(point(LocalDate.of(2024, 1, 1).plusDays(i), i));
+        }
+
+        assertThat(timeSeries.downsample(points, 10, true)).isSameAs(points);
+        assertThat(timeSeries.downsample(points, 0, true)).isSameAs(points);
+        assertThat(timeSeries.downsample(points, 3, true)).hasSize(3);
+    }
+
+    // A one-day series of its own; Point is only built by bucket()
+    private ActivityTimeSeries.Point point(LocalDate bucket, long participants) {
+        return timeSeries.bucket(bucket, bucket, "day", List.<Object[]>of(row(bucket, participants)), -1).get("all").get(0);
+    }
+
+    private static Object[] row(LocalDate date, String key, long events, long participants) {
+        return new Object[]{date, key, events, participants};
+    }
+
+    private static Object[] row(LocalDate date, long participants) {
+        return new Object[]{date, 1L, participants};
+    }
+}
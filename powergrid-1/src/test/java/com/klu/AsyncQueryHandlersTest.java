@@ -0,0 +1,175 @@
+package com.klu;
+
+import jakarta.servlet.AsyncListener;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.web.servlet.ModelAndView;
+
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.klu.TestActivities.activity;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
+
+/**
+ * /dateRangeQuery and /api/batchQuery return DeferredResults: the request thread is released while
+ * the query runs, slow queries are answered with a timeout, and a saturated query pool is refused.
+ * NDJSON streams have a pool of their own, so slow stream readers cannot starve the queries.
+ */
+@SpringBootTest(properties = {"powergrid.query.threads=1", "powergrid.query.max-queued=1",
+        "powergrid.stream.threads=1", "powergrid.stream.max-queued=1"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class AsyncQueryHandlersTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private AnalyticalQueryExecutor analyticalQueryExecutor;
+
+    @Test
+    void formPostRendersWhenTheQueryCompletes() throws Exception {
+        Activity activity = new Activity();
+        activity.setState("Tripura");
+        activity.setEventCategory("Workshop");
+        activity.setNumberOfParticipants(30);
+        activity.setEventDate(LocalDate.of(2024, 10, 29));
+        activityRepository.save(activity);
+
+        MvcResult started = mockMvc.perform(dateRangeQuery("Tripura"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(view().name("dateRangeQuery"))
+                .andExpect(model().attribute("activities", hasSize(1)))
+                .andExpect(model().attribute("state", "Tripura"));
+    }
+
+    @Test
+    void batchQueriesAreAnsweredAsynchronously() throws Exception {
+        MvcResult started = mockMvc.perform(batchQuery(2))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results", hasSize(2)))
+                .andExpect(jsonPath("$.results[0].query.state").value("Kerala"))
+                .andExpect(jsonPath("$.results[0].executionTimeMs").exists());
+    }
+
+    @Test
+    void slowQueriesTimeOutAndASaturatedPoolIsRefused() throws Exception {
+        activityRepository.save(activity());
+        CountDownLatch release = new CountDownLatch(1);
+        // Occupies the only worker, so the next query waits in the single queue slot
+        analyticalQueryExecutor.supply(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        });
+        try {
+            MvcResult queued = mockMvc.perform(dateRangeQuery("Kerala"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            MvcResult refused = mockMvc.perform(batchQuery(1)).andReturn();
+            mockMvc.perform(asyncDispatch(refused))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().exists(HttpHeaders.RETRY_AFTER))
+                    .andExpect(jsonPath("$.errorMessage").exists());
+
+            // What the container does when spring.mvc.async.request-timeout or the DeferredResult timeout elapses
+            for (AsyncListener listener : ((MockAsyncContext) queued.getRequest().getAsyncContext()).getListeners()) {
+                listener.onTimeout(null);
+            }
+            mockMvc.perform(asyncDispatch(queued))
+                    .andExpect(status().isOk())
+                    .andExpect(model().attribute("errorMessage", containsString("took too long")))
+                    .andExpect(model().attribute("activities", hasSize(0)));
+
+            // The query still finishes, and must not fill in the page that has already been sent
+            ModelAndView timedOut = (ModelAndView) queued.getAsyncResult();
+            release.countDown();
+            analyticalQueryExecutor.supply(() -> null).get(10, TimeUnit.SECONDS);
+            assertThat(timedOut.getModel().get("activities")).asList().isEmpty();
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void saturatedStreamPoolLeavesQueriesAlone() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        // Two slow readers: one holds the only stream worker, the other the single queue slot
+        for (int i = 0; i < 2; i++) {
+            analyticalQueryExecutor.supplyStream(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            });
+        }
+        try {
+            MvcResult refused = mockMvc.perform(post("/api/dateRangeQuery/stream")
+                            .param("startDate", "2024-10-28").param("endDate", "2024-11-03"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            refused.getAsyncResult(10_000);
+            assertThat(refused.getResponse().getContentAsString()).contains("\"type\":\"error\"", "Too many result streams");
+
+            MvcResult started = mockMvc.perform(batchQuery(1))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            mockMvc.perform(asyncDispatch(started))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.results", hasSize(1)));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static RequestBuilder dateRangeQuery(String state) {
+        return post("/dateRangeQuery")
+                .param("startDate", "2024-10-28")
+                .param("endDate", "2024-11-03")
+                .param("state", state);
+    }
+
+    private static RequestBuilder batchQuery(int queries) {
+        StringBuilder json = new StringBuilder("{\"queries\":[");
+        for (int i = 0; i < queries; i++) {
+            json.append(i > 0 ? "," : "").append("{\"state\":\"Kerala\",\"eventCategory\":\"Workshop\",\"operator\":\"OR\"}");
+        }
+        return post("/api/batchQuery").contentType(MediaType.APPLICATION_JSON).content(json.append("]}").toString());
+    }
+}
@@ -0,0 +1,88 @@
+package com.klu;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+
+import static com.klu.TestActivities.activity;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Dashboard/analytics GETs (and the dynamic calculation POST) answer If-None-Match with 304 until
+ * the next write; only successful bodies carry an ETag.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ConditionalRequestTest {
+
+    private static final String CALCULATION = "{\"aggregates\":[{\"function\":\"SUM\",\"column\":\"numberOfParticipants\"}],"
+            + "\"groupBy\":[],\"conditions\":[]}";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ActivityService activityService;
+
+    @Test
+    void unchangedDataIsAnsweredWith304UntilTheNextWrite() throws Exception {
+        MockHttpServletRequestBuilder stats = get("/api/dashboardStats").accept(MediaType.APPLICATION_JSON)
+                .param("startDate", "2024-10-28").param("endDate", "2024-11-03");
+        String etag = mockMvc.perform(stats)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalActivities").exists())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).isNotNull();
+
+        mockMvc.perform(stats.header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+
+        activityService.save(activity(), null);
+
+        String changed = mockMvc.perform(stats.header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(changed).isNotNull().isNotEqualTo(etag);
+    }
+
+    @Test
+    void dynamicCalculationPostIsRevalidatedToo() throws Exception {
+        String etag = mockMvc.perform(post("/api/dynamicCalculation").contentType(MediaType.APPLICATION_JSON).content(CALCULATION))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(post("/api/dynamicCalculation").contentType(MediaType.APPLICATION_JSON).content(CALCULATION)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void errorBodiesHaveNoETag() throws Exception {
+        mockMvc.perform(get("/api/dashboardStats").accept(MediaType.APPLICATION_JSON).param("startDate", "yesterday").param("endDate", "2024-11-03"))
+                .andExpect(jsonPath("$.errorMessage").exists())
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG));
+        mockMvc.perform(get("/api/aiSuggestions").param("startDate", "0001-01-01").param("endDate", "9999-12-31"))
+                .andExpect(jsonPath("$.errorMessage").exists())
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG));
+        mockMvc.perform(post("/api/dynamicCalculation").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"aggregates\":[{\"function\":\"SUM\",\"column\":\"state\"}],\"groupBy\":[],\"conditions\":[]}"))
+                .andExpect(jsonPath("$.errorMessage").exists())
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG));
+    }
+}
@@ -0,0 +1,255 @@
+package com.klu;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Every ActivityController mapping has a statement budget, checked against a seeded data set
+ * with cold caches. Budgets must not scale with the number of rows on a page; a loop that
+ * issues one query per row (N+1) blows through them. New mappings fail budgetsCoverEveryMapping
+ * until they are given a budget here.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ControllerQueryBudgetTest {
+
+    private static final int SEEDED_ACTIVITIES = 20;
+    private static final LocalDate START = LocalDate.of(2024, 10, 28);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private FileMetadataRepository fileMetadataRepository;
+
+    @Autowired
+    private ActivityBitmapIndex activityBitmapIndex;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ActivityExportJobs activityExportJobs;
+
+    @Autowired
+    @Qualifier("requestMappingHandlerMapping")
+    private RequestMappingHandlerMapping handlerMapping;
+
+    private final Map<String, Integer> budgets = new LinkedHashMap<>();
+    private final List<DynamicTest> tests = new ArrayList<>();
+
+    @TestFactory
+    Stream<DynamicTest> endpointsStayWithinBudget() throws Exception {
+        List<Activity> seeded = seed();
+        long id = seeded.get(0).getId();
+        String idList = seeded.get(1).getId() + "," + seeded.get(2).getId() + "," + seeded.get(3).getId();
+
+        budget("GET /", 0, () -> get("/"));
+        budget("GET /activity", 6, () -> get("/activity").param("size", String.valueOf(SEEDED_ACTIVITIES)));
+        budget("GET /add", 0, () -> get("/add"));
+        budget("POST /save", 2, () -> post("/save").contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .param("state", "Kerala").param("eventCategory", "Workshop")
+                .param("numberOfParticipants", "12").param("eventDate", "2024-10-29"));
+        budget("POST /inlineUpdate", 2, () -> post("/inlineUpdate").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"id\":" + id + ",\"field\":\"state\",\"value\":\"Punjab\"}"));
+        budget("POST /bulkUpdate", 5, () -> post("/bulkUpdate").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"ids\":[" + idList + "],\"state\":\"Kerala\"}"));
+        budget("GET /confirmDelete/{id}", 0, () -> get("/confirmDelete/" + id));
+        budget("GET /careers", 0, () -> get("/careers"));
+        budget("GET /services", 0, () -> get("/services"));
+        budget("GET /projects", 0, () -> get("/projects"));
+        budget("GET /networks", 0, () -> get("/networks"));
+        budget("POST /delete", 3, () -> post("/delete")
+                .param("id", String.valueOf(createActivity().getId())).param("confirm", "yes"));
+        budget("POST /delete/bulk", 5, () -> post("/delete/bulk").contentType(MediaType.APPLICATION_JSON)
+                .content("[" + createActivity().getId() + "," + createActivity().getId() + "]"));
+        // Load, UPDATE, row version bump and the attachment list
+        budget("POST /update", 4, () -> post("/update").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"id\":" + id + ",\"state\":\"Kerala\",\"eventCategory\":\"Workshop\","
+                        + "\"numberOfParticipants\":15,\"eventDate\":\"2024-10-30\"}"));
+        budget("GET /update/{id}", 2, () -> get("/update/" + id));
+        budget("GET /api/activities/{id}/details", 1, () -> get("/api/activities/" + id + "/details"));
+        budget("GET /save/saveSuccess", 0, () -> get("/save/saveSuccess"));
+        budget("GET /save/updateSuccess", 0, () -> get("/save/updateSuccess"));
+        budget("GET /api/aiSuggestions", 1, () -> get("/api/aiSuggestions"));
+        budget("GET /api/dashboardStats", 3, () -> get("/api/dashboardStats")
+                .param("startDate", "2024-10-28").param("endDate", "2024-11-03"));
+        budget("GET /api/timeSeries", 1, () -> get("/api/timeSeries")
+                .param("startDate", "2024-10-28").param("endDate", "2024-11-03").param("seriesBy", "state"));
+        budget("GET /api/filterCounts", 0, () -> get("/api/filterCounts").param("state", "Kerala"));
+        budget("GET /api/filters", 3, () -> get("/api/filters"));
+        budget("GET /api/cacheStats", 0, () -> get("/api/cacheStats"));
+        budget("GET /api/singleFlightStats", 0, () -> get("/api/singleFlightStats"));
+        budget("GET /ai-suggestions", 2, () -> get("/ai-suggestions"));
+        budget("GET /api/download/{fileId}", 1, () -> get("/api/download/" + firstFileId(seeded)));
+        budget("POST /api/upload", 3, () -> multipart("/api/upload")
+                .file(new MockMultipartFile("files", "photo.png", "image/png", new byte[] {1, 2, 3}))
+                .param("activityId", String.valueOf(id)));
+        budget("DELETE /api/file/{fileId}", 3, () -> delete("/api/file/" + firstFileId(List.of(createActivityWithFile()))));
+        budget("DELETE /activities/files/{activityId}", 4, () -> delete("/activities/files/" + createActivityWithFile().getId()));
+        budget("GET /export", 2, () -> get("/export"));
+        budget("POST /api/import", 1, () -> post("/api/import").contentType("text/csv")
+                .content(ActivityController.CSV_HEADER
+                        + ",Kerala,Station,Awareness,Workshop,Students,Talk,School,Hall,2024-10-29,12,,\n"
+                        + ",Punjab,Station,Training,Seminar,Students,Talk,College,Hall,2024-10-30,20,,\n"
+                        + ",Kerala,Station,Training,Workshop,Students,Talk,Panchayat,Hall,2024-10-31,30,,\n"));
+        budget("POST /api/exports", 0, () -> post("/api/exports").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"format\":\"csv\",\"state\":\"Kerala\"}"));
+        budget("GET /api/exports/{jobId}", 0, () -> get("/api/exports/" + finishedExport().getId()));
+        budget("DELETE /api/exports/{jobId}", 0, () -> delete("/api/exports/" + finishedExport().getId()));
+        budget("GET /api/download/export/{jobId}", 0, () -> get("/api/download/export/" + finishedExport().getId()));
+        budget("GET /activities/updates", 0, () -> get("/activities/updates"));
+        budget("POST /api/dynamicCalculation", 1, () -> post("/api/dynamicCalculation").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"aggregates\":[{\"function\":\"SUM\",\"column\":\"numberOfParticipants\"}],"
+                        + "\"groupBy\":[\"state\"],\"conditions\":[]}"));
+        budget("POST /extend-session", 0, () -> post("/extend-session"));
+        budget("GET /stateCategoryQuery", 0, () -> get("/stateCategoryQuery"));
+        budget("POST /stateCategoryQuery", 2, () -> post("/stateCategoryQuery")
+                .param("state", "Kerala").param("eventCategory", "Workshop").param("operator", "OR"));
+        budget("POST /api/stateCategoryQuery", 2, () -> post("/api/stateCategoryQuery")
+                .param("state", "Kerala").param("eventCategory", "Workshop").param("operator", "OR"));
+        budget("GET /dateRangeQuery", 0, () -> get("/dateRangeQuery"));
+        budget("POST /dateRangeQuery", 2, () -> post("/dateRangeQuery")
+                .param("startDate", "2024-10-28").param("endDate", "2024-11-03"));
+        budget("POST /api/dateRangeQuery", 1, () -> post("/api/dateRangeQuery")
+                .param("startDate", "2024-10-28").param("endDate", "2024-11-03").param("state", "Kerala"));
+        budget("POST /api/dateRangeQuery/stream", 1, () -> post("/api/dateRangeQuery/stream")
+                .param("startDate", "2024-10-28").param("endDate", "2024-11-03").param("chunkSize", "5"));
+        // Reactive streams run one statement per powergrid.reactive.page-size rows; this filter stays within one page
+        budget("POST /api/reactive/dateRangeQuery", 1, () -> post("/api/reactive/dateRangeQuery")
+                .param("startDate", "2024-10-28").param("endDate", "2024-11-03").param("state", "Punjab").param("eventCategory", "Seminar"));
+        budget("POST /api/reactive/stateCategoryQuery", 1, () -> post("/api/reactive/stateCategoryQuery")
+                .param("state", "Punjab").param("eventCategory", "Seminar").param("operator", "AND"));
+        budget("POST /api/reactive/dynamicCalculation", 1, () -> post("/api/reactive/dynamicCalculation").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"aggregates\":[{\"function\":\"SUM\",\"column\":\"numberOfParticipants\"}],"
+                        + "\"groupBy\":[\"state\"],\"conditions\":[]}"));
+        budget("POST /reorder", 4, () -> post("/reorder").contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"id\":" + id + ",\"orderIndex\":3},{\"id\":" + seeded.get(1).getId() + ",\"orderIndex\":4}]"));
+        budget("POST /api/customCalculation", 1, () -> post("/api/customCalculation").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"formula\":\"sum\",\"column\":\"numberOfParticipants\"}"));
+        budget("POST /api/batchQuery", 2, () -> post("/api/batchQuery").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"queries\":[{\"state\":\"Kerala\",\"eventCategory\":\"Workshop\",\"operator\":\"AND\"},"
+                        + "{\"state\":\"Punjab\",\"eventCategory\":\"Seminar\",\"operator\":\"OR\"}]}"));
+        budget("GET /confirmExit", 0, () -> get("/confirmExit"));
+        budget("GET /exitProgram", 0, () -> get("/exitProgram").param("confirmExit", "no"));
+        return tests.stream();
+    }
+
+    @Test
+    void budgetsCoverEveryMapping() throws Exception {
+        endpointsStayWithinBudget();
+        Set<String> mappings = new TreeSet<>();
+        for (Map.Entry<RequestMappingInfo, org.springframework.web.method.HandlerMethod> entry
+                : handlerMapping.getHandlerMethods().entrySet()) {
+            if (entry.getValue().getBeanType() != ActivityController.class) {
+                continue;
+            }
+            for (org.springframework.web.bind.annotation.RequestMethod method : entry.getKey().getMethodsCondition().getMethods()) {
+                for (String pattern : entry.getKey().getPatternValues()) {
+                    mappings.add(method.name() + " " + pattern);
+                }
+            }
+        }
+        assertThat(new TreeSet<>(budgets.keySet())).isEqualTo(mappings);
+    }
+
+    private void budget(String mapping, int maxStatements, Callable<RequestBuilder> request) {
+        budgets.put(mapping, maxStatements);
+        tests.add(DynamicTest.dynamicTest(mapping + " <= " + maxStatements + " statements", () -> {
+            cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+            RequestBuilder builder = request.call();
+            QueryBudgetAssertions.assertMaxStatements(maxStatements, mapping, () -> {
+                MvcResult result = mockMvc.perform(builder).andReturn();
+                // Streams stay open; everything else is awaited so statements on async threads are counted
+                if (result.getRequest().isAsyncStarted() && !mapping.equals("GET /activities/updates")) {
+                    result.getAsyncResult(5000);
+                }
+                return result;
+            });
+        }));
+    }
+
+    private List<Activity> seed() throws Exception {
+        List<Activity> activities = new ArrayList<>();
+        for (int i = 0; i < SEEDED_ACTIVITIES; i++) {
+            activities.add(createActivityWithFile());
+        }
+        activityBitmapIndex.rebuild();
+        return activities;
+    }
+
+    private Activity createActivity() {
+        Activity activity = new Activity();
+        int n = (int) activityRepository.count();
+        activity.setState(n % 2 == 0 ? "Kerala" : "Punjab");
+        activity.setStationName("Station " + n);
+        activity.setActivityType(n % 3 == 0 ? "Awareness" : "Training");
+        activity.setEventCategory(n % 2 == 0 ? "Workshop" : "Seminar");
+        activity.setParticipantCategory("Students");
+        activity.setEventLocation("Hall " + n);
+        activity.setEventDate(START.plusDays(n % 7));
+        activity.setNumberOfParticipants(10 + n);
+        Activity saved = activityRepository.save(activity);
+        activityBitmapIndex.index(saved);
+        return saved;
+    }
+
+    private Activity createActivityWithFile() throws Exception {
+        Activity activity = createActivity();
+        Path dir = Paths.get("target", "test-uploads");
+        Files.createDirectories(dir);
+        Path file = Files.write(dir.resolve("seed-" + activity.getId() + ".png"), new byte[] {1, 2, 3});
+        fileMetadataRepository.save(new FileMetadata("seed.png", file.toString(), "image/png", 3, activity));
+        return activity;
+    }
+
+    // Exports run on their own threads, so waiting for one here keeps its statements out of the budget
+    private ActivityExportJobs.ExportJob finishedExport() throws InterruptedException {
+        ActivityExportJobs.ExportJob job = activityExportJobs.submit("json", Map.of());
+        for (int i = 0; i < 500 && !ActivityExportJobs.DONE.equals(job.getStatus()); i++) {
+            Thread.sleep(10);
+        }
+        return job;
+    }
+
+    private long firstFileId(List<Activity> activities) {
+        return fileMetadataRepository.findByActivityId(activities.get(0).getId()).get(0).getId();
+    }
+}
@@ -0,0 +1,94 @@
+package com.klu;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * /api/dateRangeQuery/stream answers with NDJSON: header, activities in chunks, trailer.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class DateRangeQueryStreamTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void rowsArriveInChunksBetweenHeaderAndTrailer() throws Exception {
+        for (int i = 0; i < 23; i++) {
+            Activity activity = new Activity();
+            activity.setState("Mizoram");
+            activity.setEventCategory("Workshop");
+            activity.setNumberOfParticipants(10 + i);
+            activity.setEventDate(LocalDate.of(2024, 10, 28).plusDays(i % 7));
+            activity.setOrderIndex(i);
+            activityRepository.save(activity);
+        }
+
+        List<JsonNode> frames = stream("2024-10-28", "2024-11-03", "Mizoram", "10");
+
+        assertThat(frames).extracting(frame -> frame.get("type").asText())
+                .containsExactly("header", "activities", "activities", "activities", "trailer");
+        assertThat(frames.get(0).get("state").asText()).isEqualTo("Mizoram");
+        assertThat(frames.get(0).get("chunkSize").asInt()).isEqualTo(10);
+        assertThat(frames.subList(1, 4)).extracting(frame -> frame.get("activities").size()).containsExactly(10, 10, 3);
+        assertThat(frames.get(1).get("activities").get(0).get("state").asText()).isEqualTo("Mizoram");
+        assertThat(frames.get(4).get("rowCount").asLong()).isEqualTo(23);
+        assertThat(frames.get(4).has("executionTimeMs")).isTrue();
+    }
+
+    @Test
+    void emptyResultsStillGetHeaderAndTrailer() throws Exception {
+        List<JsonNode> frames = stream("2024-10-28", "2024-11-03", "Nowhere", "10");
+
+        assertThat(frames).extracting(frame -> frame.get("type").asText()).containsExactly("header", "trailer");
+        assertThat(frames.get(1).get("rowCount").asLong()).isZero();
+    }
+
+    @Test
+    void badInputIsAnErrorFrame() throws Exception {
+        assertThat(stream("2024-11-03", "2024-10-28", "", "10")).singleElement()
+                .satisfies(frame -> assertThat(frame.get("type").asText()).isEqualTo("error"))
+                .satisfies(frame -> assertThat(frame.get("errorMessage").asText()).contains("Start date"));
+        assertThat(stream("yesterday", "2024-10-28", "", "10")).singleElement()
+                .satisfies(frame -> assertThat(frame.get("errorMessage").asText()).contains("Invalid date format"));
+    }
+
+    private List<JsonNode> stream(String startDate, String endDate, String state, String chunkSize) throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/dateRangeQuery/stream")
+                        .param("startDate", startDate).param("endDate", endDate)
+                        .param("state", state).param("chunkSize", chunkSize))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(10_000);
+        assertThat(result.getResponse().getContentType()).startsWith(MediaType.APPLICATION_NDJSON_VALUE);
+        List<JsonNode> frames = new ArrayList<>();
+        for (String line : result.getResponse().getContentAsString(StandardCharsets.UTF_8).split("\n")) {
+            frames.add(objectMapper.readTree(line));
+        }
+        return frames;
+    }
+}
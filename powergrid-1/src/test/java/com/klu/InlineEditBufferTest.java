@@ -0,0 +1,327 @@
+package com.klu;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.klu.TestActivities.activity;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Write-behind inline edits: acknowledged before they are written, coalesced per activity, flushed
+ * in one transaction with one listener call, and not lost on shutdown. Edits that match no row or
+ * that the database rejects are counted and dropped without holding up the rest.
+ */
+@SpringBootTest(properties = {
+        "powergrid.inline-edit.write-behind.enabled=true",
+        "powergrid.inline-edit.write-behind.flush-interval-ms=3600000",
+        "powergrid.inline-edit.write-behind.max-pending=3"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class InlineEditBufferTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private ActivityService activityService;
+
+    @Autowired
+    private InlineEditBuffer inlineEditBuffer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ActivityController activityController;
+
+    private final List<List<Activity>> flushed = new CopyOnWriteArrayList<>();
+    private final List<List<Activity>> dropped = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        inlineEditBuffer.flush();
+        inlineEditBuffer.setFlushListener(flushed::add);
+        inlineEditBuffer.setDropListener(dropped::add);
+    }
+
+    @Test
+    void editsAreAcknowledgedThenCoalescedIntoOneFlush() throws Exception {
+        Activity first = activityRepository.save(activity());
+        Activity second = activityRepository.save(activity());
+
+        edit(first.getId(), "state", "Punjab", 0L);
+        edit(first.getId(), "state", "Gujarat", 1L);
+        edit(first.getId(), "numberOfParticipants", 60, 0L);
+        mockMvc.perform(post("/inlineUpdate").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\":" + second.getId() + ",\"field\":\"remarks\",\"value\":\"done\",\"version\":0}"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.version").value(1))
+                .andExpect(jsonPath("$.pending").value(true));
+        assertThat(activityRepository.findById(first.getId()).orElseThrow().getState()).isEqualTo("Kerala");
+
+        try (QueryBudget.Recording recording = QueryBudget.record()) {
+            inlineEditBuffer.flush();
+            assertThat(recording.getStatements()).filteredOn(sql -> sql.startsWith("update")).hasSize(2);
+        }
+
+        Activity stored = activityRepository.findById(first.getId()).orElseThrow();
+        assertThat(stored.getState()).isEqualTo("Gujarat");
+        assertThat(stored.getNumberOfParticipants()).isEqualTo(60);
+        assertThat(stored.getVersion()).isEqualTo(1);
+        assertThat(activityRepository.findById(second.getId()).orElseThrow().getRemarks()).isEqualTo("done");
+        assertThat(flushed).hasSize(1);
+        assertThat(flushed.get(0)).extracting(Activity::getId).containsExactlyInAnyOrder(first.getId(), second.getId());
+    }
+
+    @Test
+    void invalidAndStaleEditsAreRejectedUpFront() throws Exception {
+        Activity activity = activityRepository.save(activity());
+        edit(activity.getId(), "state", "Punjab", 0L);
+
+        mockMvc.perform(post("/inlineUpdate").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\":" + activity.getId() + ",\"field\":\"state\",\"value\":\"Assam\",\"version\":7}"))
+                .andExpect(status().isConflict());
+        mockMvc.perform(post("/inlineUpdate").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\":" + activity.getId() + ",\"field\":\"numberOfParticipants\",\"value\":5000}"))
+                .andExpect(status().isBadRequest());
+
+        inlineEditBuffer.flush();
+        assertThat(activityRepository.findById(activity.getId()).orElseThrow().getState()).isEqualTo("Punjab");
+    }
+
+    @Test
+    void staleRowIsSkippedAtFlush() throws Exception {
+        Activity activity = activityRepository.save(activity());
+        edit(activity.getId(), "state", "Punjab", 0L);
+        // Someone else edits the row synchronously in the meantime
+        activityService.updateField(activity.getId(), "remarks", "changed", 0L);
+
+        double conflicts = conflicts();
+
+        inlineEditBuffer.flush();
+
+        Activity stored = activityRepository.findById(activity.getId()).orElseThrow();
+        assertThat(stored.getState()).isEqualTo("Kerala");
+        assertThat(stored.getRemarks()).isEqualTo("changed");
+        assertThat(stored.getVersion()).isEqualTo(1L);
+        assertThat(conflicts()).isEqualTo(conflicts + 1);
+        assertThat(flushed).isEmpty();
+        // The client was told the edit succeeded, so it gets the row as stored
+        assertThat(dropped).singleElement().satisfies(rows -> assertThat(rows).singleElement().satisfies(row -> {
+            assertThat(row.getState()).isEqualTo("Kerala");
+            assertThat(row.getVersion()).isEqualTo(1L);
+        }));
+    }
+
+    @Test
+    void deletedRowIsCountedAsAConflict() throws Exception {
+        Activity deleted = activityRepository.save(activity());
+        Activity kept = activityRepository.save(activity());
+        edit(deleted.getId(), "state", "Punjab", 0L);
+        edit(kept.getId(), "state", "Punjab", 0L);
+        activityRepository.deleteById(deleted.getId());
+        double conflicts = conflicts();
+
+        inlineEditBuffer.flush();
+
+        assertThat(conflicts()).isEqualTo(conflicts + 1);
+        assertThat(flushed).singleElement().satisfies(rows ->
+                assertThat(rows).extracting(Activity::getId).containsExactly(kept.getId()));
+        assertThat(activityRepository.findById(kept.getId()).orElseThrow().getState()).isEqualTo("Punjab");
+        // Its subscribers have already been told it is gone
+        assertThat(dropped).isEmpty();
+    }
+
+    @Test
+    void rejectedEditIsDroppedWithoutHoldingUpTheOthers() {
+        Activity poisoned = activityRepository.save(activity());
+        Activity other = activityRepository.save(activity());
+        InlineEditBuffer buffer = buffer(failingFor(poisoned.getId(), new IllegalStateException("Data too long")));
+        buffer.setDropListener(dropped::add);
+        buffer.submit(poisoned.getId(), "remarks", "never written", 0L);
+        buffer.submit(other.getId(), "remarks", "written", 0L);
+        double failures = meterRegistry.counter("powergrid.inline.buffer.failures").count();
+
+        buffer.flush();
+
+        assertThat(activityRepository.findById(other.getId()).orElseThrow().getRemarks()).isEqualTo("written");
+        assertThat(activityRepository.findById(poisoned.getId()).orElseThrow().getRemarks()).isEqualTo("pending");
+        assertThat(meterRegistry.counter("powergrid.inline.buffer.failures").count()).isEqualTo(failures + 1);
+        assertThat(buffer.pendingActivities()).isZero();
+        assertThat(dropped).singleElement().satisfies(rows ->
+                assertThat(rows).extracting(Activity::getRemarks).containsExactly("pending"));
+        buffer.shutdown();
+    }
+
+    @Test
+    void broadcastAfterTheControllerHasShutDownIsSkipped() {
+        // The buffer's final flush runs after ActivityController.shutdown() has stopped the broadcasts
+        Object controller = AopTestUtils.getTargetObject(activityController);
+        Object scheduler = ReflectionTestUtils.getField(controller, "scheduler");
+        ScheduledExecutorService stopped = Executors.newSingleThreadScheduledExecutor();
+        stopped.shutdown();
+        ReflectionTestUtils.setField(controller, "scheduler", stopped);
+        try {
+            double depth = meterRegistry.get("powergrid.sse.queue.depth").gauge().value();
+
+            ReflectionTestUtils.invokeMethod(controller, "scheduleBroadcast",
+                    new ActivityController.ActivityUpdate("BULK_UPDATE", List.of(activity()), null));
+
+            assertThat(meterRegistry.get("powergrid.sse.queue.depth").gauge().value()).isEqualTo(depth);
+        } finally {
+            ReflectionTestUtils.setField(controller, "scheduler", scheduler);
+        }
+    }
+
+    @Test
+    void transientFailureKeepsTheEditsForTheNextFlush() {
+        Activity activity = activityRepository.save(activity());
+        InlineEditBuffer buffer = buffer(failingFor(activity.getId(), new CannotCreateTransactionException("no connection")));
+        buffer.submit(activity.getId(), "remarks", "later", 0L);
+
+        assertThatThrownBy(buffer::flush).isInstanceOf(CannotCreateTransactionException.class);
+        assertThat(buffer.pendingActivities()).isEqualTo(1);
+
+        ReflectionTestUtils.setField(buffer, "activityService", activityService);
+        buffer.flush();
+        assertThat(activityRepository.findById(activity.getId()).orElseThrow().getRemarks()).isEqualTo("later");
+        buffer.shutdown();
+    }
+
+    @Test
+    void editAfterShutdownIsWrittenStraightAway() {
+        Activity activity = activityRepository.save(activity());
+        InlineEditBuffer buffer = buffer(activityService);
+        buffer.shutdown();
+
+        buffer.submit(activity.getId(), "remarks", "late edit", 0L);
+
+        assertThat(activityRepository.findById(activity.getId()).orElseThrow().getRemarks()).isEqualTo("late edit");
+    }
+
+    @Test
+    void sizeThresholdFlushesWithoutWaitingForTheInterval() throws Exception {
+        List<Activity> activities = List.of(activityRepository.save(activity()),
+                activityRepository.save(activity()), activityRepository.save(activity()));
+        for (Activity activity : activities) {
+            edit(activity.getId(), "eventLocation", "Hall 7", 0L);
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (flushed.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(flushed).hasSize(1);
+        assertThat(activityRepository.findAllById(activities.stream().map(Activity::getId).toList()))
+                .extracting(Activity::getEventLocation).containsOnly("Hall 7");
+    }
+
+    @Test
+    void shutdownWritesPendingEdits() {
+        Activity activity = activityRepository.save(activity());
+        InlineEditBuffer buffer = buffer(activityService);
+        buffer.submit(activity.getId(), "remarks", "written on shutdown", 0L);
+
+        buffer.shutdown();
+
+        assertThat(activityRepository.findById(activity.getId()).orElseThrow().getRemarks()).isEqualTo("written on shutdown");
+    }
+
+    @Test
+    void shutdownRetriesATransientFailure() {
+        Activity activity = activityRepository.save(activity());
+        InlineEditBuffer buffer = buffer(failingFor(activity.getId(), new CannotCreateTransactionException("no connection"), 1));
+        buffer.submit(activity.getId(), "remarks", "written on retry", 0L);
+
+        buffer.shutdown();
+
+        assertThat(activityRepository.findById(activity.getId()).orElseThrow().getRemarks()).isEqualTo("written on retry");
+        assertThat(buffer.pendingActivities()).isZero();
+    }
+
+    @Test
+    void shutdownGivesUpAfterItsTimeoutAndCountsTheLostEdits() {
+        Activity activity = activityRepository.save(activity());
+        InlineEditBuffer buffer = buffer(failingFor(activity.getId(), new CannotCreateTransactionException("no connection")), 300);
+        buffer.submit(activity.getId(), "remarks", "never written", 0L);
+        buffer.submit(activity.getId(), "state", "Punjab", 0L);
+        double failures = meterRegistry.counter("powergrid.inline.buffer.failures").count();
+
+        buffer.shutdown();
+
+        assertThat(buffer.pendingActivities()).isZero();
+        assertThat(meterRegistry.counter("powergrid.inline.buffer.failures").count()).isEqualTo(failures + 2);
+        assertThat(activityRepository.findById(activity.getId()).orElseThrow().getRemarks()).isEqualTo("pending");
+    }
+
+    private InlineEditBuffer buffer(ActivityService service) {
+        return buffer(service, 5000);
+    }
+
+    private InlineEditBuffer buffer(ActivityService service, long shutdownTimeoutMillis) {
+        InlineEditBuffer buffer = new InlineEditBuffer(true, 3_600_000, 100, shutdownTimeoutMillis);
+        ReflectionTestUtils.setField(buffer, "activityService", service);
+        ReflectionTestUtils.setField(buffer, "meterRegistry", meterRegistry);
+        buffer.init();
+        return buffer;
+    }
+
+    // The real service, except that writing a batch that contains id throws failure
+    private ActivityService failingFor(Long id, RuntimeException failure) {
+        return failingFor(id, failure, Integer.MAX_VALUE);
+    }
+
+    // As above, but only the first times such writes fail
+    private ActivityService failingFor(Long id, RuntimeException failure, int times) {
+        AtomicInteger remaining = new AtomicInteger(times);
+        return (ActivityService) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {ActivityService.class},
+                (proxy, method, args) -> {
+                    if ("updateFields".equals(method.getName()) && ((Map<?, ?>) args[0]).containsKey(id)
+                            && remaining.getAndDecrement() > 0) {
+                        throw failure;
+                    }
+                    try {
+                        return method.invoke(activityService, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private double conflicts() {
+        return meterRegistry.counter("powergrid.inline.buffer.conflicts").count();
+    }
+
+    private void edit(Long id, String field, Object value, Long version) throws Exception {
+        String json = value instanceof String ? "\"" + value + "\"" : String.valueOf(value);
+        mockMvc.perform(post("/inlineUpdate").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\":" + id + ",\"field\":\"" + field + "\",\"value\":" + json + ",\"version\":" + version + "}"))
+                .andExpect(status().isAccepted());
+    }
+}
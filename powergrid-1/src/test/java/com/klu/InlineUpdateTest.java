@@ -0,0 +1,160 @@
+package com.klu;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.klu.TestActivities.activity;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * /inlineUpdate writes one column with a version check and answers with the committed row.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class InlineUpdateTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ActivityService activityService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void editWritesOneColumnAndReturnsTheRow() throws Exception {
+        Activity activity = activityRepository.save(activity());
+        long version = activityRepository.findById(activity.getId()).orElseThrow().getVersion();
+
+        MvcResult result;
+        try (QueryBudget.Recording recording = QueryBudget.record()) {
+            result = mockMvc.perform(post("/inlineUpdate").contentType(MediaType.APPLICATION_JSON)
+                            .content(edit(activity.getId(), "remarks", "<b>checked</b><script>x()</script>", version)))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            assertThat(recording.getStatements()).filteredOn(sql -> sql.startsWith("update")).singleElement()
+                    .satisfies(sql -> assertThat(sql).contains("remarks").doesNotContain("state"));
+            assertThat(recording.count()).isEqualTo(2);
+        }
+
+        JsonNode row = objectMapper.readTree(result.getResponse().getContentAsString());
+        assertThat(row.get("version").asLong()).isEqualTo(version + 1);
+        assertThat(row.get("remarks").asText()).isEqualTo("<b>checked</b>");
+        assertThat(row.get("state").asText()).isEqualTo("Kerala");
+        Activity stored = activityRepository.findById(activity.getId()).orElseThrow();
+        assertThat(stored.getRemarks()).isEqualTo("<b>checked</b>");
+        assertThat(stored.getVersion()).isEqualTo(version + 1);
+    }
+
+    @Test
+    void staleVersionIsRejected() throws Exception {
+        Activity activity = activityRepository.save(activity());
+        long version = activityRepository.findById(activity.getId()).orElseThrow().getVersion();
+        mockMvc.perform(post("/inlineUpdate").contentType(MediaType.APPLICATION_JSON)
+                        .content(edit(activity.getId(), "numberOfParticipants", 40, version)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/inlineUpdate").contentType(MediaType.APPLICATION_JSON)
+                        .content(edit(activity.getId(), "numberOfParticipants", 50, version)))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.errorMessage").exists());
+
+        Activity stored = activityRepository.findById(activity.getId()).orElseThrow();
+        assertThat(stored.getNumberOfParticipants()).isEqualTo(40);
+        assertThat(stored.getVersion()).isEqualTo(version + 1);
+    }
+
+    @Test
+    void invalidValueAndUnknownRowAreBadRequests() throws Exception {
+        Activity activity = activityRepository.save(activity());
+
+        mockMvc.perform(post("/inlineUpdate").contentType(MediaType.APPLICATION_JSON)
+                        .content(edit(activity.getId(), "eventDate", "2025-01-01", null)))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/inlineUpdate").contentType(MediaType.APPLICATION_JSON)
+                        .content(edit(activity.getId(), "id", "1", null)))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/inlineUpdate").contentType(MediaType.APPLICATION_JSON)
+                        .content(edit(-1L, "state", "Punjab", 0L)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void wholeEntitySaveBumpsVersionInsteadOfRollingItBack() throws Exception {
+        Activity activity = activityRepository.save(activity());
+        mockMvc.perform(post("/inlineUpdate").contentType(MediaType.APPLICATION_JSON)
+                        .content(edit(activity.getId(), "state", "Punjab", null)))
+                .andExpect(status().isOk());
+
+        // A form post built from a stale copy carries version 0
+        Activity stale = activity();
+        stale.setId(activity.getId());
+        activityService.save(stale, null);
+
+        assertThat(stale.getVersion()).isEqualTo(2);
+        assertThat(activityRepository.findById(activity.getId()).orElseThrow().getVersion()).isEqualTo(2);
+    }
+
+    @Test
+    void inlineEditOnACopyFromBeforeABulkUpdateIsRejected() throws Exception {
+        Activity activity = activityRepository.save(activity());
+        long version = activityRepository.findById(activity.getId()).orElseThrow().getVersion();
+        mockMvc.perform(post("/bulkUpdate").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("ids", List.of(activity.getId()), "remarks", "bulk"))))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/inlineUpdate").contentType(MediaType.APPLICATION_JSON)
+                        .content(edit(activity.getId(), "remarks", "inline", version)))
+                .andExpect(status().isConflict());
+
+        Activity stored = activityRepository.findById(activity.getId()).orElseThrow();
+        assertThat(stored.getRemarks()).isEqualTo("bulk");
+        assertThat(stored.getVersion()).isEqualTo(version + 1);
+    }
+
+    @Test
+    void editReturnsTheUpdatedRowWhenTheContextAlreadyHoldsIt() {
+        Activity activity = activityRepository.save(activity());
+
+        Activity updated = transactionTemplate.execute(status -> {
+            activityRepository.findById(activity.getId()).orElseThrow();
+            return activityService.updateField(activity.getId(), "remarks", "checked", null);
+        });
+
+        assertThat(updated.getRemarks()).isEqualTo("checked");
+        assertThat(updated.getVersion()).isEqualTo(1);
+    }
+
+    private String edit(Long id, String field, Object value, Long version) throws Exception {
+        Map<String, Object> body = new HashMap<>();
+        body.put("id", id);
+        body.put("field", field);
+        body.put("value", value);
+        body.put("version", version);
+        return objectMapper.writeValueAsString(body);
+    }
+}
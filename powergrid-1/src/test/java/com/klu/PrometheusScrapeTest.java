@@ -0,0 +1,50 @@
+package com.klu;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Starts the app on a random port, exercises a few endpoints and scrapes /actuator/prometheus
+ * the way a local Prometheus would.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureObservability
+@ActiveProfiles("test")
+class PrometheusScrapeTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void scrapeExposesApplicationMeters() {
+        restTemplate.getForObject("/api/dashboardStats?startDate=2024-10-28&endDate=2024-11-03", String.class);
+        restTemplate.getForObject("/api/filters", String.class);
+
+        ResponseEntity<String> scrape = restTemplate.getForEntity("/actuator/prometheus", String.class);
+
+        assertThat(scrape.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(scrape.getBody())
+                // ActivityService methods and controller endpoints, with histogram buckets for percentiles
+                .contains("powergrid_service_seconds_bucket{")
+                .contains("method=\"getDashboardStats\"")
+                .contains("http_server_requests_seconds_bucket{")
+                .contains("uri=\"/api/filters\"")
+                // Hibernate statements / entity loads and the connection pool
+                .contains("hibernate_statements_total")
+                .contains("hibernate_entities_loads_total")
+                .contains("hikaricp_connections_active")
+                // Uploads and the SSE hub
+                .contains("powergrid_upload_bytes_count")
+                .contains("powergrid_sse_subscribers")
+                .contains("powergrid_sse_queue_depth")
+                .contains("powergrid_sse_broadcast_seconds_count");
+    }
+}
@@ -0,0 +1,35 @@
+package com.klu;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Test-support API over QueryBudget: runs an action (typically a MockMvc request) and fails if it
+ * prepares more than the allowed number of SQL statements, listing what ran.
+ *
+ *   assertMaxStatements(3, "GET /activity", () -> mockMvc.perform(get("/activity")));
+ */
+final class QueryBudgetAssertions {
+
+    private QueryBudgetAssertions() {
+    }
+
+    static <T> T assertMaxStatements(int maxStatements, String description, Callable<T> action) throws Exception {
+        try (QueryBudget.Recording recording = QueryBudget.record()) {
+            T result = action.call();
+            if (recording.count() > maxStatements) {
+                StringBuilder message = new StringBuilder(description + " ran " + recording.count()
+                        + " statements, budget is " + maxStatements + ":");
+                for (String sql : recording.getStatements()) {
+                    message.append("\n  ").append(sql);
+                }
+                Map<String, Integer> repeated = recording.repeated(2);
+                if (!repeated.isEmpty()) {
+                    message.append("\nRepeated with different binds (N+1?): ").append(repeated);
+                }
+                throw new AssertionError(message.toString());
+            }
+            return result;
+        }
+    }
+}
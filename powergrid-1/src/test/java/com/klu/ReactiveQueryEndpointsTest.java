@@ -0,0 +1,140 @@
+package com.klu;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * /api/reactive/* stream NDJSON rows fetched in keyset pages (powergrid.reactive.page-size=5 here),
+ * and a page is only fetched once the rows before it have been consumed.
+ */
+@SpringBootTest(properties = "powergrid.reactive.page-size=5")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ReactiveQueryEndpointsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private ActivityBitmapIndex activityBitmapIndex;
+
+    @Autowired
+    private AnalyticalQueryExecutor analyticalQueryExecutor;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void dateRangeRowsArriveInKeysetOrderAcrossPages() throws Exception {
+        List<Activity> seeded = seed("Nagaland", 12);
+
+        List<JsonNode> rows = QueryBudgetAssertions.assertMaxStatements(3, "12 rows in pages of 5",
+                () -> stream(post("/api/reactive/dateRangeQuery")
+                        .param("startDate", "2024-10-28").param("endDate", "2024-11-03").param("state", "Nagaland")));
+
+        // orderIndex repeats, so rows with the same orderIndex must continue by id across page boundaries
+        List<Long> expected = seeded.stream()
+                .sorted(Comparator.comparing(Activity::getOrderIndex).thenComparing(Activity::getId))
+                .map(Activity::getId).toList();
+        assertThat(rows).extracting(row -> row.get("id").asLong()).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void stateCategoryRowsArriveInIdOrder() throws Exception {
+        List<Activity> seeded = seed("Manipur", 7);
+
+        List<JsonNode> rows = stream(post("/api/reactive/stateCategoryQuery")
+                .param("state", "Manipur").param("eventCategory", "Seminar").param("operator", "AND"));
+
+        assertThat(rows).extracting(row -> row.get("id").asLong())
+                .containsExactlyElementsOf(seeded.stream().map(Activity::getId).sorted().toList());
+    }
+
+    @Test
+    void dynamicCalculationStreamsOneLinePerGroup() throws Exception {
+        seed("Sikkim", 3);
+
+        List<JsonNode> groups = stream(post("/api/reactive/dynamicCalculation").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"aggregates\":[{\"function\":\"COUNT\",\"column\":\"id\"}],\"groupBy\":[\"state\"],"
+                        + "\"conditions\":[{\"field\":\"state\",\"operator\":\"=\",\"value\":\"Sikkim\"}]}"));
+
+        assertThat(groups).singleElement().satisfies(group -> {
+            assertThat(group.get("groups").get("state").asText()).isEqualTo("Sikkim");
+            assertThat(group.get("values").get("COUNT_id").asLong()).isEqualTo(3);
+        });
+    }
+
+    @Test
+    void badInputIsAnErrorLine() throws Exception {
+        assertThat(stream(post("/api/reactive/dateRangeQuery").param("startDate", "2024-11-03").param("endDate", "2024-10-28")))
+                .singleElement().satisfies(line -> assertThat(line.get("errorMessage").asText()).contains("Start date"));
+        assertThat(stream(post("/api/reactive/stateCategoryQuery").param("state", "").param("eventCategory", "")))
+                .singleElement().satisfies(line -> assertThat(line.get("errorMessage").asText()).contains("both"));
+        assertThat(stream(post("/api/reactive/dynamicCalculation").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"aggregates\":[{\"function\":\"SUM\",\"column\":\"state\"}],\"groupBy\":[]}")))
+                .singleElement().satisfies(line -> assertThat(line.get("errorMessage").asText()).contains("not supported"));
+    }
+
+    @Test
+    void pagesAreFetchedOnDemand() {
+        AtomicInteger fetches = new AtomicInteger();
+        List<Integer> taken = analyticalQueryExecutor.<Integer>keysetPages(2, after -> {
+            fetches.incrementAndGet();
+            int from = after == null ? 0 : after + 1;
+            return List.of(from, from + 1);
+        }).take(3).collectList().block();
+
+        assertThat(taken).containsExactly(0, 1, 2);
+        assertThat(fetches).hasValue(2);
+    }
+
+    private List<Activity> seed(String state, int count) {
+        List<Activity> activities = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Activity activity = new Activity();
+            activity.setState(state);
+            activity.setEventCategory("Seminar");
+            activity.setNumberOfParticipants(10 + i);
+            activity.setEventDate(LocalDate.of(2024, 10, 28).plusDays(i % 7));
+            activity.setOrderIndex(i % 4);
+            activities.add(activityRepository.save(activity));
+            activityBitmapIndex.index(activities.get(i));
+        }
+        return activities;
+    }
+
+    private List<JsonNode> stream(RequestBuilder builder) throws Exception {
+        MvcResult result = mockMvc.perform(builder).andExpect(request().asyncStarted()).andReturn();
+        result.getAsyncResult(10_000);
+        assertThat(result.getResponse().getContentType()).startsWith(MediaType.APPLICATION_NDJSON_VALUE);
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : result.getResponse().getContentAsString(StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isBlank()) {
+                lines.add(objectMapper.readTree(line));
+            }
+        }
+        return lines;
+    }
+}
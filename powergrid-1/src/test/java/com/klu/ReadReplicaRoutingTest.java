@@ -0,0 +1,198 @@
+package com.klu;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static com.klu.TestActivities.activity;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Read/write split against two embedded databases: the primary from application-test.properties
+ * and an H2 "replica" that only changes when the test replicates by copying the primary into it.
+ * The heartbeat is driven by the test, so replica freshness is exactly what each test sets up.
+ */
+@SpringBootTest(properties = {
+        "powergrid.replicas.urls=" + ReadReplicaRoutingTest.REPLICA_URL,
+        "powergrid.replicas.heartbeat-ms=3600000"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ReadReplicaRoutingTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:powergrid-replica;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private ActivityService activityService;
+
+    @Autowired
+    private ReadReplicas readReplicas;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ActivityDataVersion activityDataVersion;
+
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    @Test
+    void readsUseAFreshEnoughReplicaAndOtherwiseThePrimary() throws Exception {
+        activityRepository.save(activity("Tripura", "Workshop", LocalDate.of(2030, 1, 1)));
+        replicate();
+        // Committed on the primary only, as if the replica had not caught up yet
+        activityRepository.save(activity("Tripura", "Workshop", LocalDate.of(2030, 1, 1)));
+        double replicaReads = reads("replica");
+
+        assertThat(readReplicas.isEnabled()).isTrue();
+        assertThat(readReplicas.read(60_000, () -> count("Tripura"))).isEqualTo(1);
+        assertThat(reads("replica")).isEqualTo(replicaReads + 1);
+        // Nothing is ever that fresh
+        assertThat(readReplicas.read(0, () -> count("Tripura"))).isEqualTo(2);
+
+        replicate();
+        assertThat(readReplicas.read(60_000, () -> count("Tripura"))).isEqualTo(2);
+    }
+
+    @Test
+    void usersReadTheirOwnEditsFromThePrimaryUntilTheReplicaHasThem() throws Exception {
+        Activity activity = activityRepository.save(activity("Mizoram", "Workshop", LocalDate.of(2030, 2, 1)));
+        replicate();
+        MockHttpSession editor = new MockHttpSession();
+        mockMvc.perform(post("/inlineUpdate").session(editor).contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\":" + activity.getId() + ",\"field\":\"remarks\",\"value\":\"checked\"}"))
+                .andExpect(status().isOk());
+
+        assertThat(export(editor)).contains("checked");
+        assertThat(export(new MockHttpSession())).contains("pending").doesNotContain("checked");
+
+        replicate();
+        double replicaReads = reads("replica");
+        assertThat(export(editor)).contains("checked");
+        assertThat(reads("replica")).isEqualTo(replicaReads + 1);
+    }
+
+    @Test
+    void versionKeyedReadsNeedEveryCommittedWrite() throws Exception {
+        LocalDate day = LocalDate.of(2030, 3, 1);
+        Activity activity = activityRepository.save(activity("Sikkim", "Workshop", day));
+        replicate();
+
+        assertThat(activityService.getDashboardStats(day, day).get("totalParticipants")).isEqualTo(10L);
+
+        // Any user's write, so the next (uncached) result must come from the primary
+        activityService.updateField(activity.getId(), "numberOfParticipants", 50, null);
+        assertThat(activityService.getDashboardStats(day, day).get("totalParticipants")).isEqualTo(50L);
+        assertThat(activityService.performDynamicCalculation(List.of(Map.of("function", "SUM", "column", "numberOfParticipants")),
+                List.of(), List.of(Map.of("field", "state", "operator", "=", "value", "Sikkim"))).toString())
+                .contains("50");
+    }
+
+    @Test
+    void writesWithoutASessionDoNotCreateOne() throws Exception {
+        Activity activity = activityRepository.save(activity("Nagaland", "Workshop", LocalDate.of(2030, 2, 2)));
+
+        MvcResult result = mockMvc.perform(post("/inlineUpdate").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\":" + activity.getId() + ",\"field\":\"remarks\",\"value\":\"checked\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(result.getRequest().getSession(false)).isNull();
+    }
+
+    @Test
+    void versionKeyedReadsWaitForAnotherInstancesWrite() throws Exception {
+        activityRepository.save(activity("Manipur", "Workshop", LocalDate.of(2030, 3, 2)));
+        replicate();
+        // Another instance's write: the row and its version bump reach the primary, and this
+        // instance only learns of it from the shared version
+        activityRepository.save(activity("Manipur", "Workshop", LocalDate.of(2030, 3, 2)));
+        new JdbcTemplate(dataSource).update("UPDATE " + ActivityDataVersion.TABLE + " SET version = version + 1 WHERE id = 1");
+        activityDataVersion.refresh();
+
+        assertThat(readReplicas.read(60_000, () -> count("Manipur"))).isEqualTo(1);
+        assertThat(readReplicas.readCurrent(60_000, () -> count("Manipur"))).isEqualTo(2);
+
+        replicate();
+        double replicaReads = reads("replica");
+        assertThat(readReplicas.readCurrent(60_000, () -> count("Manipur"))).isEqualTo(2);
+        assertThat(reads("replica")).isEqualTo(replicaReads + 1);
+    }
+
+    @Test
+    void withoutAFreshReplicaEverythingStaysOnThePrimary() {
+        // Replica lost its data: the heartbeat no longer finds this instance's beat there
+        replica.execute("DROP ALL OBJECTS");
+        readReplicas.heartbeat();
+        activityRepository.save(activity("Goa", "Workshop", LocalDate.of(2030, 4, 1)));
+
+        assertThat(readReplicas.read(60_000, () -> count("Goa"))).isEqualTo(1);
+    }
+
+    @Test
+    void heartbeatRowIsDeletedOnShutdown() {
+        DataSource primary = new DriverManagerDataSource("jdbc:h2:mem:heartbeat-primary;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, List.of());
+        JdbcTemplate rows = new JdbcTemplate(primary);
+
+        routing.heartbeat();
+        routing.heartbeat();
+        assertThat(rows.queryForObject("SELECT COUNT(*) FROM " + ReplicaRoutingDataSource.HEARTBEAT_TABLE, Long.class)).isEqualTo(1);
+
+        routing.close();
+        assertThat(rows.queryForObject("SELECT COUNT(*) FROM " + ReplicaRoutingDataSource.HEARTBEAT_TABLE, Long.class)).isZero();
+    }
+
+    // Copies the primary into the replica; the beat written just before the copy becomes its position
+    private void replicate() throws Exception {
+        Thread.sleep(2);
+        readReplicas.heartbeat();
+        Path script = Files.createTempFile("replica", ".sql");
+        new JdbcTemplate(dataSource).execute("SCRIPT TO '" + script + "'");
+        replica.execute("DROP ALL OBJECTS");
+        replica.execute("RUNSCRIPT FROM '" + script + "'");
+        Files.delete(script);
+        readReplicas.heartbeat();
+    }
+
+    private long count(String state) {
+        return activityRepository.findAll().stream().filter(a -> state.equals(a.getState())).count();
+    }
+
+    private String export(MockHttpSession session) throws Exception {
+        return mockMvc.perform(get("/export").session(session).param("search", "mizoram"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    private double reads(String target) {
+        return meterRegistry.counter("powergrid.replicas.reads", "target", target).count();
+    }
+}
@@ -0,0 +1,74 @@
+package com.klu;
+
+import net.jqwik.api.Arbitraries;
+import net.jqwik.api.Arbitrary;
+import net.jqwik.api.Example;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.Provide;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * SanitizationService must be indistinguishable from the OWASP policy: same output for any input,
+ * whether it takes the plain-text path, a memo hit or the policy itself.
+ */
+class SanitizationServiceTest {
+
+    // Small enough that the generated values keep evicting each other
+    private final SanitizationService service = new SanitizationService(64);
+
+    @Property(tries = 5000)
+    void matchesPolicy(@ForAll("fieldValues") String value) {
+        String expected = SanitizationService.POLICY.sanitize(value);
+
+        assertThat(service.sanitize(value)).isEqualTo(expected);
+        // Second call is served from the memo (or the pre-scan)
+        assertThat(service.sanitize(value)).isEqualTo(expected);
+    }
+
+    @Property(tries = 5000)
+    void plainTextIsReturnedAsIs(@ForAll("plainValues") String value) {
+        assertThat(SanitizationService.isPlainText(value)).isTrue();
+        assertThat(service.sanitize(value)).isSameAs(value);
+        assertThat(SanitizationService.POLICY.sanitize(value)).isEqualTo(value);
+    }
+
+    @Property(tries = 2000)
+    void everyCharacterAloneAndInTextMatchesPolicy(@ForAll char c) {
+        for (String value : new String[] {String.valueOf(c), "a" + c + "b", c + " " + c, "x" + c + c}) {
+            assertThat(service.sanitize(value)).isEqualTo(SanitizationService.POLICY.sanitize(value));
+        }
+    }
+
+    @Example
+    void nullAndEmptyBecomeEmpty() {
+        assertThat(service.sanitize(null)).isEmpty();
+        assertThat(service.sanitize("")).isEmpty();
+    }
+
+    @Example
+    void longValuesBypassTheMemo() {
+        String value = "<b>x</b>".repeat(SanitizationService.MEMO_MAX_LENGTH);
+
+        assertThat(service.sanitize(value)).isEqualTo(SanitizationService.POLICY.sanitize(value));
+    }
+
+    @Provide
+    Arbitrary<String> fieldValues() {
+        Arbitrary<String> fragments = Arbitraries.oneOf(
+                Arbitraries.of("Kerala", "Substation North", "Workshop", " ", "\t", "\r\n", "&amp;", "&#x41;", "&",
+                        "<b>", "</b>", "<i>", "<p>", "</p>", "<br/>", "<script>", "</script>", "<a href=\"x\">",
+                        "<!--", "-->", "]]>", "{{", "}}", "{", "\"", "'", "`", "=", "+", "@", "\u0000", "\u007f",
+                        "\u00a0", "\u1fef", "\u2028", "\ufeff", "\uff1c", "\ud83d\ude00", "\ud800", "\udc00"),
+                Arbitraries.strings().withCharRange(' ', '~').ofMaxLength(8),
+                Arbitraries.strings().all().ofMaxLength(4));
+        return fragments.list().ofMaxSize(12).map(parts -> String.join("", parts));
+    }
+
+    @Provide
+    Arbitrary<String> plainValues() {
+        return Arbitraries.strings().all().ofMaxLength(40)
+                .filter(SanitizationService::isPlainText);
+    }
+}
@@ -0,0 +1,160 @@
+package com.klu;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.klu.TestActivities.activity;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Server-Timing breakdown on JSON and page responses, and the slow-query log's row counts,
+ * redaction and runtime threshold.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ServerTimingTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private SlowQueryLog slowQueryLog;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private SlowQueryEndpointJmxExtension slowQueryEndpointJmxExtension;
+
+    private long originalThreshold;
+
+    @BeforeEach
+    void setUp() {
+        originalThreshold = slowQueryLog.getThresholdMillis();
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @AfterEach
+    void restoreThreshold() {
+        slowQueryLog.setThresholdMillis(originalThreshold);
+    }
+
+    @Test
+    void jsonResponseSplitsDbAndSerializationTime() throws Exception {
+        activityRepository.save(remarked("Kerala", "Workshop", "note"));
+
+        MvcResult result = mockMvc.perform(get("/api/filters")).andExpect(status().isOk()).andReturn();
+
+        String header = result.getResponse().getHeader(ServerTimingFilter.HEADER);
+        assertThat(header).contains("db;dur=", "service;dur=", "sanitize;dur=", "render;dur=", "serialize;dur=", "total;dur=");
+        Matcher queries = Pattern.compile("db;dur=[\\d.]+;desc=\"(\\d+) queries\"").matcher(header);
+        assertThat(queries.find()).isTrue();
+        assertThat(Integer.parseInt(queries.group(1))).isGreaterThanOrEqualTo(1);
+        assertThat(duration(header, "serialize")).isGreaterThan(0);
+        assertThat(duration(header, "total")).isGreaterThanOrEqualTo(duration(header, "db"));
+    }
+
+    @Test
+    void pageResponseReportsRenderTime() throws Exception {
+        MvcResult result = mockMvc.perform(get("/")).andExpect(status().isOk()).andReturn();
+
+        String header = result.getResponse().getHeader(ServerTimingFilter.HEADER);
+        assertThat(duration(header, "render")).isGreaterThan(0);
+        assertThat(result.getResponse().getContentAsString()).isNotEmpty();
+    }
+
+    @Test
+    void streamingResponsesAreNotBuffered() throws Exception {
+        MvcResult result = mockMvc.perform(get("/activities/updates")).andReturn();
+
+        assertThat(result.getRequest().isAsyncStarted()).isTrue();
+        assertThat(result.getResponse().getHeader(ServerTimingFilter.HEADER)).isNull();
+    }
+
+    @Test
+    void csvExportIsNotBuffered() throws Exception {
+        MvcResult result = mockMvc.perform(get("/export")).andExpect(status().isOk()).andReturn();
+
+        assertThat(result.getResponse().getHeader(ServerTimingFilter.HEADER)).isNull();
+    }
+
+    @Test
+    void thresholdCannotBeChangedOverHttp() throws Exception {
+        mockMvc.perform(get("/actuator/slowqueries")).andExpect(status().isOk());
+        mockMvc.perform(post("/actuator/slowqueries").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"thresholdMs\": 0}"))
+                .andExpect(status().isMethodNotAllowed());
+
+        assertThat(slowQueryLog.getThresholdMillis()).isEqualTo(originalThreshold);
+    }
+
+    @Test
+    void slowQueriesCarryRowCountAndRedactedBinds() throws Exception {
+        assertThat(slowQueryEndpointJmxExtension.setThreshold(0)).containsEntry("thresholdMs", 0L);
+        assertThat(slowQueryLog.getThresholdMillis()).isZero();
+
+        activityRepository.save(remarked("Punjab", "Seminar", "call 98765 before visiting"));
+        activityRepository.save(remarked("Punjab", "Seminar", "second"));
+        int punjab = (int) activityRepository.findAll().stream().filter(a -> "Punjab".equals(a.getState())).count();
+
+        List<Map<String, Object>> recent = slowQueryLog.getRecent();
+        assertThat(recent.toString()).doesNotContain("98765");
+        Map<String, Object> insert = recent.stream()
+                .filter(entry -> entry.get("sql").toString().startsWith("insert into activity"))
+                .filter(entry -> entry.get("binds").toString().contains("<redacted, 26 chars>"))
+                .findFirst().orElseThrow();
+        assertThat(insert.get("binds").toString()).contains("Punjab", "Seminar");
+        assertThat(insert.get("rows")).isEqualTo(1);
+
+        Map<String, Object> select = recent.stream()
+                .filter(entry -> entry.get("sql").toString().startsWith("select"))
+                .filter(entry -> entry.get("sql").toString().contains("from activity"))
+                .findFirst().orElseThrow();
+        assertThat((Integer) select.get("rows")).isGreaterThanOrEqualTo(punjab);
+    }
+
+    @Test
+    void bindsAreMatchedToColumns() {
+        assertThat(SlowQueryLog.bindColumns(
+                "insert into activity (event_date,remarks,state,id) values (?,?,?,default)"))
+                .containsExactly("event_date", "remarks", "state");
+        assertThat(SlowQueryLog.bindColumns(
+                "select a1_0.id from activity a1_0 where a1_0.state=? and a1_0.event_date between ? and ? "
+                        + "and a1_0.remarks like ? and a1_0.id in (?,?)"))
+                .containsExactly("state", "event_date", "event_date", "remarks", "id", "id");
+    }
+
+    private static double duration(String header, String metric) {
+        Matcher matcher = Pattern.compile("\\b" + metric + ";dur=([\\d.]+)").matcher(header);
+        assertThat(matcher.find()).as(metric + " in " + header).isTrue();
+        return Double.parseDouble(matcher.group(1));
+    }
+
+    private static Activity remarked(String state, String category, String remarks) {
+        Activity activity = activity(state, category, LocalDate.of(2024, 10, 29));
+        activity.setRemarks(remarks);
+        return activity;
+    }
+}
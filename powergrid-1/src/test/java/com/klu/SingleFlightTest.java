@@ -0,0 +1,120 @@
+package com.klu;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Concurrent identical calls share one computation, including its failure, and nothing outlives it.
+ */
+class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void parallelIdenticalCallsRunOneComputation() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Object shared = new Object();
+
+        List<Future<Object>> results = callConcurrently(() -> {
+            runs.incrementAndGet();
+            await(release);
+            return shared;
+        });
+        awaitCoalesced(CALLERS - 1);
+        release.countDown();
+
+        for (Future<Object> result : results) {
+            assertThat(result.get(10, TimeUnit.SECONDS)).isSameAs(shared);
+        }
+        assertThat(runs).hasValue(1);
+        assertThat(stats()).containsEntry("executions", 1L).containsEntry("coalesced", (long) CALLERS - 1);
+        assertThat(singleFlight.getStats()).containsEntry("inFlight", 0);
+    }
+
+    @Test
+    void failureReachesEveryWaiterAndIsNotKept() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("database unavailable");
+
+        List<Future<Object>> results = callConcurrently(() -> {
+            runs.incrementAndGet();
+            await(release);
+            throw failure;
+        });
+        awaitCoalesced(CALLERS - 1);
+        release.countDown();
+
+        for (Future<Object> result : results) {
+            assertThatThrownBy(() -> result.get(10, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .cause().isSameAs(failure);
+        }
+        assertThat(runs).hasValue(1);
+
+        // The next call computes again instead of seeing the old failure
+        assertThat(singleFlight.execute("test", List.of("key"), () -> "recovered")).isEqualTo("recovered");
+        assertThat(stats()).containsEntry("executions", 2L);
+    }
+
+    @Test
+    void keysDifferingOnlyInMapOrderAreTheSameFlight() {
+        assertThat(SingleFlight.normalize(List.of(Map.of("a", 1, "b", 2))))
+                .isEqualTo(SingleFlight.normalize(List.of(Map.of("b", 2, "a", 1))));
+        assertThat(SingleFlight.normalize(List.of(1, 2))).isNotEqualTo(SingleFlight.normalize(List.of(2, 1)));
+    }
+
+    private List<Future<Object>> callConcurrently(Supplier<Object> computation) {
+        List<Future<Object>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(() -> singleFlight.execute("test", List.of("key"), computation)));
+        }
+        return results;
+    }
+
+    // The leader holds the flight open until every other caller has joined it
+    private void awaitCoalesced(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (stats().get("coalesced") == null || (Long) stats().get("coalesced") < expected) {
+            assertThat(System.currentTimeMillis()).as("callers joining the flight").isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> stats() {
+        return (Map<String, Object>) singleFlight.getStats().getOrDefault("test", Map.of());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
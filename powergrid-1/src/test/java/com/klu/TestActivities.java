@@ -0,0 +1,31 @@
+package com.klu;
+
+import java.time.LocalDate;
+
+/**
+ * Activity rows for the Spring Boot tests: a valid, unsaved activity that each test adjusts with
+ * setters where its assertions depend on a particular value.
+ *
+ *   Activity activity = activityRepository.save(activity());
+ *   Activity other = activity("Punjab", "Seminar", LocalDate.of(2024, 10, 29));
+ */
+final class TestActivities {
+
+    private TestActivities() {
+    }
+
+    static Activity activity() {
+        return activity("Kerala", "Workshop", LocalDate.of(2024, 10, 30));
+    }
+
+    static Activity activity(String state, String eventCategory, LocalDate eventDate) {
+        Activity activity = new Activity();
+        activity.setState(state);
+        activity.setEventCategory(eventCategory);
+        activity.setActivityType("Awareness");
+        activity.setNumberOfParticipants(10);
+        activity.setEventDate(eventDate);
+        activity.setRemarks("pending");
+        return activity;
+    }
+}
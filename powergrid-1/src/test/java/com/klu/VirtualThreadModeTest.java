@@ -0,0 +1,113 @@
+package com.klu;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The virtual-thread switch falls back to platform threads below Java 21, and the connection
+ * admission filter, on by default only with virtual threads, queues requests past its limit and
+ * turns away the ones that wait too long.
+ */
+class VirtualThreadModeTest {
+
+    @Test
+    void virtualModeNeedsJava21() throws Exception {
+        VirtualThreads virtualThreads = new VirtualThreads(new MockEnvironment().withProperty("spring.threads.virtual.enabled", "true"));
+        boolean java21 = Runtime.version().feature() >= 21;
+
+        assertThat(virtualThreads.isEnabled()).isEqualTo(java21);
+        Thread thread = virtualThreads.threadFactory("test-").newThread(() -> { });
+        assertThat(thread.getName()).startsWith("test-");
+        assertThat(thread.getClass().getSimpleName().contains("Virtual")).isEqualTo(java21);
+
+        assertThat(new VirtualThreads(new MockEnvironment()).isEnabled()).isFalse();
+    }
+
+    @Test
+    void requestsPastTheLimitWaitThenGet503() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ConnectionAdmissionFilter filter = filter(1, 50, meterRegistry);
+        CountDownLatch inHandler = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<MockHttpServletResponse> first = CompletableFuture.supplyAsync(() -> {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            try {
+                filter.doFilter(new MockHttpServletRequest("POST", "/api/dateRangeQuery"), response, (req, res) -> {
+                    inHandler.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return response;
+        });
+        assertThat(inHandler.await(10, TimeUnit.SECONDS)).isTrue();
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("POST", "/api/dateRangeQuery"), rejected, (req, res) -> { });
+        assertThat(rejected.getStatus()).isEqualTo(503);
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("1");
+        assertThat(rejected.getContentAsString()).contains("errorMessage");
+        assertThat(meterRegistry.counter("powergrid.admission.rejected").count()).isEqualTo(1);
+
+        // Streams are excluded: they hold no connection between pages
+        MockHttpServletResponse stream = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("POST", "/api/reactive/dateRangeQuery"), stream, (req, res) -> { });
+        assertThat(stream.getStatus()).isEqualTo(200);
+
+        release.countDown();
+        assertThat(first.get(10, TimeUnit.SECONDS).getStatus()).isEqualTo(200);
+        MockHttpServletResponse admitted = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("POST", "/api/dateRangeQuery"), admitted, (req, res) -> { });
+        assertThat(admitted.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void disabledFilterLetsEverythingThrough() throws Exception {
+        ConnectionAdmissionFilter filter = filter(0, 0, false, null, new SimpleMeterRegistry());
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("POST", "/api/dateRangeQuery"), response, (req, res) -> { });
+        assertThat(response.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void admissionDefaultsToOnOnlyWhenVirtualThreadsRun() throws Exception {
+        // Requested, but below Java 21 the server stays on platform threads and so does the filter
+        VirtualThreads requested = new VirtualThreads(new MockEnvironment().withProperty("spring.threads.virtual.enabled", "true"));
+        ConnectionAdmissionFilter filter = filter(0, 0, null, requested, new SimpleMeterRegistry());
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("POST", "/api/dateRangeQuery"), response, (req, res) -> { });
+        assertThat(response.getStatus()).isEqualTo(requested.isEnabled() ? 503 : 200);
+    }
+
+    private static ConnectionAdmissionFilter filter(int maxConcurrent, long maxWaitMs, SimpleMeterRegistry meterRegistry) {
+        return filter(maxConcurrent, maxWaitMs, true, null, meterRegistry);
+    }
+
+    private static ConnectionAdmissionFilter filter(int maxConcurrent, long maxWaitMs, Boolean enabled,
+                                                    VirtualThreads virtualThreads, SimpleMeterRegistry meterRegistry) {
+        ConnectionAdmissionFilter filter = new ConnectionAdmissionFilter(maxConcurrent, enabled, virtualThreads);
+        ReflectionTestUtils.setField(filter, "excludedPaths", new String[] {"/activities/updates", "/api/reactive/"});
+        ReflectionTestUtils.setField(filter, "maxWaitMs", maxWaitMs);
+        ReflectionTestUtils.setField(filter, "meterRegistry", meterRegistry);
+        filter.init();
+        return filter;
+    }
+}
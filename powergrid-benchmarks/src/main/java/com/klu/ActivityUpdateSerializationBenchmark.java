@@ -0,0 +1,60 @@
+package com.klu;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON encoding of the SSE payload (ActivityController.ActivityUpdate) with the controller's
+ * ObjectMapper setup: a single UPDATE with its files, and a BULK_UPDATE of 50 activities.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActivityUpdateSerializationBenchmark {
+
+    @Param({"UPDATE", "BULK_UPDATE"})
+    public String action;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ActivityController.ActivityUpdate update;
+
+    @Setup
+    public void setUp() {
+        objectMapper.registerModule(new JavaTimeModule());
+        if ("UPDATE".equals(action)) {
+            Activity activity = BenchmarkData.activities(1, 3).get(0);
+            update = new ActivityController.ActivityUpdate(action, activity, BenchmarkData.files(activity, 2));
+        } else {
+            List<Activity> activities = BenchmarkData.activities(50, 3);
+            List<FileMetadata> files = new ArrayList<>();
+            for (Activity activity : activities) {
+                files.addAll(BenchmarkData.files(activity, 1));
+            }
+            update = new ActivityController.ActivityUpdate(action, activities, files);
+        }
+    }
+
+    @Benchmark
+    public String writeValueAsString() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(update);
+    }
+}
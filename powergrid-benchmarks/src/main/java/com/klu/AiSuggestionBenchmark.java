@@ -0,0 +1,61 @@
+package com.klu;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * getAiSuggestions scoring: ActivitySuggestionEngine folding the per-day, per-category aggregate
+ * rows and ranking the days. Cost follows days x categories in the window.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AiSuggestionBenchmark {
+
+    @Param({"7", "90"})
+    public int days;
+
+    @Param({"6", "60"})
+    public int categories;
+
+    private final ActivitySuggestionEngine engine = new ActivitySuggestionEngine(3660);
+    private LocalDate endDate;
+    private List<Object[]> rows;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(7);
+        endDate = BenchmarkData.START.plusDays(days - 1);
+        rows = new ArrayList<>();
+        for (int day = 0; day < days; day++) {
+            for (int category = 0; category < categories; category++) {
+                rows.add(new Object[] {BenchmarkData.START.plusDays(day), "Category " + category,
+                        (long) random.nextInt(40), (long) random.nextInt(4000)});
+            }
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> suggest() {
+        return engine.suggest(engine.collect(BenchmarkData.START, endDate, rows));
+    }
+}
@@ -0,0 +1,106 @@
+package com.klu;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares two JMH JSON result files (-rf json) benchmark by benchmark: average time and, when the
+ * run used -prof gc, bytes allocated per operation (gc.alloc.rate.norm).
+ *
+ *   java -cp target/benchmarks.jar com.klu.BaselineComparison baseline/results.json results.json [maxRegressionPercent]
+ *
+ * Exits with status 1 if any benchmark got slower, or allocates more, by more than
+ * maxRegressionPercent (default 10) beyond the baseline's error margin.
+ */
+public final class BaselineComparison {
+
+    private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+
+    private BaselineComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineComparison <baseline.json> <current.json> [maxRegressionPercent]");
+            System.exit(2);
+        }
+        double maxRegression = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+        Map<String, JsonNode> baseline = load(new File(args[0]));
+        Map<String, JsonNode> current = load(new File(args[1]));
+
+        boolean regressed = false;
+        System.out.printf(Locale.ROOT, "%-80s %14s %14s %8s %12s %12s %8s%n",
+                "Benchmark", "base", "current", "time", "base B/op", "cur B/op", "alloc");
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            JsonNode after = entry.getValue();
+            if (before == null) {
+                System.out.printf(Locale.ROOT, "%-80s %14s %14.3f%n", entry.getKey(), "(new)", score(after));
+                continue;
+            }
+            double timeDelta = percent(score(before), score(after));
+            double allocBefore = alloc(before);
+            double allocAfter = alloc(after);
+            double allocDelta = percent(allocBefore, allocAfter);
+            double noise = 100.0 * error(before) / Math.max(score(before), Double.MIN_VALUE);
+            boolean slower = timeDelta > maxRegression + noise;
+            boolean allocates = allocBefore >= 0 && allocAfter >= 0 && allocDelta > maxRegression;
+            regressed |= slower || allocates;
+            System.out.printf(Locale.ROOT, "%-80s %14.3f %14.3f %+7.1f%% %12.0f %12.0f %+7.1f%%%s%n",
+                    entry.getKey(), score(before), score(after), timeDelta, allocBefore, allocAfter, allocDelta,
+                    slower || allocates ? "  REGRESSION" : "");
+        }
+        System.exit(regressed ? 1 : 0);
+    }
+
+    // Keyed by benchmark name plus parameters, e.g. "CsvExportBenchmark.encodeRows [rows=1000]"
+    private static Map<String, JsonNode> load(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            String name = result.get("benchmark").asText().replace("com.klu.", "");
+            StringBuilder key = new StringBuilder(name);
+            JsonNode params = result.get("params");
+            if (params != null) {
+                key.append(" [");
+                for (Iterator<Map.Entry<String, JsonNode>> it = params.fields(); it.hasNext(); ) {
+                    Map.Entry<String, JsonNode> param = it.next();
+                    key.append(param.getKey()).append('=').append(param.getValue().asText());
+                    if (it.hasNext()) {
+                        key.append(", ");
+                    }
+                }
+                key.append(']');
+            }
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+
+    private static double score(JsonNode result) {
+        return result.path("primaryMetric").path("score").asDouble();
+    }
+
+    private static double error(JsonNode result) {
+        double error = result.path("primaryMetric").path("scoreError").asDouble(0);
+        return Double.isNaN(error) ? 0 : error;
+    }
+
+    private static double alloc(JsonNode result) {
+        JsonNode metric = result.path("secondaryMetrics").path(ALLOC_NORM);
+        return metric.isMissingNode() ? -1 : metric.path("score").asDouble();
+    }
+
+    private static double percent(double before, double after) {
+        if (before <= 0) {
+            return 0;
+        }
+        return 100.0 * (after - before) / before;
+    }
+}
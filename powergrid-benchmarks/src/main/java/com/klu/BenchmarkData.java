@@ -0,0 +1,55 @@
+package com.klu;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic sample rows shaped like production data: a handful of states and categories,
+ * dates inside the campaign week, descriptions of a few hundred characters with quotes and markup.
+ */
+final class BenchmarkData {
+
+    static final String[] STATES = {"Kerala", "Punjab", "Tamil Nadu", "Gujarat", "Odisha", "Assam", "Bihar", "Maharashtra"};
+    static final String[] CATEGORIES = {"Workshop", "Seminar", "Rally", "Quiz", "Street Play", "Essay Competition"};
+    static final LocalDate START = LocalDate.of(2024, 10, 28);
+
+    private static final String DESCRIPTION = "Vigilance awareness session on \"integrity in public life\" "
+            + "held with students and staff. <b>Pledge</b> administered, posters displayed, and a short quiz "
+            + "on citizen grievance channels was conducted; feedback forms collected for the regional office. ";
+
+    private BenchmarkData() {
+    }
+
+    static List<Activity> activities(int count, long seed) {
+        Random random = new Random(seed);
+        List<Activity> activities = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Activity activity = new Activity();
+            activity.setId((long) i + 1);
+            activity.setState(STATES[random.nextInt(STATES.length)]);
+            activity.setStationName("Substation " + random.nextInt(400));
+            activity.setActivityType(random.nextBoolean() ? "Outreach" : "Internal");
+            activity.setEventCategory(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+            activity.setParticipantCategory(random.nextBoolean() ? "Students" : "Employees");
+            activity.setEventDescription(DESCRIPTION.repeat(1 + random.nextInt(3)));
+            activity.setSchoolOrCollegeOrPanchayatName("Govt. Higher Secondary School No. " + random.nextInt(90));
+            activity.setEventLocation("Block " + random.nextInt(50) + ", District HQ");
+            activity.setEventDate(START.plusDays(random.nextInt(7)));
+            activity.setNumberOfParticipants(1 + random.nextInt(500));
+            activity.setRemarks(random.nextInt(4) == 0 ? "Photos pending \"final\" review" : "Completed");
+            activities.add(activity);
+        }
+        return activities;
+    }
+
+    static List<FileMetadata> files(Activity activity, int count) {
+        List<FileMetadata> files = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            files.add(new FileMetadata("event_" + activity.getId() + "_" + i + ".jpg",
+                    "/uploads/" + activity.getId() + "_" + i + ".jpg", "image/jpeg", 180_000L + i, activity));
+        }
+        return files;
+    }
+}
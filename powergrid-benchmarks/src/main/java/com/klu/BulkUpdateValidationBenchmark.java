@@ -0,0 +1,69 @@
+package com.klu;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ActivityServiceImpl.applyUpdates: per-activity validation and OWASP sanitizing of a /bulkUpdate
+ * payload, without the repository round trips. "plain" is typical form input, "markup" carries
+ * tags and entities the sanitizer has to rewrite.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BulkUpdateValidationBenchmark {
+
+    @Param({"plain", "markup"})
+    public String payload;
+
+    private ActivityServiceImpl service;
+    private Map<String, Object> updates;
+
+    @Setup
+    public void setUp() {
+        service = new ActivityServiceImpl();
+        Field sanitizationService = ReflectionUtils.findField(ActivityServiceImpl.class, "sanitizationService");
+        ReflectionUtils.makeAccessible(sanitizationService);
+        ReflectionUtils.setField(sanitizationService, service, new SanitizationService(10_000));
+        boolean markup = "markup".equals(payload);
+        updates = new HashMap<>();
+        updates.put("state", "Kerala");
+        updates.put("stationName", markup ? "Substation <i>North</i> &amp; East" : "Substation North");
+        updates.put("activityType", "Outreach");
+        updates.put("eventCategory", "Workshop");
+        updates.put("participantCategory", "Students");
+        updates.put("eventDescription", markup
+                ? "<p onclick=\"x()\">Awareness <b>session</b> on <script>alert(1)</script>integrity &amp; ethics</p>".repeat(4)
+                : "Awareness session on integrity and ethics in public life. ".repeat(6));
+        updates.put("schoolOrCollegeOrPanchayatName", "Govt. Higher Secondary School");
+        updates.put("eventLocation", "District HQ");
+        updates.put("eventDate", "2024-10-30");
+        updates.put("numberOfParticipants", 120);
+        updates.put("remarks", markup ? "<a href=\"javascript:x()\">photos</a> pending" : "Photos pending");
+    }
+
+    @Benchmark
+    public Activity applyUpdates() {
+        Activity activity = new Activity();
+        service.applyUpdates(activity, updates);
+        return activity;
+    }
+}
@@ -0,0 +1,80 @@
+package com.klu;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Runs LoadDriver at increasing concurrency against one running instance and reports the highest
+ * concurrency that still meets a p99 latency target with few enough errors. Run it once per server
+ * mode (e.g. spring.threads.virtual.enabled=false, then true) to compare the modes at equal p99.
+ *
+ *   java -cp target/benchmarks.jar com.klu.ConcurrencySweep --base-url=http://localhost:8080 \
+ *       --id-range=1-1000000 [--steps=50,100,200,400,800,1600] [--p99-ms=500] [--max-error-rate=0.01] \
+ *       [--duration=30] [--warmup=10] [--mix=activity=50,dateRangeQuery=25,dynamicCalculation=25] [--slow-read-ms=0]
+ *
+ * Every step is a closed loop with a fresh driver and no SSE subscribers. The p99 is taken over all
+ * operations together; rejected requests (e.g. 503 from the admission filter) count as errors.
+ * Exits with status 1 if no step met the target.
+ */
+public final class ConcurrencySweep {
+
+    private ConcurrencySweep() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = DatasetGenerator.options(args);
+        String baseUrl = options.getOrDefault("base-url", "http://localhost:8080");
+        String[] idRange = options.getOrDefault("id-range", "1-10000").split("-");
+        Map<String, Integer> mix = LoadDriver.mix(options.getOrDefault("mix",
+                "activity=50,dateRangeQuery=25,dynamicCalculation=25"));
+        double p99TargetMs = Double.parseDouble(options.getOrDefault("p99-ms", "500"));
+        double maxErrorRate = Double.parseDouble(options.getOrDefault("max-error-rate", "0.01"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        long slowReadMillis = Long.parseLong(options.getOrDefault("slow-read-ms", "0"));
+        List<Integer> steps = new ArrayList<>();
+        for (String step : options.getOrDefault("steps", "50,100,200,400,800,1600").split(",")) {
+            steps.add(Integer.parseInt(step.trim()));
+        }
+
+        List<String> rows = new ArrayList<>();
+        int best = 0;
+        for (int concurrency : steps) {
+            System.out.printf("Concurrency %d%n", concurrency);
+            LoadDriver driver = new LoadDriver(baseUrl, Long.parseLong(idRange[0]), Long.parseLong(idRange[1]));
+            driver.slowReadMillis = slowReadMillis;
+            Map<String, Histogram> results = driver.run(mix, concurrency, 0, warmup, duration, 0, 1);
+
+            Histogram all = new Histogram(3);
+            results.forEach((operation, histogram) -> {
+                if (!"sseDelivery".equals(operation)) {
+                    all.add(histogram);
+                }
+            });
+            long count = all.getTotalCount();
+            double p99 = count == 0 ? Double.NaN : all.getValueAtPercentile(99) / 1000.0;
+            double errorRate = count == 0 ? 1.0 : (double) driver.errorCount() / count;
+            boolean pass = count > 0 && p99 <= p99TargetMs && errorRate <= maxErrorRate;
+            if (pass) {
+                best = Math.max(best, concurrency);
+            }
+            rows.add(String.format(Locale.ROOT, "%11d %9.1f %9.1f %9.1f %7.2f%% %s", concurrency, (double) count / duration,
+                    count == 0 ? Double.NaN : all.getValueAtPercentile(50) / 1000.0, p99, 100 * errorRate, pass ? "ok" : "-"));
+        }
+
+        report(rows, p99TargetMs, maxErrorRate, best, System.out);
+        System.exit(best > 0 ? 0 : 1);
+    }
+
+    private static void report(List<String> rows, double p99TargetMs, double maxErrorRate, int best, PrintStream out) {
+        out.printf(Locale.ROOT, "%n%11s %9s %9s %9s %8s %s%n", "concurrency", "req/s", "p50 ms", "p99 ms", "errors", "meets");
+        rows.forEach(out::println);
+        out.printf(Locale.ROOT, "Highest concurrency with p99 <= %.0f ms and errors <= %.1f%%: %s%n",
+                p99TargetMs, 100 * maxErrorRate, best > 0 ? best : "none");
+    }
+}
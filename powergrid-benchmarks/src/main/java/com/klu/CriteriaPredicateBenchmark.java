@@ -0,0 +1,86 @@
+package com.klu;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ActivityQueryBuilder.buildConditions: turning the query-builder conditions of /api/batchQuery and
+ * /api/dateRangeQuery into a Criteria predicate. Only construction is measured; a Hibernate
+ * SessionFactory over in-memory H2 supplies the CriteriaBuilder and metamodel, no SQL runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CriteriaPredicateBenchmark {
+
+    @Param({"1", "5", "20"})
+    public int conditions;
+
+    private SessionFactory sessionFactory;
+    private CriteriaBuilder cb;
+    private final ActivityQueryBuilder queryBuilder = new ActivityQueryBuilder();
+    private final List<Map<String, String>> conditionList = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(Activity.class)
+                .addAnnotatedClass(FileMetadata.class)
+                .setProperty(AvailableSettings.JAKARTA_JDBC_URL, "jdbc:h2:mem:criteria-bench")
+                .setProperty(AvailableSettings.JAKARTA_JDBC_USER, "sa")
+                .setProperty(AvailableSettings.HBM2DDL_AUTO, "none")
+                .buildSessionFactory();
+        cb = sessionFactory.getCriteriaBuilder();
+
+        String[][] templates = {
+                {"state", "=", "Kerala", "AND"},
+                {"numberOfParticipants", ">=", "50", "OR"},
+                {"eventDate", "<=", "2024-11-01", "AND"},
+                {"eventCategory", "!=", "Rally", "NOT"},
+                {"activityType", "=", "Outreach", "AND"},
+        };
+        for (int i = 0; i < conditions; i++) {
+            String[] template = templates[i % templates.length];
+            conditionList.add(Map.of("field", template[0], "operator", template[1],
+                    "value", template[2], "logical", template[3]));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public CriteriaQuery<Activity> buildConditions() {
+        CriteriaQuery<Activity> query = cb.createQuery(Activity.class);
+        Root<Activity> root = query.from(Activity.class);
+        Predicate predicate = queryBuilder.buildConditions(cb, root, conditionList);
+        return query.where(predicate);
+    }
+}
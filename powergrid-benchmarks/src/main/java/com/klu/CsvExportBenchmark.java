@@ -0,0 +1,53 @@
+package com.klu;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ActivityController.appendCsvRow over a page of activities, i.e. the /export body minus the queries.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsvExportBenchmark {
+
+    @Param({"100", "1000"})
+    public int rows;
+
+    private List<Activity> activities;
+    private final Map<Long, List<FileMetadata>> fileMap = new HashMap<>();
+
+    @Setup
+    public void setUp() {
+        activities = BenchmarkData.activities(rows, 42);
+        for (Activity activity : activities) {
+            fileMap.put(activity.getId(), BenchmarkData.files(activity, (int) (activity.getId() % 4)));
+        }
+    }
+
+    @Benchmark
+    public String encodeRows() {
+        StringBuilder csv = new StringBuilder(ActivityController.CSV_HEADER);
+        for (Activity activity : activities) {
+            ActivityController.appendCsvRow(csv, activity, fileMap.get(activity.getId()));
+        }
+        return csv.toString();
+    }
+}
@@ -0,0 +1,265 @@
+package com.klu;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Fills the activity and file_metadata tables with synthetic rows shaped like production data,
+ * for load tests at 10k to 10M rows. The application must have created the schema first (start it
+ * once against the target database). Restart the application after a run; ActivityBitmapIndex
+ * only loads rows at startup.
+ *
+ *   java -cp target/benchmarks.jar com.klu.DatasetGenerator --url=jdbc:mysql://localhost:3306/srp \
+ *       --user=root --password=root --rows=1000000 [--seed=1] [--batch=2000] [--upload-dir=/uploads] [--truncate]
+ *
+ * Distributions: states are Zipf-skewed (a few states produce most activities), categories and
+ * activity types are weighted, dates fall in the campaign week with a launch-day peak, participant
+ * counts are log-normal within 1..1000, descriptions have a long tail up to the 1000-character
+ * column limit, and ~55% of activities have 1-5 attachments. Attachments point at a few placeholder
+ * images written to the upload directory, so /api/download works against generated rows.
+ */
+public final class DatasetGenerator {
+
+    static final String[] STATES = {
+            "Uttar Pradesh", "Maharashtra", "Tamil Nadu", "Karnataka", "Gujarat", "West Bengal", "Rajasthan",
+            "Madhya Pradesh", "Andhra Pradesh", "Telangana", "Kerala", "Odisha", "Bihar", "Punjab", "Haryana",
+            "Assam", "Jharkhand", "Chhattisgarh", "Uttarakhand", "Himachal Pradesh", "Delhi", "Jammu and Kashmir",
+            "Goa", "Tripura", "Meghalaya", "Manipur", "Nagaland", "Sikkim"};
+    static final String[] CATEGORIES = {"Workshop", "Seminar", "Rally", "Quiz", "Street Play", "Essay Competition",
+            "Debate", "Pledge", "Walkathon", "Poster Competition"};
+    private static final double[] CATEGORY_WEIGHTS = {22, 18, 12, 10, 8, 8, 7, 7, 5, 3};
+    private static final String[] ACTIVITY_TYPES = {"Outreach", "Internal", "Grievance Camp", "Customer Meet"};
+    private static final double[] ACTIVITY_TYPE_WEIGHTS = {55, 30, 10, 5};
+    private static final String[] PARTICIPANT_CATEGORIES = {"Students", "Employees", "Public", "Village Residents"};
+    private static final double[] PARTICIPANT_CATEGORY_WEIGHTS = {50, 25, 15, 10};
+    // Campaign week 2024-10-28 (Mon, launch) .. 2024-11-03 (Sun)
+    static final LocalDate START = LocalDate.of(2024, 10, 28);
+    private static final double[] DAY_WEIGHTS = {26, 17, 15, 14, 14, 9, 5};
+    private static final double[] ATTACHMENT_WEIGHTS = {45, 30, 15, 7, 2, 1};
+    private static final String[] WORDS = ("vigilance awareness integrity citizens grievance transparency pledge "
+            + "students staff substation power grid corruption ethics session panchayat officers public "
+            + "complaints portal whistle blower procurement rally quiz posters feedback village school "
+            + "college district regional office conducted organised participated").split(" ");
+    private static final String[] CONTENT_TYPES = {"image/jpeg", "image/png", "image/gif"};
+    private static final String[] EXTENSIONS = {".jpg", ".png", ".gif"};
+    private static final double[] CONTENT_TYPE_WEIGHTS = {70, 25, 5};
+    private static final String[] IMAGE_FORMATS = {"jpg", "png", "gif"};
+
+    private final Random random;
+    private final double[] stateWeights;
+
+    DatasetGenerator(long seed) {
+        random = new Random(seed);
+        stateWeights = new double[STATES.length];
+        for (int i = 0; i < STATES.length; i++) {
+            stateWeights[i] = 1.0 / Math.pow(i + 1, 1.1);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = options(args);
+        String url = options.getOrDefault("url", "jdbc:mysql://localhost:3306/srp");
+        long rows = Long.parseLong(options.getOrDefault("rows", "10000"));
+        int batch = Integer.parseInt(options.getOrDefault("batch", "2000"));
+        Path uploadDir = Paths.get(options.getOrDefault("upload-dir", "/uploads"));
+        if (url.startsWith("jdbc:mysql:") && !url.contains("rewriteBatchedStatements")) {
+            // Lets the driver send each batch as multi-row INSERTs
+            url += (url.contains("?") ? "&" : "?") + "rewriteBatchedStatements=true";
+        }
+
+        try (Connection connection = DriverManager.getConnection(url,
+                options.getOrDefault("user", "root"), options.getOrDefault("password", "root"))) {
+            connection.setAutoCommit(false);
+            DatasetGenerator generator = new DatasetGenerator(Long.parseLong(options.getOrDefault("seed", "1")));
+            if (options.containsKey("truncate")) {
+                generator.truncate(connection);
+            }
+            String[] placeholderPaths = writePlaceholders(uploadDir);
+            generator.generate(connection, rows, batch, placeholderPaths);
+        }
+    }
+
+    void generate(Connection connection, long rows, int batch, String[] placeholderPaths) throws SQLException {
+        long firstActivityId = nextId(connection, "activity");
+        long nextFileId = nextId(connection, "file_metadata");
+        long started = System.nanoTime();
+        long files = 0;
+        long reported = 0;
+
+        try (PreparedStatement activityInsert = connection.prepareStatement(
+                "INSERT INTO activity (id, state, station_name, activity_type, event_category, participant_category, "
+                        + "event_description, school_or_college_or_panchayat_name, event_location, event_date, "
+                        + "number_of_participants, remarks, order_index) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+             PreparedStatement fileInsert = connection.prepareStatement(
+                     "INSERT INTO file_metadata (id, file_name, file_path, content_type, file_size, activity_id) "
+                             + "VALUES (?, ?, ?, ?, ?, ?)")) {
+            for (long i = 0; i < rows; i++) {
+                long id = firstActivityId + i;
+                bindActivity(activityInsert, id);
+                activityInsert.addBatch();
+
+                int attachments = pick(ATTACHMENT_WEIGHTS);
+                for (int a = 0; a < attachments; a++) {
+                    int type = pick(CONTENT_TYPE_WEIGHTS);
+                    fileInsert.setLong(1, nextFileId++);
+                    fileInsert.setString(2, "IMG_" + START.plusDays(random.nextInt(7)).toString().replace("-", "") + "_" + random.nextInt(1_000_000) + EXTENSIONS[type]);
+                    fileInsert.setString(3, placeholderPaths[type]);
+                    fileInsert.setString(4, CONTENT_TYPES[type]);
+                    fileInsert.setLong(5, Math.min(5L << 20, (long) Math.exp(12.5 + 0.8 * random.nextGaussian())));
+                    fileInsert.setLong(6, id);
+                    fileInsert.addBatch();
+                    files++;
+                }
+
+                if ((i + 1) % batch == 0 || i == rows - 1) {
+                    activityInsert.executeBatch();
+                    fileInsert.executeBatch();
+                    connection.commit();
+                    if (i + 1 - reported >= Math.max(1, rows / 20) || i == rows - 1) {
+                        reported = i + 1;
+                        double seconds = (System.nanoTime() - started) / 1e9;
+                        System.out.printf("%,d / %,d activities, %,d attachments, %,.0f rows/s%n",
+                                reported, rows, files, reported / Math.max(seconds, 1e-9));
+                    }
+                }
+            }
+        }
+        advanceIdGenerator(connection, "activity", firstActivityId + rows);
+        advanceIdGenerator(connection, "file_metadata", nextFileId);
+        connection.commit();
+        System.out.printf("Generated activity ids %d..%d and %d attachments (use --id-range=%d-%d with LoadDriver)%n",
+                firstActivityId, firstActivityId + rows - 1, files, firstActivityId, firstActivityId + rows - 1);
+    }
+
+    private void bindActivity(PreparedStatement insert, long id) throws SQLException {
+        int state = pick(stateWeights);
+        insert.setLong(1, id);
+        insert.setString(2, STATES[state]);
+        insert.setString(3, STATES[state].split(" ")[0] + " Substation " + (1 + random.nextInt(60)));
+        insert.setString(4, ACTIVITY_TYPES[pick(ACTIVITY_TYPE_WEIGHTS)]);
+        insert.setString(5, CATEGORIES[pick(CATEGORY_WEIGHTS)]);
+        insert.setString(6, PARTICIPANT_CATEGORIES[pick(PARTICIPANT_CATEGORY_WEIGHTS)]);
+        insert.setString(7, description());
+        insert.setString(8, (random.nextBoolean() ? "Govt. High School " : "Gram Panchayat ") + random.nextInt(5000));
+        insert.setString(9, "Block " + random.nextInt(800) + ", " + STATES[state]);
+        insert.setObject(10, START.plusDays(pick(DAY_WEIGHTS)));
+        insert.setInt(11, (int) Math.max(1, Math.min(1000, Math.round(Math.exp(Math.log(40) + random.nextGaussian())))));
+        insert.setString(12, random.nextInt(2) == 0 ? null : sentence(3 + random.nextInt(12)));
+        insert.setInt(13, (int) Math.min(Integer.MAX_VALUE, id));
+    }
+
+    // 10% empty, then short / medium / long-tail lengths, capped at the 1000-character column
+    private String description() {
+        double roll = random.nextDouble();
+        if (roll < 0.10) {
+            return null;
+        }
+        int length = roll < 0.70 ? 40 + random.nextInt(160) : roll < 0.95 ? 200 + random.nextInt(400) : 600 + random.nextInt(400);
+        String text = sentence(length / 6 + 1);
+        return text.length() > length ? text.substring(0, length) : text;
+    }
+
+    private String sentence(int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            text.append(i == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+            text.append(i == words - 1 ? "." : random.nextInt(12) == 0 ? ", " : " ");
+        }
+        return text.toString();
+    }
+
+    private int pick(double[] weights) {
+        double total = 0;
+        for (double weight : weights) {
+            total += weight;
+        }
+        double roll = random.nextDouble() * total;
+        for (int i = 0; i < weights.length; i++) {
+            roll -= weights[i];
+            if (roll < 0) {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+
+    void truncate(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DELETE FROM file_metadata");
+            statement.executeUpdate("DELETE FROM activity");
+        }
+        connection.commit();
+    }
+
+    private static long nextId(Connection connection, String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT COALESCE(MAX(id), 0) + 1 FROM " + table)) {
+            result.next();
+            return result.getLong(1);
+        }
+    }
+
+    // Moves the application's pooled id generator (IdGeneratorTable) past the explicit ids written
+    // here, with one allocation block of headroom as at application startup
+    private static void advanceIdGenerator(Connection connection, String key, long next) throws SQLException {
+        long value = next + IdGeneratorTable.ALLOCATION_SIZE;
+        try (PreparedStatement update = connection.prepareStatement("UPDATE " + IdGeneratorTable.TABLE + " SET "
+                + IdGeneratorTable.VALUE_COLUMN + " = ? WHERE " + IdGeneratorTable.KEY_COLUMN + " = ? AND "
+                + IdGeneratorTable.VALUE_COLUMN + " < ?")) {
+            update.setLong(1, value);
+            update.setString(2, key);
+            update.setLong(3, value);
+            if (update.executeUpdate() > 0) {
+                return;
+            }
+        }
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + IdGeneratorTable.TABLE + " ("
+                + IdGeneratorTable.KEY_COLUMN + ", " + IdGeneratorTable.VALUE_COLUMN + ") SELECT ?, ? WHERE NOT EXISTS "
+                + "(SELECT 1 FROM " + IdGeneratorTable.TABLE + " WHERE " + IdGeneratorTable.KEY_COLUMN + " = ?)")) {
+            insert.setString(1, key);
+            insert.setLong(2, value);
+            insert.setString(3, key);
+            insert.executeUpdate();
+        }
+    }
+
+    // A small image per allowed upload type
+    private static String[] writePlaceholders(Path uploadDir) throws IOException {
+        Files.createDirectories(uploadDir);
+        BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+        String[] paths = new String[IMAGE_FORMATS.length];
+        for (int i = 0; i < IMAGE_FORMATS.length; i++) {
+            Path file = uploadDir.resolve("generated-placeholder" + EXTENSIONS[i]);
+            ImageIO.write(image, IMAGE_FORMATS[i], file.toFile());
+            paths[i] = file.toString();
+        }
+        return paths;
+    }
+
+    static Map<String, String> options(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(eq < 0 ? arg.substring(2) : arg.substring(2, eq), eq < 0 ? "true" : arg.substring(eq + 1));
+        }
+        return options;
+    }
+}
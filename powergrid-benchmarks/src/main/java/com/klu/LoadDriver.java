@@ -0,0 +1,451 @@
+package com.klu;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Replays a mixed workload against a running instance and reports throughput and latency
+ * histograms per operation. Pair it with DatasetGenerator to test at production scale.
+ *
+ *   java -cp target/benchmarks.jar com.klu.LoadDriver --base-url=http://localhost:8080 \
+ *       --id-range=1-1000000 [--duration=60] [--warmup=15] [--concurrency=32] [--rate=0] \
+ *       [--sse-subscribers=20] [--mix=activity=40,dateRangeQuery=20,dynamicCalculation=20,bulkUpdate=10,upload=10] \
+ *       [--histogram-dir=target/load] [--slow-read-ms=0]
+ *
+ * Operations: GET /activity pages, POST /api/dateRangeQuery, POST /api/stateCategoryQuery,
+ * POST /api/dynamicCalculation, POST /bulkUpdate (sets remarks on 1-10 activities) and
+ * POST /api/upload (one small PNG), plus the NDJSON streams reactiveDateRangeQuery,
+ * reactiveStateCategoryQuery and reactiveDynamicCalculation (/api/reactive/*) with the same
+ * requests as their MVC counterparts. The
+ * SSE subscribers stay on /activities/updates for the whole run, reconnecting when the server
+ * times them out. Each bulk update carries a unique token in its remarks, and the time until a
+ * subscriber sees that token is reported as "sseDelivery". It includes the server's 100 ms
+ * broadcast delay.
+ *
+ * With --rate=0 every worker sends back to back (closed loop). With --rate=N requests are
+ * scheduled at N/s overall. Latency is then measured from the scheduled start, so a stalled
+ * server shows up as queueing time instead of being hidden (coordinated omission).
+ * bulkUpdate and upload write to the database and upload directory, so run against a disposable
+ * dataset.
+ *
+ * --slow-read-ms=N makes the query operations read their response 8 KB at a time with an N ms
+ * pause in between, i.e. slow consumers. Comparing e.g. --mix=dateRangeQuery=100 with
+ * --mix=reactiveDateRangeQuery=100 at a high --concurrency shows how each variant copes with many
+ * slow readers; watch the server's Tomcat threads and powergrid.query.* gauges alongside.
+ */
+public final class LoadDriver {
+
+    private static final String[] OPERATIONS = {"activity", "dateRangeQuery", "stateCategoryQuery", "dynamicCalculation",
+            "bulkUpdate", "upload", "reactiveDateRangeQuery", "reactiveStateCategoryQuery", "reactiveDynamicCalculation"};
+    private static final Pattern TOKEN = Pattern.compile("load-token-(\\d+)");
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final String baseUrl;
+    private final long firstId;
+    private final long lastId;
+    private final byte[] uploadImage;
+    long slowReadMillis;
+
+    private final Map<String, Recorder> recorders = new LinkedHashMap<>();
+    private final Map<String, LongAdder> errors = new LinkedHashMap<>();
+    private final Recorder sseDelivery = new Recorder(3);
+    private final LongAdder sseEvents = new LongAdder();
+    private final LongAdder sseReconnects = new LongAdder();
+    private final Map<String, Long> pendingTokens = new ConcurrentHashMap<>();
+    private final AtomicLong tokens = new AtomicLong();
+    private volatile boolean measuring;
+    private volatile boolean running = true;
+
+    LoadDriver(String baseUrl, long firstId, long lastId) throws IOException {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.firstId = firstId;
+        this.lastId = lastId;
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB), "png", png);
+        this.uploadImage = png.toByteArray();
+        for (String operation : OPERATIONS) {
+            recorders.put(operation, new Recorder(3));
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = DatasetGenerator.options(args);
+        String[] idRange = options.getOrDefault("id-range", "1-10000").split("-");
+        LoadDriver driver = new LoadDriver(options.getOrDefault("base-url", "http://localhost:8080"),
+                Long.parseLong(idRange[0]), Long.parseLong(idRange[1]));
+        Map<String, Integer> mix = mix(options.getOrDefault("mix",
+                "activity=40,dateRangeQuery=20,dynamicCalculation=20,bulkUpdate=10,upload=10"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "32"));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "0"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "60"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "15"));
+        int subscribers = Integer.parseInt(options.getOrDefault("sse-subscribers", "20"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+        driver.slowReadMillis = Long.parseLong(options.getOrDefault("slow-read-ms", "0"));
+
+        Map<String, Histogram> results = driver.run(mix, concurrency, rate, warmup, duration, subscribers, seed);
+        driver.report(results, duration, System.out);
+        if (options.containsKey("histogram-dir")) {
+            driver.writeHistograms(results, Paths.get(options.get("histogram-dir")));
+        }
+        System.exit(0);
+    }
+
+    Map<String, Histogram> run(Map<String, Integer> mix, int concurrency, double rate, int warmupSeconds,
+                               int durationSeconds, int subscribers, long seed) throws InterruptedException {
+        for (int i = 0; i < subscribers; i++) {
+            Thread subscriber = new Thread(this::subscribe, "sse-subscriber-" + i);
+            subscriber.setDaemon(true);
+            subscriber.start();
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        long intervalNanos = rate > 0 ? (long) (1e9 / rate) : 0;
+        for (int w = 0; w < concurrency; w++) {
+            int worker = w;
+            workers.execute(() -> work(worker, concurrency, mix, new Random(seed + worker), start, intervalNanos));
+        }
+
+        System.out.printf("Warming up for %d s...%n", warmupSeconds);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(warmupSeconds));
+        recorders.values().forEach(Recorder::reset);
+        sseDelivery.reset();
+        sseEvents.reset();
+        sseReconnects.reset();
+        measuring = true;
+        System.out.printf("Measuring for %d s...%n", durationSeconds);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(durationSeconds));
+        measuring = false;
+        running = false;
+
+        Map<String, Histogram> results = new LinkedHashMap<>();
+        recorders.forEach((operation, recorder) -> results.put(operation, recorder.getIntervalHistogram()));
+        results.put("sseDelivery", sseDelivery.getIntervalHistogram());
+        workers.shutdown();
+        workers.awaitTermination(30, TimeUnit.SECONDS);
+        return results;
+    }
+
+    private void work(int worker, int concurrency, Map<String, Integer> mix, Random random, long start, long intervalNanos) {
+        int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        for (long slot = worker; running; slot += concurrency) {
+            long intended = System.nanoTime();
+            if (intervalNanos > 0) {
+                // Open loop: this worker owns every concurrency-th slot of the global schedule
+                intended = start + slot * intervalNanos;
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            String operation = pick(mix, totalWeight, random);
+            boolean ok;
+            try {
+                ok = execute(operation, random);
+            } catch (IOException e) {
+                ok = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (measuring) {
+                recorders.get(operation).recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended));
+                if (!ok) {
+                    errors.get(operation).increment();
+                }
+            }
+        }
+    }
+
+    private boolean execute(String operation, Random random) throws IOException, InterruptedException {
+        HttpRequest request = switch (operation) {
+            case "activity" -> get("/activity?page=" + skewed(random, 20) + "&size=" + (random.nextInt(4) == 0 ? 50 : 10)
+                    + (random.nextBoolean() ? "&state=" + encode(state(random)) : ""));
+            case "dateRangeQuery" -> dateRangeQuery("/api/dateRangeQuery", random);
+            case "stateCategoryQuery" -> stateCategoryQuery("/api/stateCategoryQuery", random);
+            case "dynamicCalculation" -> postJson("/api/dynamicCalculation", dynamicCalculation(random));
+            case "bulkUpdate" -> bulkUpdate(random);
+            case "upload" -> upload(random);
+            case "reactiveDateRangeQuery" -> dateRangeQuery("/api/reactive/dateRangeQuery", random);
+            case "reactiveStateCategoryQuery" -> stateCategoryQuery("/api/reactive/stateCategoryQuery", random);
+            case "reactiveDynamicCalculation" -> postJson("/api/reactive/dynamicCalculation", dynamicCalculation(random));
+            default -> throw new IllegalArgumentException("Unknown operation " + operation);
+        };
+        if (operation.contains("Query") || operation.contains("Calculation")) {
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            String body = read(response.body());
+            return response.statusCode() < 400 && !body.contains("\"errorMessage\"");
+        }
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        return response.statusCode() < 400;
+    }
+
+    // Reads the whole body, pausing slowReadMillis between 8 KB reads when slow consumers are simulated
+    private String read(InputStream body) throws IOException, InterruptedException {
+        try (body) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+                if (slowReadMillis > 0) {
+                    Thread.sleep(slowReadMillis);
+                }
+            }
+            return content.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    private HttpRequest dateRangeQuery(String path, Random random) {
+        LocalDate start = DatasetGenerator.START.plusDays(random.nextInt(7));
+        LocalDate end = start.plusDays(random.nextInt(3));
+        String conditions = random.nextBoolean() ? "[]"
+                : "[{\"field\":\"numberOfParticipants\",\"operator\":\">=\",\"value\":\"" + (50 + random.nextInt(400)) + "\",\"logical\":\"AND\"}]";
+        String form = "startDate=" + start + "&endDate=" + end
+                + "&state=" + encode(random.nextBoolean() ? state(random) : "")
+                + "&eventCategory=" + encode(random.nextInt(3) == 0 ? DatasetGenerator.CATEGORIES[random.nextInt(4)] : "")
+                + "&filterOperator=AND&conditions=" + encode(conditions);
+        return postForm(path, form);
+    }
+
+    private HttpRequest stateCategoryQuery(String path, Random random) {
+        String operator = new String[] {"AND", "OR", "NOT"}[random.nextInt(3)];
+        return postForm(path, "state=" + encode(state(random))
+                + "&eventCategory=" + encode(DatasetGenerator.CATEGORIES[random.nextInt(4)]) + "&operator=" + operator);
+    }
+
+    private String dynamicCalculation(Random random) {
+        String groupBy = new String[] {"state", "eventCategory", "eventDate"}[random.nextInt(3)];
+        String condition = random.nextBoolean() ? ""
+                : "{\"field\":\"state\",\"operator\":\"=\",\"value\":\"" + state(random) + "\",\"logical\":\"AND\"}";
+        return "{\"aggregates\":[{\"function\":\"SUM\",\"column\":\"numberOfParticipants\"},"
+                + "{\"function\":\"COUNT\",\"column\":\"id\"}],\"groupBy\":[\"" + groupBy + "\"],"
+                + "\"conditions\":[" + condition + "]}";
+    }
+
+    private HttpRequest bulkUpdate(Random random) {
+        int count = 1 + random.nextInt(10);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(String.valueOf(randomId(random)));
+        }
+        String token = "load-token-" + tokens.incrementAndGet();
+        pendingTokens.put(token, System.nanoTime());
+        return postJson("/bulkUpdate", "{\"ids\":[" + String.join(",", ids.stream().distinct().toList())
+                + "],\"remarks\":\"" + token + "\"}");
+    }
+
+    private HttpRequest upload(Random random) {
+        String boundary = "----powergrid-load-" + random.nextLong();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(body, true, StandardCharsets.UTF_8);
+        out.print("--" + boundary + "\r\nContent-Disposition: form-data; name=\"activityId\"\r\n\r\n" + randomId(random) + "\r\n");
+        out.print("--" + boundary + "\r\nContent-Disposition: form-data; name=\"files\"; filename=\"load.png\"\r\n"
+                + "Content-Type: image/png\r\n\r\n");
+        out.write(uploadImage, 0, uploadImage.length);
+        out.print("\r\n--" + boundary + "--\r\n");
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/api/upload"))
+                .timeout(Duration.ofSeconds(60))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+    }
+
+    // One long-lived /activities/updates stream, reopened whenever the server completes it
+    private void subscribe() {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/activities/updates"))
+                .header("Accept", "text/event-stream")
+                .GET()
+                .build();
+        while (running) {
+            try {
+                HttpResponse<Stream<String>> response = client.send(request, HttpResponse.BodyHandlers.ofLines());
+                try (Stream<String> lines = response.body()) {
+                    lines.takeWhile(line -> running).forEach(this::onEvent);
+                }
+            } catch (IOException e) {
+                sleepQuietly(1000);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (measuring) {
+                sseReconnects.increment();
+            }
+        }
+    }
+
+    private void onEvent(String line) {
+        if (!line.startsWith("data:") || line.contains("\"HEARTBEAT\"")) {
+            return;
+        }
+        long received = System.nanoTime();
+        if (measuring) {
+            sseEvents.increment();
+        }
+        Matcher token = TOKEN.matcher(line);
+        if (token.find()) {
+            Long sent = pendingTokens.get(token.group());
+            if (sent != null && measuring) {
+                sseDelivery.recordValue(TimeUnit.NANOSECONDS.toMicros(received - sent));
+            }
+        }
+    }
+
+    void report(Map<String, Histogram> results, int durationSeconds, PrintStream out) {
+        out.printf(Locale.ROOT, "%n%-20s %9s %7s %9s %9s %9s %9s %9s %9s%n",
+                "operation", "count", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        long total = 0;
+        for (Map.Entry<String, Histogram> entry : results.entrySet()) {
+            Histogram histogram = entry.getValue();
+            long count = histogram.getTotalCount();
+            LongAdder errorCount = errors.get(entry.getKey());
+            if ("sseDelivery".equals(entry.getKey())) {
+                out.printf(Locale.ROOT, "%-20s %9d %7s %9s %s%n", entry.getKey(), count, "-", "-", percentiles(histogram));
+                continue;
+            }
+            total += count;
+            out.printf(Locale.ROOT, "%-20s %9d %7d %9.1f %s%n", entry.getKey(), count,
+                    errorCount.sum(), (double) count / durationSeconds, percentiles(histogram));
+        }
+        out.printf(Locale.ROOT, "%-20s %9d %7s %9.1f%n", "total", total, "", (double) total / durationSeconds);
+        out.printf(Locale.ROOT, "SSE: %d events received, %d reconnects%n", sseEvents.sum(), sseReconnects.sum());
+    }
+
+    // Failed requests across all operations in the last measured interval
+    long errorCount() {
+        return errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    private static String percentiles(Histogram histogram) {
+        if (histogram.getTotalCount() == 0) {
+            return "";
+        }
+        return String.format(Locale.ROOT, "%9.1f %9.1f %9.1f %9.1f %9.1f",
+                histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(90) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0, histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+    }
+
+    // One HdrHistogram percentile file per operation (values in ms), for plotting or comparing runs
+    void writeHistograms(Map<String, Histogram> results, Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (Map.Entry<String, Histogram> entry : results.entrySet()) {
+            try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(entry.getKey() + ".hgrm")))) {
+                entry.getValue().outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        System.out.println("Histograms written to " + directory.toAbsolutePath());
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(60)).GET().build();
+    }
+
+    private HttpRequest postForm(String path, String form) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(60))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+    }
+
+    private HttpRequest postJson(String path, String json) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(60))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private long randomId(Random random) {
+        return firstId + (long) (random.nextDouble() * (lastId - firstId + 1));
+    }
+
+    // Favours the first pages and the biggest states, like real users
+    private static int skewed(Random random, int bound) {
+        return (int) Math.min(bound - 1, Math.floor(Math.abs(random.nextGaussian()) * bound / 4));
+    }
+
+    private static String state(Random random) {
+        return DatasetGenerator.STATES[skewed(random, DatasetGenerator.STATES.length)];
+    }
+
+    private static String pick(Map<String, Integer> mix, int totalWeight, Random random) {
+        int roll = random.nextInt(totalWeight);
+        for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Empty mix");
+    }
+
+    static Map<String, Integer> mix(String spec) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] weight = part.split("=");
+            if (!List.of(OPERATIONS).contains(weight[0].trim())) {
+                throw new IllegalArgumentException("Unknown operation in --mix: " + weight[0]);
+            }
+            int value = Integer.parseInt(weight[1].trim());
+            if (value > 0) {
+                mix.put(weight[0].trim(), value);
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("--mix selects no operations");
+        }
+        return mix;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
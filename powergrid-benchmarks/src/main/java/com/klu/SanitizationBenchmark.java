@@ -0,0 +1,55 @@
+package com.klu;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SanitizationService against the bare OWASP policy it replaces. "plain" takes the pre-scan only,
+ * "shortMarkup" is a repeated value served from the memo, "longMarkup" is too long to memoize and
+ * always runs the policy.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SanitizationBenchmark {
+
+    @Param({"plain", "shortMarkup", "longMarkup"})
+    public String input;
+
+    private SanitizationService service;
+    private String value;
+
+    @Setup
+    public void setUp() {
+        service = new SanitizationService(10_000);
+        switch (input) {
+            case "plain" -> value = "Govt. Higher Secondary School No. 42, District HQ";
+            case "shortMarkup" -> value = "Substation <i>North</i> & East";
+            default -> value = "<p>Awareness <b>session</b> on \"integrity\" & ethics</p>".repeat(8);
+        }
+    }
+
+    @Benchmark
+    public String policy() {
+        return SanitizationService.POLICY.sanitize(value);
+    }
+
+    @Benchmark
+    public String service() {
+        return service.sanitize(value);
+    }
+}
@@ -0,0 +1,69 @@
+package com.klu;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ActivityController.broadcastUpdate delivering one serialized update to every subscriber of
+ * /activities/updates. Subscribers are emitters that hand the frame to a Blackhole, so what is
+ * measured is the hub's own locking, iteration and per-subscriber framing, not socket writes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SseFanoutBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int subscribers;
+
+    private ActivityController controller;
+    private String data;
+
+    static final class BlackholeEmitter extends ResponseBodyEmitter {
+        private final Blackhole blackhole;
+
+        BlackholeEmitter(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public synchronized void send(Object object, MediaType mediaType) {
+            blackhole.consume(object);
+        }
+    }
+
+    @Setup
+    public void setUp(Blackhole blackhole) throws Exception {
+        controller = new ActivityController();
+        for (int i = 0; i < subscribers; i++) {
+            controller.subscribe(new BlackholeEmitter(blackhole));
+        }
+        Activity activity = BenchmarkData.activities(1, 5).get(0);
+        data = new ObjectMapper().registerModule(new JavaTimeModule())
+                .writeValueAsString(new ActivityController.ActivityUpdate("UPDATE", activity));
+    }
+
+    @Benchmark
+    public void broadcastUpdate() {
+        controller.broadcastUpdate(data);
+    }
+}